@@ -12,6 +12,8 @@ import javax.vecmath.Matrix4f;
 import javax.vecmath.Point3f;
 import javax.vecmath.Vector3f;
 
+import de.javagl.jgltf.impl.v2.Node;
+
 public class BaseBuilder {
     
     /** Indicates if the X axis should be inverted. This is necessary to correct orientations for Cesium. */
@@ -69,6 +71,15 @@ public class BaseBuilder {
     /** Transform scale and offset */
     private final Matrix4f _transform = new Matrix4f();
 
+    /** Used for vertices when the transform is set on the Node. */
+    private static final Matrix4f IDENTITY = new Matrix4f();
+    static {
+        IDENTITY.setIdentity();
+    }
+
+    /** Indicates the transform is set on the Node instead of applied to each vertex. */
+    private boolean _deferTransform = false;
+
     public BaseBuilder(String _name) {
         this._name = _name;
         this._transform.setIdentity();
@@ -94,6 +105,35 @@ public class BaseBuilder {
      * Get the transformation matrix.
      */
     public Matrix4f getTransform() { return this._transform; }
+
+    /**
+     * Keep vertices in local coordinates and set the transform on the Node created by build().
+     * This avoids a matrix multiply for each vertex and a mesh built this way can be referenced 
+     * by other nodes with {@link MeshGltfWriter#addMeshNode}.
+     */
+    public void setDeferTransform(boolean _deferTransform) { this._deferTransform = _deferTransform; }
+
+    /**
+     * Indicates if the transform is set on the Node instead of applied to each vertex.
+     */
+    public boolean isDeferTransform() { return this._deferTransform; }
+
+    /**
+     * Get the transform that subclasses apply to vertices. This is the identity if the
+     * transform is deferred to the Node.
+     */
+    protected Matrix4f getVertexTransform() {
+        return this._deferTransform ? IDENTITY : this._transform;
+    }
+
+    /**
+     * Set the transform on a Node that references the mesh if it was not applied to the vertices.
+     */
+    protected void applyNodeTransform(Node _node) {
+        if(this._deferTransform) {
+            MeshGltfWriter.setNodeTransform(_node, this._transform);
+        }
+    }
     
     /**
      * Center all vertices about a point. This will update the transformation matrix.
@@ -0,0 +1,207 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import io.github.chadj2.mesh.buffer.BufferIndexArray;
+import io.github.chadj2.mesh.optimize.VertexCacheOptimizer;
+
+/**
+ * Triangle indices of a grid that only depend on its size and wrapping. Templates are cached
+ * by the writer so that every grid with the same dimensions shares one index array and the
+ * indices are serialized once with an accessor that is shared by every mesh that uses the 
+ * template. The cache is released with the writer.
+ * <p>
+ * Vertices of a template are numbered {@code xIdx*ySize + yIdx}. If a textured grid wraps
+ * then the sizes include the extra seam column or row. The triangles are the same as the ones
+ * generated by {@link MeshBuilder#addGrid}.
+ * @author Chad Juliano
+ */
+public final class GridIndexTemplate {
+
+    private final static Logger LOG = LoggerFactory.getLogger(GridIndexTemplate.class);
+
+    private final String _name;
+
+    /** Number of vertices on each axis including seams. */
+    private final int _xSize;
+    private final int _ySize;
+
+    private final int[] _indices;
+
+    /** Indices and vertex order after vertex cache optimization. */
+    private int[] _optIndices = null;
+    private int[] _optVertexOrder = null;
+
+    /**
+     * Size and wrapping of a grid. This is enough to check if a mesh matches a template 
+     * without creating the template.
+     */
+    public static final class Key {
+        private final String _name;
+        
+        /** Number of vertices on each axis including seams. */
+        private final int _xSize;
+        private final int _ySize;
+        
+        /** First index on each axis that starts a square. Zero if the indices wrap. */
+        private final int _xStart;
+        private final int _yStart;
+        
+        /**
+         * @param _xGridSize Number of vertices in the X axis of the grid without seams.
+         * @param _yGridSize Number of vertices in the Y axis of the grid without seams.
+         * @param _wrapX Grid is wrapped about the X axis.
+         * @param _wrapY Grid is wrapped about the Y axis.
+         * @param _isTextured Grid has texture coordinates.
+         */
+        public Key(int _xGridSize, int _yGridSize, boolean _wrapX, boolean _wrapY, boolean _isTextured) {
+            this._name = String.format("grid%dx%d-wrap%d%d-tex%d", _xGridSize, _yGridSize,
+                    _wrapX ? 1 : 0, _wrapY ? 1 : 0, _isTextured ? 1 : 0);
+            
+            // Textured grids that wrap have an extra seam and do not wrap indices.
+            this._xSize = (_isTextured && _wrapX) ? _xGridSize + 1 : _xGridSize;
+            this._ySize = (_isTextured && _wrapY) ? _yGridSize + 1 : _yGridSize;
+            this._xStart = (!_isTextured && _wrapX) ? 0 : 1;
+            this._yStart = (!_isTextured && _wrapY) ? 0 : 1;
+        }
+        
+        public String getName() { return this._name; }
+        
+        public int getVertexCount() { return this._xSize*this._ySize; }
+        
+        public int getIndexCount() { return (this._xSize - this._xStart)*(this._ySize - this._yStart)*6; }
+    }
+
+    private GridIndexTemplate(Key _key) {
+        this._name = _key._name;
+        this._xSize = _key._xSize;
+        this._ySize = _key._ySize;
+
+        final int _xStart = _key._xStart;
+        final int _yStart = _key._yStart;
+        this._indices = new int[_key.getIndexCount()];
+
+        int _pos = 0;
+        for(int _xIdx = _xStart; _xIdx < this._xSize; _xIdx++) {
+            final int _xPrev = (_xIdx == 0) ? this._xSize - 1 : _xIdx - 1;
+
+            for(int _yIdx = _yStart; _yIdx < this._ySize; _yIdx++) {
+                final int _yPrev = (_yIdx == 0) ? this._ySize - 1 : _yIdx - 1;
+
+                final int _vtx11 = _xPrev*this._ySize + _yPrev;
+                final int _vtx10 = _xPrev*this._ySize + _yIdx;
+                final int _vtx01 = _xIdx*this._ySize + _yPrev;
+                final int _vtx00 = _xIdx*this._ySize + _yIdx;
+
+                // same order as TriangleBuilder.addSquare()
+                this._indices[_pos++] = _vtx11;
+                this._indices[_pos++] = _vtx10;
+                this._indices[_pos++] = _vtx01;
+
+                this._indices[_pos++] = _vtx01;
+                this._indices[_pos++] = _vtx10;
+                this._indices[_pos++] = _vtx00;
+            }
+        }
+    }
+
+    /**
+     * Get the template for a grid from the cache of the writer.
+     * @param _geoWriter Writer that caches the templates.
+     * @param _key Size and wrapping of the grid.
+     */
+    public static GridIndexTemplate get(MeshGltfWriter _geoWriter, Key _key) {
+        return _geoWriter.getGridTemplate(_key.getName(), _name -> {
+            LOG.debug("New grid template: {}", _name);
+            return new GridIndexTemplate(_key);
+        });
+    }
+
+    public String getName() { return this._name; }
+
+    /**
+     * Number of vertices in the X axis including the seam.
+     */
+    public int getXSize() { return this._xSize; }
+
+    /**
+     * Number of vertices in the Y axis including the seam.
+     */
+    public int getYSize() { return this._ySize; }
+
+    public int getVertexCount() { return this._xSize*this._ySize; }
+
+    public int getIndexCount() { return this._indices.length; }
+
+    /**
+     * Get the order that vertices must be written in. Entry i is the template vertex that
+     * should be written at position i.
+     * @param _isOptimized Vertices were reordered for the vertex cache.
+     * @return Vertex order or null if vertices are written in template order.
+     */
+    public int[] getVertexOrder(boolean _isOptimized) {
+        if(!_isOptimized) {
+            return null;
+        }
+
+        optimize();
+        return this._optVertexOrder;
+    }
+
+    /**
+     * Get the index of the accessor containing the indices of this template. The indices are
+     * serialized the first time this is called for a writer.
+     * @param _isOptimized Use the indices that were reordered for the vertex cache.
+     */
+    public int getAccessor(MeshGltfWriter _geoWriter, boolean _isOptimized) {
+        final String _key = _isOptimized ? this._name + "-opt" : this._name;
+
+        Integer _accessorIdx = _geoWriter.getSharedAccessor(_key);
+        if(_accessorIdx != null) {
+            return _accessorIdx;
+        }
+
+        int[] _indices = this._indices;
+        if(_isOptimized) {
+            optimize();
+            _indices = this._optIndices;
+        }
+
+        BufferIndexArray _indexBuf = new BufferIndexArray(_key);
+        _indexBuf.setData(_indices, _indices.length);
+
+        MeshPrimitive _tmpPrimitive = new MeshPrimitive();
+        _indexBuf.build(_geoWriter, _tmpPrimitive);
+
+        _accessorIdx = _tmpPrimitive.getIndices();
+        _geoWriter.addSharedAccessor(_key, _accessorIdx);
+        return _accessorIdx;
+    }
+
+    private synchronized void optimize() {
+        if(this._optIndices != null) {
+            return;
+        }
+
+        final int _vertexCount = getVertexCount();
+        final int[] _indices = this._indices.clone();
+        new VertexCacheOptimizer().optimizeTriangles(_indices, _vertexCount);
+        final int[] _remap = VertexCacheOptimizer.optimizeFetch(_indices, _vertexCount);
+
+        final int[] _order = new int[_vertexCount];
+        for(int _idx = 0; _idx < _vertexCount; _idx++) {
+            _order[_remap[_idx]] = _idx;
+        }
+
+        this._optVertexOrder = _order;
+        this._optIndices = _indices;
+    }
+}
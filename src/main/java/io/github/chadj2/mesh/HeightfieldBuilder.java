@@ -0,0 +1,453 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh;
+
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Tuple3f;
+import javax.vecmath.Vector3f;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.Mesh;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.TopologyBuilder.TopologyMode;
+import io.github.chadj2.mesh.buffer.BufferFloatArray;
+
+/**
+ * Build a terrain mesh from a regular grid of heights. Positions, normals, and texture
+ * coordinates are written directly to primitive arrays so no MeshVertex is created for each
+ * point. This is much faster and uses less memory than {@link MeshBuilder#addPlane} for
+ * large grids.
+ * <p>
+ * The grid is centered at the origin of the XZ plane and heights are on the Y axis. Heights are
+ * stored in row major order where the index of a point is {@code zIdx*xSize + xIdx}. Normals
+ * are calculated with finite differences of neighboring points. The triangle indices come from
+ * a {@link GridIndexTemplate} so they are shared by every grid of the same size in a writer.
+ * @author Chad Juliano
+ */
+public class HeightfieldBuilder extends BaseBuilder {
+
+    private final static Logger LOG = LoggerFactory.getLogger(HeightfieldBuilder.class);
+
+    /**
+     * Function that returns the height of the terrain at a point.
+     */
+    @FunctionalInterface
+    public interface HeightFunction {
+        float getHeight(float _xPos, float _zPos);
+    }
+
+    /** Number of points on each axis */
+    private final int _xSize;
+    private final int _zSize;
+
+    /** Size of the grid in model units */
+    private final float _xLength;
+    private final float _zLength;
+
+    private final float[] _heights;
+    private float[] _positions = null;
+    private float[] _normals = null;
+    private float[] _texCoords = null;
+    private boolean _hasHeights = false;
+
+    /** Positions and normals are up to date with the heights. */
+    private boolean _hasVertices = false;
+
+    /** Generate texture coordinates that stretch a texture over the grid. */
+    private boolean _isTextured = false;
+
+    /** Range of texture coordinates as (uStart, vStart, uEnd, vEnd). */
+    private final float[] _texRange = { 0f, 0f, 1f, 1f };
+
+    /** Depth of the skirt around the edges. Zero if there is no skirt. */
+    private float _skirtDepth = 0f;
+
+    /** Material for the mesh */
+    private Material _material = null;
+
+    /** Calculate rows on multiple threads. */
+    private boolean _isParallel = false;
+
+    private final BufferFloatArray _positionBuf = new BufferFloatArray("vertices", 3);
+    private final BufferFloatArray _normalBuf = new BufferFloatArray("normals", 3);
+    private final BufferFloatArray _texCoordBuf = new BufferFloatArray("texCoords", 2);
+
+    private Tuple3f _minBounds;
+    private Tuple3f _maxBounds;
+
+    /**
+     * @param _name Name of the glTF mesh.
+     * @param _xSize Number of points on the X axis.
+     * @param _zSize Number of points on the Z axis.
+     * @param _xLength Size of the grid on the X axis.
+     * @param _zLength Size of the grid on the Z axis.
+     */
+    public HeightfieldBuilder(String _name, int _xSize, int _zSize, float _xLength, float _zLength) {
+        super(_name);
+
+        if(_xSize < 2 || _zSize < 2) {
+            throw new IllegalArgumentException(String.format("Grid must be at least 2x2: %dx%d",
+                    _xSize, _zSize));
+        }
+
+        this._xSize = _xSize;
+        this._zSize = _zSize;
+        this._xLength = _xLength;
+        this._zLength = _zLength;
+
+        this._heights = new float[_xSize*_zSize];
+    }
+
+    public int getXSize() { return this._xSize; }
+
+    public int getZSize() { return this._zSize; }
+
+    /**
+     * Set a Material that will be used when generating the mesh.
+     * @see MeshGltfWriter#newTextureMaterial(String)
+     */
+    public void setMaterial(Material _material) { this._material = _material; }
+
+    /**
+     * Enable calculation of heights, positions, and normals on multiple threads. Each row is
+     * independent so the result is identical to a single thread. A {@link HeightFunction} must 
+     * be thread safe if this is enabled.
+     */
+    public void setParallel(boolean _isEnabled) { this._isParallel = _isEnabled; }
+
+    /**
+     * Generate texture coordinates that stretch a texture over the grid.
+     */
+    public void setTextured(boolean _isTextured) { this._isTextured = _isTextured; }
+
+    /**
+     * Set the range of texture coordinates for the grid. This is used when a texture is 
+     * stretched over multiple grids. The default range is [0,1] on both axes.
+     */
+    public void setTexRange(float _uStart, float _vStart, float _uEnd, float _vEnd) {
+        this._texRange[0] = _uStart;
+        this._texRange[1] = _vStart;
+        this._texRange[2] = _uEnd;
+        this._texRange[3] = _vEnd;
+        this._texCoords = null;
+    }
+
+    /**
+     * Add a skirt that hangs down from the edges of the grid. When neighboring grids have a 
+     * different resolution the skirt hides the cracks between them. The skirt adds a row of 
+     * vertices on each side that have the position of the edge lowered by the depth.
+     * @param _depth Depth of the skirt in model units or zero for no skirt.
+     */
+    public void setSkirtDepth(float _depth) {
+        this._skirtDepth = _depth;
+        this._hasVertices = false;
+        this._texCoords = null;
+    }
+
+    /**
+     * Get the minimum bounds of all vertices. Should only be called after build().
+     */
+    public Tuple3f getMinBounds() { return this._minBounds; }
+
+    /**
+     * Get the maximum bounds of all vertices. Should only be called after build().
+     */
+    public Tuple3f getMaxBounds() { return this._maxBounds; }
+
+    /**
+     * Copy heights from an array.
+     * @param _heights Array with an entry for each point at index {@code zIdx*xSize + xIdx}.
+     */
+    public void setHeights(float[] _heights) {
+        if(_heights.length != this._heights.length) {
+            throw new IllegalArgumentException(String.format("Expected %d heights but got %d",
+                    this._heights.length, _heights.length));
+        }
+
+        System.arraycopy(_heights, 0, this._heights, 0, _heights.length);
+        this._hasHeights = true;
+        this._hasVertices = false;
+    }
+
+    /**
+     * Sample heights from a function at each point of the grid.
+     */
+    public void setHeights(HeightFunction _function) {
+        forEachRow(this._zSize, _zIdx -> {
+            final float _zPos = getZPos(_zIdx);
+            final int _rowStart = _zIdx*this._xSize;
+
+            for(int _xIdx = 0; _xIdx < this._xSize; _xIdx++) {
+                this._heights[_rowStart + _xIdx] = _function.getHeight(getXPos(_xIdx), _zPos);
+            }
+        });
+        this._hasHeights = true;
+        this._hasVertices = false;
+    }
+
+    /**
+     * Calculate the positions and normals from the heights. This is called by buildMesh() if 
+     * necessary. It does not use the writer so it can be called for many grids in parallel 
+     * before they are serialized. The transform should not be changed after this is called.
+     */
+    public void calcVertices() throws Exception {
+        if(!this._hasHeights) {
+            throw new Exception("Heights have not been set: " + this.getName());
+        }
+
+        final int _pointCount = getVertexXSize()*getVertexZSize();
+        if(this._positions == null || this._positions.length != _pointCount*3) {
+            this._positions = new float[_pointCount*3];
+            this._normals = new float[_pointCount*3];
+        }
+
+        forEachRow(getVertexZSize(), this::calcPositionRow);
+        forEachRow(getVertexZSize(), this::calcNormalRow);
+        this._hasVertices = true;
+    }
+
+    /**
+     * Get the X position of a grid column before the transform is applied.
+     */
+    public float getXPos(int _xIdx) {
+        return MeshBuilder.interpFloat(this._xSize - 1, this._xLength, _xIdx) - this._xLength/2f;
+    }
+
+    /**
+     * Get the Z position of a grid row before the transform is applied.
+     */
+    public float getZPos(int _zIdx) {
+        return MeshBuilder.interpFloat(this._zSize - 1, this._zLength, _zIdx) - this._zLength/2f;
+    }
+
+    /**
+     * Serialize the grid to buffers and add a Node to the scene.
+     * @param _geoWriter Instance of writer class.
+     * @return Node containing the mesh.
+     */
+    public Node build(MeshGltfWriter _geoWriter) throws Exception {
+        int _meshIdx = buildMesh(_geoWriter);
+
+        Node _node = new Node();
+        _node.setMesh(_meshIdx);
+        _node.setName(this.getName() + "-node");
+        applyNodeTransform(_node);
+
+        _geoWriter.addNode(_node);
+        return _node;
+    }
+
+    /**
+     * Serialize the grid to buffers and return the index of the Mesh.
+     * @param _geoWriter Instance of writer class.
+     */
+    public int buildMesh(MeshGltfWriter _geoWriter) throws Exception {
+        long _startTime = System.nanoTime();
+        if(!this._hasVertices) {
+            calcVertices();
+        }
+
+        MeshPrimitive _meshPrimitive = new MeshPrimitive();
+        _meshPrimitive.setMode(TopologyMode.TRIANGLES.ordinal());
+
+        Mesh _mesh = new Mesh();
+        _geoWriter.getGltf().addMeshes(_mesh);
+        int _meshIdx = _geoWriter.getGltf().getMeshes().size() - 1;
+        _mesh.setName(this.getName() + "-mesh");
+        _mesh.addPrimitives(_meshPrimitive);
+
+        if(this._material != null) {
+            int _materialIdx = _geoWriter.getGltf().getMaterials().indexOf(this._material);
+            _meshPrimitive.setMaterial(_materialIdx);
+        }
+
+        final int _pointCount = getVertexXSize()*getVertexZSize();
+        this._positionBuf.setName(this.getName() + "-vertices");
+        this._positionBuf.setData(this._positions, _pointCount);
+        Accessor _posAccessor = this._positionBuf.buildAttrib(_geoWriter, _meshPrimitive, "POSITION");
+        this._minBounds = toTuple(_posAccessor.getMin());
+        this._maxBounds = toTuple(_posAccessor.getMax());
+
+        this._normalBuf.setName(this.getName() + "-normals");
+        this._normalBuf.setData(this._normals, _pointCount);
+        this._normalBuf.buildAttrib(_geoWriter, _meshPrimitive, "NORMAL");
+
+        if(this._isTextured) {
+            this._texCoordBuf.setName(this.getName() + "-texCoords");
+            this._texCoordBuf.setData(getTexCoords(), _pointCount);
+            this._texCoordBuf.buildAttrib(_geoWriter, _meshPrimitive, "TEXCOORD_0");
+        }
+
+        // the indices are shared with every grid of the same size
+        GridIndexTemplate _template = GridIndexTemplate.get(_geoWriter, 
+                new GridIndexTemplate.Key(getVertexXSize(), getVertexZSize(), false, false, false));
+        _meshPrimitive.setIndices(_template.getAccessor(_geoWriter, false));
+
+        LOG.debug("New Heightfield[{}]: idx=<{}> grid=<{}x{}> time=<{} ms>", _mesh.getName(), _meshIdx,
+                this._xSize, this._zSize, (System.nanoTime() - _startTime)/1000000);
+        return _meshIdx;
+    }
+
+    /**
+     * Number of vertices on each side of the grid for the skirt.
+     */
+    private int getSkirtSize() { return (this._skirtDepth > 0f) ? 1 : 0; }
+
+    private int getVertexXSize() { return this._xSize + 2*getSkirtSize(); }
+
+    private int getVertexZSize() { return this._zSize + 2*getSkirtSize(); }
+
+    /**
+     * Get the index of a vertex in the position, normal, and texture buffers. Vertices are 
+     * ordered by column to match {@link GridIndexTemplate}. Coordinates are for the grid of
+     * heights so a skirt vertex has an index of -1 or the grid size.
+     */
+    private int getVertexIdx(int _xIdx, int _zIdx) {
+        final int _skirt = getSkirtSize();
+        return (_xIdx + _skirt)*getVertexZSize() + _zIdx + _skirt;
+    }
+
+    /**
+     * Clamp a vertex coordinate to the grid of heights.
+     */
+    private static int clampIdx(int _idx, int _size) {
+        return Math.max(0, Math.min(_idx, _size - 1));
+    }
+
+    /**
+     * Run an operation for each row of the grid on one or more threads.
+     */
+    private void forEachRow(int _rowCount, IntConsumer _rowOp) {
+        IntStream _rows = IntStream.range(0, _rowCount);
+        if(this._isParallel) {
+            _rows = _rows.parallel();
+        }
+        _rows.forEach(_rowOp);
+    }
+
+    /**
+     * Apply the transform to each point in a row of vertices. Skirt vertices have the position 
+     * of the nearest edge point lowered by the skirt depth.
+     */
+    private void calcPositionRow(int _rowIdx) {
+        final Matrix4f _mat = this.getVertexTransform();
+        final float[] _pos = this._positions;
+        final int _skirt = getSkirtSize();
+        final int _zIdx = _rowIdx - _skirt;
+        final int _zGridIdx = clampIdx(_zIdx, this._zSize);
+        final float _zPos = getZPos(_zGridIdx);
+
+        for(int _xIdx = -_skirt; _xIdx < this._xSize + _skirt; _xIdx++) {
+            final int _xGridIdx = clampIdx(_xIdx, this._xSize);
+            final float _xPos = getXPos(_xGridIdx);
+            float _yPos = this._heights[_zGridIdx*this._xSize + _xGridIdx];
+
+            if(Float.isNaN(_yPos)) {
+                throw new IllegalStateException(String.format("Height is NaN at (%d,%d)", 
+                        _xGridIdx, _zGridIdx));
+            }
+
+            if(_xIdx != _xGridIdx || _zIdx != _zGridIdx) {
+                _yPos -= this._skirtDepth;
+            }
+
+            final int _idx = getVertexIdx(_xIdx, _zIdx);
+            _pos[_idx*3]     = _mat.m00*_xPos + _mat.m01*_yPos + _mat.m02*_zPos + _mat.m03;
+            _pos[_idx*3 + 1] = _mat.m10*_xPos + _mat.m11*_yPos + _mat.m12*_zPos + _mat.m13;
+            _pos[_idx*3 + 2] = _mat.m20*_xPos + _mat.m21*_yPos + _mat.m22*_zPos + _mat.m23;
+        }
+    }
+
+    /**
+     * Calculate normals for a row of vertices with central differences of the transformed 
+     * positions. One sided differences are used at the edges. Skirt vertices get the normal 
+     * of the nearest edge point.
+     */
+    private void calcNormalRow(int _rowIdx) {
+        final float[] _pos = this._positions;
+        final int _skirt = getSkirtSize();
+        final int _zIdx = _rowIdx - _skirt;
+        final int _zGridIdx = clampIdx(_zIdx, this._zSize);
+        final int _zPrev = Math.max(_zGridIdx - 1, 0);
+        final int _zNext = Math.min(_zGridIdx + 1, this._zSize - 1);
+
+        for(int _xIdx = -_skirt; _xIdx < this._xSize + _skirt; _xIdx++) {
+            final int _xGridIdx = clampIdx(_xIdx, this._xSize);
+            final int _xPrev = Math.max(_xGridIdx - 1, 0);
+            final int _xNext = Math.min(_xGridIdx + 1, this._xSize - 1);
+
+            final int _dxNext = getVertexIdx(_xNext, _zGridIdx)*3;
+            final int _dxPrev = getVertexIdx(_xPrev, _zGridIdx)*3;
+            final int _dzNext = getVertexIdx(_xGridIdx, _zNext)*3;
+            final int _dzPrev = getVertexIdx(_xGridIdx, _zPrev)*3;
+
+            final float _dxX = _pos[_dxNext] - _pos[_dxPrev];
+            final float _dxY = _pos[_dxNext + 1] - _pos[_dxPrev + 1];
+            final float _dxZ = _pos[_dxNext + 2] - _pos[_dxPrev + 2];
+
+            final float _dzX = _pos[_dzNext] - _pos[_dzPrev];
+            final float _dzY = _pos[_dzNext + 1] - _pos[_dzPrev + 1];
+            final float _dzZ = _pos[_dzNext + 2] - _pos[_dzPrev + 2];
+
+            // normal is the cross product dz x dx
+            float _nX = _dzY*_dxZ - _dzZ*_dxY;
+            float _nY = _dzZ*_dxX - _dzX*_dxZ;
+            float _nZ = _dzX*_dxY - _dzY*_dxX;
+            float _len = (float)Math.sqrt(_nX*_nX + _nY*_nY + _nZ*_nZ);
+
+            if(_len == 0f) {
+                _nX = 0f;
+                _nY = 1f;
+                _nZ = 0f;
+                _len = 1f;
+            }
+
+            final int _idx = getVertexIdx(_xIdx, _zIdx)*3;
+            this._normals[_idx]     = _nX/_len;
+            this._normals[_idx + 1] = _nY/_len;
+            this._normals[_idx + 2] = _nZ/_len;
+        }
+    }
+
+    private float[] getTexCoords() {
+        if(this._texCoords != null) {
+            return this._texCoords;
+        }
+
+        final int _skirt = getSkirtSize();
+        final float[] _range = this._texRange;
+        this._texCoords = new float[getVertexXSize()*getVertexZSize()*2];
+
+        for(int _zIdx = -_skirt; _zIdx < this._zSize + _skirt; _zIdx++) {
+            final int _zGridIdx = clampIdx(_zIdx, this._zSize);
+            final float _vPos = _range[1] 
+                    + MeshBuilder.interpFloat(this._zSize - 1, _range[3] - _range[1], _zGridIdx);
+
+            for(int _xIdx = -_skirt; _xIdx < this._xSize + _skirt; _xIdx++) {
+                final int _xGridIdx = clampIdx(_xIdx, this._xSize);
+                final int _idx = getVertexIdx(_xIdx, _zIdx)*2;
+                this._texCoords[_idx] = _range[0] 
+                        + MeshBuilder.interpFloat(this._xSize - 1, _range[2] - _range[0], _xGridIdx);
+                this._texCoords[_idx + 1] = _vPos;
+            }
+        }
+
+        return this._texCoords;
+    }
+
+    private static Tuple3f toTuple(Number[] _values) {
+        return new Vector3f(_values[0].floatValue(), _values[1].floatValue(), _values[2].floatValue());
+    }
+}
@@ -0,0 +1,302 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Point3f;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.Mesh;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.TopologyBuilder.TopologyMode;
+import io.github.chadj2.mesh.buffer.BufferFloatArray;
+import io.github.chadj2.mesh.buffer.BufferIndexArray;
+import io.github.chadj2.mesh.extinst.FeatureId;
+import io.github.chadj2.mesh.extsm.FeatureTable;
+import io.github.chadj2.mesh.extsm.MeshPrimitiveMeshFeatures;
+import io.github.chadj2.mesh.optimize.PolylineSimplifier;
+
+/**
+ * Combine many line strips into a single LINES primitive so they are drawn with one draw call.
+ * Each strip is a feature: its vertices get the feature ID in a _FEATURE_ID_0 attribute with
+ * EXT_mesh_features and the ID of the strip is written to an EXT_structural_metadata property
+ * table so viewers can identify a picked line.
+ * <p>
+ * Feature IDs are written as floats because vertex attributes must be aligned to 4 bytes and
+ * floats are exact for up to 2^24 features.
+ * @author Chad Juliano
+ */
+public class LineBatchBuilder extends BaseBuilder {
+
+    private final static Logger LOG = LoggerFactory.getLogger(LineBatchBuilder.class);
+
+    private static final String CLASS_LINE = "line";
+    private static final String PROP_LINE_ID = "line_id";
+
+    /** Material for the mesh */
+    private Material _material = null;
+
+    /** Removes points that don't change the shape of a strip. */
+    private PolylineSimplifier _simplifier = null;
+
+    private float[] _positions = new float[0];
+    private float[] _colors = new float[0];
+    private boolean _hasColors = false;
+    private float[] _featureIds = new float[0];
+    private int _vertexCount = 0;
+
+    private int[] _indices = new int[0];
+    private int _indexCount = 0;
+
+    private FeatureTable _table = newTable();
+
+    private final BufferFloatArray _positionBuf = new BufferFloatArray("vertices", 3);
+    private final BufferFloatArray _colorBuf = new BufferFloatArray("colors", 4);
+    private final BufferFloatArray _featureBuf = new BufferFloatArray("features", 1);
+    private final BufferIndexArray _indexBuf = new BufferIndexArray("indices");
+
+    public LineBatchBuilder(String _name) {
+        super(_name);
+    }
+
+    /**
+     * Set a Material that will be used when generating the mesh.
+     */
+    public void setMaterial(Material _material) { this._material = _material; }
+
+    /**
+     * Remove points that are within a distance of the simplified strip. The tolerance is in
+     * the transformed coordinate system and zero disables simplification.
+     * @see PolylineSimplifier
+     */
+    public void setSimplifyTolerance(float _tolerance) {
+        this._simplifier = (_tolerance > 0) ? new PolylineSimplifier(_tolerance) : null;
+    }
+
+    public boolean isEmpty() { return this._table.size() == 0; }
+
+    /** Number of strips that have been added. */
+    public int getFeatureCount() { return this._table.size(); }
+
+    public int getVertexCount() { return this._vertexCount; }
+
+    /** Number of line segments that have been added. */
+    public int getSegmentCount() { return this._indexCount/2; }
+
+    /**
+     * Clear out all strips so the builder can be reused. Arrays keep their capacity.
+     */
+    public void clear() {
+        this._vertexCount = 0;
+        this._indexCount = 0;
+        this._hasColors = false;
+        this._table = newTable();
+    }
+
+    private static FeatureTable newTable() {
+        return new FeatureTable(CLASS_LINE, "Line", PROP_LINE_ID, "Line ID");
+    }
+
+    /**
+     * Add a line strip as a new feature.
+     * @param _pointList Points of the strip.
+     * @param _colorList Color of each point or null if the strips have no color.
+     * @param _lineId ID written to the property table for the feature.
+     * @return Feature ID of the strip.
+     */
+    public int addLineStrip(List<Point3f> _pointList, List<Color> _colorList, String _lineId)
+            throws Exception {
+        final int _pointCount = _pointList.size();
+        final float[] _points = new float[_pointCount*3];
+        for(int _idx = 0; _idx < _pointCount; _idx++) {
+            Point3f _point = _pointList.get(_idx);
+            _points[_idx*3] = _point.x;
+            _points[_idx*3 + 1] = _point.y;
+            _points[_idx*3 + 2] = _point.z;
+        }
+
+        float[] _colors = null;
+        if(_colorList != null) {
+            _colors = new float[_pointCount*4];
+            float[] _rgba = new float[4];
+            for(int _idx = 0; _idx < _pointCount; _idx++) {
+                _colorList.get(_idx).getRGBComponents(_rgba);
+                System.arraycopy(_rgba, 0, _colors, _idx*4, 4);
+            }
+        }
+
+        return addLineStrip(_points, _colors, _pointCount, _lineId);
+    }
+
+    /**
+     * Add a line strip from primitive arrays as a new feature. The arrays are not modified.
+     * @param _points Array with the (x,y,z) of each point.
+     * @param _colors Array with the (r,g,b,a) of each point or null if the strips have no color.
+     * @param _pointCount Number of points in the arrays.
+     * @param _lineId ID written to the property table for the feature.
+     * @return Feature ID of the strip.
+     */
+    public int addLineStrip(float[] _points, float[] _colors, int _pointCount, String _lineId)
+            throws Exception {
+        if(_pointCount < 2) {
+            throw new Exception("Line strip needs at least 2 points: " + _lineId);
+        }
+
+        if((_colors != null) != this._hasColors && !isEmpty()) {
+            throw new Exception("Either all strips or no strips must have colors: " + this.getName());
+        }
+
+        final Matrix4f _mat = this.getVertexTransform();
+        final float[] _tPoints = new float[_pointCount*3];
+        for(int _pos = 0; _pos < _pointCount*3; _pos += 3) {
+            final float _x = _points[_pos];
+            final float _y = _points[_pos + 1];
+            final float _z = _points[_pos + 2];
+            _tPoints[_pos]     = _mat.m00*_x + _mat.m01*_y + _mat.m02*_z + _mat.m03;
+            _tPoints[_pos + 1] = _mat.m10*_x + _mat.m11*_y + _mat.m12*_z + _mat.m13;
+            _tPoints[_pos + 2] = _mat.m20*_x + _mat.m21*_y + _mat.m22*_z + _mat.m23;
+        }
+
+        int[] _keepIdx = null;
+        int _count = _pointCount;
+        if(this._simplifier != null) {
+            _keepIdx = this._simplifier.simplify(_tPoints, _pointCount);
+            _count = PolylineSimplifier.compact(_tPoints, 3, _keepIdx);
+        }
+
+        if(_colors != null && !this._hasColors) {
+            this._hasColors = true;
+            if(this._colors.length < this._positions.length/3*4) {
+                this._colors = new float[this._positions.length/3*4];
+            }
+        }
+
+        ensureCapacity(_count, (_count - 1)*2);
+        final int _featureId = this._table.addFeature(_lineId);
+        final int _firstVertex = this._vertexCount;
+
+        System.arraycopy(_tPoints, 0, this._positions, _firstVertex*3, _count*3);
+        Arrays.fill(this._featureIds, _firstVertex, _firstVertex + _count, _featureId);
+
+        if(_colors != null) {
+            for(int _idx = 0; _idx < _count; _idx++) {
+                final int _srcIdx = (_keepIdx == null) ? _idx : _keepIdx[_idx];
+                System.arraycopy(_colors, _srcIdx*4, this._colors, (_firstVertex + _idx)*4, 4);
+            }
+        }
+
+        for(int _idx = 1; _idx < _count; _idx++) {
+            this._indices[this._indexCount++] = _firstVertex + _idx - 1;
+            this._indices[this._indexCount++] = _firstVertex + _idx;
+        }
+
+        this._vertexCount += _count;
+        return _featureId;
+    }
+
+    private void ensureCapacity(int _extraVertices, int _extraIndices) {
+        if(this._vertexCount + _extraVertices > this._featureIds.length) {
+            int _newSize = Math.max(this._featureIds.length*2, this._vertexCount + _extraVertices);
+            this._positions = Arrays.copyOf(this._positions, _newSize*3);
+            this._featureIds = Arrays.copyOf(this._featureIds, _newSize);
+            if(this._hasColors) {
+                this._colors = Arrays.copyOf(this._colors, _newSize*4);
+            }
+        }
+
+        if(this._indexCount + _extraIndices > this._indices.length) {
+            int _newSize = Math.max(this._indices.length*2, this._indexCount + _extraIndices);
+            this._indices = Arrays.copyOf(this._indices, _newSize);
+        }
+    }
+
+    /**
+     * Serialize the strips to buffers and add a Node to the scene.
+     * @param _geoWriter Instance of writer class.
+     * @return Node containing the mesh.
+     */
+    public Node build(MeshGltfWriter _geoWriter) throws Exception {
+        int _meshIdx = buildMesh(_geoWriter);
+
+        Node _node = new Node();
+        _node.setMesh(_meshIdx);
+        _node.setName(this.getName() + "-node");
+        applyNodeTransform(_node);
+
+        _geoWriter.addNode(_node);
+        return _node;
+    }
+
+    /**
+     * Serialize the strips and the property table and return the index of the Mesh. The
+     * builder is cleared so it can be reused.
+     * @param _geoWriter Instance of writer class.
+     */
+    public int buildMesh(MeshGltfWriter _geoWriter) throws Exception {
+        if(isEmpty()) {
+            throw new Exception("No line strips to build: " + this.getName());
+        }
+
+        MeshPrimitive _meshPrimitive = new MeshPrimitive();
+        _meshPrimitive.setMode(TopologyMode.LINES.ordinal());
+
+        Mesh _mesh = new Mesh();
+        _geoWriter.getGltf().addMeshes(_mesh);
+        int _meshIdx = _geoWriter.getGltf().getMeshes().size() - 1;
+        _mesh.setName(this.getName() + "-mesh");
+        _mesh.addPrimitives(_meshPrimitive);
+
+        if(this._material != null) {
+            int _materialIdx = _geoWriter.getGltf().getMaterials().indexOf(this._material);
+            _meshPrimitive.setMaterial(_materialIdx);
+        }
+
+        this._positionBuf.setName(this.getName() + "-vertices");
+        this._positionBuf.setData(this._positions, this._vertexCount);
+        this._positionBuf.buildAttrib(_geoWriter, _meshPrimitive, "POSITION");
+
+        if(this._hasColors) {
+            this._colorBuf.setName(this.getName() + "-colors");
+            this._colorBuf.setData(this._colors, this._vertexCount);
+            this._colorBuf.buildAttrib(_geoWriter, _meshPrimitive, "COLOR_0");
+        }
+
+        this._featureBuf.setName(this.getName() + "-features");
+        this._featureBuf.setData(this._featureIds, this._vertexCount);
+        this._featureBuf.buildAttrib(_geoWriter, _meshPrimitive, "_FEATURE_ID_0");
+
+        this._indexBuf.setName(this.getName() + "-indices");
+        this._indexBuf.setData(this._indices, this._indexCount);
+        this._indexBuf.build(_geoWriter, _meshPrimitive);
+
+        int _tableIdx = this._table.build(_geoWriter);
+
+        _geoWriter.addExtension(MeshPrimitiveMeshFeatures.EXT_NAME, false);
+        MeshPrimitiveMeshFeatures _meshFeatures = new MeshPrimitiveMeshFeatures();
+        _meshPrimitive.addExtensions(MeshPrimitiveMeshFeatures.EXT_NAME, _meshFeatures);
+
+        FeatureId _featureId = new FeatureId();
+        _featureId.setLabel(PROP_LINE_ID);
+        _featureId.setFeatureCount(this._table.size());
+        _featureId.setAttribute(0);
+        _featureId.setPropertyTable(_tableIdx);
+        _meshFeatures.addFeatureIds(_featureId);
+
+        LOG.debug("New Line Batch[{}]: idx=<{}> features=<{}> vertices=<{}> segments=<{}>",
+                _mesh.getName(), _meshIdx, this._table.size(), this._vertexCount, this._indexCount/2);
+        clear();
+        return _meshIdx;
+    }
+}
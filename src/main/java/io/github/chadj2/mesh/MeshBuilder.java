@@ -7,9 +7,14 @@
 package io.github.chadj2.mesh;
 
 import java.awt.Color;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import javax.vecmath.Point2f;
 import javax.vecmath.Point3f;
+import javax.vecmath.Vector3f;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,10 +27,25 @@ public class MeshBuilder extends TriangleBuilder {
 
     private final static Logger LOG = LoggerFactory.getLogger(MeshBuilder.class);
     
+    /** Grids with fewer squares than this are always rendered on one thread. */
+    private static final int PARALLEL_MIN_SQUARES = 128*128;
+    
+    /** Render large grids with multiple threads. */
+    private boolean _isParallel = false;
+    
     public MeshBuilder(String _name) {
         super(_name);
     }
     
+    /**
+     * Enable rendering of large grids on multiple threads. The grid is split into bands of 
+     * columns that are rendered in the common fork-join pool. The result is identical to 
+     * rendering on a single thread.
+     */
+    public void setParallel(boolean _isEnabled) {
+        this._isParallel = _isEnabled;
+    }
+    
     /**
      * Create a an elevated surface from a 2D array.
      * @param _meshGrid 2D array containing vertices
@@ -70,135 +90,305 @@ public class MeshBuilder extends TriangleBuilder {
         LOG.debug("Render grid: mesh=<{}> grid=<{}x{}>, wrapXY<{},{}> isTextured=<{}>", 
                 this.getName(), _xGridSize, _yGridSize, _wrapX, _wrapY, _isTextured);
         
-        // generate geometry and add normals for non-textured manifold.
-        renderMesh(_meshGrid, _wrapY, _wrapX);
-
-        if(_isTextured) {
-            // At this point the mesh is complete with correct normals except that we have no
-            // texture coordinates.
-            // If the mesh is textured and wrapped then we have a problem where we need to extend 
-            // it so that there are separate points for the start and end vertices. If there is no 
-            // wrapping then the extra points are not necessary.
-            //
-            // Note: It took a lot of time to determine the correct approach capable of handling 
-            // a manifold that can be textured and wrapped on either axis independently. Many 
-            // alternatives were tried before arriving at this relatively simple and correct method.
-            
-            // here we clear the vertices while preserving the normals. We want to keep the normals
-            // and regenerate the grid.
-            this._indicesList.clear();
-            
-            MeshVertex[][] _texGrid = createTexGrid(_meshGrid, _wrapX, _wrapY);
-            
-            // Suppress generation of normals because we want to use the normals from the original
-            // grid. We render the mesh with no wrapping because the start and end points overlap.
-            this.supressNormals(true);
-            renderMesh(_texGrid, false, false);
-            this.supressNormals(false);
+        // If this is the first geometry in the mesh then the indices can come from a template.
+        final boolean _isFirst = (this.getIndexCount() == 0);
+        
+        if(!_isTextured) {
+            // generate geometry and add normals for non-textured manifold.
+            GridLayout _grid = new GridLayout(_meshGrid, null, null, _xGridSize, _yGridSize, _wrapX, _wrapY);
+            renderSquares(_grid);
+            if(_isFirst) {
+                this.setGridTemplate(new GridIndexTemplate.Key(_xGridSize, _yGridSize, _wrapX, _wrapY, false), 
+                        _grid.getVertexIndices());
+            }
+            return;
         }
-    }
-
-    /**
-     * If the mesh is textured and wrapped then we have a problem where we need to extend 
-     * it so that there are separate points for the start and end vertices. If there is no 
-     * wrapping then the extra points are not necessary.
-     * @param _meshGrid
-     * @param _xGridSize
-     * @param _yGridSize
-     * @param _wrapX
-     * @param _wrapY
-     * @return
-     */
-    private MeshVertex[][] createTexGrid(MeshVertex[][] _meshGrid, boolean _wrapX, boolean _wrapY) {
-        int _xGridSize = _meshGrid.length;
-        int _yGridSize = _meshGrid[0].length;
         
-        // create a new grid and extend it by a row or column if it is wrapped.
-        int _xTexSize = _xGridSize;
+        // If the mesh is textured and wrapped then we have a problem where we need to extend 
+        // it so that there are separate points for the start and end vertices. If there is no 
+        // wrapping then the extra points are not necessary.
+        //
+        // The extra points are twins of the first row or column that share their normal lists 
+        // with the original vertex. This way the normals are averaged across the seam and the 
+        // grid only needs to be rendered once.
+        MeshVertex[] _xSeam = null;
         if(_wrapX) {
-            _xTexSize += 1;
+            _xSeam = new MeshVertex[_yGridSize + 1];
+            for(int _yGridIdx = 0; _yGridIdx < _yGridSize; _yGridIdx++) {
+                _xSeam[_yGridIdx] = newSeamVertex(_meshGrid[0][_yGridIdx]);
+            }
         }
         
-        int _yTexSize = _yGridSize;
+        MeshVertex[] _ySeam = null;
         if(_wrapY) {
-            _yTexSize += 1;
+            _ySeam = new MeshVertex[_xGridSize + 1];
+            for(int _xGridIdx = 0; _xGridIdx < _xGridSize; _xGridIdx++) {
+                _ySeam[_xGridIdx] = newSeamVertex(_meshGrid[_xGridIdx][0]);
+            }
         }
         
-        MeshVertex[][] _texGrid = new MeshVertex[_xTexSize][_yTexSize];
+        if(_wrapX && _wrapY) {
+            // the corner overlaps with both seams.
+            MeshVertex _corner = newSeamVertex(_meshGrid[0][0]);
+            _xSeam[_yGridSize] = _corner;
+            _ySeam[_xGridSize] = _corner;
+        }
+        
+        final int _xTexSize = _wrapX ? _xGridSize + 1 : _xGridSize;
+        final int _yTexSize = _wrapY ? _yGridSize + 1 : _yGridSize;
         
-        // populate the new grid
         for(int _xGridIdx = 0; _xGridIdx < _xTexSize; _xGridIdx++) {
             final float _uPos = interpFloat(_xTexSize - 1, 1, _xGridIdx);
             
             for(int _yGridIdx = 0; _yGridIdx < _yTexSize; _yGridIdx++) {
-                MeshVertex _vertex;
-                if(_xGridIdx >= _xGridSize || _yGridIdx >= _yGridSize) {
-                    // We are in the expanded zone so wrap back to the beginning if necessary.
-                    int _xIdxWrap = _xGridIdx;
-                    if(_xIdxWrap >= _xGridSize) {
-                        _xIdxWrap = 0;
-                    }
-                    
-                    int _yIdxWrap = _yGridIdx;
-                    if(_yIdxWrap >= _yGridSize) {
-                        _yIdxWrap = 0;
-                    }
-                    
-                    // We copy the vertex because start and end points should overlap.
-                    _vertex = this.copyVertex(_meshGrid[_xIdxWrap][_yIdxWrap]);
-                }
-                else {
-                    // if not in the expanded zone then use vertex from the original grid.
-                    _vertex = _meshGrid[_xGridIdx][_yGridIdx];
-                }
-                
+                MeshVertex _vertex = getTexVertex(_meshGrid, _xSeam, _ySeam, _xGridIdx, _yGridIdx);
                 if(_vertex == null) {
                     // empty point is no rendered
                     continue;
                 }
-
+                
                 final float _vPos = interpFloat(_yTexSize - 1, 1, _yGridIdx);
                 _vertex.setTexCoord(new Point2f(_uPos, _vPos));
-                
-                // Assign the vertex to the texture grid.
-                _texGrid[_xGridIdx][_yGridIdx] = _vertex;
             }
         }
-        return _texGrid;
+        
+        // The seams are already part of the extended grid so no wrapping is done.
+        GridLayout _grid = new GridLayout(_meshGrid, _xSeam, _ySeam, _xTexSize, _yTexSize, false, false);
+        renderSquares(_grid);
+        if(_isFirst) {
+            this.setGridTemplate(new GridIndexTemplate.Key(_xGridSize, _yGridSize, _wrapX, _wrapY, true), 
+                    _grid.getVertexIndices());
+        }
     }
-
+    
+    /**
+     * Get a vertex from a grid that is extended by a seam on the X and Y axis. An index equal
+     * to the grid size selects a vertex from the seam.
+     */
+    private static MeshVertex getTexVertex(MeshVertex[][] _meshGrid, MeshVertex[] _xSeam, 
+            MeshVertex[] _ySeam, int _xGridIdx, int _yGridIdx) {
+        if(_xGridIdx == _meshGrid.length) {
+            return _xSeam[_yGridIdx];
+        }
+        
+        if(_yGridIdx == _meshGrid[0].length) {
+            return _ySeam[_xGridIdx];
+        }
+        
+        return _meshGrid[_xGridIdx][_yGridIdx];
+    }
+    
     /**
      * Iterate through the provided grid generating squares where possible.
-     * @param _meshGrid
-     * @param _wrapY
-     * @param _wrapX
      */
-    private void renderMesh(MeshVertex[][] _meshGrid, boolean _wrapY, boolean _wrapX) {
-        final int _xGridSize = _meshGrid.length;
-        final int _yGridSize = _meshGrid[0].length;
+    private void renderSquares(GridLayout _grid) {
+        final int _squareCount = (_grid._xSize - _grid.getXStart())*(_grid._ySize - _grid.getYStart());
+        if(this._isParallel && _squareCount >= PARALLEL_MIN_SQUARES) {
+            renderParallel(_grid);
+            return;
+        }
         
         // For every 4-vertex square in the mesh we call addSquare(). These squares overlap
         // which is necessary for the calculation of normals and tangents.
-        for(int _xGridIdx = _wrapX ? 0 : 1; _xGridIdx < _xGridSize; _xGridIdx++) {
-            for(int _yGridIdx = _wrapY ? 0 : 1; _yGridIdx < _yGridSize; _yGridIdx++) {
-
-                // wrap around the y axis
-                int _yGridPrev = _yGridIdx - 1;
-                if(_yGridPrev < 0) {
-                    _yGridPrev = _yGridSize - 1;
+        final MeshVertex[] _corners = new MeshVertex[4];
+        for(int _xGridIdx = _grid.getXStart(); _xGridIdx < _grid._xSize; _xGridIdx++) {
+            for(int _yGridIdx = _grid.getYStart(); _yGridIdx < _grid._ySize; _yGridIdx++) {
+                _grid.getSquare(_xGridIdx, _yGridIdx, _corners);
+                this.addSquare(_corners[0], _corners[1], _corners[2], _corners[3]);
+            }
+        }
+    }
+    
+    /**
+     * Render bands of columns in parallel. Each band writes its indices to its own array and 
+     * records normals and tangents without changing any vertex. When the bands are joined the
+     * normals are added to the vertices in the same order as a serial render so that vertices 
+     * on the edge of a band or shared between cells get the same result.
+     */
+    private void renderParallel(GridLayout _grid) {
+        final int _xStart = _grid.getXStart();
+        final int _columns = _grid._xSize - _xStart;
+        final int _bandCount = Math.min(_columns, ForkJoinPool.getCommonPoolParallelism()*4);
+        final boolean _withNormals = !this.isSupressNormals();
+        
+        long _startTime = System.nanoTime();
+        List<GridBand> _bands = IntStream.range(0, _bandCount).parallel()
+                .mapToObj(_bandIdx -> {
+                    int _bandStart = _xStart + (int)((long)_columns*_bandIdx/_bandCount);
+                    int _bandEnd = _xStart + (int)((long)_columns*(_bandIdx + 1)/_bandCount);
+                    GridBand _band = new GridBand(_grid, _bandStart, _bandEnd);
+                    _band.render(_grid, _withNormals);
+                    return _band;
+                })
+                .collect(Collectors.toList());
+        
+        for(GridBand _band : _bands) {
+            _band.join(this);
+        }
+        
+        LOG.debug("Parallel grid: mesh=<{}> bands=<{}> time=<{} ms>", 
+                this.getName(), _bandCount, (System.nanoTime() - _startTime)/1000000);
+    }
+    
+    /**
+     * Squares of a grid that may be wrapped or extended by texture seams. The square at (x,y) 
+     * joins the vertices in columns x-1 and x and rows y-1 and y. If a grid is wrapped then 
+     * the previous index of 0 is the last index.
+     */
+    private static final class GridLayout {
+        private final MeshVertex[][] _meshGrid;
+        private final MeshVertex[] _xSeam;
+        private final MeshVertex[] _ySeam;
+        private final int _xSize;
+        private final int _ySize;
+        private final boolean _wrapX;
+        private final boolean _wrapY;
+        
+        private GridLayout(MeshVertex[][] _meshGrid, MeshVertex[] _xSeam, MeshVertex[] _ySeam, 
+                int _xSize, int _ySize, boolean _wrapX, boolean _wrapY) {
+            this._meshGrid = _meshGrid;
+            this._xSeam = _xSeam;
+            this._ySeam = _ySeam;
+            this._xSize = _xSize;
+            this._ySize = _ySize;
+            this._wrapX = _wrapX;
+            this._wrapY = _wrapY;
+        }
+        
+        private int getXStart() { return this._wrapX ? 0 : 1; }
+        
+        private int getYStart() { return this._wrapY ? 0 : 1; }
+        
+        /**
+         * Get the corners of a square in the order used by addSquare().
+         */
+        private void getSquare(int _xGridIdx, int _yGridIdx, MeshVertex[] _corners) {
+            final int _xGridPrev = (_xGridIdx == 0) ? this._xSize - 1 : _xGridIdx - 1;
+            final int _yGridPrev = (_yGridIdx == 0) ? this._ySize - 1 : _yGridIdx - 1;
+            
+            _corners[0] = getTexVertex(this._meshGrid, this._xSeam, this._ySeam, _xGridPrev, _yGridPrev);
+            _corners[1] = getTexVertex(this._meshGrid, this._xSeam, this._ySeam, _xGridPrev, _yGridIdx);
+            _corners[2] = getTexVertex(this._meshGrid, this._xSeam, this._ySeam, _xGridIdx, _yGridPrev);
+            _corners[3] = getTexVertex(this._meshGrid, this._xSeam, this._ySeam, _xGridIdx, _yGridIdx);
+        }
+        
+        /**
+         * Get the index of each vertex in the order used by GridIndexTemplate.
+         * @return Vertex indices with -1 for empty points.
+         */
+        private int[] getVertexIndices() {
+            final int[] _indices = new int[this._xSize*this._ySize];
+            for(int _xGridIdx = 0; _xGridIdx < this._xSize; _xGridIdx++) {
+                for(int _yGridIdx = 0; _yGridIdx < this._ySize; _yGridIdx++) {
+                    MeshVertex _vertex = getTexVertex(this._meshGrid, this._xSeam, this._ySeam, 
+                            _xGridIdx, _yGridIdx);
+                    _indices[_xGridIdx*this._ySize + _yGridIdx] = (_vertex == null) ? -1 : _vertex.getIndex();
                 }
-
-                // wrap around the X axis
-                int _xGridPrev = _xGridIdx - 1;
-                if(_xGridPrev < 0) {
-                    _xGridPrev = _xGridSize - 1;
+            }
+            return _indices;
+        }
+    }
+    
+    /**
+     * Triangles for a band of grid columns. This follows the logic of addSquare() but saves 
+     * the result so it can be applied later on one thread.
+     */
+    private static final class GridBand {
+        private final int _xStart;
+        private final int _xEnd;
+        
+        private final int[] _indices;
+        private int _indexCount = 0;
+        
+        private final MeshVertex[] _normalTargets;
+        private final Vector3f[] _normals;
+        private int _normalCount = 0;
+        
+        private final MeshVertex[] _tangentTargets;
+        private final Vector3f[] _tangents;
+        private int _tangentCount = 0;
+        
+        private GridBand(GridLayout _grid, int _xStart, int _xEnd) {
+            this._xStart = _xStart;
+            this._xEnd = _xEnd;
+            
+            final int _squares = (_xEnd - _xStart)*(_grid._ySize - _grid.getYStart());
+            this._indices = new int[_squares*6];
+            this._normalTargets = new MeshVertex[_squares*6];
+            this._normals = new Vector3f[_squares*6];
+            this._tangentTargets = new MeshVertex[_squares*4];
+            this._tangents = new Vector3f[_squares*4];
+        }
+        
+        private void render(GridLayout _grid, boolean _withNormals) {
+            final MeshVertex[] _corners = new MeshVertex[4];
+            
+            for(int _xGridIdx = this._xStart; _xGridIdx < this._xEnd; _xGridIdx++) {
+                for(int _yGridIdx = _grid.getYStart(); _yGridIdx < _grid._ySize; _yGridIdx++) {
+                    _grid.getSquare(_xGridIdx, _yGridIdx, _corners);
+                    final MeshVertex _vtx0 = _corners[0];
+                    final MeshVertex _vtx1 = _corners[1];
+                    final MeshVertex _vtx2 = _corners[2];
+                    final MeshVertex _vtx3 = _corners[3];
+                    
+                    if(_vtx0 != null && _vtx1 != null && _vtx2 != null) {
+                        addTriangle(_vtx0, _vtx1, _vtx2, _withNormals);
+                        
+                        Vector3f _vec01 = new Vector3f();
+                        _vec01.sub(_vtx0.getVertex(), _vtx1.getVertex());
+                        addTangent(_vtx0, _vec01);
+                        addTangent(_vtx1, _vec01);
+                    }
+                    
+                    if(_vtx2 != null && _vtx1 != null && _vtx3 != null) {
+                        addTriangle(_vtx2, _vtx1, _vtx3, _withNormals);
+                        
+                        Vector3f _vec23 = new Vector3f();
+                        _vec23.sub(_vtx2.getVertex(), _vtx3.getVertex());
+                        addTangent(_vtx2, _vec23);
+                        addTangent(_vtx3, _vec23);
+                    }
                 }
-                
-                final MeshVertex _vtx10 = _meshGrid[_xGridPrev][_yGridIdx];
-                final MeshVertex _vtx11 = _meshGrid[_xGridPrev][_yGridPrev];
-                final MeshVertex _vtx00 = _meshGrid[_xGridIdx][_yGridIdx];
-                final MeshVertex _vtx01 = _meshGrid[_xGridIdx][_yGridPrev];
-                this.addSquare(_vtx11, _vtx10, _vtx01, _vtx00);
+            }
+        }
+        
+        private void addTriangle(MeshVertex _vtx0, MeshVertex _vtx1, MeshVertex _vtx2, 
+                boolean _withNormals) {
+            this._indices[this._indexCount++] = _vtx0.getIndex();
+            this._indices[this._indexCount++] = _vtx1.getIndex();
+            this._indices[this._indexCount++] = _vtx2.getIndex();
+            
+            if(_withNormals) {
+                Vector3f _normal = calcNormal(_vtx0, _vtx1, _vtx2);
+                addNormal(_vtx0, _normal);
+                addNormal(_vtx1, _normal);
+                addNormal(_vtx2, _normal);
+            }
+        }
+        
+        private void addNormal(MeshVertex _vertex, Vector3f _normal) {
+            this._normalTargets[this._normalCount] = _vertex;
+            this._normals[this._normalCount++] = _normal;
+        }
+        
+        private void addTangent(MeshVertex _vertex, Vector3f _tangent) {
+            this._tangentTargets[this._tangentCount] = _vertex;
+            this._tangents[this._tangentCount++] = _tangent;
+        }
+        
+        /**
+         * Add the results of this band to the builder. This must be called on one thread 
+         * in the order of the bands.
+         */
+        private void join(MeshBuilder _builder) {
+            _builder.addIndices(this._indices, this._indexCount);
+            
+            for(int _idx = 0; _idx < this._normalCount; _idx++) {
+                this._normalTargets[_idx].addNormal(this._normals[_idx]);
+            }
+            
+            for(int _idx = 0; _idx < this._tangentCount; _idx++) {
+                this._tangentTargets[_idx].addTangent(this._tangents[_idx]);
             }
         }
     }
@@ -15,12 +15,16 @@ import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.function.Function;
+
+import javax.vecmath.Matrix3f;
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Quat4f;
 
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
@@ -81,11 +85,11 @@ public class MeshGltfWriter {
 
     private final static Logger LOG = LoggerFactory.getLogger(MeshGltfWriter.class);
 
-    /** Largest size of byte buffer we will support. */
-    private static final int MAX_BUFFER_SIZE = 50*1024*1024;
+    /** Default size of the byte buffer. */
+    public static final int DEFAULT_BUFFER_SIZE = 50*1024*1024;
 
     /** Buffer used for primitive serialization. */
-    private final ByteBuffer _byteBuffer = Buffers.create(MAX_BUFFER_SIZE);
+    private final ByteBuffer _byteBuffer;
 
     private final GlTF _gltf = new GlTF();
     
@@ -107,7 +111,25 @@ public class MeshGltfWriter {
     /** These nodes will get added to the GlTF object at write time */
     private final List<Node> _nodes = new ArrayList<>();
     
+    /** Indices of nodes that are attached to the Scene */
+    private final List<Integer> _sceneNodes = new ArrayList<>();
+    
+    /** Accessors that are shared by multiple meshes. */
+    private final Map<String, Integer> _sharedAccessors = new HashMap<>();
+    
+    /** Grid index templates used by meshes of this writer. */
+    private final Map<String, GridIndexTemplate> _gridTemplates = new HashMap<>();
+    
     public MeshGltfWriter() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * @param _bufferSize Size in bytes of the buffer that holds all serialized primitives. 
+     * Increase this for very large meshes.
+     */
+    public MeshGltfWriter(int _bufferSize) {
+        this._byteBuffer = Buffers.create(_bufferSize);
         this._gltf.addScenes(this._topScene);
     }
     
@@ -147,8 +169,154 @@ public class MeshGltfWriter {
      * @return index of the node
      */
     public int addNode(Node _node) {
+        int _nodeIdx = addDetachedNode(_node);
+        this._sceneNodes.add(_nodeIdx);
+        return _nodeIdx;
+    }
+    
+    /**
+     * Add a node that is not attached to the Scene. It should be referenced from another node
+     * as a child or from an extension like MSFT_lod.
+     * @return index of the node
+     */
+    public int addDetachedNode(Node _node) {
         this._nodes.add(_node);
-        return this._nodes.indexOf(_node);
+        return this._nodes.size() - 1;
+    }
+    
+    /**
+     * Add a node to the default Scene that references an existing mesh. This allows a mesh to be
+     * built once in local coordinates and placed many times.
+     * @param _name Name of the node.
+     * @param _meshIdx Index of the mesh returned by buildMesh().
+     * @param _transform Transform of the node or null for none.
+     * @return the new node
+     * @see BaseBuilder#setDeferTransform
+     */
+    public Node addMeshNode(String _name, int _meshIdx, Matrix4f _transform) {
+        Node _node = new Node();
+        _node.setName(_name);
+        _node.setMesh(_meshIdx);
+        if(_transform != null) {
+            setNodeTransform(_node, _transform);
+        }
+        
+        addNode(_node);
+        return _node;
+    }
+    
+    /**
+     * Set the transform of a node. The transform is written as translation, rotation and scale if 
+     * it has no shear or projection and otherwise as a matrix. Identity components are omitted.
+     */
+    public static void setNodeTransform(Node _node, Matrix4f _transform) {
+        final float _sx = (float)Math.sqrt(_transform.m00*_transform.m00 + _transform.m10*_transform.m10 
+                + _transform.m20*_transform.m20);
+        final float _sy = (float)Math.sqrt(_transform.m01*_transform.m01 + _transform.m11*_transform.m11 
+                + _transform.m21*_transform.m21);
+        final float _sz = (float)Math.sqrt(_transform.m02*_transform.m02 + _transform.m12*_transform.m12 
+                + _transform.m22*_transform.m22);
+        
+        final boolean _isAffine = _transform.m30 == 0f && _transform.m31 == 0f && _transform.m32 == 0f 
+                && _transform.m33 == 1f;
+        
+        // axes must be perpendicular for TRS
+        final float _tol = 1e-5f;
+        final boolean _isOrthogonal = _sx > 0f && _sy > 0f && _sz > 0f
+                && Math.abs(_transform.m00*_transform.m01 + _transform.m10*_transform.m11 
+                        + _transform.m20*_transform.m21) <= _tol*_sx*_sy
+                && Math.abs(_transform.m00*_transform.m02 + _transform.m10*_transform.m12 
+                        + _transform.m20*_transform.m22) <= _tol*_sx*_sz
+                && Math.abs(_transform.m01*_transform.m02 + _transform.m11*_transform.m12 
+                        + _transform.m21*_transform.m22) <= _tol*_sy*_sz;
+        
+        if(!_isAffine || !_isOrthogonal) {
+            // glTF matrices are column-major
+            _node.setMatrix(new float[] {
+                    _transform.m00, _transform.m10, _transform.m20, _transform.m30,
+                    _transform.m01, _transform.m11, _transform.m21, _transform.m31,
+                    _transform.m02, _transform.m12, _transform.m22, _transform.m32,
+                    _transform.m03, _transform.m13, _transform.m23, _transform.m33 });
+            return;
+        }
+        
+        Matrix3f _rotation = new Matrix3f();
+        _transform.getRotationScale(_rotation);
+        float[] _scale = { _sx, _sy, _sz };
+        for(int _col = 0; _col < 3; _col++) {
+            for(int _row = 0; _row < 3; _row++) {
+                _rotation.setElement(_row, _col, _rotation.getElement(_row, _col)/_scale[_col]);
+            }
+        }
+        
+        // a reflection is a negative scale
+        if(_rotation.determinant() < 0f) {
+            _scale[0] = -_scale[0];
+            for(int _row = 0; _row < 3; _row++) {
+                _rotation.setElement(_row, 0, -_rotation.getElement(_row, 0));
+            }
+        }
+        
+        if(_transform.m03 != 0f || _transform.m13 != 0f || _transform.m23 != 0f) {
+            _node.setTranslation(new float[] { _transform.m03, _transform.m13, _transform.m23 });
+        }
+        
+        Quat4f _quat = new Quat4f();
+        _quat.set(_rotation);
+        _quat.normalize();
+        // compare the vector part because w stays near 1 for small rotations
+        final float _quatTol = 1e-7f;
+        if(Math.abs(_quat.x) > _quatTol || Math.abs(_quat.y) > _quatTol || Math.abs(_quat.z) > _quatTol) {
+            _node.setRotation(new float[] { _quat.x, _quat.y, _quat.z, _quat.w });
+        }
+        
+        if(_scale[0] != 1f || _scale[1] != 1f || _scale[2] != 1f) {
+            _node.setScale(_scale);
+        }
+    }
+    
+    /**
+     * Declare an extension used by the glTF. Extensions that were already declared are ignored.
+     * @param _extension Name of the extension
+     * @param _isRequired Indicates the glTF can't be loaded without support for the extension.
+     */
+    public void addExtension(String _extension, boolean _isRequired) {
+        List<String> _usedList = this._gltf.getExtensionsUsed();
+        if(_usedList == null || !_usedList.contains(_extension)) {
+            this._gltf.addExtensionsUsed(_extension);
+            LOG.info("Adding extension: {}", _extension);
+        }
+        
+        List<String> _requiredList = this._gltf.getExtensionsRequired();
+        if(_isRequired && (_requiredList == null || !_requiredList.contains(_extension))) {
+            this._gltf.addExtensionsRequired(_extension);
+        }
+    }
+    
+    /**
+     * Get an accessor that was registered for sharing between meshes.
+     * @param _key Unique name of the accessor contents.
+     * @return index of the accessor or null if it has not been written.
+     */
+    public Integer getSharedAccessor(String _key) { return this._sharedAccessors.get(_key); }
+    
+    /**
+     * Register an accessor so that other meshes with the same contents can reference it.
+     * @param _key Unique name of the accessor contents.
+     * @param _accessorIdx Index of the accessor.
+     */
+    public void addSharedAccessor(String _key, int _accessorIdx) {
+        this._sharedAccessors.put(_key, _accessorIdx);
+    }
+    
+    /**
+     * Get a grid template from the cache or create it. The templates are kept for the life of
+     * the writer.
+     * @param _key Unique name of the template.
+     * @param _factory Function that creates the template.
+     */
+    GridIndexTemplate getGridTemplate(String _key, Function<String, GridIndexTemplate> _factory) {
+        return this._gridTemplates.computeIfAbsent(_key, _factory);
     }
     
     private static final float DEFAULT_METALLIC_FACTOR = 0.5f;
@@ -264,12 +432,7 @@ public class MeshGltfWriter {
      */
     public void writeGltf(OutputStream os, GltfFormat format) throws Exception {
         this._gltf.setNodes(this._nodes);
-        
-        List<Integer> rangeList = IntStream
-                .range(0, this._nodes.size())
-                .boxed()
-                .collect(Collectors.toList());
-        this._topScene.setNodes(rangeList);
+        this._topScene.setNodes(this._sceneNodes);
         
         GltfAssetV2 gltfAsset = newGltfAsset();
         DefaultGltfModel gltfModel =  GltfModelCreatorV2.create(gltfAsset);
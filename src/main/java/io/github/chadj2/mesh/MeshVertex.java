@@ -126,6 +126,15 @@ public class MeshVertex {
     protected void addTangent(Vector3f _vec) { this._tangents.add(_vec); }
     
     
+    /**
+     * Use the same lists of normals and tangents as another vertex so that both are averaged 
+     * from all neighboring triangles.
+     */
+    protected void shareNormals(MeshVertex _mv) {
+        this._normals = _mv._normals;
+        this._tangents = _mv._tangents;
+    }
+    
     /**
      * Calculate the average of the normal vectors.
      */
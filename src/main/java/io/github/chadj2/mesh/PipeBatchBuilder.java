@@ -0,0 +1,553 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Point3f;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.Mesh;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.TopologyBuilder.TopologyMode;
+import io.github.chadj2.mesh.buffer.BufferFloatArray;
+import io.github.chadj2.mesh.buffer.BufferIndexArray;
+import io.github.chadj2.mesh.optimize.PolylineSimplifier;
+
+/**
+ * Generate many pipes into a single mesh. This is much faster than {@link PipeBuilder} for
+ * large numbers of lines because no MeshVertex is created for each point. The sine and cosine
+ * of each side are calculated once and each ring is oriented with a rotation minimizing frame
+ * so the pipe does not twist as it bends. Normals are calculated directly from the ring.
+ * <p>
+ * Vertices and indices are written to primitive arrays that are shared by all pipes. Indices
+ * are written as unsigned int if there are more than 65535 vertices.
+ * @author Chad Juliano
+ */
+public class PipeBatchBuilder extends BaseBuilder {
+
+    private final static Logger LOG = LoggerFactory.getLogger(PipeBatchBuilder.class);
+
+    private final float _radius;
+    private final int _sides;
+
+    /** Unit circle for the number of sides. */
+    private final float[] _cosTable;
+    private final float[] _sinTable;
+
+    /** Add discs to the start and end of each pipe. */
+    private boolean _isCapped = true;
+
+    /** Removes points that don't change the shape of a pipe. */
+    private PolylineSimplifier _simplifier = null;
+
+    /** Material for the mesh */
+    private Material _material = null;
+
+    private float[] _positions = new float[0];
+    private float[] _normals = new float[0];
+    private float[] _colors = new float[0];
+    private boolean _hasColors = false;
+    private int _vertexCount = 0;
+
+    private int[] _indices = new int[0];
+    private int _indexCount = 0;
+
+    private int _pipeCount = 0;
+
+    private final BufferFloatArray _positionBuf = new BufferFloatArray("vertices", 3);
+    private final BufferFloatArray _normalBuf = new BufferFloatArray("normals", 3);
+    private final BufferFloatArray _colorBuf = new BufferFloatArray("colors", 4);
+    private final BufferIndexArray _indexBuf = new BufferIndexArray("indices");
+
+    /**
+     * @param _name Name of the glTF mesh.
+     * @param _radius Radius of the pipes in the transformed coordinate system.
+     * @param _sides Number of sides of each pipe.
+     */
+    public PipeBatchBuilder(String _name, float _radius, int _sides) {
+        super(_name);
+
+        if(_sides < 3) {
+            throw new IllegalArgumentException("Pipe must have at least 3 sides: " + _sides);
+        }
+
+        this._radius = _radius;
+        this._sides = _sides;
+        this._cosTable = new float[_sides];
+        this._sinTable = new float[_sides];
+
+        for(int _sideIdx = 0; _sideIdx < _sides; _sideIdx++) {
+            final double _angle = 2*Math.PI*_sideIdx/_sides;
+            this._cosTable[_sideIdx] = (float)Math.cos(_angle);
+            this._sinTable[_sideIdx] = (float)Math.sin(_angle);
+        }
+    }
+
+    /**
+     * Set a Material that will be used when generating the mesh.
+     * @see MeshGltfWriter#newTextureMaterial(String)
+     */
+    public void setMaterial(Material _material) { this._material = _material; }
+
+    /**
+     * Add discs to the start and end of each pipe. This is enabled by default.
+     */
+    public void setCapped(boolean _isCapped) { this._isCapped = _isCapped; }
+
+    /**
+     * Remove points that are within a distance of the simplified pipe center line before the
+     * rings are generated. The tolerance is in the transformed coordinate system and zero
+     * disables simplification.
+     * @see PolylineSimplifier
+     */
+    public void setSimplifyTolerance(float _tolerance) {
+        this._simplifier = (_tolerance > 0) ? new PolylineSimplifier(_tolerance) : null;
+    }
+
+    /**
+     * Returns true if no pipes have been added.
+     */
+    public boolean isEmpty() { return this._pipeCount == 0; }
+
+    public int getPipeCount() { return this._pipeCount; }
+
+    public int getVertexCount() { return this._vertexCount; }
+
+    public int getTriangleCount() { return this._indexCount/3; }
+
+    /**
+     * Clear out all pipes so the builder can be reused. Arrays keep their capacity.
+     */
+    public void clear() {
+        this._vertexCount = 0;
+        this._indexCount = 0;
+        this._pipeCount = 0;
+        this._hasColors = false;
+    }
+
+    /**
+     * Add many pipes at once.
+     * @param _pointLists Points of each pipe.
+     * @param _colorLists Colors of each pipe or null if the pipes have no color.
+     * @see #addPipe(List, List)
+     */
+    public void addPipes(List<? extends List<Point3f>> _pointLists,
+            List<? extends List<Color>> _colorLists) throws Exception {
+        for(int _pipeIdx = 0; _pipeIdx < _pointLists.size(); _pipeIdx++) {
+            List<Color> _colorList = (_colorLists == null) ? null : _colorLists.get(_pipeIdx);
+            addPipe(_pointLists.get(_pipeIdx), _colorList);
+        }
+    }
+
+    /**
+     * Add a pipe with the given points and colors.
+     * @param _pointList Points along the center of the pipe.
+     * @param _colorList Color of each point or null if the pipe has no color.
+     */
+    public void addPipe(List<Point3f> _pointList, List<Color> _colorList) throws Exception {
+        final int _pointCount = _pointList.size();
+        final float[] _points = new float[_pointCount*3];
+        for(int _idx = 0; _idx < _pointCount; _idx++) {
+            Point3f _point = _pointList.get(_idx);
+            _points[_idx*3] = _point.x;
+            _points[_idx*3 + 1] = _point.y;
+            _points[_idx*3 + 2] = _point.z;
+        }
+
+        float[] _colors = null;
+        if(_colorList != null) {
+            _colors = new float[_pointCount*4];
+            float[] _rgba = new float[4];
+            for(int _idx = 0; _idx < _pointCount; _idx++) {
+                _colorList.get(_idx).getRGBComponents(_rgba);
+                System.arraycopy(_rgba, 0, _colors, _idx*4, 4);
+            }
+        }
+
+        addPipe(_points, _colors, _pointCount);
+    }
+
+    /**
+     * Add a pipe from primitive arrays. The arrays are not modified.
+     * @param _points Array with the (x,y,z) of each point.
+     * @param _colors Array with the (r,g,b,a) of each point or null if the pipe has no color.
+     * @param _pointCount Number of points in the arrays.
+     */
+    public void addPipe(float[] _points, float[] _colors, int _pointCount) throws Exception {
+        if((_colors != null) != this._hasColors && this._pipeCount > 0) {
+            throw new Exception("Either all pipes or no pipes must have colors: " + this.getName());
+        }
+
+        // transform the points and drop duplicates that would have no direction.
+        final Matrix4f _mat = this.getVertexTransform();
+        final float[] _tPoints = new float[_pointCount*3];
+        final int[] _srcIdx = new int[_pointCount];
+        int _count = 0;
+
+        for(int _idx = 0; _idx < _pointCount; _idx++) {
+            final float _x = _points[_idx*3];
+            final float _y = _points[_idx*3 + 1];
+            final float _z = _points[_idx*3 + 2];
+            final int _pos = _count*3;
+
+            _tPoints[_pos]     = _mat.m00*_x + _mat.m01*_y + _mat.m02*_z + _mat.m03;
+            _tPoints[_pos + 1] = _mat.m10*_x + _mat.m11*_y + _mat.m12*_z + _mat.m13;
+            _tPoints[_pos + 2] = _mat.m20*_x + _mat.m21*_y + _mat.m22*_z + _mat.m23;
+
+            if(_count > 0 && _tPoints[_pos] == _tPoints[_pos - 3] && _tPoints[_pos + 1] == _tPoints[_pos - 2]
+                    && _tPoints[_pos + 2] == _tPoints[_pos - 1]) {
+                continue;
+            }
+
+            _srcIdx[_count++] = _idx;
+        }
+
+        if(_count < 2) {
+            LOG.warn("Pipe needs at least 2 distinct points: {}", _pointCount);
+            return;
+        }
+
+        if(this._simplifier != null) {
+            // keep the source index of each point so the colors follow
+            final int[] _keepIdx = this._simplifier.simplify(_tPoints, _count);
+            PolylineSimplifier.compact(_tPoints, 3, _keepIdx);
+            for(int _idx = 0; _idx < _keepIdx.length; _idx++) {
+                _srcIdx[_idx] = _srcIdx[_keepIdx[_idx]];
+            }
+            _count = _keepIdx.length;
+        }
+
+        if(_colors != null && !this._hasColors) {
+            this._hasColors = true;
+            if(this._colors.length < this._positions.length/3*4) {
+                this._colors = new float[this._positions.length/3*4];
+            }
+        }
+
+        final float[] _frames = calcFrames(_tPoints, _count);
+        final int _sides = this._sides;
+        final int _capVertices = this._isCapped ? 2*(_sides + 1) : 0;
+        final int _capIndices = this._isCapped ? 2*_sides*3 : 0;
+        ensureCapacity(_count*_sides + _capVertices, (_count - 1)*_sides*6 + _capIndices);
+
+        // rings
+        final int _firstRing = this._vertexCount;
+        for(int _idx = 0; _idx < _count; _idx++) {
+            addRing(_tPoints, _frames, _idx, _colors, _srcIdx[_idx]);
+        }
+
+        // connect each ring to the next
+        for(int _idx = 1; _idx < _count; _idx++) {
+            final int _ring0 = _firstRing + (_idx - 1)*_sides;
+            final int _ring1 = _ring0 + _sides;
+
+            for(int _side = 0; _side < _sides; _side++) {
+                final int _next = (_side + 1) % _sides;
+                addTriangle(_ring0 + _side, _ring0 + _next, _ring1 + _side);
+                addTriangle(_ring0 + _next, _ring1 + _next, _ring1 + _side);
+            }
+        }
+
+        if(this._isCapped) {
+            addCap(_tPoints, _frames, 0, _colors, _srcIdx[0], false);
+            addCap(_tPoints, _frames, _count - 1, _colors, _srcIdx[_count - 1], true);
+        }
+
+        this._pipeCount++;
+    }
+
+    /**
+     * Calculate a rotation minimizing frame at each point with the double reflection method
+     * of Wang et al. The tangent is the average direction of the neighboring segments.
+     * @return Array with the tangent (t) and normal (r) of each point. The binormal is t x r.
+     */
+    private static float[] calcFrames(float[] _points, int _count) {
+        final float[] _frames = new float[_count*6];
+
+        // direction of each segment
+        final float[] _segments = new float[(_count - 1)*3];
+        for(int _idx = 0; _idx < _count - 1; _idx++) {
+            final int _pos = _idx*3;
+            final float _x = _points[_pos + 3] - _points[_pos];
+            final float _y = _points[_pos + 4] - _points[_pos + 1];
+            final float _z = _points[_pos + 5] - _points[_pos + 2];
+            final float _len = (float)Math.sqrt(_x*_x + _y*_y + _z*_z);
+            _segments[_pos] = _x/_len;
+            _segments[_pos + 1] = _y/_len;
+            _segments[_pos + 2] = _z/_len;
+        }
+
+        // tangents
+        for(int _idx = 0; _idx < _count; _idx++) {
+            final int _prev = Math.max(_idx - 1, 0)*3;
+            final int _next = Math.min(_idx, _count - 2)*3;
+            float _tx = _segments[_prev] + _segments[_next];
+            float _ty = _segments[_prev + 1] + _segments[_next + 1];
+            float _tz = _segments[_prev + 2] + _segments[_next + 2];
+            float _len = (float)Math.sqrt(_tx*_tx + _ty*_ty + _tz*_tz);
+
+            if(_len == 0f) {
+                // the pipe reverses direction so use the previous segment
+                _tx = _segments[_prev];
+                _ty = _segments[_prev + 1];
+                _tz = _segments[_prev + 2];
+                _len = 1f;
+            }
+
+            _frames[_idx*6] = _tx/_len;
+            _frames[_idx*6 + 1] = _ty/_len;
+            _frames[_idx*6 + 2] = _tz/_len;
+        }
+
+        // initial normal is perpendicular to the axis with the smallest tangent component
+        {
+            final float _tx = _frames[0], _ty = _frames[1], _tz = _frames[2];
+            float _ax = 0f, _ay = 0f, _az = 0f;
+            if(Math.abs(_tx) <= Math.abs(_ty) && Math.abs(_tx) <= Math.abs(_tz)) {
+                _ax = 1f;
+            }
+            else if(Math.abs(_ty) <= Math.abs(_tz)) {
+                _ay = 1f;
+            }
+            else {
+                _az = 1f;
+            }
+
+            // r = normalize(a - (a.t)t)
+            final float _dot = _ax*_tx + _ay*_ty + _az*_tz;
+            float _rx = _ax - _dot*_tx, _ry = _ay - _dot*_ty, _rz = _az - _dot*_tz;
+            final float _len = (float)Math.sqrt(_rx*_rx + _ry*_ry + _rz*_rz);
+            _frames[3] = _rx/_len;
+            _frames[4] = _ry/_len;
+            _frames[5] = _rz/_len;
+        }
+
+        for(int _idx = 0; _idx < _count - 1; _idx++) {
+            final int _cur = _idx*6;
+            final int _next = _cur + 6;
+
+            // reflect the frame across the bisecting plane of the segment
+            final float _v1x = _points[(_idx + 1)*3] - _points[_idx*3];
+            final float _v1y = _points[(_idx + 1)*3 + 1] - _points[_idx*3 + 1];
+            final float _v1z = _points[(_idx + 1)*3 + 2] - _points[_idx*3 + 2];
+            final float _c1 = _v1x*_v1x + _v1y*_v1y + _v1z*_v1z;
+
+            final float _rDot = 2f*(_v1x*_frames[_cur + 3] + _v1y*_frames[_cur + 4] + _v1z*_frames[_cur + 5])/_c1;
+            final float _rLx = _frames[_cur + 3] - _rDot*_v1x;
+            final float _rLy = _frames[_cur + 4] - _rDot*_v1y;
+            final float _rLz = _frames[_cur + 5] - _rDot*_v1z;
+
+            final float _tDot = 2f*(_v1x*_frames[_cur] + _v1y*_frames[_cur + 1] + _v1z*_frames[_cur + 2])/_c1;
+            final float _tLx = _frames[_cur] - _tDot*_v1x;
+            final float _tLy = _frames[_cur + 1] - _tDot*_v1y;
+            final float _tLz = _frames[_cur + 2] - _tDot*_v1z;
+
+            // reflect again so the tangent matches the next point
+            final float _v2x = _frames[_next] - _tLx;
+            final float _v2y = _frames[_next + 1] - _tLy;
+            final float _v2z = _frames[_next + 2] - _tLz;
+            final float _c2 = _v2x*_v2x + _v2y*_v2y + _v2z*_v2z;
+
+            float _rx = _rLx, _ry = _rLy, _rz = _rLz;
+            if(_c2 > 0f) {
+                final float _dot = 2f*(_v2x*_rLx + _v2y*_rLy + _v2z*_rLz)/_c2;
+                _rx -= _dot*_v2x;
+                _ry -= _dot*_v2y;
+                _rz -= _dot*_v2z;
+            }
+
+            // remove drift so the normal stays perpendicular to the tangent
+            final float _tDotR = _rx*_frames[_next] + _ry*_frames[_next + 1] + _rz*_frames[_next + 2];
+            _rx -= _tDotR*_frames[_next];
+            _ry -= _tDotR*_frames[_next + 1];
+            _rz -= _tDotR*_frames[_next + 2];
+            final float _len = (float)Math.sqrt(_rx*_rx + _ry*_ry + _rz*_rz);
+
+            _frames[_next + 3] = _rx/_len;
+            _frames[_next + 4] = _ry/_len;
+            _frames[_next + 5] = _rz/_len;
+        }
+
+        return _frames;
+    }
+
+    /**
+     * Add the vertices of a ring around a point. The normal of each vertex points away from the
+     * center.
+     */
+    private void addRing(float[] _points, float[] _frames, int _idx, float[] _colors, int _colorIdx) {
+        final int _frame = _idx*6;
+        final float _tx = _frames[_frame], _ty = _frames[_frame + 1], _tz = _frames[_frame + 2];
+        final float _rx = _frames[_frame + 3], _ry = _frames[_frame + 4], _rz = _frames[_frame + 5];
+
+        // s = t x r
+        final float _sx = _ty*_rz - _tz*_ry;
+        final float _sy = _tz*_rx - _tx*_rz;
+        final float _sz = _tx*_ry - _ty*_rx;
+
+        for(int _side = 0; _side < this._sides; _side++) {
+            final float _cos = this._cosTable[_side];
+            final float _sin = this._sinTable[_side];
+            final float _nx = _cos*_rx + _sin*_sx;
+            final float _ny = _cos*_ry + _sin*_sy;
+            final float _nz = _cos*_rz + _sin*_sz;
+
+            addVertex(_points[_idx*3] + this._radius*_nx, _points[_idx*3 + 1] + this._radius*_ny,
+                    _points[_idx*3 + 2] + this._radius*_nz, _nx, _ny, _nz, _colors, _colorIdx);
+        }
+    }
+
+    /**
+     * Add a disc at the end of a pipe. The disc has its own vertices so that its normal is
+     * along the axis.
+     */
+    private void addCap(float[] _points, float[] _frames, int _idx, float[] _colors, int _colorIdx,
+            boolean _isEnd) {
+        final int _frame = _idx*6;
+        final float _sign = _isEnd ? 1f : -1f;
+        final float _nx = _sign*_frames[_frame];
+        final float _ny = _sign*_frames[_frame + 1];
+        final float _nz = _sign*_frames[_frame + 2];
+
+        final int _center = this._vertexCount;
+        addVertex(_points[_idx*3], _points[_idx*3 + 1], _points[_idx*3 + 2], _nx, _ny, _nz,
+                _colors, _colorIdx);
+
+        // copy the ring positions with the cap normal
+        final int _ring = _center + 1;
+        addRing(_points, _frames, _idx, _colors, _colorIdx);
+        for(int _side = 0; _side < this._sides; _side++) {
+            final int _pos = (_ring + _side)*3;
+            this._normals[_pos] = _nx;
+            this._normals[_pos + 1] = _ny;
+            this._normals[_pos + 2] = _nz;
+        }
+
+        for(int _side = 0; _side < this._sides; _side++) {
+            final int _next = (_side + 1) % this._sides;
+            if(_isEnd) {
+                addTriangle(_center, _ring + _side, _ring + _next);
+            }
+            else {
+                addTriangle(_center, _ring + _next, _ring + _side);
+            }
+        }
+    }
+
+    private void addVertex(float _x, float _y, float _z, float _nx, float _ny, float _nz,
+            float[] _colors, int _colorIdx) {
+        final int _pos = this._vertexCount*3;
+        this._positions[_pos] = _x;
+        this._positions[_pos + 1] = _y;
+        this._positions[_pos + 2] = _z;
+        this._normals[_pos] = _nx;
+        this._normals[_pos + 1] = _ny;
+        this._normals[_pos + 2] = _nz;
+
+        if(_colors != null) {
+            System.arraycopy(_colors, _colorIdx*4, this._colors, this._vertexCount*4, 4);
+        }
+
+        this._vertexCount++;
+    }
+
+    private void addTriangle(int _idx0, int _idx1, int _idx2) {
+        this._indices[this._indexCount++] = _idx0;
+        this._indices[this._indexCount++] = _idx1;
+        this._indices[this._indexCount++] = _idx2;
+    }
+
+    private void ensureCapacity(int _extraVertices, int _extraIndices) {
+        final int _vertexCapacity = this._positions.length/3;
+        if(this._vertexCount + _extraVertices > _vertexCapacity) {
+            int _newSize = Math.max(_vertexCapacity*2, this._vertexCount + _extraVertices);
+            this._positions = Arrays.copyOf(this._positions, _newSize*3);
+            this._normals = Arrays.copyOf(this._normals, _newSize*3);
+            if(this._hasColors) {
+                this._colors = Arrays.copyOf(this._colors, _newSize*4);
+            }
+        }
+
+        if(this._indexCount + _extraIndices > this._indices.length) {
+            int _newSize = Math.max(this._indices.length*2, this._indexCount + _extraIndices);
+            this._indices = Arrays.copyOf(this._indices, _newSize);
+        }
+    }
+
+    /**
+     * Serialize the pipes to buffers and add a Node to the scene.
+     * @param _geoWriter Instance of writer class.
+     * @return Node containing the mesh.
+     */
+    public Node build(MeshGltfWriter _geoWriter) throws Exception {
+        int _meshIdx = buildMesh(_geoWriter);
+
+        Node _node = new Node();
+        _node.setMesh(_meshIdx);
+        _node.setName(this.getName() + "-node");
+        applyNodeTransform(_node);
+
+        _geoWriter.addNode(_node);
+        return _node;
+    }
+
+    /**
+     * Serialize the pipes to buffers and return the index of the Mesh. The builder is cleared
+     * so it can be reused.
+     * @param _geoWriter Instance of writer class.
+     */
+    public int buildMesh(MeshGltfWriter _geoWriter) throws Exception {
+        if(this._pipeCount == 0) {
+            throw new Exception("No pipes to build: " + this.getName());
+        }
+
+        MeshPrimitive _meshPrimitive = new MeshPrimitive();
+        _meshPrimitive.setMode(TopologyMode.TRIANGLES.ordinal());
+
+        Mesh _mesh = new Mesh();
+        _geoWriter.getGltf().addMeshes(_mesh);
+        int _meshIdx = _geoWriter.getGltf().getMeshes().size() - 1;
+        _mesh.setName(this.getName() + "-mesh");
+        _mesh.addPrimitives(_meshPrimitive);
+
+        if(this._material != null) {
+            int _materialIdx = _geoWriter.getGltf().getMaterials().indexOf(this._material);
+            _meshPrimitive.setMaterial(_materialIdx);
+        }
+
+        this._positionBuf.setName(this.getName() + "-vertices");
+        this._positionBuf.setData(this._positions, this._vertexCount);
+        this._positionBuf.buildAttrib(_geoWriter, _meshPrimitive, "POSITION");
+
+        this._normalBuf.setName(this.getName() + "-normals");
+        this._normalBuf.setData(this._normals, this._vertexCount);
+        this._normalBuf.buildAttrib(_geoWriter, _meshPrimitive, "NORMAL");
+
+        if(this._hasColors) {
+            this._colorBuf.setName(this.getName() + "-colors");
+            this._colorBuf.setData(this._colors, this._vertexCount);
+            this._colorBuf.buildAttrib(_geoWriter, _meshPrimitive, "COLOR_0");
+        }
+
+        this._indexBuf.setName(this.getName() + "-indices");
+        this._indexBuf.setData(this._indices, this._indexCount);
+        this._indexBuf.build(_geoWriter, _meshPrimitive);
+
+        LOG.debug("New Pipe Batch[{}]: idx=<{}> pipes=<{}> vertices=<{}> triangles=<{}>",
+                _mesh.getName(), _meshIdx, this._pipeCount, this._vertexCount, this._indexCount/3);
+        clear();
+        return _meshIdx;
+    }
+}
@@ -18,6 +18,8 @@ import javax.vecmath.Vector3f;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.github.chadj2.mesh.optimize.PolylineSimplifier;
+
 /**
  * Generate 3D pipes for glTF based on 2D grid arrays
  * @author Chad Juliano
@@ -32,8 +34,23 @@ public class PipeBuilder extends MeshBuilder {
 
     private final static Point3f ORIGIN_POINT = new Point3f(0f, 0f, 0f);
     
+    /** Removes points that don't change the shape of a pipe. */
+    private PolylineSimplifier _simplifier = null;
+    
     /**
-     * Add a pipe with given points and colors. Radius is in transformed coordinate system.
+     * Remove points that are within a distance of the simplified pipe center line before the
+     * rings are generated. The tolerance is in the transformed coordinate system and zero 
+     * disables simplification.
+     * @see PolylineSimplifier
+     */
+    public void setSimplifyTolerance(float tolerance) {
+        this._simplifier = (tolerance > 0) ? new PolylineSimplifier(tolerance) : null;
+    }
+    
+    /**
+     * Add a pipe with given points and colors. Radius is in transformed coordinate system. If
+     * the transform is deferred the radius is in local coordinates and is scaled by the
+     * transform of the Node.
      * @param pointList
      * @param colorList
      * @param radius
@@ -45,49 +62,64 @@ public class PipeBuilder extends MeshBuilder {
 
         // save the original transform
         Matrix4f origM4 = new Matrix4f(this.getTransform());
+        boolean deferTransform = isDeferTransform();
         
         // transform each of the input points.
+        Matrix4f pointM4 = getVertexTransform();
         for(Point3f point : pointList) {
             Point3f tPoint = new Point3f(point);
-            origM4.transform(tPoint);
+            pointM4.transform(tPoint);
             tPointList.add(tPoint);
         }
         
+        if(this._simplifier != null) {
+            int[] keepIdx = this._simplifier.simplify(tPointList);
+            tPointList = PolylineSimplifier.select(tPointList, keepIdx);
+            colorList = PolylineSimplifier.select(colorList, keepIdx);
+        }
+        
         // Create the mesh that will contain the ring segments this is done in the destination coordinate 
         // system since input points are already transformed. 
-        final MeshVertex[][] meshGrid = new MeshVertex[pointList.size()][];
-        
-        for(int idx = 0; idx < pointList.size(); idx++) {
-            Color color = colorList.get(idx);
-            
-            try {
-                // We set the transformation so the ring segment will be in the correct location
-                Matrix4f rtsMatrix = calcTransform(tPointList, idx);
-                setTransform(rtsMatrix);
+        final MeshVertex[][] meshGrid = new MeshVertex[tPointList.size()][];
+        
+        // ring transforms are always applied to the vertices
+        setDeferTransform(false);
+        
+        try {
+            for(int idx = 0; idx < tPointList.size(); idx++) {
+                Color color = colorList.get(idx);
                 
-            }
-            catch(Exception ex) {
-                String msg = String.format("Failure to calculate transform at index: %d", idx);
-                LOG.warn(msg, ex);
-                //throw new Exception(msg, ex);
-            }
-            
-            // add the ring segment
-            meshGrid[idx] = addCircleVerticesXZ(ORIGIN_POINT, radius, sides, color);
-            
-            // add caps to start and end
-            if(idx == 0) {
-                // cap the start
-                addDiscXZ(ORIGIN_POINT, -radius, sides, color);
-            }
-            else if(idx == (tPointList.size() - 1)) {
-                // cap the end
-                addDiscXZ(ORIGIN_POINT, radius, sides, color);
+                try {
+                    // We set the transformation so the ring segment will be in the correct location
+                    Matrix4f rtsMatrix = calcTransform(tPointList, idx);
+                    setTransform(rtsMatrix);
+                    
+                }
+                catch(Exception ex) {
+                    String msg = String.format("Failure to calculate transform at index: %d", idx);
+                    LOG.warn(msg, ex);
+                    //throw new Exception(msg, ex);
+                }
+                
+                // add the ring segment
+                meshGrid[idx] = addCircleVerticesXZ(ORIGIN_POINT, radius, sides, color);
+                
+                // add caps to start and end
+                if(idx == 0) {
+                    // cap the start
+                    addDiscXZ(ORIGIN_POINT, -radius, sides, color);
+                }
+                else if(idx == (tPointList.size() - 1)) {
+                    // cap the end
+                    addDiscXZ(ORIGIN_POINT, radius, sides, color);
+                }
             }
         }
-        
-        // restore original transform
-        setTransform(origM4);
+        finally {
+            // restore original transform
+            setTransform(origM4);
+            setDeferTransform(deferTransform);
+        }
         
         // build the mesh
         addLathe(meshGrid, false);
@@ -0,0 +1,361 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Point3f;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.buffer.BufferFloatArray;
+import io.github.chadj2.mesh.extinst.GlTFMeshGpuInstancing;
+import io.github.chadj2.mesh.sphere.IcosphereBuilder;
+
+/**
+ * Draw large numbers of line segments as pipes using the EXT_mesh_gpu_instancing extension.
+ * A single cylinder mesh from (0,0,0) to (0,1,0) is written once and each segment is an
+ * instance with a TRANSLATION at its start, a ROTATION from the Y axis to its direction, and a
+ * SCALE along Y for its length. The radius is part of the cylinder so each segment needs 40
+ * bytes regardless of the number of sides.
+ * <p>
+ * The gaps between segments of a polyline are covered by instanced spheres at each point.
+ * The spheres only need a TRANSLATION.
+ * @author Chad Juliano
+ */
+public class PipeInstanceBuilder extends BaseBuilder {
+
+    private final static Logger LOG = LoggerFactory.getLogger(PipeInstanceBuilder.class);
+
+    private final float _radius;
+    private final int _sides;
+
+    /** Level of detail of the joint spheres. */
+    private int _jointDetail = 1;
+
+    /** Add spheres at the points of each polyline. */
+    private boolean _hasJoints = true;
+
+    private Color _color = Color.WHITE;
+    private Material _material = null;
+
+    /** Segment instances with (x,y,z) translation, (x,y,z,w) rotation and (x,y,z) scale. */
+    private float[] _segTranslations = new float[0];
+    private float[] _segRotations = new float[0];
+    private float[] _segScales = new float[0];
+    private int _segCount = 0;
+
+    /** Joint instances with (x,y,z) translation. */
+    private float[] _jointTranslations = new float[0];
+    private int _jointCount = 0;
+
+    /**
+     * @param _name Name of the glTF nodes and meshes.
+     * @param _radius Radius of the pipes in the transformed coordinate system.
+     * @param _sides Number of sides of the cylinder.
+     */
+    public PipeInstanceBuilder(String _name, float _radius, int _sides) {
+        super(_name);
+
+        if(_sides < 3) {
+            throw new IllegalArgumentException("Pipe must have at least 3 sides: " + _sides);
+        }
+
+        this._radius = _radius;
+        this._sides = _sides;
+    }
+
+    /**
+     * Set the color of the pipes. This is ignored if a Material is set.
+     */
+    public void setColor(Color _color) { this._color = _color; }
+
+    /**
+     * Set a Material that will be used for the cylinder and sphere meshes.
+     */
+    public void setMaterial(Material _material) { this._material = _material; }
+
+    /**
+     * Add spheres at the points of each polyline to fill the gaps between segments. This is
+     * enabled by default.
+     */
+    public void setJoints(boolean _hasJoints) { this._hasJoints = _hasJoints; }
+
+    /**
+     * Set the level of detail of the joint spheres where zero is an icosahedron.
+     */
+    public void setJointDetail(int _jointDetail) { this._jointDetail = _jointDetail; }
+
+    public int getSegmentCount() { return this._segCount; }
+
+    public int getJointCount() { return this._jointCount; }
+
+    public boolean isEmpty() { return this._segCount == 0 && this._jointCount == 0; }
+
+    /**
+     * Clear out all instances so the builder can be reused. Arrays keep their capacity.
+     */
+    public void clear() {
+        this._segCount = 0;
+        this._jointCount = 0;
+    }
+
+    /**
+     * Add many polylines at once.
+     * @see #addPolyline(List)
+     */
+    public void addPolylines(List<? extends List<Point3f>> _pointLists) {
+        for(List<Point3f> _pointList : _pointLists) {
+            addPolyline(_pointList);
+        }
+    }
+
+    /**
+     * Add a segment between each point and a joint at each point.
+     */
+    public void addPolyline(List<Point3f> _pointList) {
+        final int _pointCount = _pointList.size();
+        final float[] _points = new float[_pointCount*3];
+        for(int _idx = 0; _idx < _pointCount; _idx++) {
+            Point3f _point = _pointList.get(_idx);
+            _points[_idx*3] = _point.x;
+            _points[_idx*3 + 1] = _point.y;
+            _points[_idx*3 + 2] = _point.z;
+        }
+
+        addPolyline(_points, _pointCount);
+    }
+
+    /**
+     * Add a polyline from a primitive array. The array is not modified.
+     * @param _points Array with the (x,y,z) of each point.
+     * @param _pointCount Number of points in the array.
+     */
+    public void addPolyline(float[] _points, int _pointCount) {
+        final float[] _tPoints = transformPoints(_points, _pointCount);
+
+        for(int _idx = 0; _idx < _pointCount; _idx++) {
+            final int _pos = _idx*3;
+            if(_idx > 0) {
+                addSegmentInstance(_tPoints, _pos - 3, _pos);
+            }
+
+            if(this._hasJoints) {
+                addJointInstance(_tPoints, _pos);
+            }
+        }
+    }
+
+    /**
+     * Add a single segment without joints.
+     */
+    public void addSegment(Point3f _start, Point3f _end) {
+        final float[] _points = { _start.x, _start.y, _start.z, _end.x, _end.y, _end.z };
+        final float[] _tPoints = transformPoints(_points, 2);
+        addSegmentInstance(_tPoints, 0, 3);
+    }
+
+    /**
+     * Add a single joint sphere.
+     */
+    public void addJoint(Point3f _point) {
+        final float[] _tPoints = transformPoints(new float[] { _point.x, _point.y, _point.z }, 1);
+        addJointInstance(_tPoints, 0);
+    }
+
+    private float[] transformPoints(float[] _points, int _pointCount) {
+        final Matrix4f _mat = this.getVertexTransform();
+        final float[] _tPoints = new float[_pointCount*3];
+
+        for(int _pos = 0; _pos < _pointCount*3; _pos += 3) {
+            final float _x = _points[_pos];
+            final float _y = _points[_pos + 1];
+            final float _z = _points[_pos + 2];
+            _tPoints[_pos]     = _mat.m00*_x + _mat.m01*_y + _mat.m02*_z + _mat.m03;
+            _tPoints[_pos + 1] = _mat.m10*_x + _mat.m11*_y + _mat.m12*_z + _mat.m13;
+            _tPoints[_pos + 2] = _mat.m20*_x + _mat.m21*_y + _mat.m22*_z + _mat.m23;
+        }
+
+        return _tPoints;
+    }
+
+    /**
+     * Add the transform that maps the unit cylinder onto a segment. The rotation is the
+     * shortest arc from the Y axis to the segment direction.
+     */
+    private void addSegmentInstance(float[] _points, int _startPos, int _endPos) {
+        float _dx = _points[_endPos] - _points[_startPos];
+        float _dy = _points[_endPos + 1] - _points[_startPos + 1];
+        float _dz = _points[_endPos + 2] - _points[_startPos + 2];
+        final float _length = (float)Math.sqrt(_dx*_dx + _dy*_dy + _dz*_dz);
+        if(_length == 0f) {
+            // segment has no direction
+            return;
+        }
+
+        _dx /= _length;
+        _dy /= _length;
+        _dz /= _length;
+
+        // quaternion for Y x d with w = 1 + Y.d
+        float _qx = _dz;
+        float _qy = 0f;
+        float _qz = -_dx;
+        float _qw = 1f + _dy;
+
+        if(_qw < 1e-6f) {
+            // direction is -Y so rotate 180 degrees around X
+            _qx = 1f;
+            _qz = 0f;
+            _qw = 0f;
+        }
+        else {
+            final float _norm = (float)Math.sqrt(_qx*_qx + _qz*_qz + _qw*_qw);
+            _qx /= _norm;
+            _qz /= _norm;
+            _qw /= _norm;
+        }
+
+        ensureSegmentCapacity();
+        final int _pos3 = this._segCount*3;
+        final int _pos4 = this._segCount*4;
+
+        this._segTranslations[_pos3]     = _points[_startPos];
+        this._segTranslations[_pos3 + 1] = _points[_startPos + 1];
+        this._segTranslations[_pos3 + 2] = _points[_startPos + 2];
+
+        this._segRotations[_pos4]     = _qx;
+        this._segRotations[_pos4 + 1] = _qy;
+        this._segRotations[_pos4 + 2] = _qz;
+        this._segRotations[_pos4 + 3] = _qw;
+
+        this._segScales[_pos3]     = 1f;
+        this._segScales[_pos3 + 1] = _length;
+        this._segScales[_pos3 + 2] = 1f;
+
+        this._segCount++;
+    }
+
+    private void addJointInstance(float[] _points, int _pos) {
+        if(this._jointCount*3 + 3 > this._jointTranslations.length) {
+            int _newSize = Math.max(this._jointTranslations.length*2, 3*1024);
+            this._jointTranslations = Arrays.copyOf(this._jointTranslations, _newSize);
+        }
+
+        System.arraycopy(_points, _pos, this._jointTranslations, this._jointCount*3, 3);
+        this._jointCount++;
+    }
+
+    private void ensureSegmentCapacity() {
+        if(this._segCount*3 + 3 <= this._segTranslations.length) {
+            return;
+        }
+
+        int _newCount = Math.max(this._segTranslations.length/3*2, 1024);
+        this._segTranslations = Arrays.copyOf(this._segTranslations, _newCount*3);
+        this._segRotations = Arrays.copyOf(this._segRotations, _newCount*4);
+        this._segScales = Arrays.copyOf(this._segScales, _newCount*3);
+    }
+
+    /**
+     * Serialize the meshes and instances and add a Node to the scene. The node has a child
+     * for the segments and a child for the joints.
+     * @param _geoWriter Instance of writer class.
+     * @return Node containing the instancing nodes.
+     */
+    public Node build(MeshGltfWriter _geoWriter) throws Exception {
+        if(isEmpty()) {
+            throw new Exception("No segments to build: " + this.getName());
+        }
+
+        _geoWriter.addExtension(GlTFMeshGpuInstancing.EXT_NAME, true);
+
+        Material _material = this._material;
+        if(_material == null) {
+            _material = _geoWriter.newBlendMaterial(this.getName(), 0.2f, 0.5f, this._color);
+        }
+
+        Node _node = new Node();
+        _node.setName(this.getName() + "-node");
+        applyNodeTransform(_node);
+        _geoWriter.addNode(_node);
+
+        if(this._segCount > 0) {
+            int _nodeIdx = buildSegments(_geoWriter, _material);
+            _node.addChildren(_nodeIdx);
+        }
+
+        if(this._jointCount > 0) {
+            int _nodeIdx = buildJoints(_geoWriter, _material);
+            _node.addChildren(_nodeIdx);
+        }
+
+        LOG.debug("New Pipe Instances[{}]: segments=<{}> joints=<{}>", this.getName(),
+                this._segCount, this._jointCount);
+        clear();
+        return _node;
+    }
+
+    private int buildSegments(MeshGltfWriter _geoWriter, Material _material) throws Exception {
+        String _name = this.getName() + "-segments";
+
+        // unit cylinder along the Y axis
+        PipeBatchBuilder _cylinder = new PipeBatchBuilder(_name, this._radius, this._sides);
+        _cylinder.setCapped(!this._hasJoints);
+        _cylinder.setMaterial(_material);
+        _cylinder.addPipe(new float[] { 0f, 0f, 0f, 0f, 1f, 0f }, null, 2);
+        int _meshIdx = _cylinder.buildMesh(_geoWriter);
+
+        GlTFMeshGpuInstancing _instancing = new GlTFMeshGpuInstancing();
+        buildAttrib(_geoWriter, _instancing, _name + "-translation", 3, this._segTranslations,
+                this._segCount, "TRANSLATION");
+        buildAttrib(_geoWriter, _instancing, _name + "-rotation", 4, this._segRotations,
+                this._segCount, "ROTATION");
+        buildAttrib(_geoWriter, _instancing, _name + "-scale", 3, this._segScales,
+                this._segCount, "SCALE");
+
+        return addInstanceNode(_geoWriter, _name, _meshIdx, _instancing);
+    }
+
+    private int buildJoints(MeshGltfWriter _geoWriter, Material _material) throws Exception {
+        String _name = this.getName() + "-joints";
+
+        IcosphereBuilder _sphere = new IcosphereBuilder(_name);
+        _sphere.setRadius(this._radius);
+        _sphere.addIcosphere(this._jointDetail);
+        _sphere.setMaterial(_material);
+        int _meshIdx = _sphere.buildMesh(_geoWriter);
+
+        GlTFMeshGpuInstancing _instancing = new GlTFMeshGpuInstancing();
+        buildAttrib(_geoWriter, _instancing, _name + "-translation", 3, this._jointTranslations,
+                this._jointCount, "TRANSLATION");
+
+        return addInstanceNode(_geoWriter, _name, _meshIdx, _instancing);
+    }
+
+    private static void buildAttrib(MeshGltfWriter _geoWriter, GlTFMeshGpuInstancing _instancing,
+            String _name, int _components, float[] _data, int _count, String _attribute) {
+        BufferFloatArray _buffer = new BufferFloatArray(_name, _components);
+        _buffer.setData(_data, _count);
+        _buffer.buildAttrib(_geoWriter, _instancing, _attribute);
+    }
+
+    private static int addInstanceNode(MeshGltfWriter _geoWriter, String _name, int _meshIdx,
+            GlTFMeshGpuInstancing _instancing) {
+        Node _node = new Node();
+        _node.setName(_name + "-node");
+        _node.setMesh(_meshIdx);
+        _node.addExtensions(GlTFMeshGpuInstancing.EXT_NAME, _instancing);
+        return _geoWriter.addDetachedNode(_node);
+    }
+}
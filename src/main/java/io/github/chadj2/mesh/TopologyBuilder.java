@@ -22,6 +22,7 @@ import de.javagl.jgltf.impl.v2.Node;
 import io.github.chadj2.mesh.buffer.BufferVecFloat3;
 import io.github.chadj2.mesh.buffer.TriangleIndices;
 import io.github.chadj2.mesh.buffer.VertexColors;
+import io.github.chadj2.mesh.optimize.PolylineSimplifier;
 
 /**
  * Base class for constructing glTF Mesh geometry.
@@ -53,6 +54,9 @@ public class TopologyBuilder extends BaseBuilder {
      * and it can't be altered at runtime. */
     private final TopologyMode _topologyMode;
 
+    /** Removes vertices of a line strip that don't change its shape. */
+    private PolylineSimplifier _simplifier = null;
+
     /** minimum bounds of the vertices. */
     protected Tuple3f _minBounds;
     
@@ -68,13 +72,29 @@ public class TopologyBuilder extends BaseBuilder {
         this._topologyMode = _topologyMode;
     }
     
+    /**
+     * Remove vertices that are within a distance of the simplified line before the mesh is
+     * built. The tolerance is in the transformed coordinate system and zero disables
+     * simplification. Vertex colors are kept with their vertices.
+     * @see PolylineSimplifier
+     */
+    public void setSimplifyTolerance(float _tolerance) {
+        if(this._topologyMode != TopologyMode.LINE_STRIP) {
+            throw new IllegalStateException("Simplification requires LINE_STRIP: " + this._topologyMode);
+        }
+        this._simplifier = (_tolerance > 0) ? new PolylineSimplifier(_tolerance) : null;
+    }
+    
     /**
      * Returns true if no triangles have been added.
      */
     public boolean isEmpty() { return this._vertexList.size() == 0; }
 
     /**
-     * Clear out any added geometry.
+     * Clear out any added geometry so the builder can be reused for another mesh. This is 
+     * called by {@link #buildMesh} and subclasses must override it to reset any state they add. 
+     * Backing lists keep their capacity so a reused builder does not need to grow them again.
+     * Settings like the name and transform are not changed.
      */
     public void clear() { this._vertexList.clear(); }
     
@@ -91,23 +111,23 @@ public class TopologyBuilder extends BaseBuilder {
 
 
     /**
-     * Create a new vertex and apply the current offset and scale. This vertex will be assigned
-     * an unique index that will be referenced when adding squares or triangles.
+     * Create a new vertex and apply the current offset and scale unless the transform is 
+     * deferred to the Node. This vertex will be assigned an unique index that will be 
+     * referenced when adding squares or triangles.
      * @param _vertex 3D location of this vertex.
      * @throws Exception 
      */
     public MeshVertex newVertex(Tuple3f _vertex) throws Exception {
         Point3f _newVertex = new Point3f(_vertex);
-
-        if(Float.isNaN(_vertex.x) || Float.isNaN(_vertex.y) || Float.isNaN(_vertex.z)) {
-            throw new Exception("Can't add vertex with NaN: " + _vertex.toString());
-        }
         
         // apply offset and scale
-        getTransform().transform(_newVertex);
+        if(!isDeferTransform()) {
+            getTransform().transform(_newVertex);
+        }
         
+        // NaN in the input will also be in the output
         if(Float.isNaN(_newVertex.x) || Float.isNaN(_newVertex.y) || Float.isNaN(_newVertex.z)) {
-            throw new Exception("Transformed vertex has NaN: " + _newVertex.toString());
+            throw new Exception(String.format("Can't add vertex with NaN: %s -> %s", _vertex, _newVertex));
         }
         
         MeshVertex _meshVertex = new MeshVertex(this._vertexList.size(), _newVertex);
@@ -148,6 +168,7 @@ public class TopologyBuilder extends BaseBuilder {
         Node _node = new Node();
         _node.setMesh(_meshIdx);
         _node.setName(this.getName() + "-node");
+        applyNodeTransform(_node);
         
         _geoWriter.addNode(_node);
         return _node;
@@ -179,7 +200,11 @@ public class TopologyBuilder extends BaseBuilder {
         return _meshIdx;
     }
     
-    protected BufferVecFloat3 _vertices = null;
+    /** Positions from the last build. These are reused by the next build. */
+    protected final BufferVecFloat3 _vertices = new BufferVecFloat3("vertices");
+    
+    /** Colors from the last build. These are reused by the next build. */
+    private final VertexColors _colors = new VertexColors("colors");
     
     /**
      * Generate primitive lists from the MeshVertex list and serialize to buffers.
@@ -187,23 +212,51 @@ public class TopologyBuilder extends BaseBuilder {
      * @param _meshPrimitive The glTF section containing serialized buffers.
      */
     protected void buildBuffers(MeshGltfWriter _geoWriter, MeshPrimitive _meshPrimitive) throws Exception {
-        if(this._vertexList.size() == 0) {
+        List<MeshVertex> _vertexList = this._vertexList;
+        
+        if(this._simplifier != null) {
+            List<Point3f> _pointList = new ArrayList<>(_vertexList.size());
+            for(MeshVertex _meshVertex : _vertexList) {
+                _pointList.add(_meshVertex.getVertex());
+            }
+            
+            int[] _keepIdx = this._simplifier.simplify(_pointList);
+            LOG.debug("Simplified line[{}]: vertices=<{} -> {}>", this.getName(), 
+                    _vertexList.size(), _keepIdx.length);
+            _vertexList = PolylineSimplifier.select(_vertexList, _keepIdx);
+        }
+        
+        buildVertexBuffers(_geoWriter, _meshPrimitive, _vertexList);
+    }
+    
+    /**
+     * Serialize positions and colors for the given vertices. Subclasses can pass a list that
+     * has been reordered or filtered.
+     * @param _geoWriter Instance of writer class.
+     * @param _meshPrimitive The glTF section containing serialized buffers.
+     * @param _vertexList Vertices in the order they will be written.
+     */
+    protected void buildVertexBuffers(MeshGltfWriter _geoWriter, MeshPrimitive _meshPrimitive, 
+            List<MeshVertex> _vertexList) throws Exception {
+        if(_vertexList.size() == 0) {
             throw new Exception("No vertices to build!");
         }
         
-        this._vertices = new BufferVecFloat3(this.getName() + "-vertices");
-        VertexColors _colors = new VertexColors(this.getName());
+        this._vertices.clear();
+        this._vertices.setName(this.getName() + "-vertices");
+        this._colors.clear();
+        this._colors.setName(this.getName());
 
-        for(MeshVertex _meshVertex : this._vertexList) {
+        for(MeshVertex _meshVertex : _vertexList) {
             this._vertices.add(_meshVertex.getVertex());
             
             Color _color = _meshVertex.getColor();
             if(_color != null) {
-                _colors.add(_color);
+                this._colors.add(_color);
             }
         }
         
-        if(_colors.size() > 0 && _colors.size() != this._vertexList.size()) {
+        if(this._colors.size() > 0 && this._colors.size() != _vertexList.size()) {
             throw new Exception("Each Vertex must have a color");
         }
         
@@ -211,6 +264,6 @@ public class TopologyBuilder extends BaseBuilder {
         this._minBounds = this._vertices.getMin();
         this._maxBounds = this._vertices.getMax();
         this._vertices.buildAttrib(_geoWriter, _meshPrimitive, "POSITION");
-        _colors.build(_geoWriter, _meshPrimitive);
+        this._colors.build(_geoWriter, _meshPrimitive);
     }
 }
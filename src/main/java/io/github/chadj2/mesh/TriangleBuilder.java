@@ -7,9 +7,10 @@
 package io.github.chadj2.mesh;
 
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.vecmath.Point2f;
 import javax.vecmath.Point3f;
@@ -20,11 +21,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.Mesh;
 import de.javagl.jgltf.impl.v2.MeshPrimitive;
 import de.javagl.jgltf.impl.v2.Node;
 import io.github.chadj2.mesh.buffer.BufferVecFloat2;
 import io.github.chadj2.mesh.buffer.BufferVecFloat3;
 import io.github.chadj2.mesh.buffer.TriangleIndices;
+import io.github.chadj2.mesh.extlod.NodeMsftLod;
+import io.github.chadj2.mesh.optimize.MeshSimplifier;
+import io.github.chadj2.mesh.optimize.VertexCacheOptimizer;
 
 /**
  * Build 3D Geometry from triangles or squares. Tangents, indices, and normals are automatically
@@ -36,13 +41,29 @@ public class TriangleBuilder extends TopologyBuilder {
     private final static Logger LOG = LoggerFactory.getLogger(TriangleBuilder.class);
     
     /** The indices keep track of connectivity between triangle vertices. */
-    protected final List<Integer> _indicesList = new ArrayList<Integer>();
+    private int[] _indexArray = new int[48];
+    private int _indexCount = 0;
     
     /** Suppress additions of normal vectors  */
     private boolean _supressNormals = false;
 
     /** Material for the mesh */
     private Material _material = null;
+    
+    /** Reorder triangles and vertices for the GPU vertex cache during build() */
+    private boolean _optimizeCache = false;
+    
+    /** Map of original to written vertex index from the last build. Null if not reordered. */
+    private int[] _vertexRemap = null;
+    
+    /** Maximum error allowed when simplifying levels of detail. */
+    private float _lodMaxError = Float.MAX_VALUE;
+    
+    /** Size of the grid if the mesh starts with a grid. The template is only created by build(). */
+    private GridIndexTemplate.Key _gridKey = null;
+    
+    /** Index of the vertex at each position of the grid template. */
+    private int[] _gridVertices = null;
 
     /**
      * @param _name Name of the glTF mesh node.
@@ -58,6 +79,25 @@ public class TriangleBuilder extends TopologyBuilder {
         this._supressNormals = _isEnabled;
     }
     
+    /**
+     * Enable or disable reordering of triangles and vertices for the GPU post-transform 
+     * vertex cache when the mesh is built. The geometry is unchanged but large grids will
+     * render faster.
+     * @see VertexCacheOptimizer
+     */
+    public void setOptimizeCache(boolean _isEnabled) {
+        this._optimizeCache = _isEnabled;
+    }
+    
+    /**
+     * Set the maximum error allowed when generating levels of detail in {@link #buildLod}. A 
+     * level of detail will have more triangles than requested if this error would be exceeded.
+     * @param _maxError Approximate distance from the original surface in model units.
+     */
+    public void setLodMaxError(float _maxError) {
+        this._lodMaxError = _maxError;
+    }
+    
     /**
      * Set a Material that will be used when generating the mesh.
      * @param _material Material from the GltfWriter
@@ -68,7 +108,34 @@ public class TriangleBuilder extends TopologyBuilder {
     }
     
     @Override
-    public void clear() { this._indicesList.clear(); }
+    public void clear() { 
+        super.clear();
+        this._indexCount = 0;
+        this._gridKey = null;
+        this._gridVertices = null;
+    }
+    
+    /**
+     * Get the number of triangle indices that have been added.
+     */
+    protected int getIndexCount() { return this._indexCount; }
+    
+    /**
+     * Indicate that the mesh contains a single grid with the indices of a template. When the mesh
+     * is built the vertices are written in template order and the shared index accessor is used.
+     * If other triangles were added then the indices are written normally.
+     * @param _key Size and wrapping of the grid.
+     * @param _gridVertices Index of the vertex at each position of the template or -1 if empty.
+     */
+    protected void setGridTemplate(GridIndexTemplate.Key _key, int[] _gridVertices) {
+        this._gridKey = _key;
+        this._gridVertices = _gridVertices;
+    }
+    
+    /**
+     * Returns true if normals are not being calculated.
+     */
+    protected boolean isSupressNormals() { return this._supressNormals; }
     
     /**
      * This method should be called when all shapes have added. It will serialize the MeshVertex
@@ -90,29 +157,13 @@ public class TriangleBuilder extends TopologyBuilder {
      */
     public void addTriangle(MeshVertex _vtx0, MeshVertex _vtx1, MeshVertex _vtx2) {
         // add indices
-        this._indicesList.add(_vtx0.getIndex());
-        this._indicesList.add(_vtx1.getIndex());
-        this._indicesList.add(_vtx2.getIndex());
+        ensureIndexCapacity(3);
+        this._indexArray[this._indexCount++] = _vtx0.getIndex();
+        this._indexArray[this._indexCount++] = _vtx1.getIndex();
+        this._indexArray[this._indexCount++] = _vtx2.getIndex();
         
         if(!this._supressNormals) {
-            // calculate normal with cross product
-            final Vector3f _vec01 = new Vector3f();
-            _vec01.sub(_vtx0.getVertex(), _vtx1.getVertex());
-            
-            final Vector3f _vec21 = new Vector3f();
-            _vec21.sub(_vtx2.getVertex(), _vtx1.getVertex());
-            
-            Vector3f _normal = new Vector3f();
-            _normal.cross(_vec21, _vec01);
-            _normal.normalize();
-            
-            if(Float.isNaN(_normal.x) || Float.isNaN(_normal.y) || Float.isNaN(_normal.z)) {
-                LOG.debug("Could not calculate normal for triangle: {},{},{}", 
-                        _vtx0.getIndex(), _vtx1.getIndex(), _vtx2.getIndex());
-                // create a fake normal
-                _normal = new Vector3f(1f, 1f, 1f);
-                _normal.normalize();
-            }
+            Vector3f _normal = calcNormal(_vtx0, _vtx1, _vtx2);
             
             // add this normal to each vertex
             _vtx0.addNormal(_normal);
@@ -120,6 +171,51 @@ public class TriangleBuilder extends TopologyBuilder {
             _vtx2.addNormal(_normal);
         }
     }
+    
+    /**
+     * Calculate the normal of a triangle with a cross product. This does not change any state 
+     * so it can be called from multiple threads.
+     */
+    protected static Vector3f calcNormal(MeshVertex _vtx0, MeshVertex _vtx1, MeshVertex _vtx2) {
+        final Vector3f _vec01 = new Vector3f();
+        _vec01.sub(_vtx0.getVertex(), _vtx1.getVertex());
+        
+        final Vector3f _vec21 = new Vector3f();
+        _vec21.sub(_vtx2.getVertex(), _vtx1.getVertex());
+        
+        Vector3f _normal = new Vector3f();
+        _normal.cross(_vec21, _vec01);
+        _normal.normalize();
+        
+        if(Float.isNaN(_normal.x) || Float.isNaN(_normal.y) || Float.isNaN(_normal.z)) {
+            LOG.debug("Could not calculate normal for triangle: {},{},{}", 
+                    _vtx0.getIndex(), _vtx1.getIndex(), _vtx2.getIndex());
+            // create a fake normal
+            _normal = new Vector3f(1f, 1f, 1f);
+            _normal.normalize();
+        }
+        
+        return _normal;
+    }
+    
+    /**
+     * Append triangle indices that were generated separately from {@link #addTriangle}. Normals
+     * for these triangles must be added to the vertices by the caller.
+     * @param _indices Array with 3 indices for each triangle.
+     * @param _count Number of indices to copy from the array.
+     */
+    protected void addIndices(int[] _indices, int _count) {
+        ensureIndexCapacity(_count);
+        System.arraycopy(_indices, 0, this._indexArray, this._indexCount, _count);
+        this._indexCount += _count;
+    }
+    
+    private void ensureIndexCapacity(int _extra) {
+        if(this._indexCount + _extra > this._indexArray.length) {
+            int _newSize = Math.max(this._indexArray.length*2, this._indexCount + _extra);
+            this._indexArray = Arrays.copyOf(this._indexArray, _newSize);
+        }
+    }
 
     /**
      * Add a 3D square represented by 4 vertices specified counter clockwise. 
@@ -155,26 +251,161 @@ public class TriangleBuilder extends TopologyBuilder {
         }
     }
     
-    protected BufferVecFloat3 _normals = null;
+    /**
+     * Make a copy of a vertex that shares its normals and tangents with the original. This is 
+     * used where a texture seam needs a separate vertex but the surface is continuous so both
+     * vertices will have the same averaged normal.
+     * @see TopologyBuilder#copyVertex
+     */
+    protected MeshVertex newSeamVertex(MeshVertex _vertex) {
+        MeshVertex _seamVertex = copyVertex(_vertex);
+        if(_seamVertex != null) {
+            _seamVertex.shareNormals(_vertex);
+        }
+        return _seamVertex;
+    }
+    
+    /**
+     * Build the mesh and additional simplified levels of detail using the MSFT_lod extension.
+     * The simplified meshes have their own indices but share the vertex attributes of the 
+     * full detail mesh.
+     * @param _geoWriter Instance of writer class.
+     * @param _lodRatios Fraction of the triangles to keep for each additional LOD in decreasing order.
+     * @param _screenCoverage Minimum screen coverage for the full detail mesh followed by each LOD.
+     * @return Node containing the full detail mesh.
+     * @see MeshSimplifier
+     */
+    public Node buildLod(MeshGltfWriter _geoWriter, float[] _lodRatios, float[] _screenCoverage) 
+            throws Exception {
+        if(_screenCoverage.length != _lodRatios.length + 1) {
+            throw new Exception("Expected a screen coverage for each LOD: " + (_lodRatios.length + 1));
+        }
+        
+        // the simplifier needs a copy of the geometry because build() clears it.
+        final float[] _positions = new float[this._vertexList.size()*3];
+        for(MeshVertex _meshVertex : this._vertexList) {
+            Point3f _vertex = _meshVertex.getVertex();
+            int _pos = _meshVertex.getIndex()*3;
+            _positions[_pos] = _vertex.x;
+            _positions[_pos + 1] = _vertex.y;
+            _positions[_pos + 2] = _vertex.z;
+        }
+        
+        final int[] _indices = getIndexArray();
+        final int _triCount = _indices.length/3;
+        final MeshSimplifier _simplifier = new MeshSimplifier(_positions, _indices);
+        _simplifier.setLockBorders(true);
+        
+        final String _name = this.getName();
+        Node _node = build(_geoWriter);
+        MeshPrimitive _basePrimitive = _geoWriter.getGltf().getMeshes().get(_node.getMesh())
+                .getPrimitives().get(0);
+
+        NodeMsftLod _lodExt = new NodeMsftLod();
+        for(int _lodIdx = 0; _lodIdx < _lodRatios.length; _lodIdx++) {
+            int _targetCount = Math.round(_triCount*_lodRatios[_lodIdx]);
+            int[] _lodIndices = _simplifier.simplify(_targetCount, this._lodMaxError);
+            String _lodName = String.format("%s-lod%d", _name, _lodIdx + 1);
+            LOG.info("Simplified LOD[{}]: triangles=<{} -> {}> error=<{}>", 
+                    _lodName, _triCount, _lodIndices.length/3, _simplifier.getError());
+            
+            Node _lodNode = new Node();
+            _lodNode.setMesh(buildLodMesh(_geoWriter, _basePrimitive, _lodIndices, _lodName));
+            _lodNode.setName(_lodName + "-node");
+            applyNodeTransform(_lodNode);
+            _lodExt.addIds(_geoWriter.addDetachedNode(_lodNode));
+        }
+        
+        _node.addExtensions(NodeMsftLod.EXT_NAME, _lodExt);
+        _geoWriter.addExtension(NodeMsftLod.EXT_NAME, false);
+        
+        Map<String, Object> _extras = new HashMap<>();
+        float[] _coverage = Arrays.copyOf(_screenCoverage, _screenCoverage.length);
+        _extras.put(NodeMsftLod.EXTRAS_SCREEN_COVERAGE, _coverage);
+        _node.setExtras(_extras);
+        
+        return _node;
+    }
+    
+    /**
+     * Create a mesh with new indices that shares the attributes and material of another primitive.
+     */
+    private int buildLodMesh(MeshGltfWriter _geoWriter, MeshPrimitive _basePrimitive, 
+            int[] _lodIndices, String _lodName) throws Exception {
+        int _vertexCount = this._vertices.size();
+        if(this._vertexRemap != null) {
+            // vertices were renumbered when the full mesh was built
+            for(int _pos = 0; _pos < _lodIndices.length; _pos++) {
+                _lodIndices[_pos] = this._vertexRemap[_lodIndices[_pos]];
+            }
+        }
+        
+        if(this._optimizeCache) {
+            new VertexCacheOptimizer().optimizeTriangles(_lodIndices, _vertexCount);
+        }
+        
+        MeshPrimitive _meshPrimitive = new MeshPrimitive();
+        _meshPrimitive.setMode(_basePrimitive.getMode());
+        _meshPrimitive.setMaterial(_basePrimitive.getMaterial());
+        _meshPrimitive.setAttributes(_basePrimitive.getAttributes());
+        
+        TriangleIndices _indexBuffer = new TriangleIndices(_lodName);
+        for(int _pos = 0; _pos < _lodIndices.length; _pos += 3) {
+            _indexBuffer.add(_lodIndices[_pos], _lodIndices[_pos + 1], _lodIndices[_pos + 2]);
+        }
+        _indexBuffer.build(_geoWriter, _meshPrimitive);
+        
+        Mesh _mesh = new Mesh();
+        _mesh.setName(_lodName + "-mesh");
+        _mesh.addPrimitives(_meshPrimitive);
+        _geoWriter.getGltf().addMeshes(_mesh);
+        return _geoWriter.getGltf().getMeshes().size() - 1;
+    }
+    
+    private int[] getIndexArray() {
+        return Arrays.copyOf(this._indexArray, this._indexCount);
+    }
+    
+    /** Normals from the last build. These are reused by the next build. */
+    protected final BufferVecFloat3 _normals = new BufferVecFloat3("normals");
+    
+    private final BufferVecFloat2 _texCoords = new BufferVecFloat2("texCoords");
+    
+    private final TriangleIndices _indexBuffer = new TriangleIndices("indices");
 
     @Override
     protected void buildBuffers(MeshGltfWriter _geoWriter, MeshPrimitive _meshPrimitive) throws Exception {
-        super.buildBuffers(_geoWriter, _meshPrimitive);
+        if(this._indexCount == 0) {
+            throw new Exception("Mesh has no indices: " + this.getName());
+        }
+        
+        this._vertexRemap = null;
+        int[] _indices = null;
+        GridIndexTemplate _template = getGridTemplate(_geoWriter);
+        List<MeshVertex> _vertexList = (_template == null) ? null : getGridVertexList(_template);
+        if(_vertexList == null) {
+            _indices = getIndexArray();
+            _vertexList = this._vertexList;
+            if(this._optimizeCache) {
+                _vertexList = optimizeCache(_indices);
+            }
+        }
+        
+        super.buildVertexBuffers(_geoWriter, _meshPrimitive, _vertexList);
         
         if(this._material != null) {
             int _materialIdx = _geoWriter.getGltf().getMaterials().indexOf(this._material);
             _meshPrimitive.setMaterial(_materialIdx);
         }
 
-        if(this._indicesList.size() == 0) {
-            throw new Exception("Mesh has no indices: " + this.getName());
-        }
-        
-        BufferVecFloat2 _texCoords = new BufferVecFloat2(this.getName() + "-texCoords");
-        this._normals = new BufferVecFloat3(this.getName() + "-normals");
+        BufferVecFloat2 _texCoords = this._texCoords;
+        _texCoords.clear();
+        _texCoords.setName(this.getName() + "-texCoords");
+        this._normals.clear();
+        this._normals.setName(this.getName() + "-normals");
         //BufferFloat4 _tangents = new BufferFloat4(this.getName(), "tangents");
         
-        for(MeshVertex _meshVertex : this._vertexList) {
+        for(MeshVertex _meshVertex : _vertexList) {
             Point2f _texCoord = _meshVertex.getTexCoord();
             if(_texCoord != null) {
                 _texCoords.add(_texCoord);
@@ -190,20 +421,107 @@ public class TriangleBuilder extends TopologyBuilder {
             //this._tangents.add(_meshVertex.getTangent());
         }
         
-        // copy triangles to the buffer
-        TriangleIndices indices  = new TriangleIndices(this.getName());
-        Iterator<Integer> iter = this._indicesList.iterator();
-        while(iter.hasNext()) {
-            indices.add(iter.next(), iter.next(), iter.next());
+        if(_indices == null) {
+            // indices were already written by another grid of the same size
+            _meshPrimitive.setIndices(_template.getAccessor(_geoWriter, this._optimizeCache));
+        }
+        else {
+            // copy triangles to the buffer
+            TriangleIndices indices = this._indexBuffer;
+            indices.clear();
+            indices.setName(this.getName());
+            for(int _pos = 0; _pos < _indices.length; _pos += 3) {
+                indices.add(_indices[_pos], _indices[_pos + 1], _indices[_pos + 2]);
+            }
+            indices.build(_geoWriter, _meshPrimitive);
         }
         
         // flush all buffers to the primitive
-        indices.build(_geoWriter, _meshPrimitive);
         _texCoords.buildAttrib(_geoWriter, _meshPrimitive, "TEXCOORD_0");
         this._normals.buildAttrib(_geoWriter, _meshPrimitive, "NORMAL");
         //_tangents.build(_geoWriter, _meshPrimitive);
+    }
+    
+    /**
+     * Get the template of the grid if the mesh has the indices of exactly one grid. The sizes
+     * are checked first so a template is only created for meshes that can use it.
+     * @return the template or null if it can't be used.
+     */
+    private GridIndexTemplate getGridTemplate(MeshGltfWriter _geoWriter) {
+        final GridIndexTemplate.Key _key = this._gridKey;
+        if(_key == null 
+                || _key.getIndexCount() != this._indexCount 
+                || _key.getVertexCount() != this._vertexList.size()) {
+            return null;
+        }
+        return GridIndexTemplate.get(_geoWriter, _key);
+    }
+    
+    /**
+     * Get the vertices in the order of the grid template so that the template indices can be 
+     * used. The template is only used if each vertex appears once.
+     * @return Vertices in the order they should be written or null if there are holes.
+     */
+    private List<MeshVertex> getGridVertexList(GridIndexTemplate _template) {
+        final int _vertexCount = this._vertexList.size();
+        final int[] _order = _template.getVertexOrder(this._optimizeCache);
+        final int[] _remap = new int[_vertexCount];
+        Arrays.fill(_remap, -1);
+        
+        final MeshVertex[] _newOrder = new MeshVertex[_vertexCount];
+        for(int _pos = 0; _pos < _vertexCount; _pos++) {
+            int _gridIdx = (_order == null) ? _pos : _order[_pos];
+            int _vertexIdx = this._gridVertices[_gridIdx];
+            if(_vertexIdx < 0 || _remap[_vertexIdx] >= 0) {
+                // grid has holes or vertices that are shared
+                return null;
+            }
+            
+            _remap[_vertexIdx] = _pos;
+            _newOrder[_pos] = this._vertexList.get(_vertexIdx);
+        }
+        
+        LOG.debug("Using grid template: mesh=<{}> template=<{}>", this.getName(), _template.getName());
+        this._vertexRemap = _remap;
+        return Arrays.asList(_newOrder);
+    }
+    
+    /**
+     * Reorder the triangles for the vertex cache and then renumber the vertices in the order 
+     * they are first used. Vertices that are not referenced by a triangle are dropped.
+     * @param _indices Triangle indices that will be updated in place.
+     * @return Vertices in the order they should be written.
+     */
+    private List<MeshVertex> optimizeCache(int[] _indices) {
+        final int _vertexCount = this._vertexList.size();
+        final int _fifoSize = VertexCacheOptimizer.DEFAULT_ACMR_CACHE_SIZE;
+        float _acmrBefore = 0f;
+        if(LOG.isDebugEnabled()) {
+            _acmrBefore = VertexCacheOptimizer.calcAcmr(_indices, _fifoSize);
+        }
+        
+        VertexCacheOptimizer _optimizer = new VertexCacheOptimizer();
+        _optimizer.optimizeTriangles(_indices, _vertexCount);
+        int[] _remap = VertexCacheOptimizer.optimizeFetch(_indices, _vertexCount);
+        this._vertexRemap = _remap;
+        
+        if(LOG.isDebugEnabled()) {
+            float _acmrAfter = VertexCacheOptimizer.calcAcmr(_indices, _fifoSize);
+            LOG.debug("Optimized vertex cache: mesh=<{}> ACMR=<{} -> {}>", 
+                    this.getName(), _acmrBefore, _acmrAfter);
+        }
+        
+        MeshVertex[] _newOrder = new MeshVertex[_vertexCount];
+        int _usedCount = 0;
+        for(int _idx = 0; _idx < _vertexCount; _idx++) {
+            int _newIdx = _remap[_idx];
+            if(_newIdx >= 0) {
+                _newOrder[_newIdx] = this._vertexList.get(_idx);
+                _usedCount++;
+            }
+        }
         
-        this._indicesList.clear();
+        return Arrays.asList(_newOrder).subList(0, _usedCount);
     }
     
     /**
@@ -26,9 +26,12 @@ import io.github.chadj2.mesh.extinst.GlTFMeshGpuInstancing;
 public abstract class BufferBase<T> {
     private static final Logger LOG = LoggerFactory.getLogger(BufferBase.class);
     
-    protected final String _name;
+    protected String _name;
     protected final ArrayList<T> _list = new ArrayList<>();
     
+    /** Indicates the array of an array-backed buffer was not passed in by the caller. */
+    private boolean _isOwned = true;
+    
     public BufferBase(String _name) {
         this._name = _name;
     }
@@ -43,9 +46,64 @@ public abstract class BufferBase<T> {
     
     public int size() { return this._list.size(); }
 
+    /**
+     * Remove all primitives. The backing list keeps its capacity so the buffer can be reused.
+     */
     public void clear() { this._list.clear(); }
+    
+    /**
+     * Change the name used for the accessor and buffer view when a buffer is reused.
+     */
+    public void setName(String _name) { this._name = _name; }
+    
+    public String getName() { return this._name; }
 
     protected abstract void writeBuf(ByteBuffer _buffer);
+
+    /**
+     * Called by setData() of array-backed buffers that keep a reference to the caller's array.
+     * The next add() will copy the array before writing to it.
+     */
+    protected void setBorrowed() { this._isOwned = false; }
+
+    /**
+     * Get an array that add() can write to for array-backed buffers. The array is returned 
+     * unchanged if it is owned and large enough. Otherwise the used range is copied to the 
+     * start of a new array with room to grow.
+     * @param _data Current array.
+     * @param _offset Start of the used range.
+     * @param _length Length of the used range.
+     * @param _minLength Length needed from the start of the used range.
+     * @return The same array or a new one where the used range starts at 0.
+     */
+    protected float[] getWritable(float[] _data, int _offset, int _length, int _minLength) {
+        if(this._isOwned && _offset + _minLength <= _data.length) {
+            return _data;
+        }
+        
+        final float[] _newData = new float[getGrowLength(_length, _minLength)];
+        System.arraycopy(_data, _offset, _newData, 0, _length);
+        this._isOwned = true;
+        return _newData;
+    }
+
+    /**
+     * @see #getWritable(float[], int, int, int)
+     */
+    protected int[] getWritable(int[] _data, int _offset, int _length, int _minLength) {
+        if(this._isOwned && _offset + _minLength <= _data.length) {
+            return _data;
+        }
+        
+        final int[] _newData = new int[getGrowLength(_length, _minLength)];
+        System.arraycopy(_data, _offset, _newData, 0, _length);
+        this._isOwned = true;
+        return _newData;
+    }
+    
+    private static int getGrowLength(int _length, int _minLength) {
+        return Math.max(_minLength, Math.max(_length*2, 16));
+    }
     
     public final Accessor buildAttrib(MeshGltfWriter _geoWriter, MeshPrimitive _meshPirimitive, String _attribute) {
         Accessor _accessor = buildBuffer(_geoWriter);
@@ -114,13 +172,17 @@ public abstract class BufferBase<T> {
         _bufferView.setName(_bufViewName);
         LOG.debug("BufferView[{}]: start={}, size={}", _bufViewName, _startPos, _length);
 
-        BufferBase.alignWords(_buffer);
+        BufferBase.alignBuffer(_buffer, 4);
         return _bufferView;
     }
 
-    private static void alignWords(ByteBuffer _byteBuffer) {
-        int _limit = _byteBuffer.position();
-        int _padding = _limit % 4;
+    /**
+     * Pad the buffer with zeros so the next buffer view starts at a multiple of the alignment.
+     * @param _byteBuffer Buffer being written.
+     * @param _alignment Alignment in bytes.
+     */
+    protected static void alignBuffer(ByteBuffer _byteBuffer, int _alignment) {
+        int _padding = (_alignment - _byteBuffer.position() % _alignment) % _alignment;
         
         for(int _i = 0; _i < _padding; _i++) {
             _byteBuffer.put((byte)0);
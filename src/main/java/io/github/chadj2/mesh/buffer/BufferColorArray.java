@@ -0,0 +1,100 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.BufferView;
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.model.GltfConstants;
+
+/**
+ * Serializer for colors stored as packed ARGB ints like {@link java.awt.Color#getRGB()}. Colors
+ * are written as normalized unsigned bytes in RGBA order which needs a quarter of the space
+ * of float colors.
+ * @author Chad Juliano
+ */
+public class BufferColorArray extends BufferVecBase<Integer> {
+
+    private int[] _data = new int[0];
+    private int _dataPos = 0;
+    private int _count = 0;
+
+    public BufferColorArray(String _name) {
+        super(_name, Byte.BYTES * 4);
+    }
+
+    /**
+     * Set the colors to serialize. The array is not copied.
+     * @param _data Array of packed ARGB colors.
+     * @param _dataPos Index in the array of the first color.
+     * @param _count Number of colors.
+     */
+    public void setData(int[] _data, int _dataPos, int _count) {
+        if(_data.length < _dataPos + _count) {
+            throw new IllegalArgumentException("Array is too small for count: " + _count);
+        }
+        this._data = _data;
+        this._dataPos = _dataPos;
+        this._count = _count;
+        setBorrowed();
+    }
+
+    /**
+     * Append a packed ARGB color.
+     */
+    @Override
+    public void add(Integer _primitive) {
+        final int[] _newData = getWritable(this._data, this._dataPos, this._count, this._count + 1);
+        if(_newData != this._data) {
+            this._data = _newData;
+            this._dataPos = 0;
+        }
+        
+        this._data[this._dataPos + this._count++] = _primitive;
+    }
+
+    @Override
+    public Integer get(int _idx) { return this._data[this._dataPos + _idx]; }
+
+    @Override
+    public int size() { return this._count; }
+
+    @Override
+    public void clear() { this._count = 0; }
+
+    @Override
+    public Integer getMin() {
+        throw new UnsupportedOperationException("not implimented");
+    }
+
+    @Override
+    public Integer getMax() {
+        throw new UnsupportedOperationException("not implimented");
+    }
+
+    @Override
+    protected Accessor addAccessor(GlTF _gltf, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_gltf, _bufferView);
+        _accessor.setComponentType(GltfConstants.GL_UNSIGNED_BYTE);
+        _accessor.setType("VEC4");
+        _accessor.setNormalized(true);
+        return _accessor;
+    }
+
+    @Override
+    protected void writeBuf(ByteBuffer _buffer) {
+        for(int _idx = 0; _idx < this._count; _idx++) {
+            final int _argb = this._data[this._dataPos + _idx];
+            _buffer.put((byte)(_argb >> 16));
+            _buffer.put((byte)(_argb >> 8));
+            _buffer.put((byte)_argb);
+            _buffer.put((byte)(_argb >>> 24));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.BufferView;
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.model.GltfConstants;
+
+/**
+ * Serializer for float vectors stored in a primitive array. This avoids an object for each 
+ * vector when serializing large meshes. The array is not copied so it should not be modified
+ * until the buffer is built. Vectors passed to add() are appended to a copy of the array.
+ * @author Chad Juliano
+ */
+public class BufferFloatArray extends BufferVecBase<float[]> {
+    
+    private static final String[] VEC_TYPES = { "SCALAR", "VEC2", "VEC3", "VEC4" };
+    
+    private final int _components;
+    private float[] _data = new float[0];
+    private int _count = 0;
+
+    /**
+     * @param _name Name used for the accessor and buffer view.
+     * @param _components Number of floats in each vector between 1 and 4.
+     */
+    public BufferFloatArray(String _name, int _components) {
+        super(_name, Float.BYTES * _components);
+        if(_components < 1 || _components > VEC_TYPES.length) {
+            throw new IllegalArgumentException("Invalid number of components: " + _components);
+        }
+        this._components = _components;
+    }
+    
+    /**
+     * Set the array of vectors to serialize.
+     * @param _data Array with the components of each vector stored sequentially.
+     * @param _count Number of vectors in the array.
+     */
+    public void setData(float[] _data, int _count) {
+        if(_data.length < _count*this._components) {
+            throw new IllegalArgumentException("Array is too small for count: " + _count);
+        }
+        this._data = _data;
+        this._count = _count;
+        setBorrowed();
+    }
+    
+    public float[] getData() { return this._data; }
+    
+    @Override
+    public void add(float[] _primitive) {
+        if(_primitive.length != this._components) {
+            throw new IllegalArgumentException("Expected components: " + this._components);
+        }
+        
+        this._data = getWritable(this._data, 0, this._count*this._components, 
+                (this._count + 1)*this._components);
+        System.arraycopy(_primitive, 0, this._data, this._count*this._components, this._components);
+        this._count++;
+    }
+    
+    @Override
+    public float[] get(int _idx) {
+        int _pos = _idx*this._components;
+        return Arrays.copyOfRange(this._data, _pos, _pos + this._components);
+    }
+    
+    @Override
+    public int size() { return this._count; }
+    
+    @Override
+    public void clear() { this._count = 0; }
+    
+    @Override
+    public float[] getMin() {
+        float[] _min = new float[this._components];
+        Arrays.fill(_min, Float.POSITIVE_INFINITY);
+        
+        for(int _pos = 0; _pos < this._count*this._components; _pos++) {
+            int _comp = _pos % this._components;
+            _min[_comp] = Math.min(_min[_comp], this._data[_pos]);
+        }
+        
+        return _min;
+    }
+    
+    @Override
+    public float[] getMax() {
+        float[] _max = new float[this._components];
+        Arrays.fill(_max, Float.NEGATIVE_INFINITY);
+        
+        for(int _pos = 0; _pos < this._count*this._components; _pos++) {
+            int _comp = _pos % this._components;
+            _max[_comp] = Math.max(_max[_comp], this._data[_pos]);
+        }
+        
+        return _max;
+    }
+    
+    @Override
+    protected Accessor addAccessor(GlTF _gltf, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_gltf, _bufferView);
+        _accessor.setComponentType(GltfConstants.GL_FLOAT);
+        _accessor.setType(VEC_TYPES[this._components - 1]);
+        _accessor.setMin(toNumbers(getMin()));
+        _accessor.setMax(toNumbers(getMax()));
+        return _accessor;
+    }
+    
+    @Override
+    protected void writeBuf(ByteBuffer _buffer) {
+        int _length = this._count*this._components;
+        _buffer.asFloatBuffer().put(this._data, 0, _length);
+        _buffer.position(_buffer.position() + _length*Float.BYTES);
+    }
+    
+    private static Number[] toNumbers(float[] _values) {
+        Number[] _numbers = new Number[_values.length];
+        for(int _idx = 0; _idx < _values.length; _idx++) {
+            _numbers[_idx] = _values[_idx];
+        }
+        return _numbers;
+    }
+}
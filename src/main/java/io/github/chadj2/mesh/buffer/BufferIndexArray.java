@@ -0,0 +1,149 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.BufferView;
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import de.javagl.jgltf.model.GltfConstants;
+import io.github.chadj2.mesh.MeshGltfWriter;
+
+/**
+ * Serializer for primitive indices stored in an int array. Indices are written as unsigned 
+ * shorts if they fit and otherwise as unsigned ints so meshes are not limited to 
+ * {@link TriangleIndices#MAX_INDEX} vertices. Indices passed to add() are appended to a copy of
+ * the array.
+ * @author Chad Juliano
+ */
+public class BufferIndexArray extends BufferBase<Integer> {
+    
+    private int[] _data = new int[0];
+    private int _count = 0;
+    private int _maxIndex = 0;
+    
+    public BufferIndexArray(String _name) {
+        super(_name);
+    }
+    
+    /**
+     * Set the array of indices to serialize. The array is not copied.
+     * @param _data Array of indices.
+     * @param _count Number of indices in the array.
+     */
+    public void setData(int[] _data, int _count) {
+        if(_data.length < _count) {
+            throw new IllegalArgumentException("Array is too small for count: " + _count);
+        }
+        
+        int _maxIndex = 0;
+        for(int _pos = 0; _pos < _count; _pos++) {
+            if(_data[_pos] < 0) {
+                throw new IllegalArgumentException("Negative index at position: " + _pos);
+            }
+            _maxIndex = Math.max(_maxIndex, _data[_pos]);
+        }
+        
+        this._data = _data;
+        this._count = _count;
+        this._maxIndex = _maxIndex;
+        setBorrowed();
+    }
+    
+    public int[] getData() { return this._data; }
+    
+    /**
+     * Returns true if the indices are too large for unsigned shorts.
+     */
+    public boolean isUnsignedInt() { return this._maxIndex >= TriangleIndices.MAX_INDEX; }
+    
+    @Override
+    public void add(Integer _primitive) {
+        if(_primitive < 0) {
+            throw new IllegalArgumentException("Negative index: " + _primitive);
+        }
+        
+        this._data = getWritable(this._data, 0, this._count, this._count + 1);
+        this._data[this._count++] = _primitive;
+        this._maxIndex = Math.max(this._maxIndex, _primitive);
+    }
+    
+    @Override
+    public Integer get(int _idx) { return this._data[_idx]; }
+    
+    @Override
+    public int size() { return this._count; }
+    
+    @Override
+    public void clear() { 
+        this._count = 0;
+        this._maxIndex = 0;
+    }
+    
+    @Override
+    public Integer getMin() {
+        int _min = Integer.MAX_VALUE;
+        for(int _pos = 0; _pos < this._count; _pos++) {
+            _min = Math.min(_min, this._data[_pos]);
+        }
+        return _min;
+    }
+    
+    @Override
+    public Integer getMax() { return this._maxIndex; }
+    
+    /**
+     * Serialize the indices and assign them to the primitive.
+     */
+    public Accessor build(MeshGltfWriter _geoWriter, MeshPrimitive _meshPirimitive) {
+        Accessor _accessor = super.buildBuffer(_geoWriter);
+        if(_accessor == null) {
+            return null;
+        }
+        
+        int _accessorIdx = _geoWriter.getGltf().getAccessors().indexOf(_accessor);
+        _meshPirimitive.setIndices(_accessorIdx);
+        return _accessor;
+    }
+    
+    @Override
+    protected Accessor addAccessor(GlTF _gltf, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_gltf, _bufferView);
+        if(isUnsignedInt()) {
+            _accessor.setComponentType(GltfConstants.GL_UNSIGNED_INT);
+        }
+        else {
+            _accessor.setComponentType(GltfConstants.GL_UNSIGNED_SHORT);
+        }
+        _accessor.setType("SCALAR");
+        _accessor.setMin(new Number[] { getMin() });
+        _accessor.setMax(new Number[] { getMax() });
+        return _accessor;
+    }
+    
+    @Override
+    protected BufferView addBufferView(GlTF _gltf, ByteBuffer _buffer) {
+        BufferView _bufferView = super.addBufferView(_gltf, _buffer);
+        _bufferView.setTarget(GltfConstants.GL_ELEMENT_ARRAY_BUFFER);
+        return _bufferView;
+    }
+    
+    @Override
+    protected void writeBuf(ByteBuffer _buffer) {
+        if(isUnsignedInt()) {
+            _buffer.asIntBuffer().put(this._data, 0, this._count);
+            _buffer.position(_buffer.position() + this._count*Integer.BYTES);
+            return;
+        }
+        
+        for(int _pos = 0; _pos < this._count; _pos++) {
+            _buffer.putShort((short)this._data[_pos]);
+        }
+    }
+}
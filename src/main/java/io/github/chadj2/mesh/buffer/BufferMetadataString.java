@@ -7,6 +7,7 @@
 package io.github.chadj2.mesh.buffer;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import de.javagl.jgltf.impl.v2.BufferView;
 import de.javagl.jgltf.impl.v2.GlTF;
@@ -14,18 +15,24 @@ import io.github.chadj2.mesh.MeshGltfWriter;
 import io.github.chadj2.mesh.extsm.PropertyTableProperty;
 
 /**
- * Buffer to create string properties for EXT_structural_metadata extension.
+ * Buffer to create string properties for EXT_structural_metadata extension. The string offsets
+ * have an extra entry for the end of the last string and are written as UINT32 if the values
+ * are too large for UINT16. Each buffer view starts at a multiple of 
+ * {@value #METADATA_ALIGNMENT} bytes as the extension requires.
  * @author Chad Juliano
  */
 public class BufferMetadataString extends BufferBase<String>  {
-    
-    private final BufferShort _offsets;
+
+    /** Alignment of buffer views required by EXT_structural_metadata. */
+    public static final int METADATA_ALIGNMENT = 8;
+
+    private final OffsetBuffer _offsets;
 
     public BufferMetadataString(String name) {
         super(name);
-        this._offsets = new BufferShort(name);
+        this._offsets = new OffsetBuffer(name);
     }
-    
+
     /**
      * Create a property for a metadata table.
      * @param _writer
@@ -34,15 +41,17 @@ public class BufferMetadataString extends BufferBase<String>  {
     public PropertyTableProperty createProperty(MeshGltfWriter _writer) {
         GlTF gltf = _writer.getGltf();
         PropertyTableProperty ptProp = new PropertyTableProperty();
-        
+
+        alignBuffer(_writer.getBuffer(), METADATA_ALIGNMENT);
         BufferView valuesBv = addBufferView(_writer.getGltf(), _writer.getBuffer());
         int valuesIdx = gltf.getBufferViews().indexOf(valuesBv);
         ptProp.setValues(valuesIdx);
 
+        alignBuffer(_writer.getBuffer(), METADATA_ALIGNMENT);
         BufferView offsetsBv = this._offsets.addBufferView(_writer.getGltf(), _writer.getBuffer());
         int offsetsIdx = gltf.getBufferViews().indexOf(offsetsBv);
         ptProp.setStringOffsets(offsetsIdx);
-        ptProp.setStringOffsetType("UINT16");
+        ptProp.setStringOffsetType(this._offsets.isUint32() ? "UINT32" : "UINT16");
         return ptProp;
     }
 
@@ -59,13 +68,49 @@ public class BufferMetadataString extends BufferBase<String>  {
     @Override
     protected void writeBuf(ByteBuffer buffer) {
         int startPos = buffer.position();
-        
+        this._offsets.clear();
+
         for(String val : this._list) {
-            int offset = buffer.position() - startPos;
-            this._offsets.add((short)offset);
-            
-            byte[] bytes = val.getBytes();
+            this._offsets.add(buffer.position() - startPos);
+
+            byte[] bytes = val.getBytes(StandardCharsets.UTF_8);
             buffer.put(bytes);
         }
+
+        // offset of the end of the last string
+        this._offsets.add(buffer.position() - startPos);
+    }
+
+    /**
+     * Byte offsets of each string.
+     */
+    private static class OffsetBuffer extends BufferBase<Integer> {
+
+        OffsetBuffer(String name) {
+            super(name);
+        }
+
+        boolean isUint32() {
+            return size() > 0 && this._list.get(size() - 1) > 0xFFFF;
+        }
+
+        @Override
+        public Integer getMin() { return this._list.get(0); }
+
+        @Override
+        public Integer getMax() { return this._list.get(size() - 1); }
+
+        @Override
+        protected void writeBuf(ByteBuffer buffer) {
+            final boolean isUint32 = isUint32();
+            for(int offset : this._list) {
+                if(isUint32) {
+                    buffer.putInt(offset);
+                }
+                else {
+                    buffer.putShort((short)offset);
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,198 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.BufferView;
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.model.GltfConstants;
+
+/**
+ * Serializer for vectors quantized to shorts with KHR_mesh_quantization. Each component is 
+ * mapped from [offset, offset + range] to [0, 65535] and the node containing the mesh must 
+ * dequantize with a translation of the offset and a scale of range/65535. In signed mode the
+ * components are normalized shorts in [-32767, 32767] that are read as [-1, 1] so the node must
+ * translate by the center of the range and scale by half the range. Vectors are padded to 8 
+ * bytes so each one is aligned to 4 bytes as the glTF spec requires.
+ * @see #getDequantizeOffset()
+ * @see #getDequantizeScale()
+ * @author Chad Juliano
+ */
+public class BufferQuantizedVec3 extends BufferVecBase<float[]> {
+
+    /** Name of the extension that must be required by a glTF with quantized attributes. */
+    public static final String EXT_NAME = "KHR_mesh_quantization";
+
+    /** Largest quantized value. */
+    public static final int MAX_VALUE = 0xFFFF;
+    
+    /** Largest value of a normalized signed short. */
+    public static final int MAX_SIGNED = Short.MAX_VALUE;
+    
+    private final boolean _isSigned;
+
+    private final float[] _offset = new float[3];
+    private float _range = 1f;
+
+    private float[] _data = new float[0];
+    private int _dataPos = 0;
+    private int _count = 0;
+
+    public BufferQuantizedVec3(String _name) {
+        this(_name, false);
+    }
+    
+    /**
+     * @param _name Name used for the accessor and buffer view.
+     * @param _isSigned Write normalized signed shorts instead of unsigned shorts.
+     */
+    public BufferQuantizedVec3(String _name, boolean _isSigned) {
+        super(_name, Short.BYTES * 4);
+        this._isSigned = _isSigned;
+    }
+
+    /**
+     * Set the vectors to quantize. The array is not copied.
+     * @param _data Array with the (x,y,z) of each vector.
+     * @param _dataPos Index in the array of the first vector.
+     * @param _count Number of vectors.
+     * @param _offset Value mapped to zero for each component.
+     * @param _range Size of the range mapped to [0, 65535] for all components.
+     */
+    public void setData(float[] _data, int _dataPos, int _count, float[] _offset, float _range) {
+        if(_data.length < (_dataPos + _count)*3) {
+            throw new IllegalArgumentException("Array is too small for count: " + _count);
+        }
+        if(_range <= 0f) {
+            throw new IllegalArgumentException("Range must be positive: " + _range);
+        }
+
+        this._data = _data;
+        this._dataPos = _dataPos;
+        this._count = _count;
+        setBorrowed();
+        System.arraycopy(_offset, 0, this._offset, 0, 3);
+        this._range = _range;
+    }
+
+    /**
+     * Scale that converts quantized values back to the original units.
+     */
+    public float getDequantizeScale() { 
+        return this._isSigned ? this._range/2f : this._range/MAX_VALUE;
+    }
+    
+    /**
+     * Translation that converts quantized values back to the original units.
+     */
+    public float[] getDequantizeOffset() {
+        final float _shift = this._isSigned ? this._range/2f : 0f;
+        return new float[] { this._offset[0] + _shift, this._offset[1] + _shift, this._offset[2] + _shift };
+    }
+
+    /**
+     * Append a vector that is quantized with the offset and range of setData().
+     */
+    @Override
+    public void add(float[] _primitive) {
+        if(_primitive.length != 3) {
+            throw new IllegalArgumentException("Expected a vector with 3 components");
+        }
+        
+        final float[] _newData = getWritable(this._data, this._dataPos*3, this._count*3, (this._count + 1)*3);
+        if(_newData != this._data) {
+            this._data = _newData;
+            this._dataPos = 0;
+        }
+        
+        System.arraycopy(_primitive, 0, this._data, (this._dataPos + this._count)*3, 3);
+        this._count++;
+    }
+
+    @Override
+    public float[] get(int _idx) {
+        int _pos = (this._dataPos + _idx)*3;
+        return new float[] { this._data[_pos], this._data[_pos + 1], this._data[_pos + 2] };
+    }
+
+    @Override
+    public int size() { return this._count; }
+
+    @Override
+    public void clear() { this._count = 0; }
+
+    /**
+     * Quantize a component of a vector.
+     */
+    private int quantize(int _idx, int _comp) {
+        float _val = this._data[(this._dataPos + _idx)*3 + _comp];
+        float _norm = (_val - this._offset[_comp])/this._range;
+        
+        if(this._isSigned) {
+            int _qVal = Math.round((_norm*2f - 1f)*MAX_SIGNED);
+            return Math.max(-MAX_SIGNED, Math.min(MAX_SIGNED, _qVal));
+        }
+        
+        int _qVal = Math.round(_norm*MAX_VALUE);
+        return Math.max(0, Math.min(MAX_VALUE, _qVal));
+    }
+
+    @Override
+    public float[] getMin() {
+        float[] _min = { MAX_VALUE, MAX_VALUE, MAX_VALUE };
+        for(int _idx = 0; _idx < this._count; _idx++) {
+            for(int _comp = 0; _comp < 3; _comp++) {
+                _min[_comp] = Math.min(_min[_comp], quantize(_idx, _comp));
+            }
+        }
+        return _min;
+    }
+
+    @Override
+    public float[] getMax() {
+        float[] _max = { -MAX_SIGNED, -MAX_SIGNED, -MAX_SIGNED };
+        for(int _idx = 0; _idx < this._count; _idx++) {
+            for(int _comp = 0; _comp < 3; _comp++) {
+                _max[_comp] = Math.max(_max[_comp], quantize(_idx, _comp));
+            }
+        }
+        return _max;
+    }
+
+    @Override
+    protected Accessor addAccessor(GlTF _gltf, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_gltf, _bufferView);
+        _accessor.setType("VEC3");
+        
+        if(this._isSigned) {
+            _accessor.setComponentType(GltfConstants.GL_SHORT);
+            _accessor.setNormalized(true);
+        }
+        else {
+            _accessor.setComponentType(GltfConstants.GL_UNSIGNED_SHORT);
+        }
+
+        float[] _min = getMin();
+        _accessor.setMin(new Number[] { (int)_min[0], (int)_min[1], (int)_min[2] });
+
+        float[] _max = getMax();
+        _accessor.setMax(new Number[] { (int)_max[0], (int)_max[1], (int)_max[2] });
+        return _accessor;
+    }
+
+    @Override
+    protected void writeBuf(ByteBuffer _buffer) {
+        for(int _idx = 0; _idx < this._count; _idx++) {
+            _buffer.putShort((short)quantize(_idx, 0));
+            _buffer.putShort((short)quantize(_idx, 1));
+            _buffer.putShort((short)quantize(_idx, 2));
+            _buffer.putShort((short)0);
+        }
+    }
+}
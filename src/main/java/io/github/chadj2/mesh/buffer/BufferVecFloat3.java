@@ -63,7 +63,7 @@ public class BufferVecFloat3 extends BufferVecBase<Tuple3f>  {
         Tuple3f min = this.getMin();
         _accessor.setMin(new Number[] { min.x, min.y, min.z });
         
-        Tuple3f max = this.getMin();
+        Tuple3f max = this.getMax();
         _accessor.setMax(new Number[] { max.x, max.y, max.z });
         
         return _accessor;
@@ -0,0 +1,77 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.extinst;
+
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.buffer.BufferFloatArray;
+
+/**
+ * Write feature IDs as a {@value #ATTR_NAME} attribute of a primitive or of the instances
+ * of a node. The IDs are written as floats because they keep the attribute aligned and are
+ * exact up to 2^24.
+ * @author Chad Juliano
+ */
+public class FeatureIdAttribute {
+
+    /** Attribute referenced by a FeatureId with attribute index 0. */
+    public static final String ATTR_NAME = "_FEATURE_ID_0";
+
+    private FeatureIdAttribute() { }
+
+    /**
+     * Write the feature ID of each vertex of a primitive.
+     * @param writer Instance of writer class.
+     * @param meshPrimitive Primitive that gets the attribute.
+     * @param name Name prefix of the buffer.
+     * @param featureIds Feature of each vertex.
+     * @param count Number of vertices.
+     */
+    public static void build(MeshGltfWriter writer, MeshPrimitive meshPrimitive, String name,
+            int[] featureIds, int count) {
+        newBuffer(name, featureIds, count).buildAttrib(writer, meshPrimitive, ATTR_NAME);
+    }
+
+    /**
+     * Write the feature ID of each instance of a node.
+     * @param writer Instance of writer class.
+     * @param meshInstancing Instancing extension that gets the attribute.
+     * @param name Name prefix of the buffer.
+     * @param featureIds Feature of each instance.
+     * @param count Number of instances.
+     */
+    public static void build(MeshGltfWriter writer, GlTFMeshGpuInstancing meshInstancing, String name,
+            int[] featureIds, int count) {
+        newBuffer(name, featureIds, count).buildAttrib(writer, meshInstancing, ATTR_NAME);
+    }
+
+    /**
+     * Create a FeatureId that references the attribute and a property table.
+     * @param label Label of the feature ID.
+     * @param featureCount Number of features in the table.
+     * @param tableIdx Index of the property table.
+     */
+    public static FeatureId newFeatureId(String label, int featureCount, int tableIdx) {
+        FeatureId featureId = new FeatureId();
+        featureId.setLabel(label);
+        featureId.setFeatureCount(featureCount);
+        featureId.setAttribute(0);
+        featureId.setPropertyTable(tableIdx);
+        return featureId;
+    }
+
+    private static BufferFloatArray newBuffer(String name, int[] featureIds, int count) {
+        final float[] ids = new float[count];
+        for(int idx = 0; idx < count; idx++) {
+            ids[idx] = featureIds[idx];
+        }
+
+        BufferFloatArray featureBuf = new BufferFloatArray(name + "-featureId", 1);
+        featureBuf.setData(ids, count);
+        return featureBuf;
+    }
+}
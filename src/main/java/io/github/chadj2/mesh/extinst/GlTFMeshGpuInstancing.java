@@ -23,6 +23,9 @@ public class GlTFMeshGpuInstancing
     extends GlTFProperty
 {
 
+    /** Name of the extension. */
+    public static final String EXT_NAME = "EXT_mesh_gpu_instancing";
+
     /**
      * A dictionary object, where each key corresponds to instance attribute 
      * and each value is the index of the accessor containing attribute's 
@@ -0,0 +1,267 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.extinst;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.buffer.BufferFloatArray;
+import io.github.chadj2.mesh.extsm.FeatureTable;
+
+/**
+ * Draw many copies of any mesh with the EXT_mesh_gpu_instancing extension. The mesh is
+ * usually built once with TopologyBuilder.buildMesh() and each instance has a translation,
+ * rotation, scale and optional feature ID. Instances are kept in primitive arrays so millions
+ * can be added without an object for each one.
+ * <p>
+ * ROTATION and SCALE are only written if an instance is not the identity. If a FeatureTable
+ * is set then the feature IDs are written with FeatureIdAttribute and the node references the table
+ * with EXT_instance_features.
+ * @author Chad Juliano
+ */
+public class InstanceFactory {
+
+    private final static Logger LOG = LoggerFactory.getLogger(InstanceFactory.class);
+
+    private final String name;
+    private final int meshIdx;
+    private FeatureTable featureTable = null;
+
+    private float[] translations = new float[3*64];
+    private float[] rotations = new float[4*64];
+    private float[] scales = new float[3*64];
+    private int[] featureIds = new int[64];
+    private int count = 0;
+
+    private boolean hasRotation = false;
+    private boolean hasScale = false;
+
+    /**
+     * @param name Name of the instancing node.
+     * @param meshIdx Index of the mesh that will be instanced.
+     */
+    public InstanceFactory(String name, int meshIdx) {
+        this.name = name;
+        this.meshIdx = meshIdx;
+    }
+
+    /**
+     * Set a table with a feature for each ID passed to addInstance(). The table is built with
+     * the node if it has not been built yet.
+     */
+    public void setFeatureTable(FeatureTable featureTable) { this.featureTable = featureTable; }
+
+    public FeatureTable getFeatureTable() { return this.featureTable; }
+
+    /** Number of instances that have been added. */
+    public int size() { return this.count; }
+
+    public boolean isEmpty() { return this.count == 0; }
+
+    /**
+     * Remove all instances so the factory can be reused.
+     */
+    public void clear() {
+        this.count = 0;
+        this.hasRotation = false;
+        this.hasScale = false;
+    }
+
+    /**
+     * Add an instance.
+     * @param tx Translation
+     * @param ty Translation
+     * @param tz Translation
+     * @param rotation Quaternion as (x,y,z,w) or null for identity.
+     * @param scale Scale as (x,y,z) or null for 1.
+     * @param featureId ID of the feature in the table.
+     */
+    public void addInstance(float tx, float ty, float tz, float[] rotation, float[] scale, int featureId) {
+        ensureCapacity(this.count + 1);
+        final int idx = this.count++;
+
+        this.translations[idx*3] = tx;
+        this.translations[idx*3 + 1] = ty;
+        this.translations[idx*3 + 2] = tz;
+        setRotation(idx, rotation, 0);
+        setScale(idx, scale, 0);
+        this.featureIds[idx] = featureId;
+    }
+
+    /**
+     * Add instances from arrays. The arrays are not modified.
+     * @param translations (x,y,z) of each instance.
+     * @param rotations Quaternion (x,y,z,w) of each instance or null for identity.
+     * @param scales (x,y,z) of each instance or null for 1.
+     * @param featureIds ID of each instance or null to use the index of the instance.
+     * @param instanceCount Number of instances in the arrays.
+     */
+    public void addInstances(float[] translations, float[] rotations, float[] scales,
+            int[] featureIds, int instanceCount) {
+        if(translations.length < instanceCount*3
+                || (rotations != null && rotations.length < instanceCount*4)
+                || (scales != null && scales.length < instanceCount*3)
+                || (featureIds != null && featureIds.length < instanceCount)) {
+            throw new IllegalArgumentException("Array is too small for count: " + instanceCount);
+        }
+
+        ensureCapacity(this.count + instanceCount);
+        System.arraycopy(translations, 0, this.translations, this.count*3, instanceCount*3);
+
+        for(int idx = 0; idx < instanceCount; idx++) {
+            final int instIdx = this.count + idx;
+            setRotation(instIdx, rotations, idx*4);
+            setScale(instIdx, scales, idx*3);
+            this.featureIds[instIdx] = (featureIds == null) ? instIdx : featureIds[idx];
+        }
+
+        this.count += instanceCount;
+    }
+
+    /**
+     * Calculate the shortest rotation from the +Y axis to a direction. This is useful for
+     * meshes like arrows and cylinders that are built along the Y axis.
+     * @param dx Direction
+     * @param dy Direction
+     * @param dz Direction
+     * @param rotation Array to receive the quaternion as (x,y,z,w).
+     * @param pos Position in the array of the quaternion.
+     */
+    public static void rotationFromY(float dx, float dy, float dz, float[] rotation, int pos) {
+        final float length = (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+        if(length == 0f) {
+            // no direction
+            rotation[pos] = 0f;
+            rotation[pos + 1] = 0f;
+            rotation[pos + 2] = 0f;
+            rotation[pos + 3] = 1f;
+            return;
+        }
+
+        // quaternion for Y x d with w = 1 + Y.d
+        float qx = dz/length;
+        float qz = -dx/length;
+        float qw = 1f + dy/length;
+
+        if(qw < 1e-6f) {
+            // direction is -Y so rotate 180 degrees around X
+            qx = 1f;
+            qz = 0f;
+            qw = 0f;
+        }
+
+        final float norm = (float)Math.sqrt(qx*qx + qz*qz + qw*qw);
+        rotation[pos] = qx/norm;
+        rotation[pos + 1] = 0f;
+        rotation[pos + 2] = qz/norm;
+        rotation[pos + 3] = qw/norm;
+    }
+
+    /**
+     * Write the instances and add a node for them to the scene.
+     * @param writer Instance of writer class.
+     * @return Node with the instancing extension.
+     */
+    public Node build(MeshGltfWriter writer) {
+        if(this.count == 0) {
+            throw new IllegalStateException("No instances to build: " + this.name);
+        }
+
+        writer.addExtension(GlTFMeshGpuInstancing.EXT_NAME, true);
+
+        Node node = new Node();
+        node.setName(this.name + "-node");
+        node.setMesh(this.meshIdx);
+
+        GlTFMeshGpuInstancing meshInstancing = new GlTFMeshGpuInstancing();
+        node.addExtensions(GlTFMeshGpuInstancing.EXT_NAME, meshInstancing);
+
+        BufferFloatArray transBuf = new BufferFloatArray(this.name + "-translation", 3);
+        transBuf.setData(this.translations, this.count);
+        transBuf.buildAttrib(writer, meshInstancing, "TRANSLATION");
+
+        if(this.hasRotation) {
+            BufferFloatArray rotBuf = new BufferFloatArray(this.name + "-rotation", 4);
+            rotBuf.setData(this.rotations, this.count);
+            rotBuf.buildAttrib(writer, meshInstancing, "ROTATION");
+        }
+
+        if(this.hasScale) {
+            BufferFloatArray scaleBuf = new BufferFloatArray(this.name + "-scale", 3);
+            scaleBuf.setData(this.scales, this.count);
+            scaleBuf.buildAttrib(writer, meshInstancing, "SCALE");
+        }
+
+        if(this.featureTable != null) {
+            buildFeatures(writer, node, meshInstancing);
+        }
+
+        writer.addNode(node);
+        LOG.debug("Instancing node[{}]: instances=<{}> rotation=<{}> scale=<{}>", this.name,
+                this.count, this.hasRotation, this.hasScale);
+        return node;
+    }
+
+    private void buildFeatures(MeshGltfWriter writer, Node node, GlTFMeshGpuInstancing meshInstancing) {
+        if(this.featureTable.getTableIdx() < 0) {
+            this.featureTable.build(writer);
+        }
+        writer.addExtension(NodeInstanceFeatures.EXT_NAME, false);
+
+        FeatureIdAttribute.build(writer, meshInstancing, this.name, this.featureIds, this.count);
+
+        NodeInstanceFeatures instFeatures = new NodeInstanceFeatures();
+        node.addExtensions(NodeInstanceFeatures.EXT_NAME, instFeatures);
+        instFeatures.addFeatureIds(FeatureIdAttribute.newFeatureId(this.name, this.featureTable.size(),
+                this.featureTable.getTableIdx()));
+    }
+
+    private void setRotation(int idx, float[] rotation, int pos) {
+        final int dst = idx*4;
+        if(rotation == null) {
+            this.rotations[dst] = 0f;
+            this.rotations[dst + 1] = 0f;
+            this.rotations[dst + 2] = 0f;
+            this.rotations[dst + 3] = 1f;
+            return;
+        }
+
+        System.arraycopy(rotation, pos, this.rotations, dst, 4);
+        if(rotation[pos] != 0f || rotation[pos + 1] != 0f || rotation[pos + 2] != 0f || rotation[pos + 3] != 1f) {
+            this.hasRotation = true;
+        }
+    }
+
+    private void setScale(int idx, float[] scale, int pos) {
+        final int dst = idx*3;
+        if(scale == null) {
+            Arrays.fill(this.scales, dst, dst + 3, 1f);
+            return;
+        }
+
+        System.arraycopy(scale, pos, this.scales, dst, 3);
+        if(scale[pos] != 1f || scale[pos + 1] != 1f || scale[pos + 2] != 1f) {
+            this.hasScale = true;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(capacity <= this.featureIds.length) {
+            return;
+        }
+
+        final int newSize = Math.max(capacity, this.featureIds.length*2);
+        this.translations = Arrays.copyOf(this.translations, newSize*3);
+        this.rotations = Arrays.copyOf(this.rotations, newSize*4);
+        this.scales = Arrays.copyOf(this.scales, newSize*3);
+        this.featureIds = Arrays.copyOf(this.featureIds, newSize);
+    }
+}
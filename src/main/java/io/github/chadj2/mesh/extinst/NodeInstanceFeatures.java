@@ -23,6 +23,9 @@ public class NodeInstanceFeatures
     extends GlTFProperty
 {
 
+    /** Name of the extension. */
+    public static final String EXT_NAME = "EXT_instance_features";
+
     /**
      * An array of feature ID sets. (required)<br> 
      * Minimum number of items: 1<br> 
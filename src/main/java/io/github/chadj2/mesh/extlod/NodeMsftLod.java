@@ -0,0 +1,67 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.extlod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.javagl.jgltf.impl.v2.GlTFProperty;
+
+/**
+ * glTF MSFT_lod JSON model. The extension is added to the node with the highest level of
+ * detail and references the nodes of lower levels of detail in decreasing order of quality.
+ * Screen coverage hints are stored in the node extras.
+ * @see <a href="https://github.com/KhronosGroup/glTF/tree/main/extensions/2.0/Vendor/MSFT_lod">
+ * MSFT_lod</a>
+ * @author Chad Juliano
+ */
+public class NodeMsftLod extends GlTFProperty {
+
+    /** Name of the extension. */
+    public static final String EXT_NAME = "MSFT_lod";
+
+    /** Key in the node extras containing screen coverage for each LOD. */
+    public static final String EXTRAS_SCREEN_COVERAGE = "MSFT_screencoverage";
+
+    /**
+     * Indices of nodes with lower levels of detail. (required)
+     */
+    private List<Integer> ids;
+
+    /**
+     * @param ids The ids to set
+     */
+    public void setIds(List<Integer> ids) {
+        if (ids == null) {
+            throw new NullPointerException("Invalid value for ids: null, may not be null");
+        }
+        this.ids = ids;
+    }
+
+    /**
+     * @return The ids
+     */
+    public List<Integer> getIds() {
+        return this.ids;
+    }
+
+    /**
+     * Add the given node index to the end of the ids.
+     * @param element The element
+     */
+    public void addIds(Integer element) {
+        if (element == null) {
+            throw new NullPointerException("The element may not be null");
+        }
+        List<Integer> newList = new ArrayList<Integer>();
+        if (this.ids != null) {
+            newList.addAll(this.ids);
+        }
+        newList.add(element);
+        this.ids = newList;
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * JSON model for the MSFT_lod extension
+ *
+ * @author Chad Juliano
+ */
+package io.github.chadj2.mesh.extlod;
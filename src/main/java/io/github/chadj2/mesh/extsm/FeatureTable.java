@@ -0,0 +1,143 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.extsm;
+
+import java.util.Map;
+
+import de.javagl.jgltf.impl.v2.GlTF;
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.buffer.BufferMetadataString;
+
+/**
+ * Property table for the EXT_structural_metadata extension with a string ID for each feature.
+ * The index of a feature in the table is the feature ID that is stored in _FEATURE_ID_n
+ * attributes. Several tables can be written to the same glTF and each adds its class to the
+ * shared schema.
+ * @author Chad Juliano
+ */
+public class FeatureTable {
+
+    /** Name of the extension. */
+    public static final String EXT_NAME = "EXT_structural_metadata";
+
+    /** Default ID of the schema. */
+    public static final String DEFAULT_SCHEMA_ID = "mesh_features";
+
+    private final String _classId;
+    private final String _className;
+    private final String _propertyId;
+    private final String _propertyName;
+
+    private final BufferMetadataString _values;
+
+    private String _schemaId = DEFAULT_SCHEMA_ID;
+    private String _schemaName = null;
+
+    private int _tableIdx = -1;
+
+    /**
+     * @param classId Key of the class in the schema.
+     * @param className Display name of the class and table.
+     * @param propertyId Key of the string property.
+     * @param propertyName Display name of the string property.
+     */
+    public FeatureTable(String classId, String className, String propertyId, String propertyName) {
+        this._classId = classId;
+        this._className = className;
+        this._propertyId = propertyId;
+        this._propertyName = propertyName;
+        this._values = new BufferMetadataString(propertyId);
+    }
+
+    /**
+     * Set the ID and name of the schema. These are only used if this is the first table that
+     * is written to the glTF.
+     * @param schemaId ID of the schema or null to omit it.
+     * @param schemaName Display name of the schema or null to omit it.
+     */
+    public void setSchema(String schemaId, String schemaName) {
+        this._schemaId = schemaId;
+        this._schemaName = schemaName;
+    }
+
+    /**
+     * Add a feature to the table.
+     * @param value String property of the feature.
+     * @return ID of the feature.
+     */
+    public int addFeature(String value) {
+        this._values.add(value);
+        return this._values.size() - 1;
+    }
+
+    /**
+     * Number of features in the table.
+     */
+    public int size() { return this._values.size(); }
+
+    /**
+     * Index of the table in the propertyTables. This is only valid after build().
+     */
+    public int getTableIdx() { return this._tableIdx; }
+
+    /**
+     * Write the class, table and string data.
+     * @return Index of the table in the propertyTables.
+     */
+    public int build(MeshGltfWriter writer) {
+        writer.addExtension(EXT_NAME, false);
+        GlTFStructuralMetadata structMeta = getStructuralMetadata(writer.getGltf());
+
+        Schema schema = structMeta.getSchema();
+        if(schema == null) {
+            schema = new Schema();
+            if(this._schemaId != null) {
+                schema.setId(this._schemaId);
+            }
+            schema.setName(this._schemaName);
+            structMeta.setSchema(schema);
+        }
+
+        if(schema.getClasses() == null || !schema.getClasses().containsKey(this._classId)) {
+            MetadataClass mClass = new MetadataClass();
+            schema.addClasses(this._classId, mClass);
+            mClass.setName(this._className);
+
+            ClassProperty property = new ClassProperty();
+            mClass.addProperties(this._propertyId, property);
+            property.setName(this._propertyName);
+            property.setType("STRING");
+            property.setRequired(true);
+        }
+
+        PropertyTable table = new PropertyTable();
+        structMeta.addPropertyTables(table);
+        table.setClassProperty(this._classId);
+        table.setName(this._className);
+        table.setCount(size());
+
+        PropertyTableProperty ptProp = this._values.createProperty(writer);
+        table.addProperties(this._propertyId, ptProp);
+
+        this._tableIdx = structMeta.getPropertyTables().size() - 1;
+        return this._tableIdx;
+    }
+
+    /**
+     * Get the extension object of the glTF or add it if this is the first table.
+     */
+    private static GlTFStructuralMetadata getStructuralMetadata(GlTF gltf) {
+        Map<String, Object> extensions = gltf.getExtensions();
+        if(extensions != null && extensions.get(EXT_NAME) instanceof GlTFStructuralMetadata) {
+            return (GlTFStructuralMetadata)extensions.get(EXT_NAME);
+        }
+
+        GlTFStructuralMetadata structMeta = new GlTFStructuralMetadata();
+        gltf.addExtensions(EXT_NAME, structMeta);
+        return structMeta;
+    }
+}
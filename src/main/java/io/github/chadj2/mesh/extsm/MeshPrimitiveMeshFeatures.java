@@ -0,0 +1,63 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.extsm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.javagl.jgltf.impl.v2.GlTFProperty;
+import io.github.chadj2.mesh.extinst.FeatureId;
+
+/**
+ * glTF EXT_mesh_features JSON model. The extension is added to a mesh primitive and
+ * identifies the feature of each vertex with an attribute like _FEATURE_ID_0. Feature IDs can
+ * reference a property table from EXT_structural_metadata.
+ * @author Chad Juliano
+ */
+public class MeshPrimitiveMeshFeatures extends GlTFProperty {
+
+    /** Name of the extension. */
+    public static final String EXT_NAME = "EXT_mesh_features";
+
+    /**
+     * An array of feature ID sets. (required)
+     */
+    private List<FeatureId> featureIds;
+
+    /**
+     * @param featureIds The featureIds to set
+     */
+    public void setFeatureIds(List<FeatureId> featureIds) {
+        if (featureIds == null) {
+            throw new NullPointerException("Invalid value for featureIds: null, may not be null");
+        }
+        this.featureIds = featureIds;
+    }
+
+    /**
+     * @return The featureIds
+     */
+    public List<FeatureId> getFeatureIds() {
+        return this.featureIds;
+    }
+
+    /**
+     * Add the given feature ID set to the end of the featureIds.
+     * @param element The element
+     */
+    public void addFeatureIds(FeatureId element) {
+        if (element == null) {
+            throw new NullPointerException("The element may not be null");
+        }
+        List<FeatureId> newList = new ArrayList<FeatureId>();
+        if (this.featureIds != null) {
+            newList.addAll(this.featureIds);
+        }
+        newList.add(element);
+        this.featureIds = newList;
+    }
+}
@@ -0,0 +1,163 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.optimize;
+
+import java.util.Arrays;
+
+/**
+ * Group points into spatial clusters with a maximum size. Each range of points is split at the
+ * median of the longest axis of its bounds until it is small enough, which is the same as
+ * building the leaves of a k-d tree. Clusters have tight bounds that do not overlap so a
+ * viewer can cull each one.
+ * <p>
+ * Ranges are processed with an explicit stack and the median is found by selection so the
+ * clusters are found in O(n log n) time without sorting.
+ * @author Chad Juliano
+ */
+public class KdClusters {
+
+    private final float[] _positions;
+
+    /** Index of each point ordered by cluster. */
+    private final int[] _order;
+
+    /** Start of each cluster in the order followed by the end of the last. */
+    private int[] _offsets = new int[16];
+    private int _clusterCount = 0;
+
+    /**
+     * @param positions (x,y,z) of each point. The array is not modified.
+     * @param count Number of points.
+     * @param maxSize Maximum number of points in a cluster.
+     */
+    public KdClusters(float[] positions, int count, int maxSize) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Invalid cluster size: " + maxSize);
+        }
+
+        this._positions = positions;
+        this._order = new int[count];
+        for(int idx = 0; idx < count; idx++) {
+            this._order[idx] = idx;
+        }
+
+        split(count, maxSize);
+    }
+
+    /** Number of clusters. */
+    public int getClusterCount() { return this._clusterCount; }
+
+    /** Index of each point ordered by cluster. */
+    public int[] getOrder() { return this._order; }
+
+    /** Position in the order of the first point in a cluster. */
+    public int getStart(int cluster) { return this._offsets[cluster]; }
+
+    /** Position in the order after the last point in a cluster. */
+    public int getEnd(int cluster) { return this._offsets[cluster + 1]; }
+
+    private void split(int count, int maxSize) {
+        // pairs of (start, end)
+        int[] stack = new int[64];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = count;
+        this._offsets[0] = 0;
+
+        while(stackSize > 0) {
+            final int end = stack[--stackSize];
+            final int start = stack[--stackSize];
+
+            if(end - start <= maxSize) {
+                addCluster(end);
+                continue;
+            }
+
+            final int axis = getLongestAxis(start, end);
+            final int mid = (start + end) >>> 1;
+            select(start, end - 1, mid, axis);
+
+            if(stackSize + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length*2);
+            }
+
+            // push the upper half first so the lower half is processed first
+            stack[stackSize++] = mid;
+            stack[stackSize++] = end;
+            stack[stackSize++] = start;
+            stack[stackSize++] = mid;
+        }
+    }
+
+    private void addCluster(int end) {
+        if(this._clusterCount + 2 > this._offsets.length) {
+            this._offsets = Arrays.copyOf(this._offsets, this._offsets.length*2);
+        }
+        this._offsets[++this._clusterCount] = end;
+    }
+
+    private int getLongestAxis(int start, int end) {
+        final float[] min = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY };
+        final float[] max = { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY };
+
+        for(int pos = start; pos < end; pos++) {
+            final int idx = this._order[pos]*3;
+            for(int axis = 0; axis < 3; axis++) {
+                min[axis] = Math.min(min[axis], this._positions[idx + axis]);
+                max[axis] = Math.max(max[axis], this._positions[idx + axis]);
+            }
+        }
+
+        int longest = 0;
+        for(int axis = 1; axis < 3; axis++) {
+            if(max[axis] - min[axis] > max[longest] - min[longest]) {
+                longest = axis;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Reorder points between left and right so the point at nth is where it would be if
+     * sorted on the axis with smaller values before it and larger after.
+     */
+    private void select(int left, int right, int nth, int axis) {
+        while(right > left) {
+            final float pivot = getCoord((left + right) >>> 1, axis);
+            int lo = left;
+            int hi = right;
+
+            while(lo <= hi) {
+                while(getCoord(lo, axis) < pivot) {
+                    lo++;
+                }
+                while(getCoord(hi, axis) > pivot) {
+                    hi--;
+                }
+                if(lo <= hi) {
+                    final int temp = this._order[lo];
+                    this._order[lo++] = this._order[hi];
+                    this._order[hi--] = temp;
+                }
+            }
+
+            if(nth <= hi) {
+                right = hi;
+            }
+            else if(nth >= lo) {
+                left = lo;
+            }
+            else {
+                return;
+            }
+        }
+    }
+
+    private float getCoord(int pos, int axis) {
+        return this._positions[this._order[pos]*3 + axis];
+    }
+}
@@ -0,0 +1,524 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.optimize;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reduce the number of triangles in a mesh using quadric error metrics. Edges are collapsed
+ * into one of their existing vertices so the simplified indices reference a subset of the original
+ * vertices. This means the vertex attributes of the original mesh can be shared with every
+ * simplified version.
+ * <p>
+ * The simplifier keeps its state between calls to {@link #simplify(int, float)} so a chain of
+ * decreasing levels of detail can be generated without starting over each time.
+ * <p>
+ * Vertices that share a position with another vertex (e.g. texture seams or the edge of a cap) are
+ * never moved so that seams do not crack. Border vertices can only slide along the border.
+ * @see <a href="https://www.cs.cmu.edu/~garland/Papers/quadrics.pdf">
+ * Surface Simplification Using Quadric Error Metrics</a>
+ * @author Chad Juliano
+ */
+public class MeshSimplifier {
+
+    private final static Logger LOG = LoggerFactory.getLogger(MeshSimplifier.class);
+
+    /** Weight of the planes added along borders that keep the outline from shrinking. */
+    private static final double BORDER_WEIGHT = 10d;
+
+    /** Collapses that rotate a neighboring triangle by more than about 75 degrees are rejected. */
+    private static final double MIN_NORMAL_COS = 0.25d;
+
+    /** Number of values for each quadric. There are 10 coefficients and a total weight. */
+    private static final int QUADRIC_SIZE = 11;
+
+    private static final byte KIND_MANIFOLD = 0;
+    private static final byte KIND_BORDER = 1;
+    private static final byte KIND_LOCKED = 2;
+
+    private final float[] _positions;
+    private final int _vertexCount;
+
+    /** Vertices that share a position with another vertex. */
+    private final boolean[] _isSeam;
+
+    /** Accumulated error quadrics for each vertex. */
+    private final double[] _quadrics;
+
+    /** Current triangles. Only the first _indexCount entries are valid. */
+    private final int[] _indices;
+    private int _indexCount;
+
+    private boolean _lockBorders = false;
+    private double _maxCollapseError = 0d;
+
+    /**
+     * @param positions Vertex positions with 3 values for each vertex.
+     * @param indices Triangle list with 3 indices for each triangle.
+     */
+    public MeshSimplifier(float[] positions, int[] indices) {
+        this._positions = positions;
+        this._vertexCount = positions.length / 3;
+        this._indices = indices.clone();
+        this._indexCount = indices.length;
+        this._isSeam = findSeams();
+        this._quadrics = new double[this._vertexCount * QUADRIC_SIZE];
+
+        addTriangleQuadrics();
+    }
+
+    /**
+     * If enabled then vertices on the border of the mesh will not be moved. This is necessary
+     * if the mesh must line up with neighboring meshes.
+     */
+    public void setLockBorders(boolean isEnabled) { this._lockBorders = isEnabled; }
+
+    /**
+     * Get the current number of triangles.
+     */
+    public int getTriangleCount() { return this._indexCount / 3; }
+
+    /**
+     * Get the largest error of any collapse so far. This is an approximate distance
+     * from the original surface in the units of the positions.
+     */
+    public float getError() { return (float)Math.sqrt(this._maxCollapseError); }
+
+    /**
+     * Collapse edges until the triangle count is at or below the target or until no collapse
+     * would have an error less than maxError.
+     * @param targetTriangles Stop when the mesh has this many triangles.
+     * @param maxError Maximum error in the units of the positions.
+     * @return Copy of the current triangle indices.
+     */
+    public int[] simplify(int targetTriangles, float maxError) {
+        final double maxErrorSq = (double)maxError * maxError;
+        final int startCount = getTriangleCount();
+        int passCount = 0;
+
+        while(getTriangleCount() > targetTriangles) {
+            int collapses = collapsePass(targetTriangles, maxErrorSq);
+            passCount++;
+            if(collapses == 0) {
+                break;
+            }
+        }
+
+        LOG.debug("Simplified mesh: triangles=<{} -> {}> passes=<{}> error=<{}>",
+                startCount, getTriangleCount(), passCount, getError());
+
+        return Arrays.copyOf(this._indices, this._indexCount);
+    }
+
+    /**
+     * Do one pass of collapses where each vertex and its neighbors can be changed once.
+     * @return number of collapses done.
+     */
+    private int collapsePass(int targetTriangles, double maxErrorSq) {
+        final int[] indices = this._indices;
+        final int indexCount = this._indexCount;
+
+        final byte[] kinds = new byte[this._vertexCount];
+        final long[] borderEdges = classifyVertices(kinds);
+
+        // list of triangles adjacent to each vertex
+        final int[] adjOffsets = new int[this._vertexCount + 1];
+        for(int pos = 0; pos < indexCount; pos++) {
+            adjOffsets[indices[pos] + 1]++;
+        }
+
+        for(int vIdx = 0; vIdx < this._vertexCount; vIdx++) {
+            adjOffsets[vIdx + 1] += adjOffsets[vIdx];
+        }
+
+        final int[] adjFill = Arrays.copyOf(adjOffsets, this._vertexCount);
+        final int[] adjacency = new int[indexCount];
+        for(int pos = 0; pos < indexCount; pos++) {
+            adjacency[adjFill[indices[pos]]++] = pos / 3;
+        }
+
+        // find the cheapest collapse for each vertex
+        final double[] bestCost = new double[this._vertexCount];
+        final int[] bestTarget = new int[this._vertexCount];
+        Arrays.fill(bestCost, Double.MAX_VALUE);
+        Arrays.fill(bestTarget, -1);
+
+        for(int pos = 0; pos < indexCount; pos++) {
+            int triPos = pos - (pos % 3);
+            int vIdx0 = indices[pos];
+            int vIdx1 = indices[triPos + (pos + 1) % 3];
+            pickCollapse(vIdx0, vIdx1, kinds, borderEdges, bestCost, bestTarget);
+            pickCollapse(vIdx1, vIdx0, kinds, borderEdges, bestCost, bestTarget);
+        }
+
+        int candidateCount = 0;
+        final long[] candidates = new long[this._vertexCount];
+        for(int vIdx = 0; vIdx < this._vertexCount; vIdx++) {
+            if(bestTarget[vIdx] >= 0) {
+                // Costs are not negative so the float bits sort in the same order.
+                long costBits = Float.floatToIntBits((float)bestCost[vIdx]);
+                candidates[candidateCount++] = (costBits << 32) | vIdx;
+            }
+        }
+        Arrays.sort(candidates, 0, candidateCount);
+
+        // collapse in order of increasing cost
+        final int[] remap = new int[this._vertexCount];
+        for(int vIdx = 0; vIdx < this._vertexCount; vIdx++) {
+            remap[vIdx] = vIdx;
+        }
+
+        final boolean[] touched = new boolean[this._vertexCount];
+        int triCount = getTriangleCount();
+        int collapses = 0;
+
+        for(int cIdx = 0; cIdx < candidateCount && triCount > targetTriangles; cIdx++) {
+            int srcIdx = (int)candidates[cIdx];
+            int destIdx = bestTarget[srcIdx];
+            double cost = bestCost[srcIdx];
+
+            if(cost > maxErrorSq) {
+                break;
+            }
+
+            if(touched[srcIdx] || touched[destIdx]) {
+                continue;
+            }
+
+            if(hasFlips(srcIdx, destIdx, adjacency, adjOffsets[srcIdx], adjOffsets[srcIdx + 1])) {
+                continue;
+            }
+
+            // move the source vertex onto the destination
+            remap[srcIdx] = destIdx;
+            addQuadric(srcIdx, destIdx);
+            this._maxCollapseError = Math.max(this._maxCollapseError, cost);
+            collapses++;
+
+            for(int adjPos = adjOffsets[srcIdx]; adjPos < adjOffsets[srcIdx + 1]; adjPos++) {
+                int triPos = adjacency[adjPos]*3;
+                boolean hasDest = false;
+
+                for(int corner = 0; corner < 3; corner++) {
+                    int vIdx = indices[triPos + corner];
+                    touched[vIdx] = true;
+                    hasDest |= (vIdx == destIdx);
+                }
+
+                if(hasDest) {
+                    // this triangle will become degenerate
+                    triCount--;
+                }
+            }
+        }
+
+        // rewrite the indices and remove degenerate triangles
+        int outPos = 0;
+        for(int triPos = 0; triPos < indexCount; triPos += 3) {
+            int vIdx0 = remap[indices[triPos]];
+            int vIdx1 = remap[indices[triPos + 1]];
+            int vIdx2 = remap[indices[triPos + 2]];
+
+            if(vIdx0 == vIdx1 || vIdx1 == vIdx2 || vIdx0 == vIdx2) {
+                continue;
+            }
+
+            indices[outPos++] = vIdx0;
+            indices[outPos++] = vIdx1;
+            indices[outPos++] = vIdx2;
+        }
+        this._indexCount = outPos;
+
+        return collapses;
+    }
+
+    private void pickCollapse(int srcIdx, int destIdx, byte[] kinds, long[] borderEdges,
+            double[] bestCost, int[] bestTarget) {
+        if(kinds[srcIdx] == KIND_LOCKED) {
+            return;
+        }
+
+        if(kinds[srcIdx] == KIND_BORDER && Arrays.binarySearch(borderEdges, edgeKey(srcIdx, destIdx)) < 0) {
+            // border vertices can only move along the border.
+            return;
+        }
+
+        double cost = evalQuadric(srcIdx, destIdx);
+        if(cost < bestCost[srcIdx]) {
+            bestCost[srcIdx] = cost;
+            bestTarget[srcIdx] = destIdx;
+        }
+    }
+
+    /**
+     * Check if moving the source vertex would flip or nearly flip any of its triangles.
+     */
+    private boolean hasFlips(int srcIdx, int destIdx, int[] adjacency, int adjStart, int adjEnd) {
+        final float[] pos = this._positions;
+
+        for(int adjPos = adjStart; adjPos < adjEnd; adjPos++) {
+            int triPos = adjacency[adjPos]*3;
+
+            // rotate the triangle so the source vertex is first
+            int corner = 0;
+            while(this._indices[triPos + corner] != srcIdx) {
+                corner++;
+            }
+
+            int idx1 = this._indices[triPos + (corner + 1) % 3];
+            int idx2 = this._indices[triPos + (corner + 2) % 3];
+            if(idx1 == destIdx || idx2 == destIdx) {
+                // this triangle will be removed
+                continue;
+            }
+
+            int p0 = srcIdx*3;
+            int pd = destIdx*3;
+            int p1 = idx1*3;
+            int p2 = idx2*3;
+
+            // normal before the collapse
+            double ax = pos[p1] - pos[p0], ay = pos[p1 + 1] - pos[p0 + 1], az = pos[p1 + 2] - pos[p0 + 2];
+            double bx = pos[p2] - pos[p0], by = pos[p2 + 1] - pos[p0 + 1], bz = pos[p2 + 2] - pos[p0 + 2];
+            double n0x = ay*bz - az*by, n0y = az*bx - ax*bz, n0z = ax*by - ay*bx;
+
+            // normal after the collapse
+            ax = pos[p1] - pos[pd]; ay = pos[p1 + 1] - pos[pd + 1]; az = pos[p1 + 2] - pos[pd + 2];
+            bx = pos[p2] - pos[pd]; by = pos[p2 + 1] - pos[pd + 1]; bz = pos[p2 + 2] - pos[pd + 2];
+            double n1x = ay*bz - az*by, n1y = az*bx - ax*bz, n1z = ax*by - ay*bx;
+
+            double len0 = Math.sqrt(n0x*n0x + n0y*n0y + n0z*n0z);
+            double len1 = Math.sqrt(n1x*n1x + n1y*n1y + n1z*n1z);
+            if(len1 == 0d) {
+                // the triangle would become degenerate
+                return true;
+            }
+
+            double dot = n0x*n1x + n0y*n1y + n0z*n1z;
+            if(dot < MIN_NORMAL_COS*len0*len1) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Determine the kind of each vertex from the current triangles.
+     * @return Sorted keys of edges that are used by only one triangle.
+     */
+    private long[] classifyVertices(byte[] kinds) {
+        final int indexCount = this._indexCount;
+        final long[] edges = new long[indexCount];
+        for(int pos = 0; pos < indexCount; pos++) {
+            int triPos = pos - (pos % 3);
+            edges[pos] = edgeKey(this._indices[pos], this._indices[triPos + (pos + 1) % 3]);
+        }
+        Arrays.sort(edges);
+
+        int borderCount = 0;
+        for(int start = 0; start < indexCount; ) {
+            int end = start + 1;
+            while(end < indexCount && edges[end] == edges[start]) {
+                end++;
+            }
+
+            int edgeUses = end - start;
+            int vIdx0 = (int)(edges[start] >>> 32);
+            int vIdx1 = (int)edges[start];
+
+            if(edgeUses == 1) {
+                edges[borderCount++] = edges[start];
+                kinds[vIdx0] = (byte)Math.max(kinds[vIdx0], KIND_BORDER);
+                kinds[vIdx1] = (byte)Math.max(kinds[vIdx1], KIND_BORDER);
+            }
+            else if(edgeUses > 2) {
+                // non-manifold edges are left alone
+                kinds[vIdx0] = KIND_LOCKED;
+                kinds[vIdx1] = KIND_LOCKED;
+            }
+
+            start = end;
+        }
+
+        for(int vIdx = 0; vIdx < this._vertexCount; vIdx++) {
+            if(this._isSeam[vIdx] || (this._lockBorders && kinds[vIdx] == KIND_BORDER)) {
+                kinds[vIdx] = KIND_LOCKED;
+            }
+        }
+
+        return Arrays.copyOf(edges, borderCount);
+    }
+
+    /**
+     * Find referenced vertices that have the same position as another referenced vertex.
+     */
+    private boolean[] findSeams() {
+        final boolean[] isSeam = new boolean[this._vertexCount];
+        final boolean[] isUsed = new boolean[this._vertexCount];
+        int usedCount = 0;
+        for(int pos = 0; pos < this._indexCount; pos++) {
+            if(!isUsed[this._indices[pos]]) {
+                isUsed[this._indices[pos]] = true;
+                usedCount++;
+            }
+        }
+
+        Integer[] order = new Integer[usedCount];
+        int orderPos = 0;
+        for(int vIdx = 0; vIdx < this._vertexCount; vIdx++) {
+            if(isUsed[vIdx]) {
+                order[orderPos++] = vIdx;
+            }
+        }
+
+        final float[] pos = this._positions;
+        Comparator<Integer> byPosition = (idx0, idx1) -> {
+            int result = Float.compare(pos[idx0*3], pos[idx1*3]);
+            if(result == 0) {
+                result = Float.compare(pos[idx0*3 + 1], pos[idx1*3 + 1]);
+            }
+            if(result == 0) {
+                result = Float.compare(pos[idx0*3 + 2], pos[idx1*3 + 2]);
+            }
+            return result;
+        };
+        Arrays.sort(order, byPosition);
+
+        for(int idx = 1; idx < usedCount; idx++) {
+            if(byPosition.compare(order[idx - 1], order[idx]) == 0) {
+                isSeam[order[idx - 1]] = true;
+                isSeam[order[idx]] = true;
+            }
+        }
+
+        return isSeam;
+    }
+
+    /**
+     * Add area weighted plane quadrics for each triangle and border planes for each border edge.
+     */
+    private void addTriangleQuadrics() {
+        final float[] pos = this._positions;
+        final byte[] kinds = new byte[this._vertexCount];
+        final long[] borderEdges = classifyVertices(kinds);
+
+        for(int triPos = 0; triPos < this._indexCount; triPos += 3) {
+            int p0 = this._indices[triPos]*3;
+            int p1 = this._indices[triPos + 1]*3;
+            int p2 = this._indices[triPos + 2]*3;
+
+            double ax = pos[p1] - pos[p0], ay = pos[p1 + 1] - pos[p0 + 1], az = pos[p1 + 2] - pos[p0 + 2];
+            double bx = pos[p2] - pos[p0], by = pos[p2 + 1] - pos[p0 + 1], bz = pos[p2 + 2] - pos[p0 + 2];
+            double nx = ay*bz - az*by, ny = az*bx - ax*bz, nz = ax*by - ay*bx;
+            double len = Math.sqrt(nx*nx + ny*ny + nz*nz);
+            if(len == 0d) {
+                continue;
+            }
+
+            nx /= len; ny /= len; nz /= len;
+            double dist = -(nx*pos[p0] + ny*pos[p0 + 1] + nz*pos[p0 + 2]);
+            double area = len/2d;
+
+            for(int corner = 0; corner < 3; corner++) {
+                addPlane(this._indices[triPos + corner], nx, ny, nz, dist, area);
+            }
+
+            for(int corner = 0; corner < 3; corner++) {
+                int vIdx0 = this._indices[triPos + corner];
+                int vIdx1 = this._indices[triPos + (corner + 1) % 3];
+                if(Arrays.binarySearch(borderEdges, edgeKey(vIdx0, vIdx1)) < 0) {
+                    continue;
+                }
+
+                // plane perpendicular to the triangle that contains the border edge.
+                int e0 = vIdx0*3;
+                int e1 = vIdx1*3;
+                double ex = pos[e1] - pos[e0], ey = pos[e1 + 1] - pos[e0 + 1], ez = pos[e1 + 2] - pos[e0 + 2];
+                double edgeLenSq = ex*ex + ey*ey + ez*ez;
+
+                double bnx = ey*nz - ez*ny, bny = ez*nx - ex*nz, bnz = ex*ny - ey*nx;
+                double bLen = Math.sqrt(bnx*bnx + bny*bny + bnz*bnz);
+                if(bLen == 0d) {
+                    continue;
+                }
+
+                bnx /= bLen; bny /= bLen; bnz /= bLen;
+                double bDist = -(bnx*pos[e0] + bny*pos[e0 + 1] + bnz*pos[e0 + 2]);
+                double weight = BORDER_WEIGHT*edgeLenSq;
+                addPlane(vIdx0, bnx, bny, bnz, bDist, weight);
+                addPlane(vIdx1, bnx, bny, bnz, bDist, weight);
+            }
+        }
+    }
+
+    private void addPlane(int vIdx, double a, double b, double c, double d, double weight) {
+        final double[] q = this._quadrics;
+        final int base = vIdx*QUADRIC_SIZE;
+        q[base]     += weight*a*a;
+        q[base + 1] += weight*a*b;
+        q[base + 2] += weight*a*c;
+        q[base + 3] += weight*a*d;
+        q[base + 4] += weight*b*b;
+        q[base + 5] += weight*b*c;
+        q[base + 6] += weight*b*d;
+        q[base + 7] += weight*c*c;
+        q[base + 8] += weight*c*d;
+        q[base + 9] += weight*d*d;
+        q[base + 10] += weight;
+    }
+
+    private void addQuadric(int srcIdx, int destIdx) {
+        final int srcBase = srcIdx*QUADRIC_SIZE;
+        final int destBase = destIdx*QUADRIC_SIZE;
+        for(int qIdx = 0; qIdx < QUADRIC_SIZE; qIdx++) {
+            this._quadrics[destBase + qIdx] += this._quadrics[srcBase + qIdx];
+        }
+    }
+
+    /**
+     * Evaluate the combined quadrics of both vertices at the destination position. The result is
+     * the weighted mean of the squared distances to the planes.
+     */
+    private double evalQuadric(int srcIdx, int destIdx) {
+        final double[] q = this._quadrics;
+        final int sb = srcIdx*QUADRIC_SIZE;
+        final int db = destIdx*QUADRIC_SIZE;
+
+        double weight = q[sb + 10] + q[db + 10];
+        if(weight == 0d) {
+            return 0d;
+        }
+
+        double x = this._positions[destIdx*3];
+        double y = this._positions[destIdx*3 + 1];
+        double z = this._positions[destIdx*3 + 2];
+
+        double err = (q[sb] + q[db])*x*x
+                + 2d*(q[sb + 1] + q[db + 1])*x*y
+                + 2d*(q[sb + 2] + q[db + 2])*x*z
+                + 2d*(q[sb + 3] + q[db + 3])*x
+                + (q[sb + 4] + q[db + 4])*y*y
+                + 2d*(q[sb + 5] + q[db + 5])*y*z
+                + 2d*(q[sb + 6] + q[db + 6])*y
+                + (q[sb + 7] + q[db + 7])*z*z
+                + 2d*(q[sb + 8] + q[db + 8])*z
+                + (q[sb + 9] + q[db + 9]);
+
+        return Math.max(err, 0d)/weight;
+    }
+
+    private static long edgeKey(int vIdx0, int vIdx1) {
+        long minIdx = Math.min(vIdx0, vIdx1);
+        long maxIdx = Math.max(vIdx0, vIdx1);
+        return (minIdx << 32) | maxIdx;
+    }
+}
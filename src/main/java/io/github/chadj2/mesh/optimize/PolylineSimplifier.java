@@ -0,0 +1,197 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.optimize;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.vecmath.Tuple3f;
+
+/**
+ * Remove points from a polyline that are within a tolerance of the line that remains. This
+ * uses the Douglas-Peucker algorithm: the point farthest from the segment between the first
+ * and last points is kept if it is outside the tolerance and the two halves are processed in
+ * the same way. Every removed point is within the tolerance of the simplified polyline.
+ * <p>
+ * Ranges are processed with an explicit stack so long polylines will not overflow the call
+ * stack. The working arrays are kept between calls so an instance can be reused for many
+ * polylines, but an instance should not be shared between threads.
+ * @author Chad Juliano
+ */
+public class PolylineSimplifier {
+
+    private final float _toleranceSq;
+
+    /** Points that will be kept. */
+    private boolean[] _keep = new boolean[0];
+
+    /** Pairs of (start, end) indices that need to be processed. */
+    private int[] _stack = new int[64];
+
+    /**
+     * @param tolerance Maximum distance of a removed point from the simplified polyline.
+     */
+    public PolylineSimplifier(float tolerance) {
+        if(tolerance < 0) {
+            throw new IllegalArgumentException("Tolerance can't be negative: " + tolerance);
+        }
+        this._toleranceSq = tolerance*tolerance;
+    }
+
+    /**
+     * Simplify a polyline and return the indices of the points that are kept. The first and
+     * last points are always kept.
+     * @param points Array with the (x,y,z) of each point.
+     * @param pointCount Number of points in the array.
+     * @return Indices of the kept points in increasing order.
+     */
+    public int[] simplify(float[] points, int pointCount) {
+        if(pointCount <= 2) {
+            int[] result = new int[pointCount];
+            for(int idx = 0; idx < pointCount; idx++) {
+                result[idx] = idx;
+            }
+            return result;
+        }
+
+        if(this._keep.length < pointCount) {
+            this._keep = new boolean[pointCount];
+        }
+
+        final boolean[] keep = this._keep;
+        Arrays.fill(keep, 0, pointCount, false);
+        keep[0] = true;
+        keep[pointCount - 1] = true;
+        int keepCount = 2;
+
+        int stackSize = 0;
+        stackSize = push(stackSize, 0, pointCount - 1);
+
+        while(stackSize > 0) {
+            final int end = this._stack[--stackSize];
+            final int start = this._stack[--stackSize];
+
+            int maxIdx = -1;
+            float maxDistSq = this._toleranceSq;
+            for(int idx = start + 1; idx < end; idx++) {
+                float distSq = segmentDistSq(points, idx, start, end);
+                if(distSq > maxDistSq) {
+                    maxDistSq = distSq;
+                    maxIdx = idx;
+                }
+            }
+
+            if(maxIdx < 0) {
+                // everything in the range is within tolerance
+                continue;
+            }
+
+            keep[maxIdx] = true;
+            keepCount++;
+
+            if(maxIdx - start > 1) {
+                stackSize = push(stackSize, start, maxIdx);
+            }
+            if(end - maxIdx > 1) {
+                stackSize = push(stackSize, maxIdx, end);
+            }
+        }
+
+        final int[] result = new int[keepCount];
+        int resultIdx = 0;
+        for(int idx = 0; idx < pointCount; idx++) {
+            if(keep[idx]) {
+                result[resultIdx++] = idx;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Simplify a list of points.
+     * @return Indices of the kept points in increasing order.
+     * @see #simplify(float[], int)
+     */
+    public int[] simplify(List<? extends Tuple3f> pointList) {
+        final int pointCount = pointList.size();
+        final float[] points = new float[pointCount*3];
+        for(int idx = 0; idx < pointCount; idx++) {
+            Tuple3f point = pointList.get(idx);
+            points[idx*3] = point.x;
+            points[idx*3 + 1] = point.y;
+            points[idx*3 + 2] = point.z;
+        }
+
+        return simplify(points, pointCount);
+    }
+
+    /**
+     * Move the kept entries of an array to the front. This can be used for the points and
+     * any per-point data like colors.
+     * @param data Array with a fixed number of components for each point.
+     * @param components Number of components for each point.
+     * @param keepIndices Indices returned by {@link #simplify(float[], int)}.
+     * @return Number of points remaining in the array.
+     */
+    public static int compact(float[] data, int components, int[] keepIndices) {
+        for(int idx = 0; idx < keepIndices.length; idx++) {
+            System.arraycopy(data, keepIndices[idx]*components, data, idx*components, components);
+        }
+        return keepIndices.length;
+    }
+
+    /**
+     * Return a new list with the kept entries.
+     * @param keepIndices Indices returned by {@link #simplify(float[], int)}.
+     */
+    public static <T> List<T> select(List<T> list, int[] keepIndices) {
+        List<T> result = new ArrayList<>(keepIndices.length);
+        for(int idx : keepIndices) {
+            result.add(list.get(idx));
+        }
+        return result;
+    }
+
+    private int push(int stackSize, int start, int end) {
+        if(stackSize + 2 > this._stack.length) {
+            this._stack = Arrays.copyOf(this._stack, this._stack.length*2);
+        }
+        this._stack[stackSize] = start;
+        this._stack[stackSize + 1] = end;
+        return stackSize + 2;
+    }
+
+    /**
+     * Squared distance from a point to the segment between two other points.
+     */
+    private static float segmentDistSq(float[] points, int idx, int start, int end) {
+        final int pPos = idx*3;
+        final int aPos = start*3;
+        final int bPos = end*3;
+
+        final float abx = points[bPos] - points[aPos];
+        final float aby = points[bPos + 1] - points[aPos + 1];
+        final float abz = points[bPos + 2] - points[aPos + 2];
+        float apx = points[pPos] - points[aPos];
+        float apy = points[pPos + 1] - points[aPos + 1];
+        float apz = points[pPos + 2] - points[aPos + 2];
+
+        final float lenSq = abx*abx + aby*aby + abz*abz;
+        if(lenSq > 0f) {
+            // project onto the segment and clamp to the end points
+            float t = (apx*abx + apy*aby + apz*abz)/lenSq;
+            t = Math.max(0f, Math.min(1f, t));
+            apx -= t*abx;
+            apy -= t*aby;
+            apz -= t*abz;
+        }
+
+        return apx*apx + apy*apy + apz*apz;
+    }
+}
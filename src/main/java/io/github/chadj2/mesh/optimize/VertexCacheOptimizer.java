@@ -0,0 +1,294 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.optimize;
+
+import java.util.Arrays;
+
+/**
+ * Reorder triangle indices so that the GPU post-transform vertex cache is used effectively. Triangles
+ * are first reordered with the Forsyth algorithm and then vertices can be renumbered in the order
+ * they are first referenced so that vertex fetches are sequential.
+ * @see <a href="https://tomforsyth1000.github.io/papers/fast_vert_cache_opt.html">
+ * Linear-Speed Vertex Cache Optimisation</a>
+ * @author Chad Juliano
+ */
+public class VertexCacheOptimizer {
+
+    /** Size of the LRU cache simulated by the optimizer. */
+    public static final int DEFAULT_CACHE_SIZE = 32;
+
+    /** Size of the FIFO cache used to report ACMR. This is typical for current hardware. */
+    public static final int DEFAULT_ACMR_CACHE_SIZE = 16;
+
+    // Scoring constants from the Forsyth paper.
+    private static final double CACHE_DECAY_POWER = 1.5d;
+    private static final float LAST_TRI_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final double VALENCE_BOOST_POWER = 0.5d;
+
+    private final int _cacheSize;
+
+    public VertexCacheOptimizer() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize Number of entries in the simulated LRU cache. Must be greater than 3.
+     */
+    public VertexCacheOptimizer(int cacheSize) {
+        if(cacheSize <= 3) {
+            throw new IllegalArgumentException("Cache size must be greater than 3: " + cacheSize);
+        }
+        this._cacheSize = cacheSize;
+    }
+
+    /**
+     * Reorder the triangles of an index list in place for vertex cache locality. Vertex
+     * indices are not changed.
+     * @param indices Triangle list with 3 indices for each triangle.
+     * @param vertexCount Number of vertices referenced by the indices.
+     */
+    public void optimizeTriangles(int[] indices, int vertexCount) {
+        final int triCount = indices.length / 3;
+        if(triCount == 0) {
+            return;
+        }
+
+        // build a compact list of triangles adjacent to each vertex.
+        final int[] adjOffsets = new int[vertexCount + 1];
+        for(int idx : indices) {
+            adjOffsets[idx + 1]++;
+        }
+
+        for(int vIdx = 0; vIdx < vertexCount; vIdx++) {
+            adjOffsets[vIdx + 1] += adjOffsets[vIdx];
+        }
+
+        final int[] adjacency = new int[indices.length];
+        final int[] remaining = new int[vertexCount];
+        for(int pos = 0; pos < indices.length; pos++) {
+            int vIdx = indices[pos];
+            adjacency[adjOffsets[vIdx] + remaining[vIdx]++] = pos / 3;
+        }
+
+        // initial scores
+        final int[] cachePos = new int[vertexCount];
+        Arrays.fill(cachePos, -1);
+
+        final float[] vertexScore = new float[vertexCount];
+        for(int vIdx = 0; vIdx < vertexCount; vIdx++) {
+            vertexScore[vIdx] = calcVertexScore(-1, remaining[vIdx]);
+        }
+
+        final float[] triScore = new float[triCount];
+        for(int tIdx = 0; tIdx < triCount; tIdx++) {
+            int pos = tIdx*3;
+            triScore[tIdx] = vertexScore[indices[pos]]
+                    + vertexScore[indices[pos + 1]]
+                    + vertexScore[indices[pos + 2]];
+        }
+
+        final boolean[] emitted = new boolean[triCount];
+        final int[] output = new int[indices.length];
+
+        // the cache can temporarily grow by 3 when a triangle is added.
+        int[] cache = new int[this._cacheSize + 3];
+        int[] newCache = new int[this._cacheSize + 3];
+        int cacheCount = 0;
+
+        int bestTri = findBestTriangle(triScore, emitted);
+        int scanPos = 0;
+
+        for(int outTri = 0; outTri < triCount; outTri++) {
+            if(bestTri < 0) {
+                // Nothing in the cache is connected to an unused triangle so we
+                // start at the next unused triangle in the original order.
+                while(emitted[scanPos]) {
+                    scanPos++;
+                }
+                bestTri = scanPos;
+            }
+
+            emitted[bestTri] = true;
+            final int triPos = bestTri*3;
+            System.arraycopy(indices, triPos, output, outTri*3, 3);
+
+            // the vertices of the new triangle go to the front of the cache
+            int newCount = 0;
+            for(int corner = 0; corner < 3; corner++) {
+                int vIdx = indices[triPos + corner];
+                removeAdjacent(adjacency, adjOffsets[vIdx], remaining[vIdx], bestTri);
+                remaining[vIdx]--;
+
+                if(!contains(newCache, newCount, vIdx)) {
+                    newCache[newCount++] = vIdx;
+                }
+            }
+
+            final int triVerts = newCount;
+            for(int cIdx = 0; cIdx < cacheCount; cIdx++) {
+                int vIdx = cache[cIdx];
+                if(!contains(newCache, triVerts, vIdx)) {
+                    newCache[newCount++] = vIdx;
+                }
+            }
+
+            // update scores of everything that was touched. Vertices beyond the end of the
+            // cache are evicted.
+            for(int cIdx = 0; cIdx < newCount; cIdx++) {
+                int vIdx = newCache[cIdx];
+                cachePos[vIdx] = (cIdx < this._cacheSize) ? cIdx : -1;
+
+                float score = calcVertexScore(cachePos[vIdx], remaining[vIdx]);
+                float delta = score - vertexScore[vIdx];
+                vertexScore[vIdx] = score;
+
+                int adjStart = adjOffsets[vIdx];
+                int adjEnd = adjStart + remaining[vIdx];
+                for(int adjPos = adjStart; adjPos < adjEnd; adjPos++) {
+                    triScore[adjacency[adjPos]] += delta;
+                }
+            }
+
+            // the next triangle is the best one connected to the cache
+            bestTri = -1;
+            float bestScore = -1f;
+            cacheCount = Math.min(newCount, this._cacheSize);
+
+            for(int cIdx = 0; cIdx < cacheCount; cIdx++) {
+                int vIdx = newCache[cIdx];
+                int adjStart = adjOffsets[vIdx];
+                int adjEnd = adjStart + remaining[vIdx];
+
+                for(int adjPos = adjStart; adjPos < adjEnd; adjPos++) {
+                    int tIdx = adjacency[adjPos];
+                    if(triScore[tIdx] > bestScore) {
+                        bestScore = triScore[tIdx];
+                        bestTri = tIdx;
+                    }
+                }
+            }
+
+            int[] swap = cache;
+            cache = newCache;
+            newCache = swap;
+        }
+
+        System.arraycopy(output, 0, indices, 0, indices.length);
+    }
+
+    /**
+     * Renumber vertices in the order they are first referenced by the indices. The indices are
+     * updated in place.
+     * @param indices Triangle list that will be renumbered.
+     * @param vertexCount Number of vertices referenced by the indices.
+     * @return Map of old vertex index to new vertex index. Vertices that are not referenced
+     * will be mapped to -1.
+     */
+    public static int[] optimizeFetch(int[] indices, int vertexCount) {
+        final int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+
+        int nextIdx = 0;
+        for(int pos = 0; pos < indices.length; pos++) {
+            int vIdx = indices[pos];
+            if(remap[vIdx] < 0) {
+                remap[vIdx] = nextIdx++;
+            }
+            indices[pos] = remap[vIdx];
+        }
+
+        return remap;
+    }
+
+    /**
+     * Calculate the Average Cache Miss Ratio which is the number of vertex shader invocations
+     * per triangle for a FIFO cache. The best possible value is about 0.5 and the worst is 3.
+     * @param indices Triangle list with 3 indices for each triangle.
+     * @param cacheSize Number of entries in the FIFO.
+     */
+    public static float calcAcmr(int[] indices, int cacheSize) {
+        if(indices.length == 0) {
+            return 0f;
+        }
+
+        int maxIdx = 0;
+        for(int idx : indices) {
+            maxIdx = Math.max(maxIdx, idx);
+        }
+
+        // A vertex is in the FIFO if fewer than cacheSize misses happened since it was added.
+        final int[] timestamps = new int[maxIdx + 1];
+        Arrays.fill(timestamps, -cacheSize);
+
+        int misses = 0;
+        for(int idx : indices) {
+            if(misses - timestamps[idx] >= cacheSize) {
+                timestamps[idx] = misses;
+                misses++;
+            }
+        }
+
+        return (float)misses / (indices.length / 3);
+    }
+
+    private float calcVertexScore(int cachePos, int remaining) {
+        if(remaining == 0) {
+            // no triangles need this vertex
+            return -1f;
+        }
+
+        float score = 0f;
+        if(cachePos >= 0) {
+            if(cachePos < 3) {
+                // Vertices used by the last triangle get a fixed score so that the
+                // algorithm does not prefer strips.
+                score = LAST_TRI_SCORE;
+            }
+            else {
+                float scaler = 1f / (this._cacheSize - 3);
+                score = (float)Math.pow(1f - (cachePos - 3)*scaler, CACHE_DECAY_POWER);
+            }
+        }
+
+        // boost vertices with few remaining triangles so they get retired
+        score += VALENCE_BOOST_SCALE * (float)Math.pow(remaining, -VALENCE_BOOST_POWER);
+        return score;
+    }
+
+    private static int findBestTriangle(float[] triScore, boolean[] emitted) {
+        int bestTri = -1;
+        float bestScore = -1f;
+        for(int tIdx = 0; tIdx < triScore.length; tIdx++) {
+            if(!emitted[tIdx] && triScore[tIdx] > bestScore) {
+                bestScore = triScore[tIdx];
+                bestTri = tIdx;
+            }
+        }
+        return bestTri;
+    }
+
+    private static void removeAdjacent(int[] adjacency, int start, int count, int tIdx) {
+        int last = start + count - 1;
+        for(int adjPos = start; adjPos <= last; adjPos++) {
+            if(adjacency[adjPos] == tIdx) {
+                adjacency[adjPos] = adjacency[last];
+                adjacency[last] = tIdx;
+                return;
+            }
+        }
+    }
+
+    private static boolean contains(int[] array, int count, int value) {
+        for(int idx = 0; idx < count; idx++) {
+            if(array[idx] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * Algorithms that reorder or reduce mesh geometry before it is serialized
+ *
+ * @author Chad Juliano
+ */
+package io.github.chadj2.mesh.optimize;
@@ -0,0 +1,760 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.pointcloud;
+
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Tuple3f;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.Mesh;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.BaseBuilder;
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.TopologyBuilder.TopologyMode;
+import io.github.chadj2.mesh.buffer.BufferColorArray;
+import io.github.chadj2.mesh.buffer.BufferQuantizedVec3;
+
+/**
+ * Build an octree of POINTS primitives from a large number of points. Points are added one
+ * at a time, from an iterator, or in columnar batches and are kept in primitive arrays. When
+ * the points in memory exceed a budget they are written to temporary files.
+ * <p>
+ * Each octree node keeps at most one point for each cell of a grid over its bounds and the
+ * other points are passed to its children, so interior nodes hold an even subsample of the
+ * points below them and every point is written once. A viewer can draw the upper nodes first
+ * and refine by adding their children. Each node is a POINTS primitive with positions
+ * quantized to unsigned shorts over the node bounds (KHR_mesh_quantization) and byte colors.
+ * <p>
+ * If the points don't fit in the budget they are first partitioned into chunks of the
+ * octree so that only one chunk is in memory at a time. Nodes inside a chunk are written as
+ * soon as the chunk is done. The glTF buffer of the writer must be large enough to hold all
+ * the points.
+ * @author Chad Juliano
+ */
+public class PointCloudBuilder extends BaseBuilder implements Closeable {
+
+    private final static Logger LOG = LoggerFactory.getLogger(PointCloudBuilder.class);
+
+    /** Bytes used for each point in memory and in temporary files. */
+    private static final int POINT_BYTES = 3*Float.BYTES + Integer.BYTES;
+
+    /** Size of buffers used for temporary file IO. */
+    private static final int IO_BUFFER_SIZE = 64*1024;
+
+    /** Limit on the number of chunk files open at once. */
+    private static final int MAX_CHUNK_LEVEL = 3;
+
+    private long _memoryBudget = 256L*1024*1024;
+    private int _maxDepth = 10;
+    private int _gridBits = 6;
+    private File _tempDir = null;
+    private Material _material = null;
+
+    /** Points that have not been written to a temporary file. */
+    private float[] _positions = new float[0];
+    private int[] _colors = new int[0];
+    private int _bufferCount = 0;
+
+    private final List<File> _spillFiles = new ArrayList<>();
+    private long _pointCount = 0;
+
+    private final float[] _minBounds = new float[3];
+    private final float[] _maxBounds = new float[3];
+
+    private int _nodeCount = 0;
+
+    /**
+     * Receives points read back from memory or temporary files.
+     */
+    @FunctionalInterface
+    private interface PointConsumer {
+        void accept(float x, float y, float z, int argb) throws IOException;
+    }
+
+    public PointCloudBuilder(String _name) {
+        super(_name);
+        resetBounds();
+    }
+
+    /**
+     * Set the number of bytes that points can use in memory before they are written to
+     * temporary files. Each point uses 16 bytes. The default is 256MB.
+     */
+    public void setMemoryBudget(long _memoryBudget) {
+        if(_memoryBudget < POINT_BYTES) {
+            throw new IllegalArgumentException("Memory budget is too small: " + _memoryBudget);
+        }
+        this._memoryBudget = _memoryBudget;
+    }
+
+    /**
+     * Set the maximum depth of the octree. Nodes at this depth keep all points that reach them.
+     */
+    public void setMaxDepth(int _maxDepth) {
+        if(_maxDepth < 0 || _maxDepth + this._gridBits > 30) {
+            throw new IllegalArgumentException("Invalid max depth: " + _maxDepth);
+        }
+        this._maxDepth = _maxDepth;
+    }
+
+    /**
+     * Set the number of cells on each side of the subsampling grid of a node. This must be a
+     * power of 2 and the default is 64.
+     */
+    public void setGridSize(int _gridSize) {
+        if(_gridSize < 1 || Integer.bitCount(_gridSize) != 1) {
+            throw new IllegalArgumentException("Grid size must be a power of 2: " + _gridSize);
+        }
+        int _gridBits = Integer.numberOfTrailingZeros(_gridSize);
+        if(this._maxDepth + _gridBits > 30) {
+            throw new IllegalArgumentException("Grid size is too large for the depth: " + _gridSize);
+        }
+        this._gridBits = _gridBits;
+    }
+
+    /**
+     * Set the directory for temporary files. The default is the system temporary directory.
+     */
+    public void setTempDir(File _tempDir) { this._tempDir = _tempDir; }
+
+    /**
+     * Set a Material that will be used for all nodes.
+     */
+    public void setMaterial(Material _material) { this._material = _material; }
+
+    /** Number of points that have been added. */
+    public long getPointCount() { return this._pointCount; }
+
+    /** Number of temporary files that points were written to. */
+    public int getSpillCount() { return this._spillFiles.size(); }
+
+    /** Number of octree nodes written by the last build. */
+    public int getNodeCount() { return this._nodeCount; }
+
+    /**
+     * Add a single point. The transform of the builder is applied.
+     */
+    public void addPoint(Tuple3f _point, Color _color) throws IOException {
+        addPoint(_point.x, _point.y, _point.z, _color.getRGB());
+    }
+
+    /**
+     * Add points from an iterator.
+     * @param _points Points to add.
+     * @param _colors Color of each point or null for white.
+     */
+    public void addPoints(Iterator<? extends Tuple3f> _points, Iterator<Color> _colors) throws IOException {
+        while(_points.hasNext()) {
+            Tuple3f _point = _points.next();
+            int _argb = (_colors == null) ? Color.WHITE.getRGB() : _colors.next().getRGB();
+            addPoint(_point.x, _point.y, _point.z, _argb);
+        }
+    }
+
+    /**
+     * Add a batch of points from columns. The arrays are not modified.
+     * @param _xPos X coordinate of each point.
+     * @param _yPos Y coordinate of each point.
+     * @param _zPos Z coordinate of each point.
+     * @param _colors Packed ARGB color of each point like {@link Color#getRGB()} or null for white.
+     * @param _count Number of points in the arrays.
+     */
+    public void addPoints(float[] _xPos, float[] _yPos, float[] _zPos, int[] _colors, int _count)
+            throws IOException {
+        final int _white = Color.WHITE.getRGB();
+        for(int _idx = 0; _idx < _count; _idx++) {
+            addPoint(_xPos[_idx], _yPos[_idx], _zPos[_idx], (_colors == null) ? _white : _colors[_idx]);
+        }
+    }
+
+    private void addPoint(float _x, float _y, float _z, int _argb) throws IOException {
+        final Matrix4f _mat = this.getVertexTransform();
+        final float _tx = _mat.m00*_x + _mat.m01*_y + _mat.m02*_z + _mat.m03;
+        final float _ty = _mat.m10*_x + _mat.m11*_y + _mat.m12*_z + _mat.m13;
+        final float _tz = _mat.m20*_x + _mat.m21*_y + _mat.m22*_z + _mat.m23;
+
+        if(Float.isNaN(_tx) || Float.isNaN(_ty) || Float.isNaN(_tz)) {
+            throw new IllegalArgumentException(String.format("Point has NaN: (%f,%f,%f)", _x, _y, _z));
+        }
+
+        if((long)(this._bufferCount + 1)*POINT_BYTES > this._memoryBudget) {
+            spill();
+        }
+
+        if(this._bufferCount == this._colors.length) {
+            long _maxCount = this._memoryBudget/POINT_BYTES;
+            int _newSize = (int)Math.min(Math.max(this._colors.length*2L, 1024L), _maxCount);
+            this._positions = Arrays.copyOf(this._positions, _newSize*3);
+            this._colors = Arrays.copyOf(this._colors, _newSize);
+        }
+
+        final int _pos = this._bufferCount*3;
+        this._positions[_pos] = _tx;
+        this._positions[_pos + 1] = _ty;
+        this._positions[_pos + 2] = _tz;
+        this._colors[this._bufferCount++] = _argb;
+        this._pointCount++;
+
+        this._minBounds[0] = Math.min(this._minBounds[0], _tx);
+        this._minBounds[1] = Math.min(this._minBounds[1], _ty);
+        this._minBounds[2] = Math.min(this._minBounds[2], _tz);
+        this._maxBounds[0] = Math.max(this._maxBounds[0], _tx);
+        this._maxBounds[1] = Math.max(this._maxBounds[1], _ty);
+        this._maxBounds[2] = Math.max(this._maxBounds[2], _tz);
+    }
+
+    /**
+     * Write the points in memory to a new temporary file.
+     */
+    private void spill() throws IOException {
+        File _file = File.createTempFile(this.getName() + "-", ".points", this._tempDir);
+        _file.deleteOnExit();
+        this._spillFiles.add(_file);
+
+        try(PointWriter _writer = new PointWriter(_file)) {
+            for(int _idx = 0; _idx < this._bufferCount; _idx++) {
+                final int _pos = _idx*3;
+                _writer.write(this._positions[_pos], this._positions[_pos + 1], this._positions[_pos + 2],
+                        this._colors[_idx]);
+            }
+        }
+
+        LOG.debug("Spill points[{}]: file=<{}> points=<{}>", this.getName(), _file.getName(), this._bufferCount);
+        this._bufferCount = 0;
+    }
+
+    /**
+     * Read all points from temporary files and memory.
+     */
+    private void forEachPoint(PointConsumer _consumer) throws IOException {
+        for(File _file : this._spillFiles) {
+            readPoints(_file, _consumer);
+        }
+
+        for(int _idx = 0; _idx < this._bufferCount; _idx++) {
+            final int _pos = _idx*3;
+            _consumer.accept(this._positions[_pos], this._positions[_pos + 1], this._positions[_pos + 2],
+                    this._colors[_idx]);
+        }
+    }
+
+    private static void readPoints(File _file, PointConsumer _consumer) throws IOException {
+        final ByteBuffer _buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE/POINT_BYTES*POINT_BYTES)
+                .order(ByteOrder.nativeOrder());
+
+        try(FileChannel _channel = FileChannel.open(_file.toPath(), StandardOpenOption.READ)) {
+            while(_channel.read(_buffer) > 0 || _buffer.position() > 0) {
+                _buffer.flip();
+                while(_buffer.remaining() >= POINT_BYTES) {
+                    _consumer.accept(_buffer.getFloat(), _buffer.getFloat(), _buffer.getFloat(), _buffer.getInt());
+                }
+                _buffer.compact();
+
+                if(_buffer.position() > 0 && _channel.position() == _channel.size()) {
+                    throw new IOException("Truncated point file: " + _file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the octree and add its root to the scene. Temporary files are deleted and the
+     * builder is cleared so it can be reused.
+     * @param _geoWriter Instance of writer class.
+     * @return Node of the octree root.
+     */
+    public Node build(MeshGltfWriter _geoWriter) throws Exception {
+        if(this._pointCount == 0) {
+            throw new Exception("No points to build: " + this.getName());
+        }
+
+        _geoWriter.addExtension(BufferQuantizedVec3.EXT_NAME, true);
+        this._nodeCount = 0;
+
+        // the octree is a cube around the bounds
+        float _size = 0f;
+        for(int _axis = 0; _axis < 3; _axis++) {
+            _size = Math.max(_size, this._maxBounds[_axis] - this._minBounds[_axis]);
+        }
+        _size = (_size > 0f) ? _size*1.0001f : 1f;
+
+        final float[] _cubeMin = new float[3];
+        for(int _axis = 0; _axis < 3; _axis++) {
+            _cubeMin[_axis] = (this._minBounds[_axis] + this._maxBounds[_axis] - _size)/2f;
+        }
+
+        final Octree _octree = new Octree(_cubeMin, _size, this._maxDepth, this._gridBits);
+        final int _chunkLevel = getChunkLevel();
+        final int _spillCount = this._spillFiles.size();
+
+        try {
+            if(_chunkLevel == 0) {
+                forEachPoint(_octree::insert);
+            }
+            else {
+                buildChunks(_geoWriter, _octree, _chunkLevel);
+            }
+
+            Node _rootNode = writeNode(_geoWriter, _octree, _octree._root);
+            applyNodeTransform(_rootNode);
+            LOG.info("Point cloud[{}]: points=<{}> nodes=<{}> chunkLevel=<{}> spills=<{}>", this.getName(),
+                    this._pointCount, this._nodeCount, _chunkLevel, _spillCount);
+            return _rootNode;
+        }
+        finally {
+            close();
+        }
+    }
+
+    /**
+     * Get the depth of the octree where each node has few enough points to fit in the
+     * memory budget.
+     */
+    private int getChunkLevel() {
+        final long _totalBytes = this._pointCount*POINT_BYTES;
+        int _level = 0;
+        while((_totalBytes >> (3*_level)) > this._memoryBudget && _level < Math.min(MAX_CHUNK_LEVEL, this._maxDepth)) {
+            _level++;
+        }
+        return _level;
+    }
+
+    /**
+     * Partition the points into a file for each node at the chunk level. Then add the points of
+     * each chunk to the octree and write the nodes inside the chunk. Nodes above the chunk
+     * level stay in memory because they receive points from all chunks.
+     */
+    private void buildChunks(MeshGltfWriter _geoWriter, Octree _octree, int _chunkLevel) throws Exception {
+        final Map<Integer, File> _chunkFiles = new HashMap<>();
+        final Map<Integer, PointWriter> _chunkWriters = new HashMap<>();
+        final int _shift = _octree._bits - _chunkLevel;
+
+        try {
+            forEachPoint((_x, _y, _z, _argb) -> {
+                final int _chunkIdx = getChunkIdx(_octree, _x, _y, _z, _shift, _chunkLevel);
+                PointWriter _writer = _chunkWriters.get(_chunkIdx);
+                if(_writer == null) {
+                    File _file = File.createTempFile(this.getName() + "-chunk-", ".points", this._tempDir);
+                    _file.deleteOnExit();
+                    _chunkFiles.put(_chunkIdx, _file);
+                    _writer = new PointWriter(_file);
+                    _chunkWriters.put(_chunkIdx, _writer);
+                }
+                _writer.write(_x, _y, _z, _argb);
+            });
+        }
+        finally {
+            for(PointWriter _writer : _chunkWriters.values()) {
+                _writer.close();
+            }
+        }
+
+        // the points are all in chunks now
+        deleteSpillFiles();
+        this._bufferCount = 0;
+
+        try {
+            for(Map.Entry<Integer, File> _entry : _chunkFiles.entrySet()) {
+                readPoints(_entry.getValue(), _octree::insert);
+                _entry.getValue().delete();
+
+                // write the nodes inside the chunk so their memory can be released
+                OctreeNode _chunkNode = _octree.getNode(_entry.getKey(), _chunkLevel);
+                if(_chunkNode != null) {
+                    writeNode(_geoWriter, _octree, _chunkNode);
+                }
+            }
+        }
+        finally {
+            for(File _file : _chunkFiles.values()) {
+                _file.delete();
+            }
+        }
+    }
+
+    private static int getChunkIdx(Octree _octree, float _x, float _y, float _z, int _shift, int _chunkLevel) {
+        final int _cx = _octree.quantize(_x, 0) >> _shift;
+        final int _cy = _octree.quantize(_y, 1) >> _shift;
+        final int _cz = _octree.quantize(_z, 2) >> _shift;
+        return (((_cx << _chunkLevel) | _cy) << _chunkLevel) | _cz;
+    }
+
+    /**
+     * Write a node and the nodes below it. Each octree node becomes a glTF node without a
+     * transform that has the points as a child with the dequantization transform and the
+     * nodes of the octree children. Nodes that were written before are only referenced.
+     */
+    private Node writeNode(MeshGltfWriter _geoWriter, Octree _octree, OctreeNode _octNode) throws Exception {
+        Node _node = new Node();
+        _node.setName(String.format("%s-%s", this.getName(), _octNode._name));
+
+        if(_octNode._count > 0) {
+            _node.addChildren(writePoints(_geoWriter, _octree, _octNode));
+        }
+
+        for(OctreeNode _child : _octNode._children) {
+            if(_child == null) {
+                continue;
+            }
+
+            if(_child._nodeIdx < 0) {
+                writeNode(_geoWriter, _octree, _child);
+            }
+            _node.addChildren(_child._nodeIdx);
+        }
+
+        final Map<String, Object> _extras = new HashMap<>();
+        _extras.put("level", _octNode._depth);
+        _extras.put("spacing", _octree.getSpacing(_octNode._depth));
+        _extras.put("minBounds", _octree.getNodeMin(_octNode));
+        _extras.put("size", _octree.getNodeSize(_octNode._depth));
+        _node.setExtras(_extras);
+
+        if(_octNode._depth == 0) {
+            _octNode._nodeIdx = _geoWriter.addNode(_node);
+        }
+        else {
+            _octNode._nodeIdx = _geoWriter.addDetachedNode(_node);
+        }
+
+        // release the points and the children
+        _octNode.release();
+        this._nodeCount++;
+        return _node;
+    }
+
+    /**
+     * Write the points of a node as a quantized POINTS primitive.
+     * @return Index of the node with the mesh.
+     */
+    private int writePoints(MeshGltfWriter _geoWriter, Octree _octree, OctreeNode _octNode) {
+        final String _name = String.format("%s-%s", this.getName(), _octNode._name);
+        final float[] _nodeMin = _octree.getNodeMin(_octNode);
+        final float _nodeSize = _octree.getNodeSize(_octNode._depth);
+
+        MeshPrimitive _meshPrimitive = new MeshPrimitive();
+        _meshPrimitive.setMode(TopologyMode.POINTS.ordinal());
+
+        if(this._material != null) {
+            int _materialIdx = _geoWriter.getGltf().getMaterials().indexOf(this._material);
+            _meshPrimitive.setMaterial(_materialIdx);
+        }
+
+        BufferQuantizedVec3 _positionBuf = new BufferQuantizedVec3(_name + "-positions");
+        _positionBuf.setData(_octNode._positions, 0, _octNode._count, _nodeMin, _nodeSize);
+        _positionBuf.buildAttrib(_geoWriter, _meshPrimitive, "POSITION");
+
+        BufferColorArray _colorBuf = new BufferColorArray(_name + "-colors");
+        _colorBuf.setData(_octNode._colors, 0, _octNode._count);
+        _colorBuf.buildAttrib(_geoWriter, _meshPrimitive, "COLOR_0");
+
+        Mesh _mesh = new Mesh();
+        _geoWriter.getGltf().addMeshes(_mesh);
+        _mesh.setName(_name + "-mesh");
+        _mesh.addPrimitives(_meshPrimitive);
+
+        Node _node = new Node();
+        _node.setName(_name + "-points");
+        _node.setMesh(_geoWriter.getGltf().getMeshes().size() - 1);
+        _node.setTranslation(_nodeMin);
+
+        float _scale = _positionBuf.getDequantizeScale();
+        _node.setScale(new float[] { _scale, _scale, _scale });
+
+        return _geoWriter.addDetachedNode(_node);
+    }
+
+    /**
+     * Delete temporary files and clear the points so the builder can be reused.
+     */
+    @Override
+    public void close() {
+        deleteSpillFiles();
+        this._bufferCount = 0;
+        this._pointCount = 0;
+        resetBounds();
+    }
+
+    private void deleteSpillFiles() {
+        for(File _file : this._spillFiles) {
+            if(!_file.delete()) {
+                LOG.warn("Could not delete temporary file: {}", _file);
+            }
+        }
+        this._spillFiles.clear();
+    }
+
+    private void resetBounds() {
+        Arrays.fill(this._minBounds, Float.POSITIVE_INFINITY);
+        Arrays.fill(this._maxBounds, Float.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Bounds and integer coordinates of the octree. Points are converted to integer
+     * coordinates with enough bits for the grid cells of the deepest nodes so that the node,
+     * cell and chunk of a point are always consistent.
+     */
+    private static class Octree {
+        final float[] _cubeMin;
+        final float _size;
+        final int _maxDepth;
+        final int _gridBits;
+
+        /** Bits of the integer coordinates. */
+        final int _bits;
+        final OctreeNode _root = new OctreeNode(0, 0, 0, 0, "r");
+
+        Octree(float[] _cubeMin, float _size, int _maxDepth, int _gridBits) {
+            this._cubeMin = _cubeMin;
+            this._size = _size;
+            this._maxDepth = _maxDepth;
+            this._gridBits = _gridBits;
+            this._bits = _maxDepth + _gridBits;
+        }
+
+        int quantize(float _val, int _axis) {
+            final int _max = (1 << this._bits) - 1;
+            final int _qVal = (int)((_val - this._cubeMin[_axis])/this._size*(1 << this._bits));
+            return Math.max(0, Math.min(_max, _qVal));
+        }
+
+        float getNodeSize(int _depth) { return this._size/(1 << _depth); }
+
+        /** Distance between cells of the subsampling grid. */
+        float getSpacing(int _depth) { return getNodeSize(_depth)/(1 << this._gridBits); }
+
+        float[] getNodeMin(OctreeNode _node) {
+            final float _nodeSize = getNodeSize(_node._depth);
+            return new float[] {
+                    this._cubeMin[0] + _node._xIdx*_nodeSize,
+                    this._cubeMin[1] + _node._yIdx*_nodeSize,
+                    this._cubeMin[2] + _node._zIdx*_nodeSize };
+        }
+
+        /**
+         * Add a point to the first node from the root that has an empty cell for it.
+         */
+        void insert(float _x, float _y, float _z, int _argb) {
+            final int _qx = quantize(_x, 0);
+            final int _qy = quantize(_y, 1);
+            final int _qz = quantize(_z, 2);
+            final int _gridMask = (1 << this._gridBits) - 1;
+
+            OctreeNode _node = this._root;
+            while(true) {
+                if(_node._depth == this._maxDepth) {
+                    _node.add(_x, _y, _z, _argb);
+                    return;
+                }
+
+                final int _cellShift = this._bits - _node._depth - this._gridBits;
+                final int _cell = (((((_qx >> _cellShift) & _gridMask) << this._gridBits)
+                        | ((_qy >> _cellShift) & _gridMask)) << this._gridBits)
+                        | ((_qz >> _cellShift) & _gridMask);
+
+                if(_node._cells.add(_cell)) {
+                    _node.add(_x, _y, _z, _argb);
+                    return;
+                }
+
+                final int _childShift = this._bits - _node._depth - 1;
+                final int _octant = (((_qx >> _childShift) & 1) << 2)
+                        | (((_qy >> _childShift) & 1) << 1)
+                        | ((_qz >> _childShift) & 1);
+                _node = _node.getChild(_octant);
+            }
+        }
+
+        /**
+         * Find the node at a depth from an index created by getChunkIdx().
+         */
+        OctreeNode getNode(int _chunkIdx, int _depth) {
+            final int _mask = (1 << _depth) - 1;
+            final int _cx = (_chunkIdx >> (2*_depth)) & _mask;
+            final int _cy = (_chunkIdx >> _depth) & _mask;
+            final int _cz = _chunkIdx & _mask;
+
+            OctreeNode _node = this._root;
+            for(int _level = 0; _level < _depth && _node != null; _level++) {
+                final int _shift = _depth - _level - 1;
+                final int _octant = (((_cx >> _shift) & 1) << 2) | (((_cy >> _shift) & 1) << 1) | ((_cz >> _shift) & 1);
+                _node = _node._children[_octant];
+            }
+            return _node;
+        }
+    }
+
+    private static class OctreeNode {
+        final int _depth;
+
+        /** Position of the node in units of the node size. */
+        final int _xIdx;
+        final int _yIdx;
+        final int _zIdx;
+        final String _name;
+
+        OctreeNode[] _children = new OctreeNode[8];
+
+        /** Occupied cells of the subsampling grid. */
+        IntHashSet _cells = new IntHashSet();
+
+        float[] _positions = new float[0];
+        int[] _colors = new int[0];
+        int _count = 0;
+
+        /** Index of the glTF node after the node is written. */
+        int _nodeIdx = -1;
+
+        OctreeNode(int _depth, int _xIdx, int _yIdx, int _zIdx, String _name) {
+            this._depth = _depth;
+            this._xIdx = _xIdx;
+            this._yIdx = _yIdx;
+            this._zIdx = _zIdx;
+            this._name = _name;
+        }
+
+        OctreeNode getChild(int _octant) {
+            OctreeNode _child = this._children[_octant];
+            if(_child == null) {
+                _child = new OctreeNode(this._depth + 1,
+                        this._xIdx*2 + ((_octant >> 2) & 1),
+                        this._yIdx*2 + ((_octant >> 1) & 1),
+                        this._zIdx*2 + (_octant & 1),
+                        this._name + _octant);
+                this._children[_octant] = _child;
+            }
+            return _child;
+        }
+
+        void add(float _x, float _y, float _z, int _argb) {
+            if(this._count == this._colors.length) {
+                int _newSize = Math.max(this._colors.length*2, 64);
+                this._positions = Arrays.copyOf(this._positions, _newSize*3);
+                this._colors = Arrays.copyOf(this._colors, _newSize);
+            }
+
+            final int _pos = this._count*3;
+            this._positions[_pos] = _x;
+            this._positions[_pos + 1] = _y;
+            this._positions[_pos + 2] = _z;
+            this._colors[this._count++] = _argb;
+        }
+
+        void release() {
+            this._children = new OctreeNode[8];
+            this._cells = null;
+            this._positions = null;
+            this._colors = null;
+            this._count = 0;
+        }
+    }
+
+    /**
+     * Set of non-negative ints with open addressing so cells are not boxed.
+     */
+    private static class IntHashSet {
+        private int[] _table = new int[64];
+        private int _size = 0;
+
+        IntHashSet() {
+            Arrays.fill(this._table, -1);
+        }
+
+        /**
+         * @return true if the value was not in the set.
+         */
+        boolean add(int _value) {
+            if(this._size*2 >= this._table.length) {
+                rehash();
+            }
+
+            final int _mask = this._table.length - 1;
+            int _slot = (_value*0x9E3779B9) >>> 7 & _mask;
+            while(this._table[_slot] >= 0) {
+                if(this._table[_slot] == _value) {
+                    return false;
+                }
+                _slot = (_slot + 1) & _mask;
+            }
+
+            this._table[_slot] = _value;
+            this._size++;
+            return true;
+        }
+
+        private void rehash() {
+            final int[] _oldTable = this._table;
+            this._table = new int[_oldTable.length*2];
+            Arrays.fill(this._table, -1);
+            this._size = 0;
+
+            for(int _value : _oldTable) {
+                if(_value >= 0) {
+                    add(_value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Buffered writer for point records in a temporary file.
+     */
+    private static class PointWriter implements Closeable {
+        private final FileChannel _channel;
+        private final ByteBuffer _buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE/POINT_BYTES*POINT_BYTES)
+                .order(ByteOrder.nativeOrder());
+
+        PointWriter(File _file) throws IOException {
+            this._channel = FileChannel.open(_file.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void write(float _x, float _y, float _z, int _argb) throws IOException {
+            if(this._buffer.remaining() < POINT_BYTES) {
+                flush();
+            }
+            this._buffer.putFloat(_x).putFloat(_y).putFloat(_z).putInt(_argb);
+        }
+
+        private void flush() throws IOException {
+            this._buffer.flip();
+            while(this._buffer.hasRemaining()) {
+                this._channel.write(this._buffer);
+            }
+            this._buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            }
+            finally {
+                this._channel.close();
+            }
+        }
+    }
+}
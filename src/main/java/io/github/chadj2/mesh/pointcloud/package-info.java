@@ -0,0 +1,6 @@
+/**
+ * Streaming point clouds as an octree with levels of detail
+ *
+ * @author Chad Juliano
+ */
+package io.github.chadj2.mesh.pointcloud;
@@ -0,0 +1,101 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.sphere;
+
+import java.util.Arrays;
+
+/**
+ * Map from an edge to the index of its midpoint vertex used when subdividing triangles. Edges
+ * are packed in a long with the smaller vertex index first and stored with open addressing so
+ * lookups don't allocate.
+ * @author Chad Juliano
+ */
+class EdgeMidpointMap {
+
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    /**
+     * @param expected Number of edges expected so the table does not need to grow.
+     */
+    EdgeMidpointMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(expected, 8)*2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        Arrays.fill(this.values, -1);
+    }
+
+    /**
+     * Get the key for an edge. The order of the vertices does not matter.
+     */
+    static long key(int v1, int v2) {
+        return ((long)Math.min(v1, v2) << 32) | Math.max(v1, v2);
+    }
+
+    /**
+     * @return index of the midpoint or -1 if the edge is not in the map.
+     */
+    int get(long key) {
+        final int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while(this.values[slot] >= 0) {
+            if(this.keys[slot] == key) {
+                return this.values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Add the midpoint of an edge that is not in the map.
+     */
+    void put(long key, int value) {
+        if(this.size*2 >= this.keys.length) {
+            rehash();
+        }
+
+        final int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while(this.values[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.size++;
+    }
+
+    void clear() {
+        Arrays.fill(this.values, -1);
+        this.size = 0;
+    }
+
+    private void rehash() {
+        final long[] oldKeys = this.keys;
+        final int[] oldValues = this.values;
+        this.keys = new long[oldKeys.length*2];
+        this.values = new int[oldValues.length*2];
+        Arrays.fill(this.values, -1);
+        this.size = 0;
+
+        for(int slot = 0; slot < oldKeys.length; slot++) {
+            if(oldValues[slot] >= 0) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        // finalizer from MurmurHash3
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int)key;
+    }
+}
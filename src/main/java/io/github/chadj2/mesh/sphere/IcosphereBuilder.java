@@ -7,10 +7,8 @@
 package io.github.chadj2.mesh.sphere;
 
 import java.awt.Color;
-import java.util.HashMap;
 
 import javax.vecmath.Point3f;
-import javax.vecmath.Vector3f;
 
 import io.github.chadj2.mesh.MeshVertex;
 import io.github.chadj2.mesh.TriangleBuilder;
@@ -50,7 +48,10 @@ public class IcosphereBuilder extends TriangleBuilder {
     /**
      * index of midpoints used for de-duplication.
      */
-    private final HashMap<String, MeshVertex> _midpointMap = new HashMap<>();
+    private final EdgeMidpointMap _midpointMap = new EdgeMidpointMap(1024);
+    
+    /** Reused for the position of new midpoints. */
+    private final Point3f _midpoint = new Point3f();
     
     
     public IcosphereBuilder(String _name) {
@@ -61,6 +62,12 @@ public class IcosphereBuilder extends TriangleBuilder {
         //this.getTransform().m00 = 1;
     }
     
+    @Override
+    public void clear() {
+        super.clear();
+        this._midpointMap.clear();
+    }
+    
     /**
      * Set the radius of the Icosphere.
      * @param radius
@@ -94,7 +101,8 @@ public class IcosphereBuilder extends TriangleBuilder {
     }
     
     /**
-     * Add geometry for an Icosphere.
+     * Add geometry for an Icosphere. Each level of detail splits every triangle into 4 
+     * triangles with the midpoints of its edges.
      * @param lod The level of detail where zero is minimum. Higher levels of detail will
      * generate more vertices.
      * @throws Exception 
@@ -103,44 +111,93 @@ public class IcosphereBuilder extends TriangleBuilder {
         // get the 12 vertices of the Icosahedron
         MeshVertex[] vertices = getIcosahedronVertices();
         
-        // recursively add triangles inside the 20 Icosahedron faces
+        // the 20 Icosahedron faces as vertex indices
+        int[] triangles = new int[20*3];
+        int triPos = 0;
         for(int idx = 0; idx < ICO_SIDES; idx++) {
             
             // row 1 indices. row1Next needs to be wrapped around to the start.
-            int row1Idx = idx;
-            int row1Next = (row1Idx + 1) % ICO_SIDES;
+            int row1Idx = vertices[idx].getIndex();
+            int row1Next = vertices[(idx + 1) % ICO_SIDES].getIndex();
             
             // row 2 indices
-            int row2Idx = row1Idx + ICO_SIDES;
-            int row2Next = row1Next + ICO_SIDES;
+            int row2Idx = vertices[idx + ICO_SIDES].getIndex();
+            int row2Next = vertices[(idx + 1) % ICO_SIDES + ICO_SIDES].getIndex();
+            
+            int top = vertices[IDX_TOP].getIndex();
+            int bottom = vertices[IDX_BOTTOM].getIndex();
             
             // top triangle
-            addIcosphereTriangle(0, lod,
-                    vertices[IDX_TOP], 
-                    vertices[row1Next], 
-                    vertices[row1Idx]);
+            triPos = putTriangle(triangles, triPos, top, row1Next, row1Idx);
             
             // downward middle triangle
-            addIcosphereTriangle(0, lod,
-                    vertices[row2Idx], 
-                    vertices[row1Idx], 
-                    vertices[row1Next]);
+            triPos = putTriangle(triangles, triPos, row2Idx, row1Idx, row1Next);
             
             // upward middle triangle
-            addIcosphereTriangle(0, lod,
-                    vertices[row1Next], 
-                    vertices[row2Next], 
-                    vertices[row2Idx]);
+            triPos = putTriangle(triangles, triPos, row1Next, row2Next, row2Idx);
             
             // bottom triangle
-            addIcosphereTriangle(0, lod,
-                    vertices[IDX_BOTTOM], 
-                    vertices[row2Idx], 
-                    vertices[row2Next]);
+            triPos = putTriangle(triangles, triPos, bottom, row2Idx, row2Next);
+        }
+        
+        for(int currentLod = 0; currentLod < lod; currentLod++) {
+            triangles = subdivide(currentLod, triangles);
+        }
+        
+        for(int pos = 0; pos < triangles.length; pos += 3) {
+            addTriangle(this._vertexList.get(triangles[pos]), 
+                    this._vertexList.get(triangles[pos + 1]), 
+                    this._vertexList.get(triangles[pos + 2]));
         }
         
         this._midpointMap.clear();
     }
+    
+    /**
+     * Split each triangle into 4 triangles.
+     * @param currentLod
+     * @param triangles Vertex indices of the triangles.
+     * @return vertex indices of the new triangles.
+     * @throws Exception 
+     */
+    private int[] subdivide(int currentLod, int[] triangles) throws Exception {
+        // midpoints of the previous level are not needed
+        this._midpointMap.clear();
+        
+        final int[] newTriangles = new int[triangles.length*4];
+        int triPos = 0;
+        
+        for(int pos = 0; pos < triangles.length; pos += 3) {
+            final int v1 = triangles[pos];
+            final int v2 = triangles[pos + 1];
+            final int v3 = triangles[pos + 2];
+            
+            // compute 3 new vertices by splitting half on each edge
+            //         v1       
+            //        / \       
+            // newV1 *---* newV3
+            //      / \ / \     
+            //    v2---*---v3   
+            //       newV2 
+            final int newV1 = getMidpoint(currentLod, v1, v2);
+            final int newV2 = getMidpoint(currentLod, v2, v3);
+            final int newV3 = getMidpoint(currentLod, v1, v3);
+            
+            triPos = putTriangle(newTriangles, triPos, v1, newV3, newV1);
+            triPos = putTriangle(newTriangles, triPos, v2, newV1, newV2);
+            triPos = putTriangle(newTriangles, triPos, v3, newV2, newV3);
+            triPos = putTriangle(newTriangles, triPos, newV2, newV1, newV3);
+        }
+        
+        return newTriangles;
+    }
+    
+    private static int putTriangle(int[] triangles, int pos, int v1, int v2, int v3) {
+        triangles[pos] = v1;
+        triangles[pos + 1] = v2;
+        triangles[pos + 2] = v3;
+        return pos + 3;
+    }
 
     /**
      * Get the 12 vertices of the Icosahedron.
@@ -191,74 +248,48 @@ public class IcosphereBuilder extends TriangleBuilder {
     }
     
     /**
-     * Recursively add triangles to the Icosahedron.
-     * @param currentLod
-     * @param maxLod
+     * Find midpoint of 2 vertices. 
+     * @param lod
      * @param v1
      * @param v2
-     * @param v3
+     * @return
      * @throws Exception 
      */
-    private void addIcosphereTriangle(int currentLod, int maxLod,
-            MeshVertex v1, MeshVertex v2, MeshVertex v3) throws Exception {
-        
-        if(currentLod >= maxLod) {
-            // this is the bottom of the recursion tree so add the triangle.
-            addTriangle(v1, v2, v3);
-            return;
-        }
-
-        // compute 3 new vertices by splitting half on each edge
-        //         v1       
-        //        / \       
-        // newV1 *---* newV3
-        //      / \ / \     
-        //    v2---*---v3   
-        //       newV2 
-        MeshVertex newV1 = getMidpoint(currentLod, v1, v2);
-        MeshVertex newV2 = getMidpoint(currentLod, v2, v3);
-        MeshVertex newV3 = getMidpoint(currentLod, v1, v3);
-        
-        // recurse
-        addIcosphereTriangle(currentLod+1, maxLod, v1, newV3, newV1);
-        addIcosphereTriangle(currentLod+1, maxLod, v2, newV1, newV2);
-        addIcosphereTriangle(currentLod+1, maxLod, v3, newV2, newV3);
-        addIcosphereTriangle(currentLod+1, maxLod, newV2, newV1, newV3);
+    public MeshVertex getMidpoint(int lod, MeshVertex v1, MeshVertex v2) throws Exception {
+        int midIdx = getMidpoint(lod, v1.getIndex(), v2.getIndex());
+        return this._vertexList.get(midIdx);
     }
     
     /**
-     * Find midpoint of 2 vertices. 
-     * @param lod
-     * @param v1
-     * @param v2
-     * @return
+     * Find midpoint of 2 vertices by index. 
+     * @return index of the midpoint vertex.
      * @throws Exception 
      */
-    public MeshVertex getMidpoint(int lod, MeshVertex v1, MeshVertex v2) throws Exception {
+    private int getMidpoint(int lod, int v1, int v2) throws Exception {
         // We need to check if this midpoint was already added.
-        String key = String.format("%d_%d", 
-                Math.min(v1.getIndex(), v2.getIndex()),
-                Math.max(v1.getIndex(), v2.getIndex()));
-        MeshVertex newMv = this._midpointMap.get(key);
+        final long key = EdgeMidpointMap.key(v1, v2);
+        int midIdx = this._midpointMap.get(key);
         
-        if(newMv != null) {
+        if(midIdx >= 0) {
             // midpoint already exists.
-            return newMv;
+            return midIdx;
         }
         
-        Vector3f p3 = new Vector3f();
-        p3.add(v1.getVertex(), v2.getVertex());
+        final Point3f p1 = this._vertexList.get(v1).getVertex();
+        final Point3f p2 = this._vertexList.get(v2).getVertex();
+        final float xPos = p1.x + p2.x;
+        final float yPos = p1.y + p2.y;
+        final float zPos = p1.z + p2.z;
 
         // new vertex must be resized, so the length is equal to the radius
-        p3.normalize();
-        p3.scale((float)this._radius);
+        final double scale = this._radius/Math.sqrt(xPos*xPos + yPos*yPos + zPos*zPos);
+        this._midpoint.set((float)(xPos*scale), (float)(yPos*scale), (float)(zPos*scale));
         
-        Point3f newPoint = new Point3f(p3);
-        newMv = newVertex(newPoint);
+        MeshVertex newMv = newVertex(this._midpoint);
         newMv.setColor(getColor(lod));
         
         // add new midpoint to the index
-        this._midpointMap.put(key, newMv);
-        return newMv;
+        this._midpointMap.put(key, newMv.getIndex());
+        return newMv.getIndex();
     }
 }
@@ -0,0 +1,231 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.sphere;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.Mesh;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.TopologyBuilder.TopologyMode;
+import io.github.chadj2.mesh.buffer.BufferFloatArray;
+import io.github.chadj2.mesh.buffer.BufferIndexArray;
+
+/**
+ * Immutable geometry of a unit Icosphere for a level of detail. Templates are generated once
+ * and cached for the life of the process so that factories only need to copy the arrays into
+ * the buffer of a writer. Vertices are in the same order as {@link IcosphereBuilder}.
+ * @author Chad Juliano
+ */
+public class IcosphereTemplate {
+
+    private final static Logger LOG = LoggerFactory.getLogger(IcosphereTemplate.class);
+
+    /** Highest LOD that can be cached. This has 1.3M triangles. */
+    public static final int MAX_LOD = 8;
+
+    private static final int ICO_SIDES = 5;
+    private static final int IDX_TOP = 10;
+    private static final int IDX_BOTTOM = 11;
+
+    private static final Map<Integer, IcosphereTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final int _lod;
+
+    /** Positions of the unit sphere. These are also the normals. */
+    private final float[] _positions;
+    private final int[] _indices;
+
+    /**
+     * Get the template for a LOD. This is safe to call from multiple threads.
+     * @param lod The level of detail where zero is an Icosahedron.
+     */
+    public static IcosphereTemplate get(int lod) {
+        if(lod < 0 || lod > MAX_LOD) {
+            throw new IllegalArgumentException("Invalid LOD: " + lod);
+        }
+        return CACHE.computeIfAbsent(lod, IcosphereTemplate::new);
+    }
+
+    private IcosphereTemplate(int lod) {
+        this._lod = lod;
+
+        final int vertexCount = 10*(1 << (2*lod)) + 2;
+        final int triangleCount = 20*(1 << (2*lod));
+        this._positions = new float[vertexCount*3];
+        this._indices = new int[triangleCount*3];
+
+        new Generator(this._positions, this._indices).generate(lod);
+        LOG.debug("Icosphere template: lod=<{}> vertices=<{}> triangles=<{}>", lod, vertexCount, triangleCount);
+    }
+
+    public int getLod() { return this._lod; }
+
+    public int getVertexCount() { return this._positions.length/3; }
+
+    public int getTriangleCount() { return this._indices.length/3; }
+
+    /**
+     * Get a copy of the positions of the unit sphere.
+     */
+    public float[] getPositions() { return Arrays.copyOf(this._positions, this._positions.length); }
+
+    /**
+     * Get a copy of the triangle indices.
+     */
+    public int[] getIndices() { return Arrays.copyOf(this._indices, this._indices.length); }
+
+    /**
+     * Serialize the template as a mesh with POSITION, NORMAL and indices.
+     * @param writer Instance of writer class.
+     * @param name Name of the mesh.
+     * @param material Material of the primitive or null for none.
+     * @return index of the mesh
+     */
+    public int buildMesh(MeshGltfWriter writer, String name, Material material) {
+        MeshPrimitive meshPrimitive = new MeshPrimitive();
+        meshPrimitive.setMode(TopologyMode.TRIANGLES.ordinal());
+
+        if(material != null) {
+            int materialIdx = writer.getGltf().getMaterials().indexOf(material);
+            meshPrimitive.setMaterial(materialIdx);
+        }
+
+        BufferIndexArray indexBuf = new BufferIndexArray(name + "-indices");
+        indexBuf.setData(this._indices, this._indices.length);
+        indexBuf.build(writer, meshPrimitive);
+
+        BufferFloatArray positionBuf = new BufferFloatArray(name + "-vertices", 3);
+        positionBuf.setData(this._positions, getVertexCount());
+        positionBuf.buildAttrib(writer, meshPrimitive, "POSITION");
+
+        // normals of a unit sphere are the positions
+        BufferFloatArray normalBuf = new BufferFloatArray(name + "-normals", 3);
+        normalBuf.setData(this._positions, getVertexCount());
+        normalBuf.buildAttrib(writer, meshPrimitive, "NORMAL");
+
+        Mesh mesh = new Mesh();
+        writer.getGltf().addMeshes(mesh);
+        mesh.setName(name + "-mesh");
+        mesh.addPrimitives(meshPrimitive);
+        return writer.getGltf().getMeshes().size() - 1;
+    }
+
+    /**
+     * Subdivides the Icosahedron into the template arrays.
+     */
+    private static class Generator {
+        private final float[] positions;
+        private final int[] indices;
+        private int vertexCount = 0;
+
+        /** Index of the midpoint of each edge in the current level. */
+        private final EdgeMidpointMap midpointMap;
+
+        Generator(float[] positions, int[] indices) {
+            this.positions = positions;
+            this.indices = indices;
+            this.midpointMap = new EdgeMidpointMap(indices.length/2);
+        }
+
+        void generate(int lod) {
+            final double vAngle = Math.atan(1.0d/2);
+            final double zPos = Math.sin(vAngle);
+            final double xyPos = Math.cos(vAngle);
+            final double hAngle = (2d*Math.PI)/ICO_SIDES;
+            final int[] vertices = new int[12];
+
+            for(int idx = 0; idx < ICO_SIDES; ++idx) {
+                double row1hAngle = idx*hAngle;
+                vertices[idx] = addVertex(xyPos*Math.cos(row1hAngle), xyPos*Math.sin(row1hAngle), zPos);
+
+                double row2hAngle = row1hAngle + hAngle/2;
+                vertices[idx + ICO_SIDES] = addVertex(xyPos*Math.cos(row2hAngle),
+                        xyPos*Math.sin(row2hAngle), -zPos);
+            }
+
+            vertices[IDX_TOP] = addVertex(0, 0, 1);
+            vertices[IDX_BOTTOM] = addVertex(0, 0, -1);
+
+            // subdivide in place starting with the 20 faces at the start of the array
+            int triPos = 0;
+            for(int idx = 0; idx < ICO_SIDES; idx++) {
+                int row1Idx = idx;
+                int row1Next = (row1Idx + 1) % ICO_SIDES;
+                int row2Idx = row1Idx + ICO_SIDES;
+                int row2Next = row1Next + ICO_SIDES;
+
+                triPos = putTriangle(triPos, vertices[IDX_TOP], vertices[row1Next], vertices[row1Idx]);
+                triPos = putTriangle(triPos, vertices[row2Idx], vertices[row1Idx], vertices[row1Next]);
+                triPos = putTriangle(triPos, vertices[row1Next], vertices[row2Next], vertices[row2Idx]);
+                triPos = putTriangle(triPos, vertices[IDX_BOTTOM], vertices[row2Idx], vertices[row2Next]);
+            }
+
+            int[] triangles = new int[this.indices.length];
+            for(int level = 0; level < lod; level++) {
+                System.arraycopy(this.indices, 0, triangles, 0, triPos);
+                final int oldCount = triPos;
+                this.midpointMap.clear();
+                triPos = 0;
+
+                for(int pos = 0; pos < oldCount; pos += 3) {
+                    final int v1 = triangles[pos];
+                    final int v2 = triangles[pos + 1];
+                    final int v3 = triangles[pos + 2];
+                    final int newV1 = getMidpoint(v1, v2);
+                    final int newV2 = getMidpoint(v2, v3);
+                    final int newV3 = getMidpoint(v1, v3);
+
+                    triPos = putTriangle(triPos, v1, newV3, newV1);
+                    triPos = putTriangle(triPos, v2, newV1, newV2);
+                    triPos = putTriangle(triPos, v3, newV2, newV3);
+                    triPos = putTriangle(triPos, newV2, newV1, newV3);
+                }
+            }
+        }
+
+        private int putTriangle(int pos, int v1, int v2, int v3) {
+            this.indices[pos] = v1;
+            this.indices[pos + 1] = v2;
+            this.indices[pos + 2] = v3;
+            return pos + 3;
+        }
+
+        private int getMidpoint(int v1, int v2) {
+            final long key = EdgeMidpointMap.key(v1, v2);
+            int midIdx = this.midpointMap.get(key);
+            if(midIdx >= 0) {
+                return midIdx;
+            }
+
+            midIdx = addVertex(
+                    (double)this.positions[v1*3] + this.positions[v2*3],
+                    (double)this.positions[v1*3 + 1] + this.positions[v2*3 + 1],
+                    (double)this.positions[v1*3 + 2] + this.positions[v2*3 + 2]);
+            this.midpointMap.put(key, midIdx);
+            return midIdx;
+        }
+
+        /**
+         * Add a vertex projected onto the unit sphere.
+         */
+        private int addVertex(double x, double y, double z) {
+            double length = Math.sqrt(x*x + y*y + z*z);
+            int pos = this.vertexCount*3;
+            this.positions[pos] = (float)(x/length);
+            this.positions[pos + 1] = (float)(y/length);
+            this.positions[pos + 2] = (float)(z/length);
+            return this.vertexCount++;
+        }
+    }
+}
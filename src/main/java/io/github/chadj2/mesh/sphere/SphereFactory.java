@@ -22,6 +22,7 @@ import de.javagl.jgltf.impl.v2.MeshPrimitive;
 import de.javagl.jgltf.impl.v2.Node;
 import io.github.chadj2.mesh.MeshGltfWriter;
 import io.github.chadj2.mesh.MeshGltfWriter.AlphaMode;
+import io.github.chadj2.mesh.extlod.NodeMsftLod;
 
 /**
  * Generate a large set of spheres of various sizes, colors, and transparencies. 
@@ -33,7 +34,6 @@ public class SphereFactory extends SphereFactoryBase {
     private final static Logger LOG = LoggerFactory.getLogger(SphereFactory.class);
 
     protected final MeshGltfWriter _writer;
-    private final IcosphereBuilder _builder = new IcosphereBuilder("icosphere");
 
     /**
      * Map of color/lod to mesh indices.
@@ -47,8 +47,6 @@ public class SphereFactory extends SphereFactoryBase {
     
     public SphereFactory(MeshGltfWriter _writer) {
         super("sphere");
-        this._builder.setIsPatterned(false);
-        this._builder.setColor(this.getColor());
         
         // need to set BLEND mode or transparency does not work.
         _writer.setAlphaMode(AlphaMode.BLEND);
@@ -65,6 +63,7 @@ public class SphereFactory extends SphereFactoryBase {
      * Add a sphere at the given position.
      * @param pos sphere position
      * @param eventId sphere ID for click events
+     * @return Node of the sphere.
      * @throws Exception
      */
     @Override
@@ -96,23 +95,141 @@ public class SphereFactory extends SphereFactoryBase {
         extras.put("eventId", eventId);
         node.setExtras(extras);
         
+        int[] lodMeshes = getLodMeshes(this.getColor());
+        if(lodMeshes != null) {
+            addLodNodes(node, lodMeshes);
+        }
+        
         return node;
     }
     
+    /**
+     * Get the meshes of the lower LODs set with setDetailLevels().
+     * @param color
+     * @return mesh indices in decreasing detail or null if there is only one LOD.
+     * @throws Exception
+     */
+    protected int[] getLodMeshes(Color color) throws Exception {
+        int[] lodLevels = getDetailLevels();
+        if(lodLevels == null || lodLevels.length < 2) {
+            return null;
+        }
+        
+        int[] lodMeshes = new int[lodLevels.length - 1];
+        for(int idx = 1; idx < lodLevels.length; idx++) {
+            lodMeshes[idx - 1] = getLodMesh(color, lodLevels[idx]);
+        }
+        return lodMeshes;
+    }
+    
+    /**
+     * Get the mesh of a lower LOD. A single sphere at {@link #LOD_POINTS} is a mesh with one
+     * point.
+     * @param color
+     * @param lod
+     * @return
+     * @throws Exception
+     */
+    protected int getLodMesh(Color color, int lod) throws Exception {
+        return getMeshColorLod(color, lod);
+    }
+    
+    /**
+     * Add the MSFT_lod extension to a node that references a copy of the node for each lower 
+     * LOD mesh.
+     * @param node Node with the highest LOD.
+     * @param lodMeshes Meshes from getLodMeshes().
+     */
+    protected void addLodNodes(Node node, int[] lodMeshes) {
+        Node[] lodNodes = new Node[lodMeshes.length];
+        for(int idx = 0; idx < lodMeshes.length; idx++) {
+            lodNodes[idx] = copyLodNode(node, lodMeshes[idx], idx + 1);
+        }
+        setLodNodes(node, lodNodes);
+    }
+    
+    /**
+     * Copy a node with a different mesh. The copy shares the transform, extensions and extras 
+     * of the node so any instance buffers are not duplicated.
+     * @param node Node with the highest LOD.
+     * @param meshIdx Mesh of the lower LOD.
+     * @param level Position of the LOD in the chain.
+     * @return
+     */
+    protected Node copyLodNode(Node node, int meshIdx, int level) {
+        Node lodNode = new Node();
+        lodNode.setName(String.format("%s-lod%d", node.getName(), level));
+        lodNode.setMesh(meshIdx);
+        lodNode.setTranslation(node.getTranslation());
+        lodNode.setScale(node.getScale());
+        lodNode.setExtras(node.getExtras());
+        if(node.getExtensions() != null) {
+            for(Map.Entry<String, Object> entry : node.getExtensions().entrySet()) {
+                lodNode.addExtensions(entry.getKey(), entry.getValue());
+            }
+        }
+        return lodNode;
+    }
+    
+    /**
+     * Add the MSFT_lod extension to a node with the screen coverage of each LOD.
+     * @param node Node with the highest LOD.
+     * @param lodNodes Nodes of the lower LODs in decreasing detail.
+     */
+    protected void setLodNodes(Node node, Node[] lodNodes) {
+        NodeMsftLod lodExt = new NodeMsftLod();
+        for(Node lodNode : lodNodes) {
+            lodExt.addIds(this._writer.addDetachedNode(lodNode));
+        }
+        
+        node.addExtensions(NodeMsftLod.EXT_NAME, lodExt);
+        this._writer.addExtension(NodeMsftLod.EXT_NAME, false);
+        
+        Map<String, Object> extras = new HashMap<>();
+        if(node.getExtras() instanceof Map) {
+            for(Map.Entry<?, ?> entry : ((Map<?, ?>)node.getExtras()).entrySet()) {
+                extras.put(entry.getKey().toString(), entry.getValue());
+            }
+        }
+        extras.put(NodeMsftLod.EXTRAS_SCREEN_COVERAGE, getScreenCoverage());
+        node.setExtras(extras);
+    }
+    
     /**
      * Create a new mesh for the color/LOD or return a cached version.
      * @return
      * @throws Exception
      */
     protected int getMeshColorLod() throws Exception {
-        String key = String.format("%X-%d", this.getColor().getRGB(), this.getMaxDetail());
+        return getMeshColorLod(this.getColor());
+    }
+    
+    /**
+     * Create a new mesh for the given color and the current LOD or return a cached version.
+     * @param color
+     * @return
+     * @throws Exception
+     */
+    protected int getMeshColorLod(Color color) throws Exception {
+        return getMeshColorLod(color, this.getMaxDetail());
+    }
+    
+    /**
+     * Create a new mesh for the given color and LOD or return a cached version.
+     * @param color
+     * @param lod
+     * @return
+     * @throws Exception
+     */
+    protected int getMeshColorLod(Color color, int lod) throws Exception {
+        String key = String.format("%X-%d", color.getRGB(), lod);
         Integer meshIdx = this._colorLodToMeshIdx.get(key);
         if(meshIdx != null) {
             // found a cached mesh for this color/lod combo
             return meshIdx;
         }
         
-        meshIdx = getMeshLod();
+        meshIdx = getMeshLod(color, lod);
         
         // add this sphere to the cache.
         this._colorLodToMeshIdx.put(key, meshIdx);
@@ -121,23 +238,25 @@ public class SphereFactory extends SphereFactoryBase {
     
     /**
      * Create a new mesh for the LOD or return a cached version.
+     * @param color
+     * @param lod
      * @return
      * @throws Exception
      */
-    private int getMeshLod() throws Exception {
-        Integer meshIdx = this._lodToMeshIdx.get(this.getMaxDetail());
+    private int getMeshLod(Color color, int lod) throws Exception {
+        Integer meshIdx = this._lodToMeshIdx.get(lod);
         if(meshIdx != null) {
             // found a mesh for the LOD. 
             // create a copy of this mesh with the new color
-            int newMeshIdx = copyMesh(meshIdx, this.getColor());
+            int newMeshIdx = copyMesh(meshIdx, color);
             return newMeshIdx;
         }
         
         // create a new mesh for this LOD
-        meshIdx = createMesh(this.getColor(), this.getMaxDetail());
+        meshIdx = createMesh(color, lod);
 
         // add this sphere to the cache.
-        this._lodToMeshIdx.put(this.getMaxDetail(), meshIdx);
+        this._lodToMeshIdx.put(lod, meshIdx);
         return meshIdx;
     }
     
@@ -176,7 +295,8 @@ public class SphereFactory extends SphereFactoryBase {
     }
     
     /**
-     * Create a new mesh for the given color and LOD.
+     * Create a new mesh for the given color and LOD. The geometry is copied from a cached 
+     * template so the Icosphere is only generated once for each LOD.
      * @param color
      * @param lod
      * @return
@@ -190,17 +310,20 @@ public class SphereFactory extends SphereFactoryBase {
             meshIdx = meshList.size();
         }
 
-        this._builder.addIcosphere(lod);
-        
-        // set the name of the builder so that all objects in the JSON can be
-        // identified with this sphere
+        // set the name so that all objects in the JSON can be identified with this sphere
         String name = String.format("%s(%d)[%d]", getName(), lod, meshIdx);
-        this._builder.setName(name);
         LOG.info("Create Sphere for LOD: <{}> {}", lod, name);
         
         Material material = newMaterial(color);
-        this._builder.setMaterial(material);
-        meshIdx = this._builder.buildMesh(this._writer);
+        if(lod == LOD_POINTS) {
+            // one point at the center that is scaled by the node
+            meshIdx = SpherePoints.buildMesh(this._writer, name, new float[3], new float[] { 1f }, 
+                    null, null, 1, material, -1, 0);
+            return meshIdx;
+        }
+        
+        IcosphereTemplate template = IcosphereTemplate.get(lod);
+        meshIdx = template.buildMesh(this._writer, name, material);
         
         return meshIdx;
     }
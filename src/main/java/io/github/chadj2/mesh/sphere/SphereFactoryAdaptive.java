@@ -0,0 +1,162 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.sphere;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.vecmath.Point3f;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.MeshGltfWriter;
+
+/**
+ * Create spheres with a node for each sphere when there are few of them and with the
+ * EXT_mesh_gpu_instancing extension when there are many. Node per sphere output works in any
+ * viewer while instancing is needed for large counts.
+ * <p>
+ * Spheres are kept in primitive arrays until build() so that no Node is created for each
+ * sphere until the output is chosen. The instancing options are only used if the number of
+ * spheres reaches the threshold.
+ * @author Chad Juliano
+ */
+public class SphereFactoryAdaptive extends SphereFactoryBase {
+
+    private final static Logger LOG = LoggerFactory.getLogger(SphereFactoryAdaptive.class);
+
+    /** Default number of spheres where instancing is used. */
+    public static final int DEFAULT_THRESHOLD = 1000;
+
+    private final MeshGltfWriter _writer;
+    private int _threshold = DEFAULT_THRESHOLD;
+
+    private boolean _instanceColors = false;
+    private boolean _quantize = false;
+    private int _maxClusterSize = 0;
+
+    /** (x,y,z) of each sphere after the transform. */
+    private float[] _positions = new float[3*64];
+    private float[] _radius = new float[64];
+    private int[] _colors = new int[64];
+    private int[] _lods = new int[64];
+    private final List<String> _eventIds = new ArrayList<>();
+    private int _count = 0;
+
+    private Boolean _isInstanced = null;
+
+    public SphereFactoryAdaptive(MeshGltfWriter writer) {
+        super("sphere");
+        this._writer = writer;
+    }
+
+    /**
+     * Set the number of spheres where the output will switch to instancing.
+     * @param threshold
+     */
+    public void setInstanceThreshold(int threshold) { this._threshold = threshold; }
+
+    /**
+     * @see SphereFactoryInst#setInstanceColors
+     */
+    public void setInstanceColors(boolean instanceColors) { this._instanceColors = instanceColors; }
+
+    /**
+     * @see SphereFactoryInst#setQuantizeTranslation
+     */
+    public void setQuantizeTranslation(boolean quantize) { this._quantize = quantize; }
+
+    /**
+     * @see SphereFactoryInst#setMaxClusterSize
+     */
+    public void setMaxClusterSize(int maxClusterSize) { this._maxClusterSize = maxClusterSize; }
+
+    /**
+     * Number of spheres that have been added.
+     */
+    public int size() { return this._count; }
+
+    /**
+     * Indicates if build() used instancing. This is null before build().
+     */
+    public Boolean isInstanced() { return this._isInstanced; }
+
+    /**
+     * Add a sphere with the current color, radius and detail. The sphere is not written until
+     * build() so this always returns null.
+     * @param pos sphere position
+     * @param eventId sphere ID for click events
+     */
+    @Override
+    public Node addSphere(Point3f pos, String eventId) {
+        if(this._count == this._radius.length) {
+            int newSize = this._count*2;
+            this._positions = Arrays.copyOf(this._positions, newSize*3);
+            this._radius = Arrays.copyOf(this._radius, newSize);
+            this._colors = Arrays.copyOf(this._colors, newSize);
+            this._lods = Arrays.copyOf(this._lods, newSize);
+        }
+
+        Point3f tPos = new Point3f(pos);
+        getTransform().transform(tPos);
+
+        final int idx = this._count++;
+        this._positions[idx*3] = tPos.x;
+        this._positions[idx*3 + 1] = tPos.y;
+        this._positions[idx*3 + 2] = tPos.z;
+        this._radius[idx] = this.getRadius();
+        this._colors[idx] = this.getColor().getRGB();
+        this._lods[idx] = this.getMaxDetail();
+        this._eventIds.add(eventId);
+        return null;
+    }
+
+    /**
+     * Write the spheres with a node for each or with instancing depending on the count.
+     */
+    @Override
+    public void build() {
+        this._isInstanced = this._count >= this._threshold;
+
+        final SphereFactory factory;
+        if(this._isInstanced) {
+            SphereFactoryInst instFactory = new SphereFactoryInst(this._writer);
+            instFactory.setInstanceColors(this._instanceColors);
+            instFactory.setQuantizeTranslation(this._quantize);
+            instFactory.setMaxClusterSize(this._maxClusterSize);
+            factory = instFactory;
+        }
+        else {
+            factory = new SphereFactory(this._writer);
+        }
+        factory.setName(this.getName());
+        if(this.getDetailLevels() != null) {
+            factory.setDetailLevels(this.getDetailLevels(), this.getScreenCoverage());
+        }
+
+        try {
+            final Point3f pos = new Point3f();
+            for(int idx = 0; idx < this._count; idx++) {
+                pos.set(this._positions[idx*3], this._positions[idx*3 + 1], this._positions[idx*3 + 2]);
+                factory.setRadius(this._radius[idx]);
+                factory.setColor(new Color(this._colors[idx], true));
+                factory.setMaxDetail(this._lods[idx]);
+                factory.addSphere(pos, this._eventIds.get(idx));
+            }
+        }
+        catch(Exception ex) {
+            throw new IllegalStateException("Failed to build spheres: " + this.getName(), ex);
+        }
+
+        factory.build();
+        LOG.info("Built spheres[{}]: count=<{}> instanced=<{}>", this.getName(), this._count, this._isInstanced);
+    }
+}
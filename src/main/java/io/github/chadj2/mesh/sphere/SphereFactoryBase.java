@@ -7,6 +7,7 @@
 package io.github.chadj2.mesh.sphere;
 
 import java.awt.Color;
+import java.util.Arrays;
 
 import javax.vecmath.Point3f;
 
@@ -14,15 +15,28 @@ import de.javagl.jgltf.impl.v2.Node;
 import io.github.chadj2.mesh.BaseBuilder;
 
 public abstract class SphereFactoryBase extends BaseBuilder {
+    
+    /** Detail level that draws each sphere as a point. This can only be the last LOD. */
+    public static final int LOD_POINTS = -1;
 
     private float _radius = 1f;
     private Color _color = Color.WHITE;
     private int _lod = 2;
+    private int[] _lodLevels = null;
+    private float[] _screenCoverage = null;
     
     public SphereFactoryBase(String _name) {
         super(_name);
     }
     
+    /**
+     * Add a sphere with the current color, radius and detail.
+     * @param pos sphere position
+     * @param eventId sphere ID for click events
+     * @return Node that contains the sphere. This can be shared by many spheres and is null 
+     * if the factory does not create nodes until build().
+     * @throws Exception
+     */
     public abstract Node addSphere(Point3f pos, String eventId) throws Exception;
     
     public abstract void build();
@@ -44,4 +58,39 @@ public abstract class SphereFactoryBase extends BaseBuilder {
     
     protected int getMaxDetail() { return this._lod; }
     
+    /**
+     * Write each sphere with a chain of icosphere LODs using the MSFT_lod extension. The first
+     * LOD replaces the max detail and each following LOD is used when the sphere covers less 
+     * of the screen. The last LOD can be {@link #LOD_POINTS}.
+     * @param lodLevels Icosphere LODs in decreasing order (e.g. 4, 2, 0).
+     * @param screenCoverage Minimum screen coverage for each LOD.
+     */
+    public void setDetailLevels(int[] lodLevels, float[] screenCoverage) {
+        if(lodLevels.length == 0 || screenCoverage.length != lodLevels.length) {
+            throw new IllegalArgumentException("Expected a screen coverage for each LOD: " + lodLevels.length);
+        }
+        if(lodLevels[0] < 0) {
+            throw new IllegalArgumentException("Invalid first LOD: " + lodLevels[0]);
+        }
+        for(int idx = 1; idx < lodLevels.length; idx++) {
+            if(lodLevels[idx] >= lodLevels[idx - 1] || lodLevels[idx] < LOD_POINTS) {
+                throw new IllegalArgumentException("LODs must decrease: " + Arrays.toString(lodLevels));
+            }
+        }
+        
+        this._lodLevels = Arrays.copyOf(lodLevels, lodLevels.length);
+        this._screenCoverage = Arrays.copyOf(screenCoverage, screenCoverage.length);
+        this._lod = lodLevels[0];
+    }
+    
+    /**
+     * LODs set with setDetailLevels() or null.
+     */
+    protected int[] getDetailLevels() { return this._lodLevels; }
+    
+    /**
+     * Screen coverage set with setDetailLevels() or null.
+     */
+    protected float[] getScreenCoverage() { return this._screenCoverage; }
+    
 }
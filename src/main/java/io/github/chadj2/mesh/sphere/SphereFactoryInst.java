@@ -6,98 +6,320 @@
 
 package io.github.chadj2.mesh.sphere;
 
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.vecmath.Matrix4f;
 import javax.vecmath.Point3f;
-import javax.vecmath.Quat4f;
-import javax.vecmath.Vector3f;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.impl.v2.Material;
 import de.javagl.jgltf.impl.v2.Node;
 import io.github.chadj2.mesh.MeshGltfWriter;
-import io.github.chadj2.mesh.buffer.BufferShort;
-import io.github.chadj2.mesh.buffer.BufferVecFloat3;
-import io.github.chadj2.mesh.buffer.BufferVecFloat4;
-import io.github.chadj2.mesh.extinst.FeatureId;
+import io.github.chadj2.mesh.buffer.BufferColorArray;
+import io.github.chadj2.mesh.buffer.BufferFloatArray;
+import io.github.chadj2.mesh.buffer.BufferQuantizedVec3;
+import io.github.chadj2.mesh.extinst.FeatureIdAttribute;
 import io.github.chadj2.mesh.extinst.GlTFMeshGpuInstancing;
 import io.github.chadj2.mesh.extinst.NodeInstanceFeatures;
+import io.github.chadj2.mesh.optimize.KdClusters;
 
 /**
  * Create a set of spheres using the EXT_mesh_gpu_instancing extension. This is necessary
  * for visualizations requiring a large number of spheres.
+ * <p>
+ * Instances are kept in primitive arrays and ROTATION is not written because spheres are 
+ * never rotated. Translations can optionally be quantized to normalized shorts. Instances can
+ * also be split into spatial clusters so that viewers can cull the nodes that are not visible.
+ * If setDetailLevels() is used then the MSFT_lod nodes share the instance buffers. If the last
+ * LOD is LOD_POINTS then the instances of each node are also written as a POINTS primitive.
+ * Spheres can be added from several threads with addSphereConcurrent().
  * @author Chad Juliano
  */
 public class SphereFactoryInst extends SphereFactory {
     
     private final static Logger LOG = LoggerFactory.getLogger(SphereFactoryInst.class);
     
-    private final static String EXT_INSTANCING = "EXT_mesh_gpu_instancing";
-    private final static String EXT_INST_FEATURES = "EXT_instance_features";
+    /** Instance attribute with the color of each sphere. */
+    public final static String ATTR_COLOR = "_COLOR_0";
     
     private static class InstancingNode {
-        final BufferVecFloat3 _scale;
-        final BufferVecFloat4 _rotation;
-        final BufferVecFloat3 _trans;
-        final BufferShort _featureId;
+        final String _name;
         final Node _node;
         
+        /** (x,y,z) of each instance. */
+        float[] _trans = new float[3*64];
+        float[] _radius = new float[64];
+        int[] _featureId = new int[64];
+        int[] _color = new int[64];
+        int _count = 0;
+        
+        /** Indicates the mesh is white and the color is an instance attribute. */
+        boolean _hasColors = false;
+        
+        /** Meshes of the lower LODs or null. */
+        int[] _lodMeshes = null;
+        
         InstancingNode(Node node, String name) {
             this._node = node;
             this._node.setName(name + "_node");
-            
-            this._scale = new BufferVecFloat3(name + "-scale");
-            //this._rotation = new BufferByte4(name, "ROTATION");
-            this._rotation = new BufferVecFloat4(name + "-rotation");
-            this._trans = new BufferVecFloat3(name + "-translation");
-            this._featureId = new BufferShort(name + "-featureId");
+            this._name = name;
+        }
+        
+        int size() { return this._count; }
+        
+        void add(Point3f trans, float radius, int featureId, Color color) {
+            add(trans.x, trans.y, trans.z, radius, featureId, color.getRGB());
         }
         
-        int size() { return this._scale.size(); }
+        /**
+         * Copy an instance from another node.
+         */
+        void add(InstancingNode src, int idx) {
+            add(src._trans[idx*3], src._trans[idx*3 + 1], src._trans[idx*3 + 2], src._radius[idx], 
+                    src._featureId[idx], src._color[idx]);
+        }
         
-        void add(Vector3f scale, Quat4f rot, Point3f trans, int featureId) {
-            this._scale.add(scale);
-            this._rotation.add(rot);
-            this._trans.add(trans);
-            this._featureId.add((short)featureId);
+        void add(float xPos, float yPos, float zPos, float radius, int featureId, int argb) {
+            if(this._count == this._radius.length) {
+                int newSize = this._count*2;
+                this._trans = Arrays.copyOf(this._trans, newSize*3);
+                this._radius = Arrays.copyOf(this._radius, newSize);
+                this._featureId = Arrays.copyOf(this._featureId, newSize);
+                this._color = Arrays.copyOf(this._color, newSize);
+            }
+            
+            final int pos = this._count*3;
+            this._trans[pos] = xPos;
+            this._trans[pos + 1] = yPos;
+            this._trans[pos + 2] = zPos;
+            this._radius[this._count] = radius;
+            this._featureId[this._count] = featureId;
+            this._color[this._count] = argb;
+            this._count++;
         }
         
-        void build(MeshGltfWriter writer) {
+        void build(MeshGltfWriter writer, boolean quantize) {
             GlTFMeshGpuInstancing meshInstancing = new GlTFMeshGpuInstancing();
-            this._node.addExtensions(EXT_INSTANCING, meshInstancing);
+            this._node.addExtensions(GlTFMeshGpuInstancing.EXT_NAME, meshInstancing);
+            
+            // the node scale is divided out of the instance scale
+            float nodeScale = 1f;
             
-            this._scale.buildAttrib(writer, meshInstancing, "SCALE");
-            this._rotation.buildAttrib(writer, meshInstancing, "ROTATION");
-            this._trans.buildAttrib(writer, meshInstancing, "TRANSLATION");
-            this._featureId.buildAttrib(writer, meshInstancing, "_FEATURE_ID_0");
+            if(quantize) {
+                nodeScale = buildQuantized(writer, meshInstancing);
+            }
+            else {
+                BufferFloatArray transBuf = new BufferFloatArray(this._name + "-translation", 3);
+                transBuf.setData(this._trans, this._count);
+                transBuf.buildAttrib(writer, meshInstancing, "TRANSLATION");
+            }
+            
+            final float[] scale = new float[this._count*3];
+            for(int idx = 0; idx < this._count; idx++) {
+                Arrays.fill(scale, idx*3, idx*3 + 3, this._radius[idx]/nodeScale);
+            }
+            
+            BufferFloatArray scaleBuf = new BufferFloatArray(this._name + "-scale", 3);
+            scaleBuf.setData(scale, this._count);
+            scaleBuf.buildAttrib(writer, meshInstancing, "SCALE");
+            
+            FeatureIdAttribute.build(writer, meshInstancing, this._name, this._featureId, this._count);
+            
+            if(this._hasColors) {
+                BufferColorArray colorBuf = new BufferColorArray(this._name + "-color");
+                colorBuf.setData(this._color, 0, this._count);
+                colorBuf.buildAttrib(writer, meshInstancing, ATTR_COLOR);
+            }
+        }
+        
+        /**
+         * Write translations as normalized shorts over the bounds of the instances and set the
+         * transform of the node that dequantizes them.
+         * @return the scale of the node
+         */
+        private float buildQuantized(MeshGltfWriter writer, GlTFMeshGpuInstancing meshInstancing) {
+            final float[] min = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY };
+            final float[] max = { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY };
+            for(int pos = 0; pos < this._count*3; pos++) {
+                min[pos % 3] = Math.min(min[pos % 3], this._trans[pos]);
+                max[pos % 3] = Math.max(max[pos % 3], this._trans[pos]);
+            }
+            
+            float range = Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+            if(range <= 0f) {
+                range = 1f;
+            }
+            
+            BufferQuantizedVec3 transBuf = new BufferQuantizedVec3(this._name + "-translation", true);
+            transBuf.setData(this._trans, 0, this._count, min, range);
+            transBuf.buildAttrib(writer, meshInstancing, "TRANSLATION");
+            writer.addExtension(BufferQuantizedVec3.EXT_NAME, true);
+            
+            final float nodeScale = transBuf.getDequantizeScale();
+            this._node.setTranslation(transBuf.getDequantizeOffset());
+            this._node.setScale(new float[] { nodeScale, nodeScale, nodeScale });
+            return nodeScale;
+        }
+        
+        /**
+         * Write the instances as a POINTS primitive in a new node.
+         * @param tableIdx Index of the table shared by all nodes.
+         * @param featureCount Number of features in the table.
+         */
+        Node buildPoints(MeshGltfWriter writer, Material material, int tableIdx, int featureCount) {
+            Node node = new Node();
+            node.setName(this._name + "-points");
+            node.setMesh(SpherePoints.buildMesh(writer, this._name + "-points", this._trans, this._radius, 
+                    this._color, this._featureId, this._count, material, tableIdx, featureCount));
+            return node;
         }
         
-        void buildFeatures(int tableIdx) {
+        /**
+         * @param tableIdx Index of the table shared by all nodes.
+         * @param featureCount Number of features in the table.
+         */
+        void buildFeatures(int tableIdx, int featureCount) {
             NodeInstanceFeatures instFeatures = new NodeInstanceFeatures();
-            this._node.addExtensions(EXT_INST_FEATURES, instFeatures);
+            this._node.addExtensions(NodeInstanceFeatures.EXT_NAME, instFeatures);
+            instFeatures.addFeatureIds(FeatureIdAttribute.newFeatureId("eventId", featureCount, tableIdx));
+        }
+    }
+    
+    /**
+     * Spheres added by one thread with addSphereConcurrent().
+     */
+    private static class SphereShard {
+        /** (x,y,z) of each sphere after the transform. */
+        float[] _trans = new float[3*64];
+        float[] _radius = new float[64];
+        int[] _featureId = new int[64];
+        int[] _color = new int[64];
+        final List<String> _eventIds = new ArrayList<>();
+        int _count = 0;
+        
+        private final Point3f _tPos = new Point3f();
+        
+        void add(Point3f pos, Matrix4f transform, float radius, int argb, int featureId, String eventId) {
+            if(this._count == this._radius.length) {
+                int newSize = this._count*2;
+                this._trans = Arrays.copyOf(this._trans, newSize*3);
+                this._radius = Arrays.copyOf(this._radius, newSize);
+                this._featureId = Arrays.copyOf(this._featureId, newSize);
+                this._color = Arrays.copyOf(this._color, newSize);
+            }
             
-            FeatureId featureId = new FeatureId();
-            instFeatures.addFeatureIds(featureId);
-            featureId.setLabel("eventId");
-            featureId.setFeatureCount(size());
-            featureId.setPropertyTable(tableIdx);
+            transform.transform(pos, this._tPos);
+            final int idx = this._count++;
+            this._trans[idx*3] = this._tPos.x;
+            this._trans[idx*3 + 1] = this._tPos.y;
+            this._trans[idx*3 + 2] = this._tPos.z;
+            this._radius[idx] = radius;
+            this._featureId[idx] = featureId;
+            this._color[idx] = argb;
+            this._eventIds.add(eventId);
+        }
+        
+        void clear() {
+            this._count = 0;
+            this._eventIds.clear();
         }
     }
     
     private final Map<Integer, InstancingNode> _meshToNodeIndex = new HashMap<>();
     private final SphereMetadata _metadata = new SphereMetadata();
+    private boolean _instanceColors = false;
+    private boolean _quantize = false;
+    private int _maxClusterSize = 0;
+    private Material _pointMaterial = null;
+    
+    /** Buffers of the threads that called addSphereConcurrent(). */
+    private final Queue<SphereShard> _shardList = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<SphereShard> _shards = ThreadLocal.withInitial(this::newShard);
+    private final AtomicInteger _nextSharedId = new AtomicInteger();
     
     public SphereFactoryInst(MeshGltfWriter writer) {
         super(writer);
     }
     
+    /**
+     * Write the color of each sphere as the {@value #ATTR_COLOR} instance attribute. All spheres
+     * of a LOD then share one white mesh so there is one draw call for each LOD instead of one 
+     * for each color. The viewer must multiply the material color by the instance color.
+     * @param instanceColors
+     */
+    public void setInstanceColors(boolean instanceColors) { this._instanceColors = instanceColors; }
+    
+    /**
+     * Write translations as normalized shorts with KHR_mesh_quantization. The instancing node
+     * gets a translation and scale that restore the original positions. Positions are rounded 
+     * to 1/65534 of the largest extent of the spheres in each node.
+     * @param quantize
+     */
+    public void setQuantizeTranslation(boolean quantize) { this._quantize = quantize; }
+    
+    /**
+     * Split the spheres of each mesh into clusters of nearby spheres with at most this many
+     * in each. Each cluster is a child of the node returned by addSphere() with its own bounds 
+     * so viewers can cull it. Spheres are grouped with k-d splits. Zero disables clustering.
+     * @param maxClusterSize
+     */
+    public void setMaxClusterSize(int maxClusterSize) { 
+        if(maxClusterSize < 0) {
+            throw new IllegalArgumentException("Invalid cluster size: " + maxClusterSize);
+        }
+        this._maxClusterSize = maxClusterSize; 
+    }
+    
+    /**
+     * Add an instance of a sphere.
+     * @param pos sphere position
+     * @param eventId sphere ID for click events
+     * @return Node shared by all spheres with the same mesh.
+     */
     @Override
     public Node addSphere(Point3f pos, String eventId) throws Exception {
-        Integer meshIdx = getMeshColorLod();
         getTransform().transform(pos);
+        InstancingNode iNode = getInstancingNode(this.getColor());
+
+        int featureId = this._metadata.addEventId(eventId);
+        iNode.add(pos, this.getRadius(), featureId, this.getColor());
+        return iNode._node;
+    }
+    
+    /**
+     * Add a sphere from any thread. The color and radius are passed with each sphere instead
+     * of using the factory state. Each thread adds to its own buffers and feature IDs are 
+     * taken from an atomic counter so threads do not block each other. The spheres are 
+     * merged into the instancing nodes by build().
+     * <p>
+     * The transform and other settings must not be changed while spheres are added and all
+     * threads must be finished (e.g. joined) before build() is called.
+     * @param pos sphere position. This is not modified.
+     * @param radius sphere radius
+     * @param color sphere color
+     * @param eventId sphere ID for click events
+     */
+    public void addSphereConcurrent(Point3f pos, float radius, Color color, String eventId) {
+        final int featureId = this._nextSharedId.getAndIncrement();
+        this._shards.get().add(pos, getTransform(), radius, color.getRGB(), featureId, eventId);
+    }
+    
+    /**
+     * Get the node for the mesh of a color or create it.
+     */
+    private InstancingNode getInstancingNode(Color color) throws Exception {
+        Color meshColor = this._instanceColors ? Color.WHITE : color;
+        Integer meshIdx = getMeshColorLod(meshColor);
         
         InstancingNode iNode = this._meshToNodeIndex.get(meshIdx);
         if(iNode == null) {
@@ -107,33 +329,145 @@ public class SphereFactoryInst extends SphereFactory {
             node.setMesh(meshIdx);
             
             iNode = new InstancingNode(node, name);
+            iNode._lodMeshes = getLodMeshes(meshColor);
             this._meshToNodeIndex.put(meshIdx, iNode);
         }
-
-        Quat4f rotation = new Quat4f(0,0,0,1);
-        Vector3f scale = new Vector3f(this.getRadius(), this.getRadius(), this.getRadius());
-        int featureId = this._metadata.addEventId(eventId);
         
-        iNode.add(scale, rotation, pos, featureId);
+        iNode._hasColors |= this._instanceColors;
+        return iNode;
+    }
+    
+    /**
+     * Move the spheres added by each thread into the instancing nodes. The event IDs are added
+     * to the table in the order of their feature IDs after any added with addSphere().
+     */
+    private void mergeShards() {
+        final int sharedCount = this._nextSharedId.get();
+        if(sharedCount == 0) {
+            return;
+        }
+        
+        final String[] eventIds = new String[sharedCount];
+        for(SphereShard shard : this._shardList) {
+            for(int idx = 0; idx < shard._count; idx++) {
+                eventIds[shard._featureId[idx]] = shard._eventIds.get(idx);
+            }
+        }
         
-        return iNode._node;
+        final int idOffset = this._metadata.size();
+        for(String eventId : eventIds) {
+            this._metadata.addEventId(eventId);
+        }
+        
+        try {
+            for(SphereShard shard : this._shardList) {
+                for(int idx = 0; idx < shard._count; idx++) {
+                    InstancingNode iNode = getInstancingNode(new Color(shard._color[idx], true));
+                    iNode.add(shard._trans[idx*3], shard._trans[idx*3 + 1], shard._trans[idx*3 + 2], 
+                            shard._radius[idx], shard._featureId[idx] + idOffset, shard._color[idx]);
+                }
+                shard.clear();
+            }
+        }
+        catch(Exception ex) {
+            throw new IllegalStateException("Failed to merge spheres: " + getName(), ex);
+        }
+        
+        LOG.debug("Merged {} spheres from {} threads", sharedCount, this._shardList.size());
+        this._nextSharedId.set(0);
     }
     
     @Override
     public void build() {
-        GlTF gltf = this._writer.getGltf();
-        gltf.addExtensionsUsed(EXT_INSTANCING);
-        gltf.addExtensionsRequired(EXT_INSTANCING);
-        LOG.info("Adding extension: {}", EXT_INSTANCING);
-        
+        mergeShards();
+        this._writer.addExtension(GlTFMeshGpuInstancing.EXT_NAME, true);
         this._metadata.build(this._writer);
-
-        gltf.addExtensionsUsed(EXT_INST_FEATURES);
-        LOG.info("Adding extension: {}", EXT_INST_FEATURES);
+        this._writer.addExtension(NodeInstanceFeatures.EXT_NAME, false);
         
         for(InstancingNode iNode : this._meshToNodeIndex.values()) {
-            iNode.build(this._writer);
-            iNode.buildFeatures(this._metadata.getTableIdx());
+            if(this._maxClusterSize > 0 && iNode.size() > this._maxClusterSize) {
+                buildClusters(iNode);
+                continue;
+            }
+            
+            iNode.build(this._writer, this._quantize);
+            iNode.buildFeatures(this._metadata.getTableIdx(), this._metadata.size());
+            buildLods(iNode);
+        }
+        
+        LOG.debug("Built instancing nodes: {}", this._meshToNodeIndex.size());
+    }
+    
+    private SphereShard newShard() {
+        SphereShard shard = new SphereShard();
+        this._shardList.add(shard);
+        return shard;
+    }
+    
+    /**
+     * The points LOD is built from the instances of each node so no mesh is needed.
+     */
+    @Override
+    protected int getLodMesh(Color color, int lod) throws Exception {
+        if(lod == LOD_POINTS) {
+            return LOD_POINTS;
+        }
+        return super.getLodMesh(color, lod);
+    }
+    
+    /**
+     * Add the lower LODs to a node after it is built so they share its instance buffers.
+     */
+    private void buildLods(InstancingNode iNode) {
+        if(iNode._lodMeshes == null) {
+            return;
+        }
+        
+        final Node[] lodNodes = new Node[iNode._lodMeshes.length];
+        for(int idx = 0; idx < lodNodes.length; idx++) {
+            final int meshIdx = iNode._lodMeshes[idx];
+            if(meshIdx != LOD_POINTS) {
+                lodNodes[idx] = copyLodNode(iNode._node, meshIdx, idx + 1);
+                continue;
+            }
+            
+            if(this._pointMaterial == null) {
+                this._pointMaterial = this._writer.newBlendMaterial("sphere-points", 0.7f, 0.5f, Color.WHITE);
+            }
+            lodNodes[idx] = iNode.buildPoints(this._writer, this._pointMaterial, 
+                    this._metadata.getTableIdx(), this._metadata.size());
+        }
+        setLodNodes(iNode._node, lodNodes);
+    }
+    
+    /**
+     * Move the instances of a node into child nodes that each have a cluster of nearby 
+     * instances. The feature IDs still reference the shared table.
+     */
+    private void buildClusters(InstancingNode iNode) {
+        final KdClusters clusters = new KdClusters(iNode._trans, iNode.size(), this._maxClusterSize);
+        final int[] order = clusters.getOrder();
+        final Node parent = iNode._node;
+        final Integer meshIdx = parent.getMesh();
+        parent.setMesh(null);
+        
+        for(int clusterIdx = 0; clusterIdx < clusters.getClusterCount(); clusterIdx++) {
+            Node node = new Node();
+            node.setMesh(meshIdx);
+            InstancingNode cluster = new InstancingNode(node, String.format("%s-c%d", iNode._name, clusterIdx));
+            cluster._hasColors = iNode._hasColors;
+            
+            for(int pos = clusters.getStart(clusterIdx); pos < clusters.getEnd(clusterIdx); pos++) {
+                cluster.add(iNode, order[pos]);
+            }
+            
+            cluster._lodMeshes = iNode._lodMeshes;
+            cluster.build(this._writer, this._quantize);
+            cluster.buildFeatures(this._metadata.getTableIdx(), this._metadata.size());
+            buildLods(cluster);
+            parent.addChildren(this._writer.addDetachedNode(node));
         }
+        
+        LOG.debug("Split {} into {} clusters", iNode._name, clusters.getClusterCount());
     }
 }
@@ -0,0 +1,105 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.sphere;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import javax.vecmath.Point3f;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.MeshGltfWriter;
+
+/**
+ * Create a set of spheres as a single POINTS primitive for overview scenes with millions of
+ * spheres. Each sphere is one vertex with a color, the radius as a size attribute and a
+ * feature ID that references the event ID table.
+ * <p>
+ * To show icospheres up close use SphereFactoryInst with {@link #LOD_POINTS} as the last
+ * of the detail levels.
+ * @author Chad Juliano
+ */
+public class SphereFactoryPoints extends SphereFactoryBase {
+
+    private final static Logger LOG = LoggerFactory.getLogger(SphereFactoryPoints.class);
+
+    private final MeshGltfWriter _writer;
+    private final SphereMetadata _metadata = new SphereMetadata();
+    private Node _node = null;
+
+    /** (x,y,z) of each sphere. */
+    private float[] _positions = new float[3*64];
+    private float[] _radius = new float[64];
+    private int[] _colors = new int[64];
+    private int[] _featureIds = new int[64];
+    private int _count = 0;
+
+    public SphereFactoryPoints(MeshGltfWriter writer) {
+        super("sphere");
+        this._writer = writer;
+    }
+
+    /**
+     * Number of spheres that have been added.
+     */
+    public int size() { return this._count; }
+
+    /**
+     * Add a sphere with the current color and radius.
+     * @param pos sphere position
+     * @param eventId sphere ID for click events
+     * @return the node that will contain all the points
+     */
+    @Override
+    public Node addSphere(Point3f pos, String eventId) {
+        if(this._node == null) {
+            this._node = new Node();
+            int nodeIdx = this._writer.addNode(this._node);
+            this._node.setName(String.format("%s[%d]-points", getName(), nodeIdx));
+        }
+
+        if(this._count == this._radius.length) {
+            int newSize = this._count*2;
+            this._positions = Arrays.copyOf(this._positions, newSize*3);
+            this._radius = Arrays.copyOf(this._radius, newSize);
+            this._colors = Arrays.copyOf(this._colors, newSize);
+            this._featureIds = Arrays.copyOf(this._featureIds, newSize);
+        }
+
+        Point3f tPos = new Point3f(pos);
+        getTransform().transform(tPos);
+
+        final int idx = this._count++;
+        this._positions[idx*3] = tPos.x;
+        this._positions[idx*3 + 1] = tPos.y;
+        this._positions[idx*3 + 2] = tPos.z;
+        this._radius[idx] = this.getRadius();
+        this._colors[idx] = this.getColor().getRGB();
+        this._featureIds[idx] = this._metadata.addEventId(eventId);
+        return this._node;
+    }
+
+    @Override
+    public void build() {
+        if(this._count == 0) {
+            return;
+        }
+
+        this._metadata.build(this._writer);
+        Material material = this._writer.newBlendMaterial("sphere-points", 0.7f, 0.5f, Color.WHITE);
+        int meshIdx = SpherePoints.buildMesh(this._writer, this._node.getName(), this._positions,
+                this._radius, this._colors, this._featureIds, this._count, material,
+                this._metadata.getTableIdx(), this._metadata.size());
+        this._node.setMesh(meshIdx);
+
+        LOG.debug("Built sphere points[{}]: count=<{}>", this._node.getName(), this._count);
+    }
+}
@@ -0,0 +1,89 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.sphere;
+
+import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.Mesh;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.TopologyBuilder.TopologyMode;
+import io.github.chadj2.mesh.buffer.BufferColorArray;
+import io.github.chadj2.mesh.buffer.BufferFloatArray;
+import io.github.chadj2.mesh.extinst.FeatureIdAttribute;
+import io.github.chadj2.mesh.extsm.MeshPrimitiveMeshFeatures;
+
+/**
+ * Write spheres as a POINTS primitive with one vertex for each sphere. Viewers draw points
+ * with a fixed size so the radius is written to the {@value #ATTR_SIZE} attribute for
+ * viewers that can scale them.
+ * @author Chad Juliano
+ */
+class SpherePoints {
+
+    /** Vertex attribute with the radius of each point. */
+    static final String ATTR_SIZE = "_SIZE";
+
+    /**
+     * Build a mesh with a POINTS primitive.
+     * @param writer Instance of writer class.
+     * @param name Name of the mesh.
+     * @param positions (x,y,z) of each point.
+     * @param radius Radius of each point.
+     * @param colors ARGB of each point or null to use the material color.
+     * @param featureIds Feature of each point or null if there is no table.
+     * @param count Number of points.
+     * @param material Material of the primitive.
+     * @param tableIdx Index of the property table for the features.
+     * @param featureCount Number of features in the table.
+     * @return index of the mesh
+     */
+    static int buildMesh(MeshGltfWriter writer, String name, float[] positions, float[] radius,
+            int[] colors, int[] featureIds, int count, Material material, int tableIdx, int featureCount) {
+        MeshPrimitive meshPrimitive = new MeshPrimitive();
+        meshPrimitive.setMode(TopologyMode.POINTS.ordinal());
+
+        if(material != null) {
+            int materialIdx = writer.getGltf().getMaterials().indexOf(material);
+            meshPrimitive.setMaterial(materialIdx);
+        }
+
+        BufferFloatArray positionBuf = new BufferFloatArray(name + "-positions", 3);
+        positionBuf.setData(positions, count);
+        positionBuf.buildAttrib(writer, meshPrimitive, "POSITION");
+
+        BufferFloatArray sizeBuf = new BufferFloatArray(name + "-size", 1);
+        sizeBuf.setData(radius, count);
+        sizeBuf.buildAttrib(writer, meshPrimitive, ATTR_SIZE);
+
+        if(colors != null) {
+            BufferColorArray colorBuf = new BufferColorArray(name + "-colors");
+            colorBuf.setData(colors, 0, count);
+            colorBuf.buildAttrib(writer, meshPrimitive, "COLOR_0");
+        }
+
+        if(featureIds != null) {
+            buildFeatures(writer, meshPrimitive, name, featureIds, count, tableIdx, featureCount);
+        }
+
+        Mesh mesh = new Mesh();
+        writer.getGltf().addMeshes(mesh);
+        mesh.setName(name + "-mesh");
+        mesh.addPrimitives(meshPrimitive);
+        return writer.getGltf().getMeshes().size() - 1;
+    }
+
+    private static void buildFeatures(MeshGltfWriter writer, MeshPrimitive meshPrimitive, String name,
+            int[] featureIds, int count, int tableIdx, int featureCount) {
+        FeatureIdAttribute.build(writer, meshPrimitive, name, featureIds, count);
+
+        writer.addExtension(MeshPrimitiveMeshFeatures.EXT_NAME, false);
+        MeshPrimitiveMeshFeatures meshFeatures = new MeshPrimitiveMeshFeatures();
+        meshPrimitive.addExtensions(MeshPrimitiveMeshFeatures.EXT_NAME, meshFeatures);
+
+        meshFeatures.addFeatureIds(FeatureIdAttribute.newFeatureId("eventId", featureCount, tableIdx));
+    }
+}
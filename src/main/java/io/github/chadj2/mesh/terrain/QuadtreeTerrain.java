@@ -0,0 +1,414 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.terrain;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.vecmath.Point3f;
+import javax.vecmath.Tuple3f;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.HeightfieldBuilder;
+import io.github.chadj2.mesh.HeightfieldBuilder.HeightFunction;
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.extlod.NodeMsftLod;
+import io.github.chadj2.mesh.noise.NoiseGenerator;
+
+/**
+ * Divide a large square terrain into a quadtree of tiles. Level 0 is a single tile that covers
+ * the terrain and each level below splits every tile into 4 tiles with the same number of
+ * points, so the resolution doubles at each level. Tiles are generated with
+ * {@link HeightfieldBuilder} and have a skirt that hides cracks between neighbors of a
+ * different level.
+ * <p>
+ * The tiles can be written to a single glTF where each tile is an MSFT_lod node that switches
+ * between its own mesh and its 4 children, or to a separate GLB for each tile. The bounds of
+ * every tile are written to the min and max of its POSITION accessor so a viewer can cull it.
+ * @author Chad Juliano
+ */
+public class QuadtreeTerrain {
+
+    private final static Logger LOG = LoggerFactory.getLogger(QuadtreeTerrain.class);
+
+    /** Default number of points on each side of a tile. */
+    public static final int DEFAULT_TILE_SIZE = 65;
+
+    /** Default screen coverage where a tile is replaced by its children. */
+    public static final float DEFAULT_LOD_COVERAGE = 0.25f;
+
+    /**
+     * Tile of the terrain. The bounds are available after the tile is built.
+     */
+    public static class Tile {
+        private final int _level;
+        private final int _xIdx;
+        private final int _zIdx;
+        private Tuple3f _minBounds = null;
+        private Tuple3f _maxBounds = null;
+        private File _file = null;
+
+        private Tile(int _level, int _xIdx, int _zIdx) {
+            this._level = _level;
+            this._xIdx = _xIdx;
+            this._zIdx = _zIdx;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("L%d-X%d-Z%d", this._level, this._xIdx, this._zIdx);
+        }
+
+        /** Level in the quadtree where 0 is the root. */
+        public int getLevel() { return this._level; }
+
+        /** Column of the tile within its level. */
+        public int getXIdx() { return this._xIdx; }
+
+        /** Row of the tile within its level. */
+        public int getZIdx() { return this._zIdx; }
+
+        public Tuple3f getMinBounds() { return this._minBounds; }
+
+        public Tuple3f getMaxBounds() { return this._maxBounds; }
+
+        /**
+         * Get the GLB file of the tile.
+         * @return null if the tile was not written to its own file.
+         */
+        public File getFile() { return this._file; }
+    }
+
+    private final String _name;
+    private final HeightFunction _function;
+    private final float _length;
+    private final int _levels;
+
+    private int _tileSize = DEFAULT_TILE_SIZE;
+
+    /** Depth of the tile skirts. If negative then the default is used. */
+    private float _skirtDepth = -1f;
+    private float _lodCoverage = DEFAULT_LOD_COVERAGE;
+    private boolean _isTextured = false;
+    private boolean _isParallel = false;
+    private Function<MeshGltfWriter, Material> _materialFactory = null;
+
+    /** Tiles from the last build. */
+    private final List<Tile> _tiles = new ArrayList<>();
+
+    /**
+     * @param _name Prefix for the names of tile meshes and files.
+     * @param _function Height of the terrain at a point.
+     * @param _length Size of the terrain on the X and Z axis. The terrain is centered at the origin.
+     * @param _levels Number of levels in the quadtree.
+     */
+    public QuadtreeTerrain(String _name, HeightFunction _function, float _length, int _levels) {
+        if(_levels < 1) {
+            throw new IllegalArgumentException("Terrain must have at least 1 level: " + _levels);
+        }
+
+        this._name = _name;
+        this._function = _function;
+        this._length = _length;
+        this._levels = _levels;
+    }
+
+    /**
+     * Create a terrain from a noise generator. The generator must be thread safe if tiles are
+     * generated in parallel.
+     * @see QuadtreeTerrain#QuadtreeTerrain(String, HeightFunction, float, int)
+     */
+    public QuadtreeTerrain(String _name, NoiseGenerator _noise, float _length, int _levels) {
+        this(_name, (_xPos, _zPos) -> (float)_noise.getNoise(_xPos, _zPos), _length, _levels);
+    }
+
+    public String getName() { return this._name; }
+
+    public int getLevels() { return this._levels; }
+
+    /**
+     * Set the number of points on each side of a tile. A size of 2^k+1 gives tiles that
+     * sample the same points as the tiles of the level above.
+     */
+    public void setTileSize(int _tileSize) {
+        if(_tileSize < 2) {
+            throw new IllegalArgumentException("Tile must have at least 2 points: " + _tileSize);
+        }
+        this._tileSize = _tileSize;
+    }
+
+    /**
+     * Set the depth of the skirt around each tile. The default is the distance between points
+     * of the root tile.
+     * @see HeightfieldBuilder#setSkirtDepth(float)
+     */
+    public void setSkirtDepth(float _depth) { this._skirtDepth = _depth; }
+
+    public float getSkirtDepth() {
+        return (this._skirtDepth >= 0f) ? this._skirtDepth : getCellSize(0);
+    }
+
+    /**
+     * Set the screen coverage where a tile is replaced by its 4 children.
+     */
+    public void setLodCoverage(float _coverage) { this._lodCoverage = _coverage; }
+
+    /**
+     * Stretch a texture over the whole terrain. Each tile gets the part of the texture it covers.
+     */
+    public void setTextured(boolean _isTextured) { this._isTextured = _isTextured; }
+
+    /**
+     * Generate the tiles of each level on multiple threads. The height function must be
+     * thread safe if this is enabled.
+     */
+    public void setParallel(boolean _isEnabled) { this._isParallel = _isEnabled; }
+
+    /**
+     * Set a function that creates the material of the tiles. It is called once for each writer
+     * so it can also set the base path and alpha mode of the writer. When tiles are written to
+     * separate files it can be called from multiple threads.
+     */
+    public void setMaterialFactory(Function<MeshGltfWriter, Material> _factory) {
+        this._materialFactory = _factory;
+    }
+
+    /**
+     * Get the tiles from the last build ordered by level.
+     */
+    public List<Tile> getTiles() { return Collections.unmodifiableList(this._tiles); }
+
+    /**
+     * Get the distance between points of a tile at a level.
+     */
+    public float getCellSize(int _level) {
+        return getTileLength(_level)/(this._tileSize - 1);
+    }
+
+    private float getTileLength(int _level) {
+        return this._length/(1 << _level);
+    }
+
+    /**
+     * Build all tiles into a single glTF. The root tile is added to the scene. Each tile that
+     * is not a leaf is an MSFT_lod node with its 4 children at full detail and its own mesh as
+     * the lower level of detail.
+     * @param _geoWriter Instance of writer class.
+     * @return Node for the root of the quadtree.
+     */
+    public Node build(MeshGltfWriter _geoWriter) throws Exception {
+        long _startTime = System.nanoTime();
+        this._tiles.clear();
+
+        Material _material = null;
+        if(this._materialFactory != null) {
+            _material = this._materialFactory.apply(_geoWriter);
+        }
+
+        // mesh index of each tile by level
+        final int[][] _meshes = new int[this._levels][];
+
+        for(int _level = 0; _level < this._levels; _level++) {
+            List<HeightfieldBuilder> _builders = mapTiles(_level, this::newTileBuilder);
+            _meshes[_level] = new int[_builders.size()];
+
+            // the writer is not thread safe so tiles are serialized in order
+            for(int _tileIdx = 0; _tileIdx < _builders.size(); _tileIdx++) {
+                HeightfieldBuilder _builder = _builders.get(_tileIdx);
+                _builder.setMaterial(_material);
+                _meshes[_level][_tileIdx] = _builder.buildMesh(_geoWriter);
+                this._tiles.add(newTile(_level, _tileIdx, _builder));
+            }
+        }
+
+        Node _rootNode = newQuadNode(_geoWriter, _meshes, 0, 0, 0);
+        _geoWriter.addNode(_rootNode);
+
+        if(this._levels > 1) {
+            _geoWriter.addExtension(NodeMsftLod.EXT_NAME, false);
+        }
+
+        LOG.info("Built terrain: name=<{}> levels=<{}> tiles=<{}> time=<{} ms>", this._name,
+                this._levels, this._tiles.size(), (System.nanoTime() - _startTime)/1000000);
+        return _rootNode;
+    }
+
+    /**
+     * Write each tile to a separate GLB file named with the level and index of the tile. The
+     * bounds and position of the tile are added to the asset extras. If parallel is enabled then
+     * tiles are built and written on multiple threads.
+     * @param _outDir Directory for the files.
+     * @return Tiles ordered by level.
+     */
+    public List<Tile> writeTiles(File _outDir) throws Exception {
+        long _startTime = System.nanoTime();
+        this._tiles.clear();
+
+        for(int _level = 0; _level < this._levels; _level++) {
+            List<Tile> _levelTiles = mapTiles(_level, 
+                    (_tileLevel, _tileIdx) -> writeTile(_outDir, _tileLevel, _tileIdx));
+            this._tiles.addAll(_levelTiles);
+        }
+
+        LOG.info("Wrote terrain tiles: name=<{}> levels=<{}> tiles=<{}> time=<{} ms>", this._name,
+                this._levels, this._tiles.size(), (System.nanoTime() - _startTime)/1000000);
+        return getTiles();
+    }
+
+    private Tile writeTile(File _outDir, int _level, int _tileIdx) {
+        try {
+            HeightfieldBuilder _builder = newTileBuilder(_level, _tileIdx);
+            MeshGltfWriter _geoWriter = new MeshGltfWriter(getTileBufferSize());
+            if(this._materialFactory != null) {
+                _builder.setMaterial(this._materialFactory.apply(_geoWriter));
+            }
+
+            _builder.build(_geoWriter);
+            Tile _tile = newTile(_level, _tileIdx, _builder);
+
+            _geoWriter.setMetaParam("tileLevel", _tile._level);
+            _geoWriter.setMetaParam("tileX", _tile._xIdx);
+            _geoWriter.setMetaParam("tileZ", _tile._zIdx);
+            _geoWriter.setMetaParam("minBounds", toArray(_tile._minBounds));
+            _geoWriter.setMetaParam("maxBounds", toArray(_tile._maxBounds));
+
+            _tile._file = new File(_outDir, _builder.getName() + ".glb");
+            _geoWriter.writeGltf(_tile._file);
+            return _tile;
+        }
+        catch(Exception _ex) {
+            throw new IllegalStateException("Failed to write tile: " + _tileIdx, _ex);
+        }
+    }
+
+    /**
+     * Apply a function to each tile of a level in parallel if enabled.
+     * @return Results ordered by tile index.
+     */
+    private <T> List<T> mapTiles(int _level, TileFunction<T> _tileFunction) {
+        final int _tileCount = 1 << (2*_level);
+        IntStream _tileStream = IntStream.range(0, _tileCount);
+        if(this._isParallel) {
+            _tileStream = _tileStream.parallel();
+        }
+
+        return _tileStream.mapToObj(_tileIdx -> _tileFunction.apply(_level, _tileIdx))
+                .collect(Collectors.toList());
+    }
+
+    @FunctionalInterface
+    private interface TileFunction<T> {
+        T apply(int _level, int _tileIdx);
+    }
+
+    /**
+     * Create a builder for a tile and calculate its vertices. The tile index is
+     * {@code zIdx*tilesPerSide + xIdx}.
+     */
+    private HeightfieldBuilder newTileBuilder(int _level, int _tileIdx) {
+        final int _tilesPerSide = 1 << _level;
+        final int _xIdx = _tileIdx % _tilesPerSide;
+        final int _zIdx = _tileIdx / _tilesPerSide;
+        final float _tileLength = getTileLength(_level);
+
+        // center of the tile in terrain coordinates
+        final float _xCenter = (_xIdx + 0.5f)*_tileLength - this._length/2f;
+        final float _zCenter = (_zIdx + 0.5f)*_tileLength - this._length/2f;
+
+        String _tileName = String.format("%s-L%d-X%d-Z%d", this._name, _level, _xIdx, _zIdx);
+        HeightfieldBuilder _builder = new HeightfieldBuilder(_tileName, this._tileSize,
+                this._tileSize, _tileLength, _tileLength);
+        _builder.setCenter(new Point3f(-_xCenter, 0f, -_zCenter));
+        _builder.setSkirtDepth(getSkirtDepth());
+
+        if(this._isTextured) {
+            _builder.setTextured(true);
+            _builder.setTexRange((float)_xIdx/_tilesPerSide, (float)_zIdx/_tilesPerSide,
+                    (float)(_xIdx + 1)/_tilesPerSide, (float)(_zIdx + 1)/_tilesPerSide);
+        }
+
+        _builder.setHeights((_xPos, _zPos) -> this._function.getHeight(_xPos + _xCenter, _zPos + _zCenter));
+
+        try {
+            _builder.calcVertices();
+        }
+        catch(Exception _ex) {
+            throw new IllegalStateException("Failed to generate tile: " + _tileName, _ex);
+        }
+
+        return _builder;
+    }
+
+    private static Tile newTile(int _level, int _tileIdx, HeightfieldBuilder _builder) {
+        final int _tilesPerSide = 1 << _level;
+        Tile _tile = new Tile(_level, _tileIdx % _tilesPerSide, _tileIdx / _tilesPerSide);
+        _tile._minBounds = _builder.getMinBounds();
+        _tile._maxBounds = _builder.getMaxBounds();
+        return _tile;
+    }
+
+    /**
+     * Create the node for a tile. A leaf tile has only its mesh. Other tiles have their 4
+     * children and reference a node with their own mesh as the lower level of detail.
+     */
+    private Node newQuadNode(MeshGltfWriter _geoWriter, int[][] _meshes, int _level, int _xIdx,
+            int _zIdx) {
+        final int _tilesPerSide = 1 << _level;
+        final String _tileName = String.format("%s-L%d-X%d-Z%d", this._name, _level, _xIdx, _zIdx);
+
+        Node _tileNode = new Node();
+        _tileNode.setMesh(_meshes[_level][_zIdx*_tilesPerSide + _xIdx]);
+        _tileNode.setName(_tileName + "-node");
+
+        if(_level == this._levels - 1) {
+            return _tileNode;
+        }
+
+        Node _quadNode = new Node();
+        _quadNode.setName(_tileName + "-quad");
+        for(int _childIdx = 0; _childIdx < 4; _childIdx++) {
+            int _childX = 2*_xIdx + (_childIdx % 2);
+            int _childZ = 2*_zIdx + (_childIdx / 2);
+            Node _childNode = newQuadNode(_geoWriter, _meshes, _level + 1, _childX, _childZ);
+            _quadNode.addChildren(_geoWriter.addDetachedNode(_childNode));
+        }
+
+        NodeMsftLod _lodExt = new NodeMsftLod();
+        _lodExt.addIds(_geoWriter.addDetachedNode(_tileNode));
+        _quadNode.addExtensions(NodeMsftLod.EXT_NAME, _lodExt);
+
+        Map<String, Object> _extras = new HashMap<>();
+        _extras.put(NodeMsftLod.EXTRAS_SCREEN_COVERAGE, new float[] { this._lodCoverage, 0f });
+        _quadNode.setExtras(_extras);
+        return _quadNode;
+    }
+
+    /**
+     * Estimate the buffer needed to serialize a single tile.
+     */
+    private int getTileBufferSize() {
+        final int _vertexCount = (this._tileSize + 2)*(this._tileSize + 2);
+        final int _indexCount = (this._tileSize + 1)*(this._tileSize + 1)*6;
+        final int _vertexBytes = 3*Float.BYTES + 3*Float.BYTES + 2*Float.BYTES;
+        return _vertexCount*_vertexBytes + _indexCount*Integer.BYTES + 1024;
+    }
+
+    private static float[] toArray(Tuple3f _tuple) {
+        return new float[] { _tuple.x, _tuple.y, _tuple.z };
+    }
+}
@@ -0,0 +1,320 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.terrain;
+
+import java.util.Arrays;
+
+import javax.vecmath.Point2f;
+import javax.vecmath.Point3f;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.chadj2.mesh.HeightfieldBuilder.HeightFunction;
+import io.github.chadj2.mesh.MeshBuilder;
+import io.github.chadj2.mesh.MeshVertex;
+import io.github.chadj2.mesh.TriangleBuilder;
+
+/**
+ * Adaptive terrain mesher based on a right-triangulated irregular network (RTIN). The grid is
+ * recursively split into right triangles by bisecting the hypotenuse. The error of each split
+ * point is the vertical distance between the height and the interpolated hypotenuse, and it
+ * includes the errors of all splits below it. A mesh is generated by only splitting triangles
+ * where the error is above a threshold, so flat areas get large triangles.
+ * <p>
+ * The grid must have 2^k+1 points on each side. The error hierarchy is calculated once when
+ * the heights are set and can be used to generate meshes with different errors.
+ * <p>
+ * See Evans, Kirkpatrick and Townsend, "Right-Triangulated Irregular Networks", Algorithmica 2001.
+ * @author Chad Juliano
+ */
+public class RtinMesher {
+
+    private final static Logger LOG = LoggerFactory.getLogger(RtinMesher.class);
+
+    /** Number of points on each side of the grid. */
+    private final int _gridSize;
+
+    /** Size of the grid in model units */
+    private final float _xLength;
+    private final float _zLength;
+
+    private final float[] _heights;
+
+    /** Maximum error of the split at each point including the splits below it. */
+    private final float[] _errors;
+
+    private boolean _hasHeights = false;
+
+    /** Set texture coordinates that stretch a texture over the grid. */
+    private boolean _isTextured = false;
+
+    /** Vertex created for each grid point during addTriangles(). */
+    private MeshVertex[] _vertexMap = null;
+    private int _vertexCount = 0;
+
+    /**
+     * @param _gridSize Number of points on each side of the grid. Must be 2^k+1.
+     * @param _xLength Size of the grid on the X axis.
+     * @param _zLength Size of the grid on the Z axis.
+     */
+    public RtinMesher(int _gridSize, float _xLength, float _zLength) {
+        final int _tileSize = _gridSize - 1;
+        if(_tileSize < 1 || (_tileSize & (_tileSize - 1)) != 0) {
+            throw new IllegalArgumentException("Grid size must be 2^k+1: " + _gridSize);
+        }
+
+        this._gridSize = _gridSize;
+        this._xLength = _xLength;
+        this._zLength = _zLength;
+        this._heights = new float[_gridSize*_gridSize];
+        this._errors = new float[_gridSize*_gridSize];
+    }
+
+    public int getGridSize() { return this._gridSize; }
+
+    /**
+     * Set texture coordinates that stretch a texture over the grid.
+     */
+    public void setTextured(boolean _isTextured) { this._isTextured = _isTextured; }
+
+    /**
+     * Copy heights from an array and calculate the error hierarchy.
+     * @param _heights Array with an entry for each point at index {@code zIdx*gridSize + xIdx}.
+     */
+    public void setHeights(float[] _heights) {
+        if(_heights.length != this._heights.length) {
+            throw new IllegalArgumentException(String.format("Expected %d heights but got %d",
+                    this._heights.length, _heights.length));
+        }
+
+        System.arraycopy(_heights, 0, this._heights, 0, _heights.length);
+        calcErrors();
+    }
+
+    /**
+     * Sample heights from a function at each point of the grid and calculate the error hierarchy.
+     */
+    public void setHeights(HeightFunction _function) {
+        for(int _zIdx = 0; _zIdx < this._gridSize; _zIdx++) {
+            final float _zPos = getZPos(_zIdx);
+            for(int _xIdx = 0; _xIdx < this._gridSize; _xIdx++) {
+                this._heights[_zIdx*this._gridSize + _xIdx] = _function.getHeight(getXPos(_xIdx), _zPos);
+            }
+        }
+
+        calcErrors();
+    }
+
+    /**
+     * Get the X position of a grid column before the transform is applied.
+     */
+    public float getXPos(int _xIdx) {
+        return MeshBuilder.interpFloat(this._gridSize - 1, this._xLength, _xIdx) - this._xLength/2f;
+    }
+
+    /**
+     * Get the Z position of a grid row before the transform is applied.
+     */
+    public float getZPos(int _zIdx) {
+        return MeshBuilder.interpFloat(this._gridSize - 1, this._zLength, _zIdx) - this._zLength/2f;
+    }
+
+    /**
+     * Calculate the error of every split from the smallest triangles to the largest. Triangles
+     * are numbered so that the children of triangle i are 2i+2 and 2i+3, which means the
+     * children are always visited before their parent.
+     */
+    private void calcErrors() {
+        final int _size = this._gridSize;
+        final int _tileSize = _size - 1;
+        final int _triCount = _tileSize*_tileSize*2 - 2;
+        final int _parentCount = _triCount - _tileSize*_tileSize;
+        final int[] _coords = new int[4];
+        final float[] _errors = this._errors;
+        final float[] _heights = this._heights;
+
+        Arrays.fill(_errors, 0f);
+        long _startTime = System.nanoTime();
+
+        for(int _triIdx = _triCount - 1; _triIdx >= 0; _triIdx--) {
+            getTriangleCoords(_triIdx, _tileSize, _coords);
+            final int _ax = _coords[0];
+            final int _ay = _coords[1];
+            final int _bx = _coords[2];
+            final int _by = _coords[3];
+
+            // the split point is the middle of the hypotenuse and c is the right angle
+            final int _mx = (_ax + _bx) >> 1;
+            final int _my = (_ay + _by) >> 1;
+            final int _cx = _mx + _my - _ay;
+            final int _cy = _my + _ax - _mx;
+
+            final float _interpHeight = (_heights[_ay*_size + _ax] + _heights[_by*_size + _bx])/2f;
+            final int _middleIdx = _my*_size + _mx;
+            final float _middleError = Math.abs(_interpHeight - _heights[_middleIdx]);
+            _errors[_middleIdx] = Math.max(_errors[_middleIdx], _middleError);
+
+            if(_triIdx < _parentCount) {
+                // include the errors of the child triangles
+                final int _leftIdx = ((_ay + _cy) >> 1)*_size + ((_ax + _cx) >> 1);
+                final int _rightIdx = ((_by + _cy) >> 1)*_size + ((_bx + _cx) >> 1);
+                _errors[_middleIdx] = Math.max(_errors[_middleIdx],
+                        Math.max(_errors[_leftIdx], _errors[_rightIdx]));
+            }
+        }
+
+        this._hasHeights = true;
+        LOG.debug("RTIN errors: grid=<{}x{}> time=<{} ms>", _size, _size,
+                (System.nanoTime() - _startTime)/1000000);
+    }
+
+    /**
+     * Get the end points of the hypotenuse of a triangle by following its path from one of the
+     * two root triangles.
+     * @param _coords Returns (ax, ay, bx, by).
+     */
+    private static void getTriangleCoords(int _triIdx, int _tileSize, int[] _coords) {
+        int _id = _triIdx + 2;
+        int _ax = 0, _ay = 0, _bx = 0, _by = 0, _cx = 0, _cy = 0;
+
+        if((_id & 1) != 0) {
+            // bottom-left root triangle
+            _bx = _by = _cx = _tileSize;
+        }
+        else {
+            // top-right root triangle
+            _ax = _ay = _cy = _tileSize;
+        }
+
+        while((_id >>= 1) > 1) {
+            final int _mx = (_ax + _bx) >> 1;
+            final int _my = (_ay + _by) >> 1;
+
+            if((_id & 1) != 0) {
+                // left child
+                _bx = _ax;
+                _by = _ay;
+                _ax = _cx;
+                _ay = _cy;
+            }
+            else {
+                // right child
+                _ax = _bx;
+                _ay = _by;
+                _bx = _cx;
+                _by = _cy;
+            }
+
+            _cx = _mx;
+            _cy = _my;
+        }
+
+        _coords[0] = _ax;
+        _coords[1] = _ay;
+        _coords[2] = _bx;
+        _coords[3] = _by;
+    }
+
+    /**
+     * Count the triangles that would be generated for an error.
+     * @param _maxError Maximum vertical distance from the heights.
+     */
+    public int getTriangleCount(float _maxError) {
+        checkHeights();
+        final int _max = this._gridSize - 1;
+        return countTriangles(_maxError, 0, 0, _max, _max, _max, 0)
+                + countTriangles(_maxError, _max, _max, 0, 0, 0, _max);
+    }
+
+    private int countTriangles(float _maxError, int _ax, int _ay, int _bx, int _by, int _cx, int _cy) {
+        final int _mx = (_ax + _bx) >> 1;
+        final int _my = (_ay + _by) >> 1;
+
+        if(isSplit(_maxError, _ax, _ay, _cx, _cy, _mx, _my)) {
+            return countTriangles(_maxError, _cx, _cy, _ax, _ay, _mx, _my)
+                    + countTriangles(_maxError, _bx, _by, _cx, _cy, _mx, _my);
+        }
+
+        return 1;
+    }
+
+    /**
+     * Add the triangles needed to stay within an error to a builder. Vertices are only created
+     * for grid points that are used and the transform of the builder is applied.
+     * @param _builder Builder that will receive the triangles.
+     * @param _maxError Maximum vertical distance from the heights.
+     * @return Number of triangles added.
+     */
+    public int addTriangles(TriangleBuilder _builder, float _maxError) throws Exception {
+        checkHeights();
+        final int _max = this._gridSize - 1;
+        this._vertexMap = new MeshVertex[this._gridSize*this._gridSize];
+        this._vertexCount = 0;
+        int _triCount = 0;
+        try {
+            _triCount += addTriangles(_builder, _maxError, 0, 0, _max, _max, _max, 0);
+            _triCount += addTriangles(_builder, _maxError, _max, _max, 0, 0, 0, _max);
+        }
+        finally {
+            this._vertexMap = null;
+        }
+
+        LOG.debug("RTIN mesh: builder=<{}> error=<{}> triangles=<{}> vertices=<{}>",
+                _builder.getName(), _maxError, _triCount, this._vertexCount);
+        return _triCount;
+    }
+
+    private int addTriangles(TriangleBuilder _builder, float _maxError, int _ax, int _ay,
+            int _bx, int _by, int _cx, int _cy) throws Exception {
+        final int _mx = (_ax + _bx) >> 1;
+        final int _my = (_ay + _by) >> 1;
+
+        if(isSplit(_maxError, _ax, _ay, _cx, _cy, _mx, _my)) {
+            return addTriangles(_builder, _maxError, _cx, _cy, _ax, _ay, _mx, _my)
+                    + addTriangles(_builder, _maxError, _bx, _by, _cx, _cy, _mx, _my);
+        }
+
+        _builder.addTriangle(getVertex(_builder, _ax, _ay), getVertex(_builder, _bx, _by),
+                getVertex(_builder, _cx, _cy));
+        return 1;
+    }
+
+    /**
+     * A triangle is split if it is larger than one grid cell and the split point has an error
+     * above the maximum.
+     */
+    private boolean isSplit(float _maxError, int _ax, int _ay, int _cx, int _cy, int _mx, int _my) {
+        return (Math.abs(_ax - _cx) + Math.abs(_ay - _cy) > 1)
+                && this._errors[_my*this._gridSize + _mx] > _maxError;
+    }
+
+    private MeshVertex getVertex(TriangleBuilder _builder, int _xIdx, int _zIdx) throws Exception {
+        final int _idx = _zIdx*this._gridSize + _xIdx;
+        MeshVertex _vertex = this._vertexMap[_idx];
+        if(_vertex != null) {
+            return _vertex;
+        }
+
+        _vertex = _builder.newVertex(new Point3f(getXPos(_xIdx), this._heights[_idx], getZPos(_zIdx)));
+        if(this._isTextured) {
+            final float _uPos = MeshBuilder.interpFloat(this._gridSize - 1, 1f, _xIdx);
+            final float _vPos = MeshBuilder.interpFloat(this._gridSize - 1, 1f, _zIdx);
+            _vertex.setTexCoord(new Point2f(_uPos, _vPos));
+        }
+
+        this._vertexMap[_idx] = _vertex;
+        this._vertexCount++;
+        return _vertex;
+    }
+
+    private void checkHeights() {
+        if(!this._hasHeights) {
+            throw new IllegalStateException("Heights have not been set");
+        }
+    }
+}
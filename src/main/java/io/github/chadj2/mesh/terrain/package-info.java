@@ -0,0 +1,6 @@
+/**
+ * Generation of large terrains as tiles with multiple levels of detail
+ *
+ * @author Chad Juliano
+ */
+package io.github.chadj2.mesh.terrain;
@@ -6,6 +6,9 @@
 
 package io.github.chadj2.mesh.demo;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.awt.Color;
 import java.io.File;
 import java.util.ArrayList;
@@ -19,14 +22,22 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.javagl.jgltf.impl.v2.BufferView;
 import de.javagl.jgltf.impl.v2.Mesh;
 import de.javagl.jgltf.impl.v2.MeshPrimitive;
 import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.LineBatchBuilder;
 import io.github.chadj2.mesh.MeshGltfWriter;
 import io.github.chadj2.mesh.MeshVertex;
+import io.github.chadj2.mesh.PipeBatchBuilder;
 import io.github.chadj2.mesh.PipeBuilder;
+import io.github.chadj2.mesh.PipeInstanceBuilder;
 import io.github.chadj2.mesh.TopologyBuilder;
 import io.github.chadj2.mesh.TopologyBuilder.TopologyMode;
+import io.github.chadj2.mesh.extinst.GlTFMeshGpuInstancing;
+import io.github.chadj2.mesh.extsm.GlTFStructuralMetadata;
+import io.github.chadj2.mesh.extsm.PropertyTable;
+import io.github.chadj2.mesh.optimize.PolylineSimplifier;
 
 public class TestLineModels {
     
@@ -71,6 +82,116 @@ public class TestLineModels {
     }
     
 
+    /**
+     * Combine many line strips into a single LINES primitive with a feature for each strip.
+     * @see LineBatchBuilder
+     */
+    @Test
+    public void testLineBatch() throws Exception {
+        final int gridSize = 50;
+        final int rPoints = 100;
+        
+        LineBatchBuilder lineBuilder = new LineBatchBuilder("test_line_batch");
+        for(int xIdx = 0; xIdx < gridSize; xIdx++) {
+            for(int zIdx = 0; zIdx < gridSize; zIdx++) {
+                List<Point3f> pointList = new ArrayList<>();
+                List<Color> colorList = new ArrayList<>();
+                createSpiral(pointList, colorList, rPoints, 4 + (xIdx + zIdx) % 8);
+                
+                // move each spiral to its own grid cell
+                Vector3f offset = new Vector3f(xIdx*2.5f, 0f, zIdx*2.5f);
+                pointList.forEach(point -> point.add(offset));
+                
+                String lineId = String.format("line-%d-%d", xIdx, zIdx);
+                int featureId = lineBuilder.addLineStrip(pointList, colorList, lineId);
+                assertEquals(xIdx*gridSize + zIdx, featureId);
+            }
+        }
+        
+        final int lineCount = gridSize*gridSize;
+        assertEquals(lineCount, lineBuilder.getFeatureCount());
+        assertEquals(lineCount*rPoints, lineBuilder.getSegmentCount());
+        
+        Node node = lineBuilder.build(this._geoWriter);
+        assertEquals(1, this._geoWriter.getGltf().getMeshes().size());
+        MeshPrimitive primitive = this._geoWriter.getGltf().getMeshes().get(node.getMesh()).getPrimitives().get(0);
+        assertEquals(TopologyMode.LINES.ordinal(), primitive.getMode().intValue());
+        assertTrue(primitive.getAttributes().containsKey("_FEATURE_ID_0"));
+        
+        // there is an offset for each string and one for the end of the last string
+        GlTFStructuralMetadata structMeta = (GlTFStructuralMetadata)this._geoWriter.getGltf()
+                .getExtensions().get("EXT_structural_metadata");
+        PropertyTable table = structMeta.getPropertyTables().get(0);
+        assertEquals(lineCount, table.getCount().intValue());
+        
+        int offsetsIdx = table.getProperties().get("line_id").getStringOffsets();
+        BufferView offsetsView = this._geoWriter.getGltf().getBufferViews().get(offsetsIdx);
+        assertEquals((lineCount + 1)*Short.BYTES, offsetsView.getByteLength().intValue());
+        
+        File _outFile = TestShapeModels.getFile(lineBuilder.getName());
+        this._geoWriter.writeGltf(_outFile);
+        LOG.info("Finished generating: {}", _outFile);
+    }
+
+    /**
+     * Simplify a dense spiral before drawing it as a line strip and as a pipe.
+     * @see PolylineSimplifier
+     */
+    @Test
+    public void testLineSimplify() throws Exception {
+        List<Point3f> pointList = new ArrayList<>();
+        List<Color> colorList = new ArrayList<>();
+        createSpiral(pointList, colorList, 20000, 40);
+        
+        final float tolerance = 0.002f;
+        int[] keepIdx = new PolylineSimplifier(tolerance).simplify(pointList);
+        LOG.info("Simplified spiral: points=<{} -> {}>", pointList.size(), keepIdx.length);
+        assertTrue(keepIdx.length < pointList.size()/4);
+        
+        // every removed point must be within tolerance of the segment that replaced it
+        for(int keepPos = 1; keepPos < keepIdx.length; keepPos++) {
+            Point3f start = pointList.get(keepIdx[keepPos - 1]);
+            Point3f end = pointList.get(keepIdx[keepPos]);
+            for(int idx = keepIdx[keepPos - 1] + 1; idx < keepIdx[keepPos]; idx++) {
+                assertTrue(segmentDistance(pointList.get(idx), start, end) <= tolerance*1.001f);
+            }
+        }
+        
+        TopologyBuilder lineBuilder = new TopologyBuilder("test_line_simplify", TopologyMode.LINE_STRIP);
+        lineBuilder.setSimplifyTolerance(tolerance);
+        for(int idx = 0; idx < pointList.size(); idx++) {
+            MeshVertex vertex = lineBuilder.newVertex(pointList.get(idx));
+            vertex.setColor(colorList.get(idx));
+        }
+        
+        Node node = lineBuilder.build(this._geoWriter);
+        MeshPrimitive primitive = this._geoWriter.getGltf().getMeshes().get(node.getMesh()).getPrimitives().get(0);
+        int positionIdx = primitive.getAttributes().get("POSITION");
+        assertEquals(keepIdx.length, this._geoWriter.getGltf().getAccessors().get(positionIdx).getCount().intValue());
+        
+        PipeBatchBuilder pipeBuilder = new PipeBatchBuilder("test_line_simplify-pipe", 0.01f, 6);
+        pipeBuilder.setCenter(new Point3f(-3f, 0f, 0f));
+        pipeBuilder.setSimplifyTolerance(tolerance);
+        pipeBuilder.addPipe(pointList, colorList);
+        pipeBuilder.build(this._geoWriter);
+        
+        File _outFile = TestShapeModels.getFile(lineBuilder.getName());
+        this._geoWriter.writeGltf(_outFile);
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    private static float segmentDistance(Point3f point, Point3f start, Point3f end) {
+        Vector3f segment = new Vector3f();
+        segment.sub(end, start);
+        Vector3f offset = new Vector3f();
+        offset.sub(point, start);
+        
+        float t = Math.max(0f, Math.min(1f, offset.dot(segment)/segment.lengthSquared()));
+        segment.scale(t);
+        offset.sub(segment);
+        return offset.length();
+    }
+
     /**
      * Draw a spiral with the pipe builder.
      * @throws Exception
@@ -100,6 +221,145 @@ public class TestLineModels {
         LOG.info("Finished generating: {}", _outFile);
     }
     
+    /**
+     * Draw many nested spirals as pipes in a single mesh.
+     * @see PipeBatchBuilder
+     */
+    @Test
+    public void testPipeBatch() throws Exception {
+        final int lineCount = 200;
+        final int rPoints = 500;
+        final int sides = 6;
+        
+        List<List<Point3f>> pointLists = new ArrayList<>();
+        List<List<Color>> colorLists = new ArrayList<>();
+        for(int lineIdx = 0; lineIdx < lineCount; lineIdx++) {
+            List<Point3f> pointList = new ArrayList<>();
+            List<Color> colorList = new ArrayList<>();
+            createSpiral(pointList, colorList, rPoints, 20);
+            
+            // nest each spiral inside the next
+            float scale = 1f + 0.02f*lineIdx;
+            pointList.forEach(point -> point.scale(scale));
+            
+            pointLists.add(pointList);
+            colorLists.add(colorList);
+        }
+        
+        PipeBatchBuilder meshBuilder = new PipeBatchBuilder("test_pipe_batch", 0.005f, sides);
+        long startTime = System.nanoTime();
+        meshBuilder.addPipes(pointLists, colorLists);
+        long elapsedMs = (System.nanoTime() - startTime)/1000000;
+        
+        final int pointCount = rPoints + 1;
+        assertEquals(lineCount, meshBuilder.getPipeCount());
+        assertEquals(lineCount*((pointCount - 1)*sides*2 + 2*sides), meshBuilder.getTriangleCount());
+        LOG.info("Pipe batch: lines=<{}> vertices=<{}> triangles=<{}> time=<{} ms>", lineCount, 
+                meshBuilder.getVertexCount(), meshBuilder.getTriangleCount(), elapsedMs);
+        
+        meshBuilder.build(this._geoWriter);
+        
+        File _outFile = TestShapeModels.getFile(meshBuilder.getName());
+        this._geoWriter.writeGltf(_outFile);
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    /**
+     * Reuse the batch builders with and without colors. Each build must only write colors if
+     * the batch since the last build had them.
+     * @see PipeBatchBuilder#clear
+     * @see LineBatchBuilder#clear
+     */
+    @Test
+    public void testBatchReuse() throws Exception {
+        final List<Point3f> pointList = new ArrayList<>();
+        final List<Color> colorList = new ArrayList<>();
+        createSpiral(pointList, colorList, 50, 2);
+        
+        PipeBatchBuilder pipeBuilder = new PipeBatchBuilder("test_batch_reuse-pipe", 0.01f, 6);
+        LineBatchBuilder lineBuilder = new LineBatchBuilder("test_batch_reuse-line");
+        final boolean[] hasColorsList = { true, false, true };
+        
+        for(boolean hasColors : hasColorsList) {
+            List<Color> batchColors = hasColors ? colorList : null;
+            pipeBuilder.addPipe(pointList, batchColors);
+            lineBuilder.addLineStrip(pointList, batchColors, "spiral");
+            
+            int pipeMeshIdx = pipeBuilder.buildMesh(this._geoWriter);
+            int lineMeshIdx = lineBuilder.buildMesh(this._geoWriter);
+            for(int meshIdx : new int[] { pipeMeshIdx, lineMeshIdx }) {
+                Mesh mesh = this._geoWriter.getGltf().getMeshes().get(meshIdx);
+                assertEquals(hasColors, mesh.getPrimitives().get(0).getAttributes().containsKey("COLOR_0"));
+            }
+        }
+    }
+    
+    /**
+     * Draw many nested spirals as instanced cylinders with spheres at the joints.
+     * @see PipeInstanceBuilder
+     */
+    @Test
+    public void testPipeInstances() throws Exception {
+        final int lineCount = 200;
+        final int rPoints = 500;
+        
+        List<List<Point3f>> pointLists = new ArrayList<>();
+        for(int lineIdx = 0; lineIdx < lineCount; lineIdx++) {
+            List<Point3f> pointList = new ArrayList<>();
+            createSpiral(pointList, new ArrayList<>(), rPoints, 20);
+            
+            float scale = 1f + 0.02f*lineIdx;
+            pointList.forEach(point -> point.scale(scale));
+            pointLists.add(pointList);
+        }
+        
+        PipeInstanceBuilder meshBuilder = new PipeInstanceBuilder("test_pipe_instances", 0.005f, 8);
+        meshBuilder.setColor(Color.ORANGE);
+        meshBuilder.addPolylines(pointLists);
+        
+        assertEquals(lineCount*rPoints, meshBuilder.getSegmentCount());
+        assertEquals(lineCount*(rPoints + 1), meshBuilder.getJointCount());
+        
+        Node node = meshBuilder.build(this._geoWriter);
+        assertEquals(2, node.getChildren().size());
+        assertEquals(0, meshBuilder.getSegmentCount());
+        LOG.info("Pipe instances: segments=<{}> buffer=<{} bytes>", lineCount*rPoints, 
+                this._geoWriter.getBuffer().position());
+        
+        File _outFile = TestShapeModels.getFile(meshBuilder.getName());
+        this._geoWriter.writeGltf(_outFile);
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    /**
+     * Build pipe instances in local coordinates with the transform on the node.
+     * @see PipeInstanceBuilder
+     */
+    @Test
+    public void testPipeInstancesDefer() throws Exception {
+        PipeInstanceBuilder meshBuilder = new PipeInstanceBuilder("test_pipe_instances_defer", 0.05f, 8);
+        meshBuilder.setDeferTransform(true);
+        meshBuilder.setCenter(new Point3f(-2f, 0f, 0f));
+        meshBuilder.addSegment(new Point3f(0f, 0f, 0f), new Point3f(0f, 1f, 0f));
+        meshBuilder.addJoint(new Point3f(0f, 1f, 0f));
+        
+        Node node = meshBuilder.build(this._geoWriter);
+        assertEquals(2f, node.getTranslation()[0], 1e-6f);
+        
+        File _outFile = TestShapeModels.getFile(meshBuilder.getName());
+        this._geoWriter.writeGltf(_outFile);
+        
+        // instances are not transformed
+        for(int childIdx : node.getChildren()) {
+            Node child = this._geoWriter.getGltf().getNodes().get(childIdx);
+            GlTFMeshGpuInstancing instancing = (GlTFMeshGpuInstancing)child.getExtensions()
+                    .get(GlTFMeshGpuInstancing.EXT_NAME);
+            int accessorIdx = instancing.getAttributes().get("TRANSLATION");
+            Number[] min = this._geoWriter.getGltf().getAccessors().get(accessorIdx).getMin();
+            assertEquals(0f, min[0].floatValue(), 1e-6f);
+        }
+    }
+    
     @Test
     public void testTransformX() throws Exception {
         testTransform(new Vector3f(0.1f,    1f,     0f));
@@ -0,0 +1,295 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.demo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import javax.vecmath.Point3f;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.BufferView;
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.GridIndexTemplate;
+import io.github.chadj2.mesh.MeshBuilder;
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.MeshVertex;
+import io.github.chadj2.mesh.extlod.NodeMsftLod;
+import io.github.chadj2.mesh.noise.NoiseGenerator;
+import io.github.chadj2.mesh.optimize.MeshSimplifier;
+import io.github.chadj2.mesh.optimize.VertexCacheOptimizer;
+
+public class TestMeshOptimize {
+
+    private final static Logger LOG = LoggerFactory.getLogger(TestMeshOptimize.class);
+
+    private final MeshGltfWriter _writer = new MeshGltfWriter();
+
+    /**
+     * Benchmark the ACMR of a terrain grid with and without vertex cache optimization.
+     * @see VertexCacheOptimizer
+     */
+    @Test
+    public void testVertexCache() throws Exception {
+        final int gridPoints = 200;
+        final int fifoSize = VertexCacheOptimizer.DEFAULT_ACMR_CACHE_SIZE;
+
+        MeshBuilder origBuilder = createTerrain("terrain_orig", gridPoints);
+        Node origNode = origBuilder.build(this._writer);
+
+        MeshBuilder optBuilder = createTerrain("terrain_opt", gridPoints);
+        optBuilder.setOptimizeCache(true);
+
+        long startTime = System.nanoTime();
+        Node optNode = optBuilder.build(this._writer);
+        long elapsedMs = (System.nanoTime() - startTime)/1000000;
+        optNode.setTranslation(new float[] { 5f, 0f, 0f });
+
+        float acmrBefore = VertexCacheOptimizer.calcAcmr(readIndices(origNode), fifoSize);
+        float acmrAfter = VertexCacheOptimizer.calcAcmr(readIndices(optNode), fifoSize);
+        LOG.info("Vertex cache: grid=<{}x{}> ACMR=<{} -> {}> build=<{} ms>",
+                gridPoints, gridPoints, acmrBefore, acmrAfter, elapsedMs);
+        assertTrue(acmrAfter < acmrBefore);
+
+        File outFile = TestShapeModels.getFile("test_vertex_cache");
+        this._writer.writeGltf(outFile);
+        LOG.info("Finished generating: {}", outFile);
+    }
+
+    /**
+     * Generate a terrain with 3 simplified levels of detail using MSFT_lod.
+     * @see MeshSimplifier
+     */
+    @Test
+    public void testTerrainLod() throws Exception {
+        MeshBuilder meshBuilder = createTerrain("terrain_lod", 100);
+        meshBuilder.setOptimizeCache(true);
+
+        float[] lodRatios = { 0.25f, 0.06f, 0.015f };
+        float[] screenCoverage = { 0.5f, 0.2f, 0.05f, 0.01f };
+        Node node = meshBuilder.buildLod(this._writer, lodRatios, screenCoverage);
+
+        NodeMsftLod lodExt = (NodeMsftLod)node.getExtensions().get(NodeMsftLod.EXT_NAME);
+        assertEquals(lodRatios.length, lodExt.getIds().size());
+
+        // the levels of a deferred mesh need the same transform as the full detail node
+        MeshBuilder deferBuilder = createTerrain("terrain_lod_defer", 100);
+        deferBuilder.setDeferTransform(true);
+        deferBuilder.setCenter(new Point3f(-5f, 0f, 0f));
+        Node deferNode = deferBuilder.buildLod(this._writer, lodRatios, screenCoverage);
+        assertEquals(5f, deferNode.getTranslation()[0], 1e-6f);
+
+        File outFile = TestShapeModels.getFile("test_terrain_lod");
+        this._writer.writeGltf(outFile);
+        LOG.info("Finished generating: {}", outFile);
+
+        NodeMsftLod deferLodExt = (NodeMsftLod)deferNode.getExtensions().get(NodeMsftLod.EXT_NAME);
+        for(int lodIdx : deferLodExt.getIds()) {
+            Node lodNode = this._writer.getGltf().getNodes().get(lodIdx);
+            assertArrayEquals(deferNode.getTranslation(), lodNode.getTranslation(), 0f);
+        }
+    }
+
+    /**
+     * Render a large textured manifold on one thread and in parallel. The buffers of both 
+     * meshes must be identical.
+     * @see MeshBuilder#setParallel
+     */
+    @Test
+    public void testParallelGrid() throws Exception {
+        final int gridPoints = 250;
+
+        MeshBuilder serialBuilder = new MeshBuilder("torus_serial");
+        long startTime = System.nanoTime();
+        serialBuilder.addManifold(createTorusGrid(serialBuilder, gridPoints), true);
+        long serialMs = (System.nanoTime() - startTime)/1000000;
+        Node serialNode = serialBuilder.build(this._writer);
+
+        MeshBuilder parallelBuilder = new MeshBuilder("torus_parallel");
+        parallelBuilder.setParallel(true);
+        startTime = System.nanoTime();
+        parallelBuilder.addManifold(createTorusGrid(parallelBuilder, gridPoints), true);
+        long parallelMs = (System.nanoTime() - startTime)/1000000;
+        Node parallelNode = parallelBuilder.build(this._writer);
+        parallelNode.setTranslation(new float[] { 15f, 0f, 0f });
+
+        LOG.info("Parallel grid: grid=<{}x{}> serial=<{} ms> parallel=<{} ms>",
+                gridPoints, gridPoints, serialMs, parallelMs);
+
+        MeshPrimitive serialPrim = getPrimitive(serialNode);
+        MeshPrimitive parallelPrim = getPrimitive(parallelNode);
+        assertArrayEquals(readBytes(serialPrim.getIndices()), readBytes(parallelPrim.getIndices()));
+        for(String attrib : serialPrim.getAttributes().keySet()) {
+            assertArrayEquals(readBytes(serialPrim.getAttributes().get(attrib)),
+                    readBytes(parallelPrim.getAttributes().get(attrib)));
+        }
+
+        File outFile = TestShapeModels.getFile("test_parallel_grid");
+        this._writer.writeGltf(outFile);
+        LOG.info("Finished generating: {}", outFile);
+    }
+
+    /**
+     * Build several terrains of the same size and check that they share one index accessor. 
+     * The triangles must be the same as a terrain that writes its own indices.
+     * @see GridIndexTemplate
+     */
+    @Test
+    public void testGridTemplate() throws Exception {
+        final int gridPoints = 100;
+        final int meshCount = 4;
+
+        MeshPrimitive[] primitives = new MeshPrimitive[meshCount];
+        for(int meshIdx = 0; meshIdx < meshCount; meshIdx++) {
+            MeshBuilder meshBuilder = createTerrain("terrain_template" + meshIdx, gridPoints);
+            Node node = meshBuilder.build(this._writer);
+            node.setTranslation(new float[] { 5f*meshIdx, 0f, 0f });
+            primitives[meshIdx] = getPrimitive(node);
+        }
+
+        for(int meshIdx = 1; meshIdx < meshCount; meshIdx++) {
+            assertEquals(primitives[0].getIndices(), primitives[meshIdx].getIndices());
+            assertTrue(!primitives[0].getAttributes().get("POSITION")
+                    .equals(primitives[meshIdx].getAttributes().get("POSITION")));
+        }
+
+        // an extra triangle prevents the template from being used
+        MeshBuilder ownBuilder = createTerrain("terrain_own", gridPoints);
+        ownBuilder.addTriangle(ownBuilder.newVertex(new Point3f(0f, 1f, 0f)),
+                ownBuilder.newVertex(new Point3f(1f, 1f, 0f)),
+                ownBuilder.newVertex(new Point3f(0f, 1f, 1f)));
+        Node ownNode = ownBuilder.build(this._writer);
+        ownNode.setTranslation(new float[] { 0f, 0f, 5f });
+        MeshPrimitive ownPrimitive = getPrimitive(ownNode);
+        assertTrue(!primitives[0].getIndices().equals(ownPrimitive.getIndices()));
+
+        float[] templateTriangles = readTriangles(primitives[0]);
+        float[] ownTriangles = readTriangles(ownPrimitive);
+        assertEquals(templateTriangles.length + 9, ownTriangles.length);
+        for(int pos = 0; pos < templateTriangles.length; pos++) {
+            assertEquals(ownTriangles[pos], templateTriangles[pos], 0f);
+        }
+
+        // templates are cached by the writer and are not shared with other writers
+        GridIndexTemplate.Key key = new GridIndexTemplate.Key(gridPoints, gridPoints, false, false, false);
+        GridIndexTemplate template = GridIndexTemplate.get(this._writer, key);
+        assertSame(template, GridIndexTemplate.get(this._writer, key));
+        assertTrue(template != GridIndexTemplate.get(new MeshGltfWriter(1024), key));
+
+        File outFile = TestShapeModels.getFile("test_grid_template");
+        this._writer.writeGltf(outFile);
+        LOG.info("Finished generating: {}", outFile);
+    }
+
+    private static MeshVertex[][] createTorusGrid(MeshBuilder meshBuilder, int gridPoints) 
+            throws Exception {
+        final MeshVertex[][] meshGrid = new MeshVertex[gridPoints][];
+
+        for(int rIdx = 0; rIdx < gridPoints; rIdx++) {
+            final double angle = MeshBuilder.interpFloat(gridPoints, 2*Math.PI, rIdx);
+            final double radius = 2d*Math.cos(angle) + 4d;
+            final Point3f circlePos = new Point3f(0, 2f*(float)Math.sin(angle), 0);
+            meshGrid[rIdx] = meshBuilder.addCircleVerticesXZ(circlePos, (float)radius, gridPoints, null);
+        }
+
+        return meshGrid;
+    }
+
+    private static MeshBuilder createTerrain(String name, int gridPoints) throws Exception {
+        NoiseGenerator noise = new NoiseGenerator.OpenSimplex(999);
+        noise.setOctaves(3);
+
+        final float gridSize = 4f;
+        final MeshBuilder meshBuilder = new MeshBuilder(name);
+        final MeshVertex[][] meshGrid = new MeshVertex[gridPoints][gridPoints];
+
+        for(int xIdx = 0; xIdx < gridPoints; xIdx++) {
+            final float xPos = MeshBuilder.interpFloat(gridPoints, gridSize, xIdx) - gridSize/2f;
+
+            for(int yIdx = 0; yIdx < gridPoints; yIdx++) {
+                final float zPos = MeshBuilder.interpFloat(gridPoints, gridSize, yIdx) - gridSize/2f;
+                final float yPos = (float)noise.getNoise(xPos, zPos);
+                meshGrid[xIdx][yIdx] = meshBuilder.newVertex(new Point3f(xPos, yPos, zPos));
+            }
+        }
+
+        meshBuilder.addPlane(meshGrid, false);
+        return meshBuilder;
+    }
+
+    private MeshPrimitive getPrimitive(Node node) {
+        GlTF gltf = this._writer.getGltf();
+        return gltf.getMeshes().get(node.getMesh()).getPrimitives().get(0);
+    }
+
+    /**
+     * Read back the serialized bytes of an accessor.
+     */
+    private byte[] readBytes(int accessorIdx) {
+        GlTF gltf = this._writer.getGltf();
+        Accessor accessor = gltf.getAccessors().get(accessorIdx);
+        BufferView bufferView = gltf.getBufferViews().get(accessor.getBufferView());
+
+        byte[] bytes = new byte[bufferView.getByteLength()];
+        ByteBuffer buffer = this._writer.getBuffer().duplicate();
+        buffer.position(bufferView.getByteOffset());
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read back the position of each corner of each triangle in a primitive.
+     */
+    private float[] readTriangles(MeshPrimitive primitive) {
+        int[] indices = readIndices(primitive);
+        byte[] bytes = readBytes(primitive.getAttributes().get("POSITION"));
+        FloatBuffer positions = ByteBuffer.wrap(bytes).order(this._writer.getBuffer().order())
+                .asFloatBuffer();
+
+        float[] triangles = new float[indices.length*3];
+        for(int pos = 0; pos < indices.length; pos++) {
+            positions.position(indices[pos]*3);
+            positions.get(triangles, pos*3, 3);
+        }
+
+        return triangles;
+    }
+
+    /**
+     * Read back the triangle indices of a node that was serialized to the writer buffer.
+     */
+    private int[] readIndices(Node node) {
+        return readIndices(getPrimitive(node));
+    }
+
+    private int[] readIndices(MeshPrimitive primitive) {
+        GlTF gltf = this._writer.getGltf();
+        Accessor accessor = gltf.getAccessors().get(primitive.getIndices());
+        BufferView bufferView = gltf.getBufferViews().get(accessor.getBufferView());
+
+        ByteBuffer buffer = this._writer.getBuffer();
+        int[] indices = new int[accessor.getCount()];
+        for(int pos = 0; pos < indices.length; pos++) {
+            int offset = bufferView.getByteOffset() + pos*Short.BYTES;
+            indices[pos] = Short.toUnsignedInt(buffer.getShort(offset));
+        }
+
+        return indices;
+    }
+}
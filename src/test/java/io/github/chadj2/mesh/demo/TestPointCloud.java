@@ -0,0 +1,158 @@
+/* 
+ * Copyright (c) 2026, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.Map;
+import java.util.Random;
+
+import javax.vecmath.Point3f;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.impl.v2.Mesh;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.buffer.BufferColorArray;
+import io.github.chadj2.mesh.buffer.BufferQuantizedVec3;
+import io.github.chadj2.mesh.pointcloud.PointCloudBuilder;
+
+public class TestPointCloud {
+
+    private final static Logger LOG = LoggerFactory.getLogger(TestPointCloud.class);
+
+    /**
+     * Generate a noisy sphere of points with a small memory budget so that points are
+     * written to temporary files and the octree is built in chunks.
+     * @see PointCloudBuilder
+     */
+    @Test
+    public void testPointCloud() throws Exception {
+        final int _pointCount = 200000;
+        final MeshGltfWriter _geoWriter = new MeshGltfWriter(16*1024*1024);
+
+        PointCloudBuilder _builder = new PointCloudBuilder("test_point_cloud");
+        _builder.setMemoryBudget(256*1024);
+        _builder.setMaxDepth(6);
+        _builder.setGridSize(16);
+
+        final float[] _xPos = new float[1000];
+        final float[] _yPos = new float[1000];
+        final float[] _zPos = new float[1000];
+        final int[] _colors = new int[1000];
+        final Random _random = new Random(1234);
+
+        for(int _batch = 0; _batch < _pointCount/_xPos.length; _batch++) {
+            for(int _idx = 0; _idx < _xPos.length; _idx++) {
+                // random direction on a sphere with some noise in the radius
+                double _theta = _random.nextDouble()*2*Math.PI;
+                double _cosPhi = _random.nextDouble()*2 - 1;
+                double _sinPhi = Math.sqrt(1 - _cosPhi*_cosPhi);
+                double _radius = 2 + _random.nextGaussian()*0.05;
+
+                _xPos[_idx] = (float)(_radius*_sinPhi*Math.cos(_theta));
+                _yPos[_idx] = (float)(_radius*_cosPhi);
+                _zPos[_idx] = (float)(_radius*_sinPhi*Math.sin(_theta));
+                _colors[_idx] = Color.HSBtoRGB((float)(_theta/(2*Math.PI)), 0.8f, 1f);
+            }
+            _builder.addPoints(_xPos, _yPos, _zPos, _colors, _xPos.length);
+        }
+
+        assertEquals(_pointCount, _builder.getPointCount());
+        assertTrue(_builder.getSpillCount() > 0);
+
+        _builder.build(_geoWriter);
+        assertTrue(_builder.getNodeCount() > 1);
+
+        // every point is written once
+        GlTF _gltf = _geoWriter.getGltf();
+        long _writtenCount = 0;
+        for(Mesh _mesh : _gltf.getMeshes()) {
+            int _accessorIdx = _mesh.getPrimitives().get(0).getAttributes().get("POSITION");
+            Accessor _accessor = _gltf.getAccessors().get(_accessorIdx);
+            _writtenCount += _accessor.getCount();
+        }
+        assertEquals(_pointCount, _writtenCount);
+        assertTrue(_gltf.getExtensionsRequired().contains(BufferQuantizedVec3.EXT_NAME));
+
+        File _outFile = TestShapeModels.getFile(_builder.getName());
+        _geoWriter.writeGltf(_outFile);
+        LOG.info("Finished generating: {}", _outFile);
+    }
+
+    /**
+     * Build a point cloud in local coordinates with the transform on the root node.
+     * @see PointCloudBuilder
+     */
+    @Test
+    public void testPointCloudDefer() throws Exception {
+        final MeshGltfWriter _geoWriter = new MeshGltfWriter(1024*1024);
+
+        PointCloudBuilder _builder = new PointCloudBuilder("test_point_cloud_defer");
+        _builder.setDeferTransform(true);
+        _builder.setCenter(new Point3f(-5f, 0f, 0f));
+        _builder.setMaxDepth(1);
+
+        final float[] _xPos = { 0f, 1f, 0f, 1f };
+        final float[] _yPos = { 0f, 0f, 1f, 1f };
+        final float[] _zPos = { 0f, 0f, 0f, 1f };
+        _builder.addPoints(_xPos, _yPos, _zPos, null, _xPos.length);
+
+        Node _rootNode = _builder.build(_geoWriter);
+        assertEquals(5f, _rootNode.getTranslation()[0], 1e-6f);
+
+        // the octree is around the untransformed points
+        @SuppressWarnings("unchecked")
+        Map<String, Object> _extras = (Map<String, Object>)_rootNode.getExtras();
+        float[] _minBounds = (float[])_extras.get("minBounds");
+        assertTrue(_minBounds[0] < 0.01f);
+    }
+
+    /**
+     * Append to point buffers that were set from the middle of a shared array. Values must be
+     * read from the start offset and the shared array must not be written.
+     * @see BufferQuantizedVec3#add
+     * @see BufferColorArray#add
+     */
+    @Test
+    public void testPointBufferOffset() throws Exception {
+        final MeshGltfWriter _geoWriter = new MeshGltfWriter(1024*1024);
+
+        final float[] _positions = { 9f, 9f, 9f, 0f, 0f, 0f, 9f, 9f, 9f };
+        BufferQuantizedVec3 _positionBuf = new BufferQuantizedVec3("test_point_offset-positions");
+        _positionBuf.setData(_positions, 1, 1, new float[] { 0f, 0f, 0f }, 2f);
+        _positionBuf.add(new float[] { 2f, 2f, 2f });
+        _positionBuf.add(new float[] { 1f, 1f, 1f });
+
+        final int[] _colors = { 0, Color.RED.getRGB(), 0 };
+        BufferColorArray _colorBuf = new BufferColorArray("test_point_offset-colors");
+        _colorBuf.setData(_colors, 1, 1);
+        _colorBuf.add(Color.BLUE.getRGB());
+
+        assertEquals(3, _positionBuf.size());
+        assertEquals(0f, _positionBuf.get(0)[0], 0f);
+        assertEquals(1f, _positionBuf.get(2)[0], 0f);
+        assertEquals(9f, _positions[6], 0f);
+        assertEquals(Color.RED.getRGB(), _colorBuf.get(0).intValue());
+        assertEquals(Color.BLUE.getRGB(), _colorBuf.get(1).intValue());
+        assertEquals(0, _colors[2]);
+
+        MeshPrimitive _primitive = new MeshPrimitive();
+        Accessor _posAccessor = _positionBuf.buildAttrib(_geoWriter, _primitive, "POSITION");
+        assertEquals(BufferQuantizedVec3.MAX_VALUE, _posAccessor.getMax()[0].intValue());
+        assertEquals(0, _posAccessor.getMin()[0].intValue());
+    }
+}
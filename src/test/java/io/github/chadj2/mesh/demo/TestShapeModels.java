@@ -6,23 +6,41 @@
 
 package io.github.chadj2.mesh.demo;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
 import java.awt.Color;
 import java.io.File;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
+import javax.vecmath.Matrix4f;
 import javax.vecmath.Point3f;
+import javax.vecmath.Vector3f;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.javagl.jgltf.impl.v2.Accessor;
 import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import de.javagl.jgltf.impl.v2.Node;
+import de.javagl.jgltf.model.GltfConstants;
 import io.github.chadj2.mesh.BaseBuilder;
 import io.github.chadj2.mesh.MeshGltfWriter;
 import io.github.chadj2.mesh.MeshGltfWriter.AlphaMode;
 import io.github.chadj2.mesh.MeshBuilder;
 import io.github.chadj2.mesh.MeshVertex;
+import io.github.chadj2.mesh.buffer.BufferIndexArray;
+import io.github.chadj2.mesh.buffer.TriangleIndices;
+import io.github.chadj2.mesh.extinst.GlTFMeshGpuInstancing;
+import io.github.chadj2.mesh.extinst.InstanceFactory;
+import io.github.chadj2.mesh.extsm.FeatureTable;
 
 public class TestShapeModels {
 
@@ -359,5 +377,182 @@ public class TestShapeModels {
         LOG.info("Finished generating: {}", _outFile);
     }
     
+    /**
+     * Reuse one builder for several meshes. Each mesh should only contain its own vertices.
+     * @see MeshBuilder#clear
+     */
+    @Test
+    public void testBuilderReuse() throws Exception {
+        final MeshBuilder _meshBuilder = new MeshBuilder("test_reuse");
+        _meshBuilder.setMaterial(this._writer.newDefaultMaterial());
+        
+        final int _discCount = 5;
+        final int _discSides = 16;
+        Integer _firstCount = null;
+        
+        for(int _discIdx = 0; _discIdx < _discCount; _discIdx++) {
+            _meshBuilder.setName("test_reuse_" + _discIdx);
+            
+            Color _color = BaseBuilder.colorCreateHsba((float)_discIdx/_discCount, 0.8f, 0.8f, 1f);
+            Point3f _discPos = new Point3f(_discIdx*2.5f, 0f, 0f);
+            _meshBuilder.addDiscXZ(_discPos, 1f, _discSides, _color);
+            Node _node = _meshBuilder.build(this._writer);
+            
+            MeshPrimitive _primitive = this._writer.getGltf().getMeshes().get(_node.getMesh())
+                    .getPrimitives().get(0);
+            int _posIdx = _primitive.getAttributes().get("POSITION");
+            int _vertexCount = this._writer.getGltf().getAccessors().get(_posIdx).getCount();
+            
+            if(_firstCount == null) {
+                _firstCount = _vertexCount;
+            }
+            assertEquals(_firstCount.intValue(), _vertexCount);
+            assertTrue(_meshBuilder.isEmpty());
+        }
+        
+        File _outFile = TestShapeModels.getFile("test_reuse");
+        this._writer.writeGltf(_outFile);
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    /**
+     * Add an index past the range of UINT16 to indices that were set from an array. The 
+     * accessor must switch to UINT32 and the caller's array must not be written.
+     * @see BufferIndexArray#add
+     */
+    @Test
+    public void testIndexBufferAdd() throws Exception {
+        final int[] _indices = { 0, 1, 2 };
+        BufferIndexArray _indexBuf = new BufferIndexArray("test_index_add");
+        _indexBuf.setData(_indices, _indices.length);
+        assertFalse(_indexBuf.isUnsignedInt());
+        
+        _indexBuf.add(TriangleIndices.MAX_INDEX + 1);
+        assertTrue(_indexBuf.isUnsignedInt());
+        assertEquals(4, _indexBuf.size());
+        assertArrayEquals(new int[] { 0, 1, 2 }, _indices);
+        
+        MeshPrimitive _primitive = new MeshPrimitive();
+        Accessor _accessor = _indexBuf.build(this._writer, _primitive);
+        assertEquals(GltfConstants.GL_UNSIGNED_INT, _accessor.getComponentType().intValue());
+        assertEquals(TriangleIndices.MAX_INDEX + 1, _accessor.getMax()[0].intValue());
+    }
+    
+    /**
+     * Build a diamond once in local coordinates and place copies of it with node transforms.
+     * @see BaseBuilder#setDeferTransform
+     * @see MeshGltfWriter#addMeshNode
+     */
+    @Test
+    public void testDeferTransform() throws Exception {
+        final MeshBuilder _meshBuilder = new MeshBuilder("test_defer");
+        _meshBuilder.setMaterial(this._writer.newDefaultMaterial());
+        _meshBuilder.setDeferTransform(true);
+        _meshBuilder.setScale(new Vector3f(0.5f, 0.5f, 0.5f));
+        _meshBuilder.setCenter(new Point3f(-2f, 0f, 0f));
+        
+        final float[] _radiusList = { 0.2f, 1f, 0.2f };
+        final float[] _yPosList = { -1f, 0f, 1f };
+        final MeshVertex[][] _meshGrid = new MeshVertex[_yPosList.length][];
+        
+        for(int _yIdx = 0; _yIdx < _yPosList.length; _yIdx++) {
+            final Color _color = Color.getHSBColor((float)_yIdx/(float)_yPosList.length, 0.9f, 1.0f);
+            _meshGrid[_yIdx] = _meshBuilder.addCircleVerticesXZ(new Point3f(0, _yPosList[_yIdx], 0), 
+                    _radiusList[_yIdx], 12, _color);
+        }
+        _meshBuilder.addLathe(_meshGrid, false);
+        Node _node = _meshBuilder.build(this._writer);
+        
+        // vertices are not transformed
+        int _posIdx = this._writer.getGltf().getMeshes().get(_node.getMesh())
+                .getPrimitives().get(0).getAttributes().get("POSITION");
+        Number[] _max = this._writer.getGltf().getAccessors().get(_posIdx).getMax();
+        assertEquals(1f, _max[1].floatValue(), 1e-6f);
+        assertEquals(2f, _node.getTranslation()[0], 1e-6f);
+        assertEquals(0.5f, _node.getScale()[1], 1e-6f);
+        
+        // place copies in a ring around the first one
+        final int _copies = 8;
+        for(int _idx = 0; _idx < _copies; _idx++) {
+            Matrix4f _transform = new Matrix4f();
+            _transform.rotZ((float)(2*Math.PI*_idx/_copies));
+            _transform.setTranslation(new Vector3f(4f*(float)Math.cos(2*Math.PI*_idx/_copies), 
+                    4f*(float)Math.sin(2*Math.PI*_idx/_copies), 0f));
+            Node _copy = this._writer.addMeshNode("test_defer-" + _idx, _node.getMesh(), _transform);
+            assertEquals(_node.getMesh(), _copy.getMesh());
+        }
+        
+        // a small rotation is kept
+        Matrix4f _tilt = new Matrix4f();
+        _tilt.rotZ(0.001f);
+        Node _tiltNode = this._writer.addMeshNode("test_defer-tilt", _node.getMesh(), _tilt);
+        assertNotNull(_tiltNode.getRotation());
+        assertEquals(0.0005f, _tiltNode.getRotation()[2], 1e-6f);
+        
+        assertEquals(1, this._writer.getGltf().getMeshes().size());
+        
+        File _outFile = TestShapeModels.getFile(_meshBuilder.getName());
+        this._writer.writeGltf(_outFile);
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    /**
+     * Draw a vector field with one arrow mesh and an instance for each vector.
+     * @see InstanceFactory
+     */
+    @Test
+    public void testInstancedArrows() throws Exception {
+        // arrow along the Y axis with a shaft and a cone
+        final MeshBuilder _meshBuilder = new MeshBuilder("test_arrows");
+        _meshBuilder.setMaterial(this._writer.newDefaultMaterial());
+        
+        final float[] _radiusList = { 0f, 0.04f, 0.04f, 0.1f, 0f };
+        final float[] _yPosList = { 0f, 0f, 0.7f, 0.7f, 1f };
+        final MeshVertex[][] _meshGrid = new MeshVertex[_yPosList.length][];
+        for(int _yIdx = 0; _yIdx < _yPosList.length; _yIdx++) {
+            _meshGrid[_yIdx] = _meshBuilder.addCircleVerticesXZ(new Point3f(0f, _yPosList[_yIdx], 0f), 
+                    _radiusList[_yIdx], 8, Color.ORANGE);
+        }
+        _meshBuilder.addLathe(_meshGrid, false);
+        final int _meshIdx = _meshBuilder.buildMesh(this._writer);
+        
+        FeatureTable _table = new FeatureTable("arrow", "Arrow", "cell", "Cell");
+        InstanceFactory _factory = new InstanceFactory("test_arrows", _meshIdx);
+        _factory.setFeatureTable(_table);
+        
+        // swirl around the origin
+        final int _gridSize = 100;
+        final float[] _rotation = new float[4];
+        final float[] _scale = new float[3];
+        for(int _xIdx = 0; _xIdx < _gridSize; _xIdx++) {
+            for(int _zIdx = 0; _zIdx < _gridSize; _zIdx++) {
+                final float _xPos = (_xIdx - _gridSize/2f)*0.2f;
+                final float _zPos = (_zIdx - _gridSize/2f)*0.2f;
+                final float _dx = -_zPos;
+                final float _dy = 0.3f*(float)Math.sin(_xPos);
+                final float _dz = _xPos;
+                
+                InstanceFactory.rotationFromY(_dx, _dy, _dz, _rotation, 0);
+                float _length = (float)Math.sqrt(_dx*_dx + _dy*_dy + _dz*_dz);
+                Arrays.fill(_scale, 0.05f + 0.02f*_length);
+                
+                int _featureId = _table.addFeature(String.format("%d,%d", _xIdx, _zIdx));
+                _factory.addInstance(_xPos, 0f, _zPos, _rotation, _scale, _featureId);
+            }
+        }
+        
+        Node _node = _factory.build(this._writer);
+        assertEquals(1, this._writer.getGltf().getMeshes().size());
+        
+        GlTFMeshGpuInstancing _instancing = (GlTFMeshGpuInstancing)_node.getExtensions()
+                .get(GlTFMeshGpuInstancing.EXT_NAME);
+        assertTrue(_instancing.getAttributes().containsKey("ROTATION"));
+        assertTrue(_instancing.getAttributes().containsKey("SCALE"));
+        int _featureIdx = _instancing.getAttributes().get("_FEATURE_ID_0");
+        assertEquals(_gridSize*_gridSize, this._writer.getGltf().getAccessors().get(_featureIdx).getCount().intValue());
+        
+        File _outFile = TestShapeModels.getFile(_meshBuilder.getName());
+        this._writer.writeGltf(_outFile);
+        LOG.info("Finished generating: {}", _outFile);
+    }
 }
-
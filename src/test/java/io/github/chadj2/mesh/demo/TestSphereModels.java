@@ -6,8 +6,17 @@
 
 package io.github.chadj2.mesh.demo;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
 import java.awt.Color;
 import java.io.File;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 import javax.vecmath.Point3f;
 
@@ -15,12 +24,29 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
 import de.javagl.jgltf.impl.v2.Node;
+import de.javagl.jgltf.model.GltfConstants;
 import io.github.chadj2.mesh.BaseBuilder;
 import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.buffer.BufferMetadataString;
+import io.github.chadj2.mesh.buffer.BufferQuantizedVec3;
+import io.github.chadj2.mesh.extinst.GlTFMeshGpuInstancing;
+import io.github.chadj2.mesh.extlod.NodeMsftLod;
+import io.github.chadj2.mesh.extsm.FeatureTable;
+import io.github.chadj2.mesh.extsm.GlTFStructuralMetadata;
+import io.github.chadj2.mesh.extsm.PropertyTable;
+import io.github.chadj2.mesh.extsm.PropertyTableProperty;
+import io.github.chadj2.mesh.extsm.Schema;
 import io.github.chadj2.mesh.sphere.IcosphereBuilder;
+import io.github.chadj2.mesh.sphere.IcosphereTemplate;
 import io.github.chadj2.mesh.sphere.SphereFactory;
+import io.github.chadj2.mesh.sphere.SphereFactoryAdaptive;
+import io.github.chadj2.mesh.sphere.SphereFactoryBase;
 import io.github.chadj2.mesh.sphere.SphereFactoryInst;
+import io.github.chadj2.mesh.sphere.SphereFactoryPoints;
 
 public class TestSphereModels {
 
@@ -61,7 +87,307 @@ public class TestSphereModels {
         LOG.info("Finished generating: {}", _outFile);
     }
     
-    public void createSpheres(SphereFactory factory) throws Exception {
+    /**
+     * Create a 10x10 grid of instanced spheres with the color as an instance attribute so all 
+     * spheres share one mesh.
+     * @throws Exception
+     */
+    @Test
+    public void testSphereInstanceColors() throws Exception {
+        SphereFactoryInst factory = new SphereFactoryInst(this._writer);
+        factory.setMaxDetail(2);
+        factory.setInstanceColors(true);
+        
+        createSpheres(factory);
+        Node node = factory.addSphere(new Point3f(10f, -2f, 0f), "extra");
+        factory.build();
+        
+        // one mesh and one instancing node for all colors
+        assertEquals(1, this._writer.getGltf().getMeshes().size());
+        GlTFMeshGpuInstancing instancing = (GlTFMeshGpuInstancing)node.getExtensions().get(GlTFMeshGpuInstancing.EXT_NAME);
+        Integer colorIdx = instancing.getAttributes().get(SphereFactoryInst.ATTR_COLOR);
+        assertNotNull(colorIdx);
+        assertEquals(101, this._writer.getGltf().getAccessors().get(colorIdx).getCount().intValue());
+        
+        File _outFile = TestShapeModels.getFile("test_sphere_instance_colors");
+        this._writer.writeGltf(_outFile);
+        assertMetadataAligned(this._writer.getGltf());
+        
+        Schema schema = ((GlTFStructuralMetadata)this._writer.getGltf().getExtensions().get(FeatureTable.EXT_NAME)).getSchema();
+        assertEquals("Sphere Events", schema.getName());
+        assertNull(schema.getId());
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    /**
+     * Create instanced spheres with translations quantized to normalized shorts.
+     * @throws Exception
+     */
+    @Test
+    public void testSphereQuantized() throws Exception {
+        SphereFactoryInst factory = new SphereFactoryInst(this._writer);
+        factory.setMaxDetail(2);
+        factory.setInstanceColors(true);
+        factory.setQuantizeTranslation(true);
+        
+        createSpheres(factory);
+        Node node = factory.addSphere(new Point3f(10f, -2f, 0f), "extra");
+        factory.build();
+        
+        GlTFMeshGpuInstancing instancing = (GlTFMeshGpuInstancing)node.getExtensions().get(GlTFMeshGpuInstancing.EXT_NAME);
+        assertFalse(instancing.getAttributes().containsKey("ROTATION"));
+        
+        Accessor transAccessor = this._writer.getGltf().getAccessors().get(instancing.getAttributes().get("TRANSLATION"));
+        assertEquals(GltfConstants.GL_SHORT, transAccessor.getComponentType().intValue());
+        assertTrue(transAccessor.isNormalized());
+        assertTrue(this._writer.getGltf().getExtensionsRequired().contains(BufferQuantizedVec3.EXT_NAME));
+        
+        // the node maps [-1, 1] to a cube starting at the minimum bounds
+        float[] nodeTrans = node.getTranslation();
+        float nodeScale = node.getScale()[0];
+        assertEquals(0f, nodeTrans[0] - nodeScale, 1e-4f);
+        assertEquals(-2f, nodeTrans[1] - nodeScale, 1e-4f);
+        
+        File _outFile = TestShapeModels.getFile("test_sphere_quantized");
+        this._writer.writeGltf(_outFile);
+        assertMetadataAligned(this._writer.getGltf());
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    /**
+     * Split 10k instanced spheres into spatial clusters so viewers can cull them.
+     * @throws Exception
+     */
+    @Test
+    public void testSphereClusters() throws Exception {
+        SphereFactoryInst factory = new SphereFactoryInst(this._writer);
+        factory.setMaxDetail(1);
+        factory.setInstanceColors(true);
+        factory.setMaxClusterSize(1000);
+        factory.setRadius(0.05f);
+        
+        final int sphereCount = 10000;
+        final Random random = new Random(1234);
+        Node parent = null;
+        for(int idx = 0; idx < sphereCount; idx++) {
+            Point3f pos = new Point3f(random.nextFloat()*20f, random.nextFloat()*20f, random.nextFloat()*20f);
+            factory.setColor(Color.getHSBColor(pos.x/20f, 0.8f, 0.5f + pos.y/40f));
+            parent = factory.addSphere(pos, Integer.toString(idx));
+        }
+        factory.build();
+        
+        assertEquals(null, parent.getMesh());
+        assertTrue(parent.getChildren().size() >= sphereCount/1000);
+        
+        File _outFile = TestShapeModels.getFile("test_sphere_clusters");
+        this._writer.writeGltf(_outFile);
+        assertMetadataAligned(this._writer.getGltf());
+        
+        // each cluster has a smaller bounds than the whole set
+        GlTF gltf = this._writer.getGltf();
+        int total = 0;
+        for(int childIdx : parent.getChildren()) {
+            GlTFMeshGpuInstancing instancing = (GlTFMeshGpuInstancing)gltf.getNodes().get(childIdx)
+                    .getExtensions().get(GlTFMeshGpuInstancing.EXT_NAME);
+            Accessor trans = gltf.getAccessors().get(instancing.getAttributes().get("TRANSLATION"));
+            assertTrue(trans.getCount() <= 1000);
+            total += trans.getCount();
+            
+            float volume = 1f;
+            for(int axis = 0; axis < 3; axis++) {
+                volume *= trans.getMax()[axis].floatValue() - trans.getMin()[axis].floatValue();
+            }
+            assertTrue(volume < 20f*20f*20f/8);
+        }
+        assertEquals(sphereCount, total);
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    /**
+     * Create the 10x10 grid with a node for each sphere and again with instancing after the
+     * count reaches the threshold.
+     * @throws Exception
+     */
+    @Test
+    public void testSphereAdaptive() throws Exception {
+        SphereFactoryAdaptive nodeFactory = new SphereFactoryAdaptive(this._writer);
+        nodeFactory.setMaxDetail(2);
+        createSpheres(nodeFactory);
+        nodeFactory.build();
+        
+        this._writer.writeGltf(TestShapeModels.getFile("test_sphere_adaptive_nodes"));
+        assertFalse(nodeFactory.isInstanced());
+        assertEquals(100, this._writer.getGltf().getNodes().size());
+        
+        MeshGltfWriter instWriter = new MeshGltfWriter();
+        SphereFactoryAdaptive instFactory = new SphereFactoryAdaptive(instWriter);
+        instFactory.setMaxDetail(2);
+        instFactory.setInstanceThreshold(100);
+        instFactory.setInstanceColors(true);
+        createSpheres(instFactory);
+        instFactory.build();
+        
+        File _outFile = TestShapeModels.getFile("test_sphere_adaptive");
+        instWriter.writeGltf(_outFile);
+        
+        assertTrue(instFactory.isInstanced());
+        assertEquals(1, instWriter.getGltf().getNodes().size());
+        assertTrue(instWriter.getGltf().getExtensionsUsed().contains(GlTFMeshGpuInstancing.EXT_NAME));
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    /**
+     * Create a 10x10 grid of instanced spheres with LODs 4, 2 and 0 using MSFT_lod.
+     * @throws Exception
+     */
+    @Test
+    public void testSphereLod() throws Exception {
+        SphereFactoryInst factory = new SphereFactoryInst(this._writer);
+        factory.setInstanceColors(true);
+        factory.setDetailLevels(new int[] { 4, 2, 0 }, new float[] { 0.2f, 0.05f, 0f });
+        
+        createSpheres(factory);
+        Node node = factory.addSphere(new Point3f(10f, -2f, 0f), "extra");
+        factory.build();
+        
+        File _outFile = TestShapeModels.getFile("test_sphere_lod");
+        this._writer.writeGltf(_outFile);
+        
+        // the LOD nodes share the instance buffers
+        NodeMsftLod lodExt = (NodeMsftLod)node.getExtensions().get(NodeMsftLod.EXT_NAME);
+        assertEquals(2, lodExt.getIds().size());
+        Object instancing = node.getExtensions().get(GlTFMeshGpuInstancing.EXT_NAME);
+        for(int lodIdx : lodExt.getIds()) {
+            Node lodNode = this._writer.getGltf().getNodes().get(lodIdx);
+            assertSame(instancing, lodNode.getExtensions().get(GlTFMeshGpuInstancing.EXT_NAME));
+            assertFalse(lodNode.getMesh().equals(node.getMesh()));
+        }
+        assertEquals(3, this._writer.getGltf().getMeshes().size());
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    /**
+     * Create 100k spheres as a single POINTS primitive.
+     * @throws Exception
+     */
+    @Test
+    public void testSpherePoints() throws Exception {
+        SphereFactoryPoints factory = new SphereFactoryPoints(this._writer);
+        factory.setRadius(0.05f);
+        
+        final int sphereCount = 100000;
+        final Random random = new Random(1234);
+        Node node = null;
+        for(int idx = 0; idx < sphereCount; idx++) {
+            Point3f pos = new Point3f(random.nextFloat()*20f, random.nextFloat()*20f, random.nextFloat()*20f);
+            factory.setColor(Color.getHSBColor(pos.x/20f, 0.8f, 0.5f + pos.y/40f));
+            node = factory.addSphere(pos, Integer.toString(idx));
+        }
+        factory.build();
+        
+        MeshPrimitive primitive = this._writer.getGltf().getMeshes().get(node.getMesh()).getPrimitives().get(0);
+        assertEquals(GltfConstants.GL_POINTS, primitive.getMode().intValue());
+        assertTrue(primitive.getAttributes().containsKey("COLOR_0"));
+        assertTrue(primitive.getAttributes().containsKey("_SIZE"));
+        assertTrue(primitive.getAttributes().containsKey("_FEATURE_ID_0"));
+        assertEquals(sphereCount, this._writer.getGltf().getAccessors()
+                .get(primitive.getAttributes().get("POSITION")).getCount().intValue());
+        
+        File _outFile = TestShapeModels.getFile("test_sphere_points");
+        this._writer.writeGltf(_outFile);
+        assertMetadataAligned(this._writer.getGltf());
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    /**
+     * Create instanced spheres that switch to points when they are small on the screen.
+     * @throws Exception
+     */
+    @Test
+    public void testSphereLodPoints() throws Exception {
+        SphereFactoryInst factory = new SphereFactoryInst(this._writer);
+        factory.setInstanceColors(true);
+        factory.setDetailLevels(new int[] { 2, 0, SphereFactoryBase.LOD_POINTS }, new float[] { 0.1f, 0.01f, 0f });
+        
+        createSpheres(factory);
+        Node node = factory.addSphere(new Point3f(10f, -2f, 0f), "extra");
+        factory.build();
+        
+        File _outFile = TestShapeModels.getFile("test_sphere_lod_points");
+        this._writer.writeGltf(_outFile);
+        assertMetadataAligned(this._writer.getGltf());
+        
+        // the last LOD is a POINTS primitive without instancing
+        GlTF gltf = this._writer.getGltf();
+        NodeMsftLod lodExt = (NodeMsftLod)node.getExtensions().get(NodeMsftLod.EXT_NAME);
+        Node pointsNode = gltf.getNodes().get(lodExt.getIds().get(1));
+        assertEquals(null, pointsNode.getExtensions());
+        MeshPrimitive primitive = gltf.getMeshes().get(pointsNode.getMesh()).getPrimitives().get(0);
+        assertEquals(GltfConstants.GL_POINTS, primitive.getMode().intValue());
+        assertEquals(101, gltf.getAccessors().get(primitive.getAttributes().get("POSITION")).getCount().intValue());
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    /**
+     * Add 100k instanced spheres from 4 threads with the color and radius of each sphere.
+     * @throws Exception
+     */
+    @Test
+    public void testSphereConcurrent() throws Exception {
+        SphereFactoryInst factory = new SphereFactoryInst(this._writer);
+        factory.setMaxDetail(1);
+        factory.setInstanceColors(true);
+        
+        final int threadCount = 4;
+        final int sphereCount = 25000;
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[threadCount];
+        for(int threadIdx = 0; threadIdx < threadCount; threadIdx++) {
+            final int seed = threadIdx;
+            futures[threadIdx] = CompletableFuture.runAsync(() -> {
+                final Random random = new Random(seed);
+                for(int idx = 0; idx < sphereCount; idx++) {
+                    Point3f pos = new Point3f(random.nextFloat()*20f, random.nextFloat()*20f, seed*5f);
+                    Color color = Color.getHSBColor(pos.x/20f, 0.8f, 0.8f);
+                    factory.addSphereConcurrent(pos, 0.02f + random.nextFloat()*0.05f, color, 
+                            String.format("%d-%d", seed, idx));
+                }
+            });
+        }
+        CompletableFuture.allOf(futures).get();
+        Node node = factory.addSphere(new Point3f(10f, -2f, 0f), "extra");
+        factory.build();
+        
+        File _outFile = TestShapeModels.getFile("test_sphere_concurrent");
+        this._writer.writeGltf(_outFile);
+        assertMetadataAligned(this._writer.getGltf());
+        
+        // every sphere has a unique feature ID
+        GlTFMeshGpuInstancing instancing = (GlTFMeshGpuInstancing)node.getExtensions().get(GlTFMeshGpuInstancing.EXT_NAME);
+        Accessor featureAccessor = this._writer.getGltf().getAccessors().get(instancing.getAttributes().get("_FEATURE_ID_0"));
+        assertEquals(threadCount*sphereCount + 1, featureAccessor.getCount().intValue());
+        assertEquals(0f, featureAccessor.getMin()[0].floatValue(), 0f);
+        assertEquals(threadCount*sphereCount, featureAccessor.getMax()[0].floatValue(), 0f);
+        LOG.info("Finished generating: {}", _outFile);
+    }
+    
+    /**
+     * Check that every buffer view of a property table starts at a multiple of 8 bytes as
+     * EXT_structural_metadata requires.
+     */
+    private static void assertMetadataAligned(GlTF gltf) {
+        GlTFStructuralMetadata structMeta = (GlTFStructuralMetadata)gltf.getExtensions().get(FeatureTable.EXT_NAME);
+        for(PropertyTable table : structMeta.getPropertyTables()) {
+            for(PropertyTableProperty property : table.getProperties().values()) {
+                int[] viewIdxList = { property.getValues(), property.getStringOffsets() };
+                for(int viewIdx : viewIdxList) {
+                    int byteOffset = gltf.getBufferViews().get(viewIdx).getByteOffset();
+                    assertEquals("bufferView " + viewIdx, 0, byteOffset % BufferMetadataString.METADATA_ALIGNMENT);
+                }
+            }
+        }
+    }
+    
+    public void createSpheres(SphereFactoryBase factory) throws Exception {
         final int xGridSize = 10;
         final int yGridSize = 10;
         
@@ -123,4 +449,46 @@ public class TestSphereModels {
         File _outFile = TestShapeModels.getFile(builder.getName());
         this._writer.writeGltf(_outFile);
     }
+    
+    /**
+     * Templates are shared between threads and have the same geometry as IcosphereBuilder.
+     * @throws Exception
+     */
+    @Test
+    public void testIcosphereTemplate() throws Exception {
+        final int lod = 3;
+        CompletableFuture<IcosphereTemplate> future = CompletableFuture.supplyAsync(() -> IcosphereTemplate.get(lod));
+        IcosphereTemplate template = IcosphereTemplate.get(lod);
+        assertSame(template, future.get());
+        
+        IcosphereBuilder builder = new IcosphereBuilder("test_ico_template");
+        builder.addIcosphere(lod);
+        int meshIdx = builder.buildMesh(this._writer);
+        int posIdx = this._writer.getGltf().getMeshes().get(meshIdx).getPrimitives().get(0)
+                .getAttributes().get("POSITION");
+        
+        assertEquals(this._writer.getGltf().getAccessors().get(posIdx).getCount().intValue(), 
+                template.getVertexCount());
+        assertEquals(20*(1 << (2*lod)), template.getTriangleCount());
+    }
+    
+    /**
+     * Generate a high LOD Icosphere and check that midpoints are shared between triangles.
+     * @throws Exception
+     */
+    @Test
+    public void testIcoBuilderHighLod() throws Exception {
+        final int lod = 6;
+        IcosphereBuilder builder = new IcosphereBuilder("test_ico_lod6");
+        
+        long startTime = System.nanoTime();
+        builder.addIcosphere(lod);
+        LOG.info("Icosphere LOD {} generated in {} ms", lod, (System.nanoTime() - startTime)/1000000);
+        
+        int meshIdx = builder.buildMesh(this._writer);
+        int posIdx = this._writer.getGltf().getMeshes().get(meshIdx).getPrimitives().get(0)
+                .getAttributes().get("POSITION");
+        assertEquals(IcosphereTemplate.get(lod).getVertexCount(), 
+                this._writer.getGltf().getAccessors().get(posIdx).getCount().intValue());
+    }
 }
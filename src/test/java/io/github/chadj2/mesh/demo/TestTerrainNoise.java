@@ -6,7 +6,12 @@
 
 package io.github.chadj2.mesh.demo;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
 import java.io.File;
+import java.util.List;
 
 import javax.vecmath.Point3f;
 
@@ -16,11 +21,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.HeightfieldBuilder;
 import io.github.chadj2.mesh.MeshGltfWriter;
 import io.github.chadj2.mesh.MeshGltfWriter.AlphaMode;
 import io.github.chadj2.mesh.MeshBuilder;
 import io.github.chadj2.mesh.MeshVertex;
+import io.github.chadj2.mesh.extlod.NodeMsftLod;
 import io.github.chadj2.mesh.noise.NoiseGenerator;
+import io.github.chadj2.mesh.terrain.QuadtreeTerrain;
+import io.github.chadj2.mesh.terrain.RtinMesher;
 
 public class TestTerrainNoise {
 
@@ -63,6 +73,119 @@ public class TestTerrainNoise {
         createTerrain(_gridPoints, _gridSize, _noise, "test_simplex");
     }
 
+    
+    /**
+     * Generate a large textured terrain directly from a height function.
+     * @see HeightfieldBuilder
+     */
+    @Test 
+    public void testHeightfield() throws Exception {
+        NoiseGenerator _noise = new NoiseGenerator.OpenSimplex(999);
+        _noise.setOctaves(3);
+        _noise.setPersistence(0.4);
+        final int _gridPoints = 500;
+        final float _gridSize = 4f;
+        
+        HeightfieldBuilder _builder = new HeightfieldBuilder("test_heightfield", 
+                _gridPoints, _gridPoints, _gridSize, _gridSize);
+        _builder.setMaterial(this._geoWriter.newTextureMaterial(TEST_TEXTURE_PNG));
+        _builder.setTextured(true);
+        _builder.setHeights((_xPos, _zPos) -> (float)_noise.getNoise(_xPos, _zPos));
+        
+        // Set rendering for both sides of the plane
+        this._geoWriter.setAlphaMode(AlphaMode.OPAQUE_DS);
+        _builder.build(this._geoWriter);
+        
+        File _outFile = TestShapeModels.getFile(_builder.getName());
+        this._geoWriter.writeGltf(_outFile);
+        LOG.info("Finished generating: {}", _outFile);
+    }
+
+    /**
+     * Generate a terrain as a quadtree of tiles with MSFT_lod nodes in a single file and then
+     * write each tile to its own GLB.
+     * @see QuadtreeTerrain
+     */
+    @Test 
+    public void testQuadtreeTerrain() throws Exception {
+        NoiseGenerator _noise = new NoiseGenerator.OpenSimplex(999);
+        _noise.setOctaves(5);
+        _noise.setPersistence(0.4);
+        
+        final int _levels = 3;
+        QuadtreeTerrain _terrain = new QuadtreeTerrain("test_quadtree", _noise, 8f, _levels);
+        _terrain.setTileSize(33);
+        _terrain.setTextured(true);
+        _terrain.setParallel(true);
+        _terrain.setMaterialFactory(_writer -> {
+            _writer.setBasePath(new File("src/test/resources"));
+            _writer.setAlphaMode(AlphaMode.OPAQUE_DS);
+            return _writer.newTextureMaterial(TEST_TEXTURE_PNG);
+        });
+        
+        Node _rootNode = _terrain.build(this._geoWriter);
+        assertNotNull(_rootNode.getExtensions().get(NodeMsftLod.EXT_NAME));
+        assertEquals(4, _rootNode.getChildren().size());
+        
+        List<QuadtreeTerrain.Tile> _tiles = _terrain.getTiles();
+        assertEquals(1 + 4 + 16, _tiles.size());
+        for(QuadtreeTerrain.Tile _tile : _tiles) {
+            // the skirt extends the bounds below the surface
+            assertTrue(_tile.getMinBounds().y < _tile.getMaxBounds().y);
+        }
+        
+        File _outFile = TestShapeModels.getFile(_terrain.getName());
+        this._geoWriter.writeGltf(_outFile);
+        LOG.info("Finished generating: {}", _outFile);
+        
+        File _tileDir = new File(_outFile.getParentFile(), "test_quadtree_tiles");
+        _tileDir.mkdirs();
+        _tiles = _terrain.writeTiles(_tileDir);
+        assertEquals(1 + 4 + 16, _tiles.size());
+        for(QuadtreeTerrain.Tile _tile : _tiles) {
+            assertTrue(_tile.getFile().length() > 0);
+        }
+        LOG.info("Finished generating tiles: {}", _tileDir);
+    }
+
+    /**
+     * Generate an adaptive terrain that only has the triangles needed to stay within an error.
+     * @see RtinMesher
+     */
+    @Test 
+    public void testRtinTerrain() throws Exception {
+        NoiseGenerator _noise = new NoiseGenerator.OpenSimplex(999);
+        _noise.setOctaves(3);
+        _noise.setPersistence(0.4);
+        
+        final int _gridPoints = 257;
+        final float _gridSize = 4f;
+        final float _maxError = 0.005f;
+        
+        RtinMesher _mesher = new RtinMesher(_gridPoints, _gridSize, _gridSize);
+        _mesher.setTextured(true);
+        _mesher.setHeights((_xPos, _zPos) -> (float)_noise.getNoise(_xPos, _zPos));
+        
+        // a large error only needs the 2 root triangles
+        assertEquals(2, _mesher.getTriangleCount(Float.MAX_VALUE));
+        
+        final MeshBuilder _meshBuilder = new MeshBuilder("test_rtin");
+        _meshBuilder.setMaterial(this._geoWriter.newTextureMaterial(TEST_TEXTURE_PNG));
+        int _triCount = _mesher.addTriangles(_meshBuilder, _maxError);
+        assertEquals(_mesher.getTriangleCount(_maxError), _triCount);
+        
+        final int _gridTriangles = (_gridPoints - 1)*(_gridPoints - 1)*2;
+        LOG.info("RTIN terrain: grid=<{}x{}> error=<{}> triangles=<{} -> {}>", _gridPoints, 
+                _gridPoints, _maxError, _gridTriangles, _triCount);
+        assertTrue(_triCount < _gridTriangles/2);
+        
+        this._geoWriter.setAlphaMode(AlphaMode.OPAQUE_DS);
+        _meshBuilder.build(this._geoWriter);
+        
+        File _outFile = TestShapeModels.getFile(_meshBuilder.getName());
+        this._geoWriter.writeGltf(_outFile);
+        LOG.info("Finished generating: {}", _outFile);
+    }
 
     private void createTerrain(final int _gridPoints, final float _gridSize, NoiseGenerator _noise, String _name)
             throws Exception {